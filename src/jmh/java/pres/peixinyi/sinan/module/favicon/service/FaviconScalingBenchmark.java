@@ -0,0 +1,170 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图标多尺寸生成基准
+ * 覆盖 ICO（多条目，内嵌 PNG）、PNG 与大尺寸 JPEG 三种来源，分别测量解码、逐级缩放与完整流程（解码、缩放、并行编码）。
+ * 运行：mvn -P benchmark test-compile exec:exec
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaviconScalingBenchmark {
+
+    private static final int MAX_GENERATED_SIZE = 256;
+
+    private static final int[] TARGET_SIZES = {MAX_GENERATED_SIZE, 128, 64, 32, 16};
+
+    @Param({"ico", "png", "jpeg"})
+    public String source;
+
+    private Path sourceFile;
+
+    private BufferedImage decoded;
+
+    private FaviconPngEncoder encoder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        encoder = new FaviconPngEncoder(new SimpleMeterRegistry());
+        sourceFile = Files.createTempFile("favicon-benchmark-", "." + source);
+        switch (source) {
+            case "ico" -> Files.write(sourceFile, icoOf(16, 32, 48, 256));
+            case "png" -> ImageIO.write(sample(512, 512, true), "png", sourceFile.toFile());
+            case "jpeg" -> ImageIO.write(sample(4000, 3000, false), "jpg", sourceFile.toFile());
+            default -> throw new IllegalArgumentException("Unknown source: " + source);
+        }
+        decoded = decode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(sourceFile);
+    }
+
+    @Benchmark
+    public BufferedImage decodeOnly() throws IOException {
+        return decode();
+    }
+
+    @Benchmark
+    public List<BufferedImage> scaleOnly() {
+        return FaviconImageScaler.scaleDescending(decoded, TARGET_SIZES);
+    }
+
+    @Benchmark
+    public List<byte[]> fullPipeline() throws IOException {
+        List<BufferedImage> scaled = FaviconImageScaler.scaleDescending(decode(), TARGET_SIZES);
+        List<CompletableFuture<byte[]>> encodings = new ArrayList<>(scaled.size());
+        for (BufferedImage image : scaled) {
+            encodings.add(CompletableFuture.supplyAsync(() -> encode(image)));
+        }
+        List<byte[]> pngs = new ArrayList<>(encodings.size());
+        for (CompletableFuture<byte[]> encoding : encodings) {
+            pngs.add(encoding.join());
+        }
+        return pngs;
+    }
+
+    private BufferedImage decode() throws IOException {
+        return "ico".equals(source)
+                ? FaviconImageDecoder.readIcoFile(sourceFile.toFile())
+                : FaviconImageDecoder.readImageFile(sourceFile.toFile(), MAX_GENERATED_SIZE);
+    }
+
+    private byte[] encode(BufferedImage image) {
+        try {
+            return encoder.encode(image, "benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 渐变背景加几何图形，接近真实图标的颜色分布
+     */
+    private static BufferedImage sample(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setPaint(new GradientPaint(0, 0, new Color(0x2b6cb0), width, height, new Color(0xed8936)));
+            if (alpha) {
+                g2d.fillOval(0, 0, width, height);
+            } else {
+                g2d.fillRect(0, 0, width, height);
+            }
+            g2d.setColor(Color.WHITE);
+            g2d.fillRoundRect(width / 4, height / 4, width / 2, height / 2, width / 8, height / 8);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 生成内嵌 PNG 条目的 ICO 文件，条目按给定尺寸依次排列
+     */
+    private static byte[] icoOf(int... sizes) throws IOException {
+        List<byte[]> entries = new ArrayList<>(sizes.length);
+        for (int size : sizes) {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(sample(size, size, true), "png", png);
+            entries.add(png.toByteArray());
+        }
+        int offset = 6 + 16 * sizes.length;
+        int total = offset + entries.stream().mapToInt(entry -> entry.length).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(total).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) 0).putShort((short) 1).putShort((short) sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            // ICO中宽度和高度为0表示256
+            buffer.put((byte) (sizes[i] >= 256 ? 0 : sizes[i]));
+            buffer.put((byte) (sizes[i] >= 256 ? 0 : sizes[i]));
+            buffer.put((byte) 0).put((byte) 0);
+            buffer.putShort((short) 1).putShort((short) 32);
+            buffer.putInt(entries.get(i).length).putInt(offset);
+            offset += entries.get(i).length;
+        }
+        entries.forEach(buffer::put);
+        return buffer.array();
+    }
+}
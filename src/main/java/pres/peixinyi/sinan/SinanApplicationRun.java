@@ -3,6 +3,7 @@ package pres.peixinyi.sinan;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 启动类
@@ -12,6 +13,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @Version : 0.0.0
  */
 @SpringBootApplication
+@EnableScheduling
 public class SinanApplicationRun {
     public static void main(String[] args) {
         SpringApplication.run(SinanApplicationRun.class, args);
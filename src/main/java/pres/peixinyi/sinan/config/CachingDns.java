@@ -0,0 +1,51 @@
+package pres.peixinyi.sinan.config;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带过期时间的 DNS 缓存
+ * 只缓存成功的解析结果，条目数超过上限时整体清空
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class CachingDns implements Dns {
+
+    private record CachedLookup(List<InetAddress> addresses, long expiresAt) {
+    }
+
+    private final Dns delegate;
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    private final ConcurrentHashMap<String, CachedLookup> cache = new ConcurrentHashMap<>();
+
+    public CachingDns(Dns delegate, long ttlMillis, int maxSize) {
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        CachedLookup cached = cache.get(hostname);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.addresses();
+        }
+        List<InetAddress> addresses = List.copyOf(delegate.lookup(hostname));
+        if (cache.size() >= maxSize) {
+            cache.clear();
+        }
+        cache.put(hostname, new CachedLookup(addresses, now + ttlMillis));
+        return addresses;
+    }
+}
@@ -0,0 +1,54 @@
+package pres.peixinyi.sinan.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * 对外请求耗时指标
+ * 按目标主机、方法和状态记录 sinan.http.client.requests 计时器，
+ * 只有配置的固定主机单独统计，其余主机计入 other
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class HttpClientMetricsInterceptor implements Interceptor {
+
+    private static final String METRIC_NAME = "sinan.http.client.requests";
+
+    private static final String OTHER_HOST = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> trackedHosts;
+
+    public HttpClientMetricsInterceptor(MeterRegistry meterRegistry, Set<String> trackedHosts) {
+        this.meterRegistry = meterRegistry;
+        this.trackedHosts = trackedHosts;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String status = "IO_ERROR";
+        try {
+            Response response = chain.proceed(request);
+            status = String.valueOf(response.code());
+            return response;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("对外HTTP请求耗时")
+                    .tag("host", trackedHosts.contains(request.url().host()) ? request.url().host() : OTHER_HOST)
+                    .tag("method", request.method())
+                    .tag("status", status)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package pres.peixinyi.sinan.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管理端点配置
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sinan.management")
+public class ManagementProperties {
+
+    /**
+     * 管理员角色名
+     */
+    public static final String ADMIN_ROLE = "admin";
+
+    /**
+     * 拥有管理员角色的用户ID，只有管理员可以访问健康检查以外的 Actuator 端点
+     */
+    private List<String> adminUserIds = new ArrayList<>();
+}
@@ -0,0 +1,52 @@
+package pres.peixinyi.sinan.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对外HTTP客户端配置
+ * 所有对外请求共用一个 OkHttpClient：共享连接池与 DNS 缓存，支持 HTTP/2，
+ * 限制并发、响应体大小和单次调用截止时间，并按主机记录耗时指标。
+ * 需要不同超时的调用方使用 {@link OkHttpClient#newBuilder()} 派生，派生客户端仍共享连接池与调度器。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Configuration
+public class OutboundHttpConfig {
+
+    @Bean
+    public OkHttpClient outboundHttpClient(OutboundHttpProperties properties, MeterRegistry meterRegistry) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(properties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(properties.getMaxRequestsPerHost());
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(properties.getMaxIdleConnections(),
+                        properties.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(new CachingDns(Dns.SYSTEM, TimeUnit.SECONDS.toMillis(properties.getDnsTtlSeconds()),
+                        properties.getDnsCacheSize()))
+                .connectTimeout(Duration.ofSeconds(properties.getConnectTimeoutSeconds()))
+                .readTimeout(Duration.ofSeconds(properties.getReadTimeoutSeconds()))
+                .writeTimeout(Duration.ofSeconds(properties.getReadTimeoutSeconds()))
+                .callTimeout(Duration.ofSeconds(properties.getCallTimeoutSeconds()))
+                .retryOnConnectionFailure(true)
+                .addInterceptor(new HttpClientMetricsInterceptor(meterRegistry, Set.copyOf(properties.getMetricHosts())))
+                .addInterceptor(new ResponseSizeLimitInterceptor(properties.getMaxResponseBytes()))
+                .build();
+    }
+}
@@ -0,0 +1,76 @@
+package pres.peixinyi.sinan.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 对外HTTP请求配置
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sinan.http")
+public class OutboundHttpProperties {
+
+    /**
+     * 连接超时（秒）
+     */
+    private int connectTimeoutSeconds = 10;
+
+    /**
+     * 读取超时（秒）
+     */
+    private int readTimeoutSeconds = 30;
+
+    /**
+     * 单次调用的总截止时间（秒），包括 DNS、连接、重定向和读取响应体
+     */
+    private int callTimeoutSeconds = 60;
+
+    /**
+     * 连接池最大空闲连接数
+     */
+    private int maxIdleConnections = 32;
+
+    /**
+     * 空闲连接保活时间（秒）
+     */
+    private int keepAliveSeconds = 300;
+
+    /**
+     * 异步请求的最大并发数
+     */
+    private int maxRequests = 64;
+
+    /**
+     * 同一主机异步请求的最大并发数
+     */
+    private int maxRequestsPerHost = 5;
+
+    /**
+     * DNS 解析结果缓存时间（秒）
+     */
+    private int dnsTtlSeconds = 300;
+
+    /**
+     * DNS 缓存的最大主机数
+     */
+    private int dnsCacheSize = 10000;
+
+    /**
+     * 响应体大小上限（字节），超过时请求失败
+     */
+    private long maxResponseBytes = 5 * 1024 * 1024;
+
+    /**
+     * 指标中单独统计的主机，其余主机（如用户书签的域名）一律计入 other，
+     * 既避免指标维度无限增长，也不在指标中暴露用户访问的站点
+     */
+    private List<String> metricHosts = List.of("github.com", "api.github.com");
+}
@@ -0,0 +1,60 @@
+package pres.peixinyi.sinan.config;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * 响应体大小限制
+ * 声明的 Content-Length 超限时直接失败；未声明长度时在读取超过上限时抛出异常
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class ResponseSizeLimitInterceptor implements Interceptor {
+
+    private final long maxBytes;
+
+    public ResponseSizeLimitInterceptor(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        if (body.contentLength() > maxBytes) {
+            response.close();
+            throw new IOException("响应体过大: " + body.contentLength() + " > " + maxBytes
+                    + " (" + chain.request().url().host() + ")");
+        }
+        BufferedSource limited = Okio.buffer(new ForwardingSource(body.source()) {
+            private long total;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new IOException("响应体超过上限: " + maxBytes + " 字节");
+                    }
+                }
+                return read;
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.create(limited, body.contentType(), body.contentLength()))
+                .build();
+    }
+}
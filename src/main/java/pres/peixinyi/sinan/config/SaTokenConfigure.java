@@ -2,7 +2,12 @@ package pres.peixinyi.sinan.config;
 
 import cn.dev33.satoken.interceptor.SaInterceptor;
 import cn.dev33.satoken.stp.StpUtil;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -42,4 +47,30 @@ public class SaTokenConfigure implements WebMvcConfigurer {
                         "/api/*");
 
     }
+
+    /**
+     * Actuator 端点由独立的 HandlerMapping 处理，不经过上面的拦截器，
+     * 这里用过滤器要求管理员角色，健康检查除外
+     */
+    @Bean
+    public FilterRegistrationBean<Filter> actuatorAuthFilter() {
+        Filter filter = (request, response, chain) -> {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
+            String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+            if (!path.equals("/actuator/health") && !path.startsWith("/actuator/health/")) {
+                if (!StpUtil.isLogin()) {
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                    return;
+                }
+                if (!StpUtil.hasRole(ManagementProperties.ADMIN_ROLE)) {
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_FORBIDDEN);
+                    return;
+                }
+            }
+            chain.doFilter(request, response);
+        };
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/actuator/*");
+        return registration;
+    }
 }
@@ -0,0 +1,35 @@
+package pres.peixinyi.sinan.config;
+
+import cn.dev33.satoken.stp.StpInterface;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 权限与角色
+ * 目前只有管理员一种角色，由 {@link ManagementProperties#getAdminUserIds()} 配置
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Component
+public class StpInterfaceImpl implements StpInterface {
+
+    @Resource
+    private ManagementProperties managementProperties;
+
+    @Override
+    public List<String> getPermissionList(Object loginId, String loginType) {
+        return List.of();
+    }
+
+    @Override
+    public List<String> getRoleList(Object loginId, String loginType) {
+        if (managementProperties.getAdminUserIds().contains(String.valueOf(loginId))) {
+            return List.of(ManagementProperties.ADMIN_ROLE);
+        }
+        return List.of();
+    }
+}
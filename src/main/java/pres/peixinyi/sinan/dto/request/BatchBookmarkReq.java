@@ -0,0 +1,73 @@
+package pres.peixinyi.sinan.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量书签操作请求
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class BatchBookmarkReq {
+
+    /**
+     * 操作列表，按顺序返回每一项的结果
+     */
+    @Valid
+    @NotEmpty(message = "操作列表不能为空")
+    private List<Operation> operations;
+
+    /**
+     * 单项操作
+     */
+    @Data
+    public static class Operation {
+
+        /**
+         * 操作类型：create / update / move / tag / delete
+         */
+        @NotEmpty(message = "操作类型不能为空")
+        private String op;
+
+        /**
+         * 书签ID（update、move、tag、delete 必填）
+         */
+        private String id;
+
+        /**
+         * 书签名称（create 必填）
+         */
+        private String name;
+
+        /**
+         * 书签URL（create 必填）
+         */
+        private String url;
+
+        /**
+         * 书签图标，data URI 形式的内联图标会提取为图标文件
+         */
+        private String icon;
+
+        /**
+         * 书签描述
+         */
+        private String description;
+
+        /**
+         * 目标空间：空间ID，或 "空间名:new" 表示不存在时新建；move 时为空表示移出空间
+         */
+        private String namespaceId;
+
+        /**
+         * 标签：标签ID，或 "标签名:new:#颜色代码" 表示不存在时新建；tag 操作会以此覆盖书签原有标签
+         */
+        private List<String> tagsIds;
+    }
+}
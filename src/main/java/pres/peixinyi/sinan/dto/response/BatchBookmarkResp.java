@@ -0,0 +1,76 @@
+package pres.peixinyi.sinan.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量书签操作响应
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class BatchBookmarkResp {
+
+    /**
+     * 成功数量
+     */
+    private int successCount;
+
+    /**
+     * 失败数量
+     */
+    private int failCount;
+
+    /**
+     * 每一项操作的结果，与请求顺序一致
+     */
+    private List<ItemResult> results;
+
+    /**
+     * 单项操作结果
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+
+        /**
+         * 在请求列表中的下标
+         */
+        private int index;
+
+        /**
+         * 操作类型
+         */
+        private String op;
+
+        /**
+         * 书签ID（create 成功时为新书签ID）
+         */
+        private String id;
+
+        /**
+         * 是否成功
+         */
+        private boolean success;
+
+        /**
+         * 结果说明
+         */
+        private String message;
+    }
+
+    public static BatchBookmarkResp of(List<ItemResult> results) {
+        BatchBookmarkResp resp = new BatchBookmarkResp();
+        resp.setResults(results);
+        int success = (int) results.stream().filter(ItemResult::isSuccess).count();
+        resp.setSuccessCount(success);
+        resp.setFailCount(results.size() - success);
+        return resp;
+    }
+}
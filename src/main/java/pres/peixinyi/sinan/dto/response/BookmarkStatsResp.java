@@ -0,0 +1,36 @@
+package pres.peixinyi.sinan.dto.response;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 用户书签统计响应
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class BookmarkStatsResp {
+
+    /**
+     * 书签总数
+     */
+    private long totalCount;
+
+    /**
+     * 未归属空间的书签数量
+     */
+    private long noSpaceCount;
+
+    /**
+     * 每个空间的书签数量（空间ID -> 数量，包含没有书签的空间）
+     */
+    private Map<String, Long> spaceCounts;
+
+    /**
+     * 每个标签的书签数量（标签ID -> 数量，包含没有书签的标签）
+     */
+    private Map<String, Long> tagCounts;
+}
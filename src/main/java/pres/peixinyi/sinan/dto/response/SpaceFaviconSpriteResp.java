@@ -0,0 +1,76 @@
+package pres.peixinyi.sinan.dto.response;
+
+import lombok.Data;
+import pres.peixinyi.sinan.module.favicon.service.FaviconSpriteService;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 空间图标雪碧图坐标
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class SpaceFaviconSpriteResp {
+
+    /**
+     * 雪碧图的内容哈希，请求图片时带上 v 参数即可长期缓存
+     */
+    private String etag;
+
+    /**
+     * 与本次坐标对应的图片地址（相对接口根路径），带尺寸与版本参数，
+     * 该版本已被替换时图片接口返回404，客户端重新获取坐标即可
+     */
+    private String url;
+
+    /**
+     * 每个图标的边长
+     */
+    private Integer tileSize;
+
+    /**
+     * 图片宽度
+     */
+    private Integer width;
+
+    /**
+     * 图片高度
+     */
+    private Integer height;
+
+    /**
+     * 域名 -> 图标左上角坐标
+     */
+    private Map<String, FaviconSpriteService.Tile> tiles;
+
+    /**
+     * 尚未缓存的域名，客户端改用单个图标接口
+     */
+    private List<String> missing;
+
+    /**
+     * 书签ID -> 域名
+     */
+    private Map<String, String> bookmarkDomains;
+
+    /**
+     * 从雪碧图转换
+     */
+    public static SpaceFaviconSpriteResp from(String spaceId, FaviconSpriteService.Sprite sprite,
+                                              Map<String, String> bookmarkDomains) {
+        SpaceFaviconSpriteResp resp = new SpaceFaviconSpriteResp();
+        resp.setEtag(sprite.etag().replace("\"", ""));
+        resp.setUrl("/space/" + spaceId + "/favicon-sprite.png?sz=" + sprite.tileSize() + "&v=" + resp.getEtag());
+        resp.setTileSize(sprite.tileSize());
+        resp.setWidth(sprite.width());
+        resp.setHeight(sprite.height());
+        resp.setTiles(sprite.tiles());
+        resp.setMissing(sprite.missing());
+        resp.setBookmarkDomains(bookmarkDomains);
+        return resp;
+    }
+}
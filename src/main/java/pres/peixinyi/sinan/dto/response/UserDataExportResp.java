@@ -1,6 +1,7 @@
 package pres.peixinyi.sinan.dto.response;
 
 import lombok.Data;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
 import pres.peixinyi.sinan.module.sinan.entity.SnTag;
@@ -117,5 +118,23 @@ public class UserDataExportResp {
             data.setTags(tagIds);
             return data;
         }
+
+        public static BookmarkExportData from(BookmarkExportRow row) {
+            BookmarkExportData data = new BookmarkExportData();
+            data.setId(row.getId());
+            data.setUserId(row.getUserId());
+            data.setSpaceId(row.getSpaceId());
+            data.setName(row.getName());
+            data.setDescription(row.getDescription());
+            data.setUrl(row.getUrl());
+            data.setIcon(row.getIcon());
+            data.setNum(row.getNum());
+            data.setStar(row.getStar());
+            data.setCreateTime(row.getCreateTime());
+            data.setUpdateTime(row.getUpdateTime());
+            data.setDeleted(0);
+            data.setTags(row.getTagIdList());
+            return data;
+        }
     }
 }
@@ -0,0 +1,32 @@
+package pres.peixinyi.sinan.module.favicon.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Favicon磁盘缓存容量配置
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "favicon.disk-cache")
+public class FaviconDiskCacheProperties {
+
+    /**
+     * 缓存目录的字节上限，0 表示不限制
+     */
+    private long maxBytes = 1024L * 1024 * 1024;
+
+    /**
+     * 超过上限后淘汰到上限的该比例以下，避免每轮只淘汰一点
+     */
+    private double lowWatermarkRatio = 0.9;
+
+    /**
+     * 访问时间的记录粒度（秒），同一域名在粒度内多次访问只记录一次
+     */
+    private long accessGranularitySeconds = 60;
+}
@@ -0,0 +1,42 @@
+package pres.peixinyi.sinan.module.favicon.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Favicon后台获取配置
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "favicon.fetch")
+public class FaviconFetchProperties {
+
+    /**
+     * 获取线程数
+     */
+    private int threads = 8;
+
+    /**
+     * 排队任务上限，超过后新的获取请求被拒绝，客户端下次请求时重试
+     */
+    private int maxQueue = 200;
+
+    /**
+     * 同一主机同时排队和执行的获取任务上限
+     */
+    private int perHostConcurrency = 2;
+
+    /**
+     * 未命中时返回占位图，建议客户端重试的间隔（秒）
+     */
+    private int retryAfterSeconds = 2;
+
+    /**
+     * 批量接口单次请求的域名上限
+     */
+    private int batchMaxDomains = 500;
+}
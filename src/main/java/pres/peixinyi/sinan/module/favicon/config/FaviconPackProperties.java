@@ -0,0 +1,37 @@
+package pres.peixinyi.sinan.module.favicon.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Favicon打包存储配置
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "favicon.store.pack")
+public class FaviconPackProperties {
+
+    /**
+     * 是否把小图标写入打包段文件，关闭时已有段文件仍可读取
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单个段文件大小（字节），段文件创建时按此大小映射
+     */
+    private int segmentBytes = 16 * 1024 * 1024;
+
+    /**
+     * 不超过该大小的图标写入段文件，更大的仍按单独文件存放
+     */
+    private int maxEntryBytes = 64 * 1024;
+
+    /**
+     * 段内已删除字节占比达到该值时重写该段
+     */
+    private double compactRatio = 0.5;
+}
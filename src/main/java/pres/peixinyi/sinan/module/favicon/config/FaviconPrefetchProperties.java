@@ -0,0 +1,32 @@
+package pres.peixinyi.sinan.module.favicon.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Favicon预取配置
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "favicon.prefetch")
+public class FaviconPrefetchProperties {
+
+    /**
+     * 是否在新增、导入书签后预取图标
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每轮最多提交的预取任务数，与任务间隔共同限制速率
+     */
+    private int batchSize = 10;
+
+    /**
+     * 等待预取的域名上限，超过后新的域名被丢弃，首次访问时再获取
+     */
+    private int maxPending = 10000;
+}
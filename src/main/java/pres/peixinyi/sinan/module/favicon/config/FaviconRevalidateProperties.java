@@ -0,0 +1,47 @@
+package pres.peixinyi.sinan.module.favicon.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Favicon后台重新验证与失败退避配置
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "favicon.revalidate")
+public class FaviconRevalidateProperties {
+
+    /**
+     * 是否在后台重新验证已缓存的图标
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存图标的有效期（小时），到期后向上游发送条件请求
+     */
+    private long ttlHours = 168;
+
+    /**
+     * 有效期的随机抖动比例，避免同一批缓存的图标同时到期
+     */
+    private double jitterRatio = 0.2;
+
+    /**
+     * 每轮最多提交的重新验证任务数，与任务间隔共同限制速率
+     */
+    private int batchSize = 5;
+
+    /**
+     * 获取失败后的首次退避时长（分钟），之后每次失败翻倍
+     */
+    private long failureBackoffMinutes = 60;
+
+    /**
+     * 失败退避的上限（小时）
+     */
+    private long failureBackoffMaxHours = 168;
+}
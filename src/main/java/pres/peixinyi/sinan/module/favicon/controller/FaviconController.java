@@ -1,20 +1,20 @@
 package pres.peixinyi.sinan.module.favicon.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
+import pres.peixinyi.sinan.common.Result;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconBatchReq;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconBatchResp;
+import pres.peixinyi.sinan.module.favicon.service.FaviconResponseWriter;
 import pres.peixinyi.sinan.module.favicon.service.FaviconService;
 
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Favicon控制器
@@ -31,87 +31,101 @@ public class FaviconController {
 
     private final FaviconService faviconService;
 
+    private final FaviconResponseWriter faviconResponseWriter;
+
+    private final FaviconFetchProperties fetchProperties;
+
     /**
      * 根据域名和尺寸参数获取favicon
-     * 支持domain=vitepress.dev&sz=32格式的请求参数
-     * 直接返回图片文件
+     * 支持domain=vitepress.dev&sz=32格式的请求参数，sz可带设备像素比，如 sz=32@2x
+     * 直接返回图片文件，带 ETag / Last-Modified，条件请求命中时返回304；
+     * 未缓存时在后台获取并立即返回202占位图
      *
-     * @param domain 域名，如 vitepress.dev
-     * @param sz     图标尺寸，如 32（可选，默认返回最优尺寸）
-     * @return favicon图片文件
+     * @param domain   域名，如 vitepress.dev
+     * @param sz       图标尺寸，如 32 或 32@2x（可选，默认返回最优尺寸）
+     * @param request  请求
+     * @param response 响应，写出favicon图片文件
      */
     @GetMapping("/icon")
-    @Async
-    public ResponseEntity<Resource> getFaviconByDomain(@RequestParam("domain") String domain,
-                                                       @RequestParam(value = "sz", required = false) Integer sz) {
+    public void getFaviconByDomain(@RequestParam("domain") String domain,
+                                   @RequestParam(value = "sz", required = false) String sz,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) {
         try {
             // 检查域名是否被标记为失败
             if (faviconService.isDomainMarkedAsFailed(domain)) {
                 log.debug("Domain {} is marked as failed, returning 404", domain);
-                return ResponseEntity.notFound().build();
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
             
-            String cachedFilePath = faviconService.getFaviconByDomainAndSize(domain, sz);
-            if (cachedFilePath != null) {
-                // 直接返回缓存的文件
-                Path filePath = Paths.get(cachedFilePath);
-                File file = filePath.toFile();
-
-                if (file.exists() && file.isFile()) {
-                    Resource resource = new FileSystemResource(file);
-                    
-                    // 根据文件扩展名确定Content-Type
-                    String fileName = file.getName();
-                    String contentType = determineContentType(fileName);
-
-                    // 设置缓存头
-                    HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.parseMediaType(contentType));
-                    headers.setCacheControl("public, max-age=2592000"); // 缓存1个月（30天 * 24小时 * 60分钟 * 60秒）
-
-                    log.debug("Serving favicon for domain: {} with size: {} (file: {})", domain, sz, fileName);
-                    return ResponseEntity.ok()
-                            .headers(headers)
-                            .body(resource);
-                }
+            Integer size = faviconService.parseRequestedSize(sz);
+            String cachedFilePath = faviconService.getCachedFaviconOrFetchInBackground(domain, size);
+            if (cachedFilePath != null && faviconResponseWriter.write(request, response, cachedFilePath)) {
+                log.debug("Serving favicon for domain: {} with size: {} (file: {})", domain, sz, cachedFilePath);
+                return;
             }
             
-            // 如果获取失败，该域名已经被标记到Redis中了
-            log.warn("No favicon found for domain: {} with size: {}", domain, sz);
-            return ResponseEntity.notFound().build();
+            // 未缓存，已提交后台获取，先返回占位图；获取失败时域名会被标记到Redis中
+            log.debug("Favicon for domain: {} is not cached yet, returning placeholder", domain);
+            faviconResponseWriter.writePlaceholder(response);
             
         } catch (Exception e) {
             log.error("Failed to get favicon for domain: {} with size: {}", domain, sz, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
     /**
-     * 根据文件扩展名确定Content-Type
+     * 批量获取favicon，用于一次渲染整个书签列表
+     * 已缓存的图标以 data URI 内联返回，未缓存的提交后台获取并列入 pending，
+     * 失败退避中的域名列入 failed；不等待任何外部请求
      *
-     * @param filename 文件名
-     * @return MIME类型字符串
+     * @param req 域名列表与尺寸
+     * @return 批量结果
      */
-    private String determineContentType(String filename) {
-        if (filename == null) {
-            return "image/png";
+    @PostMapping("/batch")
+    public Result<FaviconBatchResp> getFaviconsBatch(@RequestBody FaviconBatchReq req) {
+        if (req.getDomains() == null || req.getDomains().isEmpty()) {
+            return Result.fail("域名列表不能为空");
         }
-
-        String lowerFilename = filename.toLowerCase();
-        if (lowerFilename.endsWith(".png")) {
-            return "image/png";
-        } else if (lowerFilename.endsWith(".jpg") || lowerFilename.endsWith(".jpeg")) {
-            return "image/jpeg";
-        } else if (lowerFilename.endsWith(".gif")) {
-            return "image/gif";
-        } else if (lowerFilename.endsWith(".svg")) {
-            return "image/svg+xml";
-        } else if (lowerFilename.endsWith(".ico")) {
-            return "image/x-icon";
-        } else if (lowerFilename.endsWith(".webp")) {
-            return "image/webp";
+        Set<String> domains = new LinkedHashSet<>();
+        for (String domain : req.getDomains()) {
+            if (domain != null && !domain.trim().isEmpty()) {
+                domains.add(domain.trim());
+            }
+        }
+        if (domains.size() > fetchProperties.getBatchMaxDomains()) {
+            return Result.fail("单次最多请求" + fetchProperties.getBatchMaxDomains() + "个域名");
         }
 
-        return "image/png"; // 默认类型
+        Integer size = faviconService.parseRequestedSize(req.getSz());
+        FaviconBatchResp resp = new FaviconBatchResp();
+        for (String domain : domains) {
+            try {
+                if (faviconService.isDomainMarkedAsFailed(domain)) {
+                    resp.getFailed().add(domain);
+                    continue;
+                }
+                String cachedFilePath = faviconService.getCachedFaviconOrFetchInBackground(domain, size);
+                String dataUri = cachedFilePath != null ? faviconResponseWriter.toDataUri(cachedFilePath) : null;
+                if (dataUri != null) {
+                    resp.getIcons().put(domain, dataUri);
+                } else {
+                    resp.getPending().add(domain);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to resolve favicon for domain: {} in batch", domain, e);
+                resp.getPending().add(domain);
+            }
+        }
+        if (!resp.getPending().isEmpty()) {
+            resp.setRetryAfterSeconds(fetchProperties.getRetryAfterSeconds());
+        }
+        log.debug("Favicon batch: {} cached, {} pending, {} failed",
+                resp.getIcons().size(), resp.getPending().size(), resp.getFailed().size());
+        return Result.success(resp);
     }
-}
\ No newline at end of file
+}
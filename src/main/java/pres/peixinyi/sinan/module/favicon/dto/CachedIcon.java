@@ -0,0 +1,88 @@
+package pres.peixinyi.sinan.module.favicon.dto;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 单个域名的本地缓存图标
+ * 不可变对象，更新时生成新实例替换，读取无需加锁
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+public final class CachedIcon {
+
+    /** 尺寸 -> PNG 文件路径 */
+    private final NavigableMap<Integer, Path> sizes;
+
+    /** 无尺寸的源文件（SVG 或无法解码时保存的原始文件），可为null */
+    private final Path source;
+
+    public static final CachedIcon EMPTY = new CachedIcon(new TreeMap<>(), null);
+
+    private CachedIcon(NavigableMap<Integer, Path> sizes, Path source) {
+        this.sizes = Collections.unmodifiableNavigableMap(sizes);
+        this.source = source;
+    }
+
+    /**
+     * 添加或替换一个尺寸
+     */
+    public CachedIcon withSize(int size, Path path) {
+        TreeMap<Integer, Path> copy = new TreeMap<>(sizes);
+        copy.put(size, path);
+        return new CachedIcon(copy, source);
+    }
+
+    /**
+     * 移除一个尺寸
+     */
+    public CachedIcon withoutSize(int size) {
+        TreeMap<Integer, Path> copy = new TreeMap<>(sizes);
+        copy.remove(size);
+        return new CachedIcon(copy, source);
+    }
+
+    /**
+     * 设置源文件
+     */
+    public CachedIcon withSource(Path path) {
+        return new CachedIcon(new TreeMap<>(sizes), path);
+    }
+
+    public NavigableMap<Integer, Path> getSizes() {
+        return sizes;
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    /**
+     * 是否没有任何文件
+     */
+    public boolean isEmpty() {
+        return sizes.isEmpty() && source == null;
+    }
+
+    /**
+     * 指定尺寸的文件
+     *
+     * @param size 尺寸
+     * @return 文件路径，不存在返回null
+     */
+    public Path getSize(int size) {
+        return sizes.get(size);
+    }
+
+    /**
+     * 最大尺寸的 PNG，没有时返回源文件
+     */
+    public Path getLargest() {
+        Map.Entry<Integer, Path> last = sizes.lastEntry();
+        return last != null ? last.getValue() : source;
+    }
+}
@@ -0,0 +1,21 @@
+package pres.peixinyi.sinan.module.favicon.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量获取favicon请求
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+public class FaviconBatchReq {
+
+    /** 域名列表，如 vitepress.dev */
+    private List<String> domains;
+
+    /** 图标尺寸，如 32 或 32@2x（可选，默认返回最优尺寸） */
+    private String sz;
+}
@@ -0,0 +1,31 @@
+package pres.peixinyi.sinan.module.favicon.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量获取favicon响应
+ * 已缓存的图标以 data URI 返回；未缓存的已提交后台获取，客户端在 retryAfterSeconds 后只需重新请求 pending 中的域名
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Data
+public class FaviconBatchResp {
+
+    /** 域名 -> data URI，如 data:image/png;base64,... */
+    private Map<String, String> icons = new LinkedHashMap<>();
+
+    /** 尚未缓存、已提交后台获取的域名 */
+    private List<String> pending = new ArrayList<>();
+
+    /** 获取失败、退避期内不再重试的域名 */
+    private List<String> failed = new ArrayList<>();
+
+    /** 建议的重试间隔（秒），pending 为空时为null */
+    private Integer retryAfterSeconds;
+}
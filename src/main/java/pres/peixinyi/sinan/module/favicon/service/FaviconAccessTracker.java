@@ -0,0 +1,212 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconDiskCacheProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Favicon缓存访问记录
+ * 记录每个域名的最近访问时间与缓存命中、未命中次数，供 {@link FaviconDiskCacheManager} 按最近最少使用淘汰。
+ * 访问时间按粒度记录：距上次记录不足粒度时只读不写，热点域名的每次请求不产生额外写入。
+ * 访问时间定期保存到缓存目录下的 store/access.tsv，启动时读回，重启后淘汰顺序仍按实际访问时间。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconAccessTracker {
+
+    private static final String SNAPSHOT_FILE = "access.tsv";
+
+    private final FaviconDiskCacheProperties properties;
+
+    @Value("${favicon.cache.dir:upload/icons}")
+    private String cacheDir;
+
+    /**
+     * 文件名前缀 -> 最近访问时间（毫秒）
+     */
+    private final ConcurrentHashMap<String, Long> lastAccess = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * 上次保存后是否有新的访问记录
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * 读取上次保存的访问时间
+     */
+    @PostConstruct
+    public void load() {
+        Path snapshot = snapshotPath();
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (Stream<String> lines = Files.lines(snapshot, StandardCharsets.UTF_8)) {
+            lines.forEach(line -> {
+                int tab = line.indexOf('\t');
+                try {
+                    if (tab > 0) {
+                        lastAccess.merge(line.substring(0, tab), Long.parseLong(line.substring(tab + 1)), Math::max);
+                    }
+                } catch (NumberFormatException e) {
+                    log.debug("Skip malformed favicon access entry: {}", line);
+                }
+            });
+            log.info("Favicon access times loaded: {} domains", lastAccess.size());
+        } catch (IOException e) {
+            log.warn("Failed to load favicon access times: {}", snapshot, e);
+        }
+    }
+
+    /**
+     * 有新的访问记录时保存访问时间，由 {@link FaviconDiskCacheManager} 定时调用，关闭时也会保存一次
+     */
+    @PreDestroy
+    public void save() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Path snapshot = snapshotPath();
+        try {
+            Files.createDirectories(snapshot.getParent());
+            Path tempPath = Files.createTempFile(snapshot.getParent(), SNAPSHOT_FILE, ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+                        writer.write(entry.getKey() + "\t" + entry.getValue());
+                        writer.newLine();
+                    }
+                }
+                try {
+                    Files.move(tempPath, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("Failed to save favicon access times: {}", snapshot, e);
+        }
+    }
+
+    /**
+     * 缓存命中
+     *
+     * @param baseName 文件名前缀
+     */
+    public void recordHit(String baseName) {
+        hits.increment();
+        touch(baseName);
+    }
+
+    /**
+     * 缓存未命中
+     */
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * 更新访问时间，写入新缓存时也会调用，刚获取的域名不会马上被淘汰
+     *
+     * @param baseName 文件名前缀
+     */
+    public void touch(String baseName) {
+        long now = System.currentTimeMillis();
+        Long previous = lastAccess.get(baseName);
+        if (previous == null || now - previous >= TimeUnit.SECONDS.toMillis(properties.getAccessGranularitySeconds())) {
+            lastAccess.put(baseName, now);
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * 最近访问时间
+     *
+     * @param baseName 文件名前缀
+     * @return 毫秒时间戳，没有访问记录（如升级前缓存的域名）返回null
+     */
+    public Long getLastAccess(String baseName) {
+        return lastAccess.get(baseName);
+    }
+
+    /**
+     * 移除域名的访问记录
+     *
+     * @param baseName 文件名前缀
+     */
+    public void forget(String baseName) {
+        if (lastAccess.remove(baseName) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * 移除以指定前缀开头的访问记录
+     *
+     * @param prefix 文件名前缀
+     */
+    public void forgetByPrefix(String prefix) {
+        if (lastAccess.keySet().removeIf(baseName -> baseName.startsWith(prefix))) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * 启动时间，既没有访问记录也没有文件修改时间的域名按此计算
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 启动以来的命中率，没有请求时为0
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Path snapshotPath() {
+        return Paths.get(cacheDir, "store", SNAPSHOT_FILE);
+    }
+}
@@ -0,0 +1,143 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 热点favicon字节缓存
+ * 按访问顺序淘汰的 LRU，以字节数为上限，图标内容保存在堆外只读 ByteBuffer 中，
+ * 同时缓存内容哈希 ETag 与修改时间，命中时不再打开文件。
+ * 缓存文件被改写或删除时由 {@link FaviconCacheService} 调用失效方法。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+public class FaviconByteCache {
+
+    /**
+     * 缓存条目
+     *
+     * @param content      只读图标内容，使用时需 duplicate
+     * @param etag         内容哈希 ETag（带引号）
+     * @param lastModified 文件修改时间（毫秒）
+     */
+    public record Entry(ByteBuffer content, String etag, long lastModified) {
+
+        /**
+         * 实际读到的字节数，读取期间文件变短时小于分配的容量
+         */
+        public int length() {
+            return content.remaining();
+        }
+    }
+
+    @Value("${favicon.byte-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${favicon.byte-cache.max-entry-bytes:262144}")
+    private long maxEntryBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long currentBytes;
+
+    /**
+     * 每次失效递增，读取文件期间发生失效时放弃写入，避免旧内容覆盖
+     */
+    private long generation;
+
+    /**
+     * 读取缓存条目
+     *
+     * @param path 文件路径
+     * @return 缓存条目，未命中返回null
+     */
+    public synchronized Entry get(Path path) {
+        return entries.get(key(path));
+    }
+
+    /**
+     * 读取文件并放入缓存
+     * 文件超过单条上限或缓存关闭时返回null，由调用方直接发送文件
+     *
+     * @param path         文件路径
+     * @param size         文件大小
+     * @param lastModified 文件修改时间（毫秒）
+     * @return 缓存条目
+     * @throws IOException 读取失败时抛出
+     */
+    public Entry load(Path path, long size, long lastModified) throws IOException {
+        if (size > maxEntryBytes || size > maxBytes) {
+            return null;
+        }
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读满为止
+            }
+        }
+        buffer.flip();
+        Entry entry = new Entry(buffer.asReadOnlyBuffer(), "\"" + HashUtils.shortSha256(buffer) + "\"", lastModified);
+        put(key(path), entry, loadGeneration);
+        return entry;
+    }
+
+    /**
+     * 使单个文件的缓存失效
+     *
+     * @param path 文件路径
+     */
+    public synchronized void invalidate(Path path) {
+        generation++;
+        Entry removed = entries.remove(key(path));
+        if (removed != null) {
+            currentBytes -= removed.length();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    private synchronized void put(String key, Entry entry, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            currentBytes -= previous.length();
+        }
+        currentBytes += entry.length();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            currentBytes -= eldest.length();
+            iterator.remove();
+        }
+    }
+
+    private String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
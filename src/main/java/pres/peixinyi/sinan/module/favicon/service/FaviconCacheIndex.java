@@ -0,0 +1,238 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.dto.CachedIcon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Favicon本地缓存索引
+ * 启动时并行扫描缓存目录建立 文件名前缀（域名） -> 可用尺寸与路径 的内存索引，
+ * 再由 {@link FaviconStore} 回放内容寻址存储的映射覆盖同名旧文件，
+ * 之后每次写入、删除缓存文件时同步更新，查询缓存只需一次哈希查找，不再探测文件系统。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+public class FaviconCacheIndex {
+
+    /**
+     * 可提供的尺寸，带尺寸的文件名形如 www_baidu_com_32.png
+     * 抓取时生成 16/32/64/128/256，其余尺寸在首次请求时按需生成
+     */
+    public static final NavigableSet<Integer> KNOWN_SIZES = Collections.unmodifiableNavigableSet(
+            new TreeSet<>(List.of(16, 24, 32, 48, 64, 96, 128, 192, 256)));
+
+    private static final Pattern CACHE_FILE = Pattern.compile("^(.+?)(?:_(\\d{1,4}))?\\.(png|jpg|gif|svg|ico|webp)$");
+
+    /**
+     * 书签图标上传目录默认与缓存目录相同，上传的 icon_&lt;时间戳&gt;.png 与提取的 icon_&lt;内容哈希&gt;.png
+     * 不是缓存文件，不能被索引、迁移或淘汰
+     */
+    private static final Pattern UPLOADED_FILE = Pattern.compile("^icon_(\\d{13}|[0-9a-f]{32})\\.(png|jpg|gif|bmp|webp)$");
+
+    private final ConcurrentHashMap<String, CachedIcon> icons = new ConcurrentHashMap<>();
+
+    @Value("${favicon.cache.dir:upload/icons}")
+    private String cacheDir;
+
+    /**
+     * 启动时扫描缓存目录下的旧式文件，存储子目录不在此扫描
+     */
+    @PostConstruct
+    public void rebuild() {
+        Path dir = Paths.get(cacheDir);
+        icons.clear();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.parallel()
+                    .filter(Files::isRegularFile)
+                    .forEach(this::recordWrite);
+        } catch (IOException e) {
+            log.error("Failed to scan favicon cache dir: {}", dir, e);
+        }
+        log.info("Favicon cache index built: {} domains in {} ms", icons.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 查询域名的缓存
+     *
+     * @param baseName 文件名前缀，如 www_baidu_com
+     * @return 缓存图标，不存在返回null
+     */
+    public CachedIcon get(String baseName) {
+        return icons.get(baseName);
+    }
+
+    /**
+     * 当前所有域名的缓存快照，供容量统计与淘汰遍历
+     *
+     * @return 文件名前缀 -> 缓存图标
+     */
+    public Map<String, CachedIcon> snapshot() {
+        return Map.copyOf(icons);
+    }
+
+    /**
+     * 缓存键：文件名前缀与尺寸
+     *
+     * @param baseName 文件名前缀，如 www_baidu_com
+     * @param size     尺寸，源文件为null
+     */
+    public record CacheKey(String baseName, Integer size) {
+    }
+
+    /**
+     * 解析缓存文件名，如 www_baidu_com_32.png -> (www_baidu_com, 32)，www_baidu_com.svg -> (www_baidu_com, null)
+     *
+     * @param fileName 文件名
+     * @return 缓存键，不是缓存文件（如写入中的临时文件）时返回null
+     */
+    public static CacheKey parse(String fileName) {
+        if (fileName.startsWith(".") || isUploadedFile(fileName)) {
+            return null;
+        }
+        Matcher matcher = CACHE_FILE.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String sizeGroup = matcher.group(2);
+        if (sizeGroup != null && KNOWN_SIZES.contains(Integer.parseInt(sizeGroup))) {
+            return new CacheKey(matcher.group(1), Integer.parseInt(sizeGroup));
+        }
+        // 不是已知尺寸时数字属于域名本身，如 www_a_com_8.png 来自 www.a.com.8
+        String baseName = sizeGroup != null ? matcher.group(1) + "_" + sizeGroup : matcher.group(1);
+        return new CacheKey(baseName, null);
+    }
+
+    /**
+     * 是否是上传或提取的书签图标（与缓存文件共用目录时需跳过）
+     *
+     * @param fileName 文件名
+     * @return 是书签图标返回true
+     */
+    public static boolean isUploadedFile(String fileName) {
+        return UPLOADED_FILE.matcher(fileName).matches();
+    }
+
+    /**
+     * 记录缓存目录下的旧式（未迁移到内容寻址存储的）缓存文件
+     *
+     * @param file 缓存文件
+     */
+    public void recordWrite(Path file) {
+        CacheKey key = parse(file.getFileName().toString());
+        if (key != null) {
+            put(key, file);
+        }
+    }
+
+    /**
+     * 记录缓存键对应的文件
+     *
+     * @param key  缓存键
+     * @param file 文件
+     */
+    public void put(CacheKey key, Path file) {
+        Path absolute = file.toAbsolutePath();
+        icons.compute(key.baseName(), (baseName, icon) -> {
+            CachedIcon current = icon == null ? CachedIcon.EMPTY : icon;
+            return key.size() != null ? current.withSize(key.size(), absolute) : current.withSource(absolute);
+        });
+    }
+
+    /**
+     * 移除一个缓存文件（文件已不存在时调用），只移除仍指向该文件的条目
+     *
+     * @param file 缓存文件
+     */
+    public void removeFile(Path file) {
+        Path absolute = file.toAbsolutePath();
+        CacheKey key = parse(absolute.getFileName().toString());
+        if (key != null && removeIfPointsTo(key.baseName(), absolute)) {
+            return;
+        }
+        // 内容寻址存储中的文件名是内容哈希，只能遍历查找
+        for (String baseName : icons.keySet()) {
+            removeIfPointsTo(baseName, absolute);
+        }
+    }
+
+    private boolean removeIfPointsTo(String baseName, Path file) {
+        boolean[] removed = {false};
+        icons.computeIfPresent(baseName, (key, icon) -> {
+            CachedIcon updated = icon;
+            for (Map.Entry<Integer, Path> entry : icon.getSizes().entrySet()) {
+                if (file.equals(entry.getValue())) {
+                    updated = updated.withoutSize(entry.getKey());
+                }
+            }
+            if (file.equals(icon.getSource())) {
+                updated = updated.withSource(null);
+            }
+            removed[0] = updated != icon;
+            return emptyToNull(updated);
+        });
+        return removed[0];
+    }
+
+    /**
+     * 移除域名的一个尺寸，size 为null时移除源文件
+     *
+     * @param baseName 文件名前缀
+     * @param size     尺寸
+     */
+    public void remove(String baseName, Integer size) {
+        icons.computeIfPresent(baseName, (key, icon) -> {
+            CachedIcon updated = size != null ? icon.withoutSize(size) : icon.withSource(null);
+            return emptyToNull(updated);
+        });
+    }
+
+    /**
+     * 移除所有以指定前缀开头的域名（与按前缀删除文件保持一致）
+     *
+     * @param prefix 文件名前缀
+     */
+    public void removeByPrefix(String prefix) {
+        icons.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        icons.clear();
+    }
+
+    /**
+     * 已索引的域名数量
+     */
+    public int size() {
+        return icons.size();
+    }
+
+    private CachedIcon emptyToNull(CachedIcon icon) {
+        return icon.isEmpty() ? null : icon;
+    }
+}
@@ -6,26 +6,32 @@ import okhttp3.Request;
 import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import pres.peixinyi.sinan.module.favicon.dto.CachedIcon;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import javax.imageio.ImageIO;
 
 /**
  * Favicon缓存服务类
  * 负责favicon图标的本地文件缓存管理，包括下载、存储、查询和清理功能
- * 文件名基于域名生成，如 www.baidu.com -> www_baidu_com.png
+ * 文件名基于域名生成，如 www.baidu.com -> www_baidu_com.png，内容按哈希去重存放在 {@link FaviconStore}
  * 
  * @author Claude
  * @since 2.0
@@ -35,16 +41,76 @@ import javax.imageio.ImageIO;
 public class FaviconCacheService {
 
     private final OkHttpClient httpClient;
+
+    private final FaviconCacheIndex cacheIndex;
+
+    private final FaviconByteCache byteCache;
+
+    private final FaviconStore store;
+
+    private final FaviconPngEncoder pngEncoder;
+
+    private final FaviconValidatorStore validatorStore;
+
+    private final FaviconAccessTracker accessTracker;
+
+    private final FaviconImageExecutor imageExecutor;
+
+    /**
+     * 进行中的派生尺寸生成，同一文件只生成一次
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlightDerivatives = new ConcurrentHashMap<>();
+
+    /**
+     * 下载后生成的最大尺寸
+     */
+    private static final int MAX_GENERATED_SIZE = 256;
     
     @Value("${favicon.cache.dir:upload/icons}")
     private String cacheDir;
 
     /**
-     * 构造函数，初始化HTTP客户端
+     * 重新验证结果
+     */
+    public enum RefreshResult {
+        /**
+         * 上游返回304，缓存保持不变
+         */
+        NOT_MODIFIED,
+        /**
+         * 上游返回新内容，缓存已替换
+         */
+        UPDATED,
+        /**
+         * 请求失败或内容无法处理，缓存保持不变
+         */
+        FAILED
+    }
+
+    /**
+     * 构造函数，基于共享的对外HTTP客户端派生
      * 设置连接超时、读取超时和写入超时
+     *
+     * @param cacheIndex         本地缓存索引
+     * @param byteCache          热点图标字节缓存
+     * @param store              内容寻址存储
+     * @param pngEncoder         图标PNG编码
+     * @param validatorStore     上游校验值与重新验证计划
+     * @param accessTracker      缓存访问记录
+     * @param outboundHttpClient 共享的对外HTTP客户端
      */
-    public FaviconCacheService() {
-        this.httpClient = new OkHttpClient.Builder()
+    public FaviconCacheService(FaviconCacheIndex cacheIndex, FaviconByteCache byteCache, FaviconStore store,
+                               FaviconPngEncoder pngEncoder, FaviconValidatorStore validatorStore,
+                               FaviconAccessTracker accessTracker, FaviconImageExecutor imageExecutor,
+                               OkHttpClient outboundHttpClient) {
+        this.cacheIndex = cacheIndex;
+        this.byteCache = byteCache;
+        this.store = store;
+        this.pngEncoder = pngEncoder;
+        this.validatorStore = validatorStore;
+        this.accessTracker = accessTracker;
+        this.imageExecutor = imageExecutor;
+        this.httpClient = outboundHttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
                 .readTimeout(Duration.ofSeconds(30))
                 .writeTimeout(Duration.ofSeconds(10))
@@ -76,35 +142,58 @@ public class FaviconCacheService {
         }
 
         try {
-            String domain = extractDomain(iconUrl);
-            String fileName = size != null ? 
-                generateFileNameWithSize(domain, iconUrl, size) : 
-                generateFileName(domain, iconUrl);
-            
-            Path cachePath = Paths.get(cacheDir);
-            Files.createDirectories(cachePath);
-            
-            Path targetPath = cachePath.resolve(fileName);
-            
-            // 检查是否已有任何尺寸的缓存文件
-            String existingCachedPath = findExistingCachedIcon(domain, iconUrl);
-            if (existingCachedPath != null) {
-                log.debug("Icon already cached for domain: {}", domain);
-                return existingCachedPath;
-            }
-            
-            String tempPath = downloadAndGenerateMultipleSizes(iconUrl, targetPath, domain);
-            if (tempPath != null) {
-                log.debug("Icon cached successfully: {} -> multiple sizes generated", iconUrl);
-                return tempPath;
-            }
-            
+            return cacheIcon(extractDomain(iconUrl), iconUrl, size);
         } catch (Exception e) {
             log.error("Failed to cache icon from URL: {}", iconUrl, e);
         }
-        
+
+        return null;
+    }
+
+    /**
+     * 以请求的域名为键缓存图标
+     * 图标常放在其他主机上（如 github.com 的图标在 github.githubassets.com），
+     * 查询时使用的是请求的域名，因此存储和索引也按请求的域名登记
+     *
+     * @param domain  请求的域名，如 github.com
+     * @param iconUrl 图标的完整URL地址
+     * @return 缓存文件的本地绝对路径，失败则返回null
+     */
+    public String cacheIconForDomain(String domain, String iconUrl) {
+        if (domain == null || domain.trim().isEmpty() || iconUrl == null || iconUrl.trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            return cacheIcon(domain, iconUrl, null);
+        } catch (Exception e) {
+            log.error("Failed to cache icon from URL: {} for domain: {}", iconUrl, domain, e);
+        }
+
         return null;
     }
+
+    private String cacheIcon(String domain, String iconUrl, Integer size) {
+        String fileName = size != null ?
+            generateFileNameWithSize(domain, iconUrl, size) :
+            generateFileName(domain, iconUrl);
+
+        // 检查是否已有任何尺寸的缓存文件
+        String existingCachedPath = findExistingCachedIcon(domain, iconUrl);
+        if (existingCachedPath != null) {
+            log.debug("Icon already cached for domain: {}", domain);
+            return existingCachedPath;
+        }
+
+        // 只用作逻辑文件名，实际文件由 FaviconStore 按内容哈希存放
+        Path targetPath = Paths.get(cacheDir).resolve(fileName);
+
+        String tempPath = downloadAndGenerateMultipleSizes(iconUrl, targetPath, domain);
+        if (tempPath != null) {
+            log.debug("Icon cached successfully: {} -> multiple sizes generated", iconUrl);
+        }
+        return tempPath;
+    }
     
     /**
      * 获取指定URL对应的已缓存图标文件路径（返回最大尺寸）
@@ -142,13 +231,15 @@ public class FaviconCacheService {
         
         try {
             String domain = extractDomain(iconUrl);
-            String fileName = size != null ? 
-                generateFileNameWithSize(domain, iconUrl, size) : 
-                generateFileName(domain, iconUrl);
-            Path targetPath = Paths.get(cacheDir, fileName);
-            
-            if (Files.exists(targetPath)) {
-                return targetPath.toAbsolutePath().toString();
+            CachedIcon cached = cacheIndex.get(toBaseName(domain));
+            if (cached == null) {
+                return null;
+            }
+            // 存储中的文件名是内容哈希，只能按扩展名核对
+            String extension = getFileExtensionFromUrl(iconUrl);
+            Path path = size == null ? cached.getSource() : cached.getSize(size);
+            if (path != null && path.getFileName().toString().endsWith(extension)) {
+                return path.toString();
             }
             
         } catch (Exception e) {
@@ -167,6 +258,114 @@ public class FaviconCacheService {
     public boolean isCached(String iconUrl) {
         return getCachedIconPath(iconUrl) != null;
     }
+
+    /**
+     * 查询域名在本地缓存中的所有文件
+     * 只做一次内存哈希查找，不访问文件系统
+     *
+     * @param domain 域名，如 www.baidu.com
+     * @return 缓存图标，未缓存则返回null
+     */
+    public CachedIcon findCachedByDomain(String domain) {
+        if (domain == null || domain.trim().isEmpty()) {
+            return null;
+        }
+        return cacheIndex.get(toBaseName(domain));
+    }
+
+    /**
+     * 缓存文件已不存在（被外部删除）时，将其移出索引和字节缓存
+     *
+     * @param file 缓存文件
+     */
+    public void evictMissingFile(Path file) {
+        cacheIndex.removeFile(file);
+        byteCache.invalidate(file);
+        log.debug("Evicted missing cache file from index: {}", file);
+    }
+
+    /**
+     * 按请求尺寸选择域名的缓存文件
+     * 取不小于请求尺寸的最近标准尺寸，该尺寸不存在时由已缓存的最大 PNG 缩放生成并缓存；
+     * 已缓存的图片都比请求尺寸小时返回最大的一张
+     *
+     * @param domain 域名，如 www.baidu.com
+     * @param size   请求尺寸（已乘以设备像素比），为null时返回最大尺寸
+     * @return 缓存文件的本地绝对路径，未缓存则返回null
+     */
+    public String resolveCachedIcon(String domain, Integer size) {
+        CachedIcon cached = findCachedByDomain(domain);
+        if (cached == null) {
+            accessTracker.recordMiss();
+            return null;
+        }
+        accessTracker.recordHit(toBaseName(domain));
+        Path largest = cached.getLargest();
+        if (size == null || size <= 0) {
+            return largest != null ? largest.toString() : null;
+        }
+
+        Integer targetSize = FaviconCacheIndex.KNOWN_SIZES.ceiling(size);
+        if (targetSize == null) {
+            targetSize = FaviconCacheIndex.KNOWN_SIZES.last();
+        }
+        Path exact = cached.getSize(targetSize);
+        if (exact != null) {
+            return exact.toString();
+        }
+
+        Map.Entry<Integer, Path> largestSized = cached.getSizes().lastEntry();
+        if (largestSized != null && largestSized.getKey() > targetSize
+                && largestSized.getValue().getFileName().toString().endsWith(".png")) {
+            String derived = generateDerivative(largestSized.getValue(), toBaseName(domain), targetSize);
+            if (derived != null) {
+                return derived;
+            }
+        }
+
+        Map.Entry<Integer, Path> above = cached.getSizes().ceilingEntry(targetSize);
+        if (above != null) {
+            return above.getValue().toString();
+        }
+        return largest != null ? largest.toString() : null;
+    }
+
+    /**
+     * 由已缓存的大尺寸 PNG 生成指定尺寸，并发请求同一尺寸时共享一次生成
+     *
+     * @param sourcePath 源 PNG 文件
+     * @param baseName   文件名前缀
+     * @param size       目标尺寸
+     * @return 生成文件的本地绝对路径，失败返回null
+     */
+    private String generateDerivative(Path sourcePath, String baseName, int size) {
+        String fileName = baseName + "_" + size + ".png";
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlightDerivatives.putIfAbsent(fileName, flight);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        String result = null;
+        try {
+            BufferedImage source;
+            try (InputStream input = store.newInputStream(sourcePath)) {
+                source = ImageIO.read(input);
+            }
+            if (source != null) {
+                BufferedImage scaledImage = FaviconImageScaler.scale(source, size);
+                result = writeAtomically(fileName,
+                        tempPath -> Files.write(tempPath, pngEncoder.encode(scaledImage, "favicon"))).toString();
+                log.debug("Generated derivative {} size image on demand: {}", size, fileName);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to generate derivative {} size image from {}: {}", size, sourcePath, e.getMessage());
+        } finally {
+            flight.complete(result);
+            inFlightDerivatives.remove(fileName, flight);
+        }
+        return result;
+    }
     
     /**
      * 清理指定URL的图标缓存文件（清理所有尺寸）
@@ -200,18 +399,12 @@ public class FaviconCacheService {
         try {
             Path cachePath = Paths.get(cacheDir);
             if (Files.exists(cachePath)) {
-                String domainPrefix = sanitizeDomain(domain).replace(".", "_");
-                Files.walk(cachePath)
-                        .filter(Files::isRegularFile)
-                        .filter(file -> file.getFileName().toString().startsWith(domainPrefix))
-                        .forEach(file -> {
-                            try {
-                                Files.delete(file);
-                                log.debug("Domain cache file deleted: {}", file);
-                            } catch (IOException e) {
-                                log.warn("Failed to delete file: {}", file, e);
-                            }
-                        });
+                String domainPrefix = toBaseName(domain);
+                store.removeByPrefix(domainPrefix).forEach(byteCache::invalidate);
+                validatorStore.remove(domainPrefix);
+                accessTracker.forgetByPrefix(domainPrefix);
+                // 尚未迁移到存储的旧式文件
+                deleteLegacyFiles(cachePath, file -> file.getFileName().toString().startsWith(domainPrefix));
             }
             
         } catch (Exception e) {
@@ -231,41 +424,80 @@ public class FaviconCacheService {
         }
         
         try {
-            String sanitizedDomain = sanitizeDomain(domain).replace(".", "_");
+            String sanitizedDomain = toBaseName(domain);
             String fileName = size != null ? 
                 sanitizedDomain + "_" + size + ".png" : 
                 sanitizedDomain + ".png";
             
             Path targetPath = Paths.get(cacheDir, fileName);
             
-            if (Files.exists(targetPath)) {
-                Files.deleteIfExists(targetPath);
+            Path storedPath = store.remove(sanitizedDomain, size);
+            if (storedPath != null) {
+                byteCache.invalidate(storedPath);
+            }
+            if (Files.deleteIfExists(targetPath)) {
                 log.debug("Domain cache file deleted: {}", targetPath.toAbsolutePath());
             }
+            byteCache.invalidate(targetPath);
             
         } catch (Exception e) {
             log.error("Failed to clear domain cache for {} with size {}: {}", domain, size, e);
         }
     }
     
+    /**
+     * 淘汰一个域名的全部缓存文件，只删除该域名自己的缓存键，不按前缀匹配其他域名
+     * 内容被其他域名共用的对象由存储按引用计数保留
+     *
+     * @param baseName 文件名前缀，如 www_baidu_com
+     * @return 该域名原有的缓存文件
+     */
+    public List<Path> evictDomain(String baseName) {
+        CachedIcon cached = cacheIndex.get(baseName);
+        if (cached == null) {
+            return List.of();
+        }
+        List<Path> removed = new ArrayList<>();
+        List<Integer> keys = new ArrayList<>(cached.getSizes().keySet());
+        if (cached.getSource() != null) {
+            keys.add(null);
+        }
+        for (Integer size : keys) {
+            Path indexed = size != null ? cached.getSize(size) : cached.getSource();
+            // 同时移出索引
+            Path storedPath = store.remove(baseName, size);
+            try {
+                // 尚未迁移到存储的旧式文件直接删除
+                if (storedPath == null && indexed != null && !indexed.startsWith(store.getStoreDir())) {
+                    Files.deleteIfExists(indexed);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete evicted favicon file: {}", indexed, e);
+            }
+            if (indexed != null) {
+                byteCache.invalidate(indexed);
+                removed.add(indexed);
+            }
+        }
+        validatorStore.remove(baseName);
+        accessTracker.forget(baseName);
+        return removed;
+    }
+
     /**
      * 清理所有缓存文件
-     * 删除缓存目录下的所有图标文件
+     * 删除缓存目录下的所有图标文件，上传与提取的书签图标除外
      */
     public void clearAllCache() {
         try {
             Path cachePath = Paths.get(cacheDir);
+            store.clear();
+            cacheIndex.clear();
+            validatorStore.clear();
+            accessTracker.forgetByPrefix("");
+            byteCache.invalidateAll();
             if (Files.exists(cachePath)) {
-                Files.walk(cachePath)
-                        .filter(Files::isRegularFile)
-                        .forEach(file -> {
-                            try {
-                                Files.delete(file);
-                                log.debug("Cache file deleted: {}", file);
-                            } catch (IOException e) {
-                                log.warn("Failed to delete file: {}", file, e);
-                            }
-                        });
+                deleteLegacyFiles(cachePath, file -> true);
             }
             
         } catch (Exception e) {
@@ -273,6 +505,31 @@ public class FaviconCacheService {
         }
     }
     
+    /**
+     * 删除缓存目录下（不含子目录）的旧式缓存文件，存储目录由 {@link FaviconStore} 管理
+     * 缓存目录默认与书签图标上传目录相同，上传与提取的书签图标始终跳过
+     *
+     * @param cachePath 缓存目录
+     * @param filter    要删除的文件
+     * @throws IOException 列目录失败时抛出
+     */
+    private void deleteLegacyFiles(Path cachePath, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> files = Files.list(cachePath)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !FaviconCacheIndex.isUploadedFile(file.getFileName().toString()))
+                    .filter(filter)
+                    .forEach(file -> {
+                        try {
+                            Files.delete(file);
+                            byteCache.invalidate(file);
+                            log.debug("Cache file deleted: {}", file);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete file: {}", file, e);
+                        }
+                    });
+        }
+    }
+
     /**
      * 从图标URL中提取域名
      * 
@@ -298,6 +555,16 @@ public class FaviconCacheService {
         }
         return domain.toLowerCase().replaceAll("[^a-z0-9.-]", "_");
     }
+
+    /**
+     * 域名对应的缓存文件名前缀，如 www.baidu.com -> www_baidu_com
+     *
+     * @param domain 域名
+     * @return 文件名前缀，同时也是缓存索引的键
+     */
+    private String toBaseName(String domain) {
+        return sanitizeDomain(domain).replace(".", "_");
+    }
     
     /**
      * 根据域名和图标URL生成缓存文件名
@@ -338,68 +605,120 @@ public class FaviconCacheService {
      * @return 生成成功时返回最大尺寸图片的路径，失败返回null
      */
     private String downloadAndGenerateMultipleSizes(String iconUrl, Path originalTargetPath, String domain) {
-        Path tempFile = null;
-        try {
-            // 检查是否为SVG文件，SVG直接保存不生成多尺寸
-            String extension = getFileExtensionFromUrl(iconUrl);
-            if (".svg".equals(extension)) {
-                return downloadAndSaveIcon(iconUrl, originalTargetPath);
+        try (Response response = httpClient.newCall(buildIconRequest(iconUrl, null)).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                log.warn("Failed to download icon from URL: {}, response code: {}", iconUrl, response.code());
+                return null;
             }
+            return saveDownloadedIcon(response, iconUrl, originalTargetPath, domain, null);
 
-            Request request = new Request.Builder()
-                    .url(iconUrl)
-                    .addHeader("User-Agent", "Mozilla/5.0 (compatible; FaviconCache/1.0)")
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful() || response.body() == null) {
-                    log.warn("Failed to download icon from URL: {}, response code: {}", iconUrl, response.code());
-                    return null;
-                }
-                
-                // 创建临时文件
-                tempFile = Files.createTempFile("favicon_temp_", extension);
-                
-                try (InputStream inputStream = response.body().byteStream();
-                     FileOutputStream outputStream = new FileOutputStream(tempFile.toFile())) {
-                    
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = inputStream.read(buffer)) != -1) {
-                        outputStream.write(buffer, 0, bytesRead);
-                    }
-                }
-                
-                // 读取图片并生成多尺寸
-                BufferedImage originalImage;
-                if (".ico".equals(extension)) {
-                    originalImage = readIcoFile(tempFile.toFile());
-                } else {
-                    originalImage = ImageIO.read(tempFile.toFile());
+        } catch (Exception e) {
+            log.error("Failed to download and generate multiple sizes from URL: {}", iconUrl, e);
+            return null;
+        }
+    }
+
+    /**
+     * 向上游发送条件请求重新验证已缓存的图标
+     * 带上次保存的 If-None-Match / If-Modified-Since，304 时不改动缓存；
+     * 返回新内容时重新生成各尺寸，并移除由旧图派生、本次没有改写的尺寸
+     *
+     * @param baseName   缓存键（文件名前缀），与下载时登记的键一致，不一定是图标URL的主机
+     * @param validators 上次下载时保存的校验值
+     * @return 重新验证结果
+     */
+    public RefreshResult refreshIcon(String baseName, FaviconValidatorStore.Validators validators) {
+        String iconUrl = validators.iconUrl();
+        try {
+            Path targetPath = Paths.get(cacheDir).resolve(generateFileName(baseName, iconUrl));
+            try (Response response = httpClient.newCall(buildIconRequest(iconUrl, validators)).execute()) {
+                if (response.code() == 304) {
+                    validatorStore.markNotModified(baseName);
+                    return RefreshResult.NOT_MODIFIED;
                 }
-                
-                if (originalImage == null) {
-                    log.warn("Failed to read downloaded image: {}, saving source file as fallback", iconUrl);
-                    // 无法读取图像，保存源文件
-                    return saveSourceFileAsFallback(tempFile, originalTargetPath, iconUrl);
+                if (!response.isSuccessful() || response.body() == null) {
+                    log.debug("Favicon revalidation failed for {}, response code: {}", iconUrl, response.code());
+                    return RefreshResult.FAILED;
                 }
 
-                String result = generateMultipleSizesFromImage(originalImage, domain, iconUrl);
-                if (result == null) {
-                    log.warn("Failed to generate any size images for: {}, saving source file as fallback", iconUrl);
-                    // 无法生成任何尺寸图片，保存源文件
-                    return saveSourceFileAsFallback(tempFile, originalTargetPath, iconUrl);
+                CachedIcon before = cacheIndex.get(baseName);
+                Set<Integer> writtenSizes = new HashSet<>();
+                if (saveDownloadedIcon(response, iconUrl, targetPath, baseName, writtenSizes) == null) {
+                    return RefreshResult.FAILED;
+                }
+                if (before != null) {
+                    removeStaleEntries(baseName, before, writtenSizes);
                 }
-                
-                return result;
+                log.debug("Favicon refreshed from upstream: {}", iconUrl);
+                return RefreshResult.UPDATED;
             }
-            
         } catch (Exception e) {
-            log.error("Failed to download and generate multiple sizes from URL: {}", iconUrl, e);
-            return null;
-        } finally {
-            // 清理临时文件
-            if (tempFile != null) {
+            log.debug("Favicon revalidation failed for {}: {}", iconUrl, e.getMessage());
+            return RefreshResult.FAILED;
+        }
+    }
+
+    /**
+     * 移除刷新前存在、本次没有改写的缓存项
+     * 生成了多尺寸时源文件与未生成的尺寸都已过时；只保存了源文件时所有尺寸都已过时
+     */
+    private void removeStaleEntries(String baseName, CachedIcon before, Set<Integer> writtenSizes) {
+        for (Integer size : before.getSizes().keySet()) {
+            if (!writtenSizes.contains(size)) {
+                Path removed = store.remove(baseName, size);
+                byteCache.invalidate(removed != null ? removed : before.getSize(size));
+            }
+        }
+        if (!writtenSizes.isEmpty() && before.getSource() != null) {
+            Path removed = store.remove(baseName, null);
+            byteCache.invalidate(removed != null ? removed : before.getSource());
+        }
+    }
+
+    private Request buildIconRequest(String iconUrl, FaviconValidatorStore.Validators validators) {
+        Request.Builder builder = new Request.Builder()
+                .url(iconUrl)
+                .addHeader("User-Agent", "Mozilla/5.0 (compatible; FaviconCache/1.0)");
+        if (validators != null && validators.etag() != null) {
+            builder.header("If-None-Match", validators.etag());
+        }
+        if (validators != null && validators.lastModified() != null) {
+            builder.header("If-Modified-Since", validators.lastModified());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 把成功的下载响应写入缓存，并保存响应的 ETag / Last-Modified 供后台重新验证
+     * SVG 直接保存，不生成多尺寸；其他格式生成多尺寸，无法解码时保存源文件
+     *
+     * @param response           成功的响应
+     * @param iconUrl            图标URL
+     * @param originalTargetPath 原图目标路径
+     * @param domain             域名
+     * @param writtenSizes       为null时跳过已缓存的尺寸；不为null时覆盖已有尺寸并记录写入的尺寸
+     * @return 缓存文件路径，失败返回null
+     */
+    private String saveDownloadedIcon(Response response, String iconUrl, Path originalTargetPath, String domain,
+                                      Set<Integer> writtenSizes) throws IOException {
+        String extension = getFileExtensionFromUrl(iconUrl);
+        String result;
+        if (".svg".equals(extension)) {
+            // SVG直接保存不生成多尺寸
+            try (InputStream inputStream = response.body().byteStream()) {
+                result = writeAtomically(originalTargetPath.getFileName().toString(),
+                        tempPath -> Files.copy(inputStream, tempPath, StandardCopyOption.REPLACE_EXISTING))
+                        .toString();
+            }
+        } else {
+            Path tempFile = Files.createTempFile("favicon_temp_", extension);
+            try {
+                try (InputStream inputStream = response.body().byteStream()) {
+                    Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                result = generateFromDownloadedFile(tempFile, extension, originalTargetPath, domain, iconUrl,
+                        writtenSizes);
+            } finally {
                 try {
                     Files.deleteIfExists(tempFile);
                 } catch (IOException e) {
@@ -407,6 +726,45 @@ public class FaviconCacheService {
                 }
             }
         }
+
+        if (result != null) {
+            validatorStore.recordFetched(toBaseName(domain), iconUrl,
+                    response.header("ETag"), response.header("Last-Modified"));
+        }
+        return result;
+    }
+
+    /**
+     * 读取下载的图片并生成多尺寸，无法读取或生成时保存源文件
+     */
+    private String generateFromDownloadedFile(Path tempFile, String extension, Path originalTargetPath,
+                                              String domain, String iconUrl, Set<Integer> writtenSizes) {
+        // 读取图片并生成多尺寸
+        BufferedImage originalImage;
+        try {
+            if (".ico".equals(extension)) {
+                originalImage = FaviconImageDecoder.readIcoFile(tempFile.toFile());
+            } else {
+                originalImage = FaviconImageDecoder.readImageFile(tempFile.toFile(), MAX_GENERATED_SIZE);
+            }
+        } catch (IOException e) {
+            log.debug("Failed to decode downloaded image {}: {}", iconUrl, e.getMessage());
+            originalImage = null;
+        }
+
+        if (originalImage == null) {
+            log.warn("Failed to read downloaded image: {}, saving source file as fallback", iconUrl);
+            // 无法读取图像，保存源文件
+            return saveSourceFileAsFallback(tempFile, originalTargetPath, iconUrl);
+        }
+
+        String result = generateMultipleSizesFromImage(originalImage, domain, iconUrl, writtenSizes);
+        if (result == null) {
+            log.warn("Failed to generate any size images for: {}, saving source file as fallback", iconUrl);
+            // 无法生成任何尺寸图片，保存源文件
+            return saveSourceFileAsFallback(tempFile, originalTargetPath, iconUrl);
+        }
+        return result;
     }
 
     /**
@@ -419,14 +777,12 @@ public class FaviconCacheService {
      */
     private String saveSourceFileAsFallback(Path tempFile, Path originalTargetPath, String iconUrl) {
         try {
-            // 确保目标目录存在
-            Files.createDirectories(originalTargetPath.getParent());
-            
-            // 复制临时文件到目标位置
-            Files.copy(tempFile, originalTargetPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            // 复制临时文件到存储
+            Path storedPath = writeAtomically(originalTargetPath.getFileName().toString(),
+                    tempPath -> Files.copy(tempFile, tempPath, StandardCopyOption.REPLACE_EXISTING));
             
-            log.info("Saved source file as fallback for: {} -> {}", iconUrl, originalTargetPath.toAbsolutePath());
-            return originalTargetPath.toAbsolutePath().toString();
+            log.info("Saved source file as fallback for: {} -> {}", iconUrl, storedPath);
+            return storedPath.toString();
             
         } catch (Exception e) {
             log.error("Failed to save source file as fallback for: {}", iconUrl, e);
@@ -435,44 +791,23 @@ public class FaviconCacheService {
     }
 
     /**
-     * 下载图标并保存到指定路径（用于SVG等不需要多尺寸的文件）
-     * 
-     * @param iconUrl 图标的完整URL地址
-     * @param targetPath 目标保存路径
-     * @return 保存成功时返回文件绝对路径，失败返回null
+     * 写入内容寻址存储：先写临时文件、按内容哈希落盘，再更新 文件名 -> 对象 映射
+     * 多个请求同时写同一图标时，读者只会看到完整的旧对象或新对象，写入完成后登记到缓存索引
+     *
+     * @param fileName 逻辑文件名，如 www_baidu_com_32.png
+     * @param writer   写入临时文件的操作
+     * @return 对象文件的绝对路径，相同内容的图标共享同一文件
+     * @throws IOException 写入或移动失败时抛出
      */
-    private String downloadAndSaveIcon(String iconUrl, Path targetPath) {
-        try {
-            Request request = new Request.Builder()
-                    .url(iconUrl)
-                    .addHeader("User-Agent", "Mozilla/5.0 (compatible; FaviconCache/1.0)")
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful() || response.body() == null) {
-                    log.warn("Failed to download icon from URL: {}, response code: {}", iconUrl, response.code());
-                    return null;
-                }
-                
-                try (InputStream inputStream = response.body().byteStream();
-                     FileOutputStream outputStream = new FileOutputStream(targetPath.toFile())) {
-                    
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = inputStream.read(buffer)) != -1) {
-                        outputStream.write(buffer, 0, bytesRead);
-                    }
-                }
-                
-                return targetPath.toAbsolutePath().toString();
-            }
-            
-        } catch (Exception e) {
-            log.error("Failed to download and save icon from URL: {}", iconUrl, e);
-            return null;
+    private Path writeAtomically(String fileName, FaviconStore.ContentWriter writer) throws IOException {
+        Path storedPath = store.put(fileName, writer);
+        FaviconCacheIndex.CacheKey key = FaviconCacheIndex.parse(fileName);
+        if (key != null) {
+            accessTracker.touch(key.baseName());
         }
+        return storedPath;
     }
-    
+
     /**
      * 根据URL路径推断文件扩展名
      * 支持 .png, .jpg, .gif, .svg, .ico, .webp 等格式
@@ -526,43 +861,20 @@ public class FaviconCacheService {
      * @return 存在缓存时返回最大尺寸的文件路径，否则返回null
      */
     private String findExistingCachedIcon(String domain, String iconUrl) {
-        try {
-            // 对于SVG文件，检查原始文件
-            String extension = getFileExtensionFromUrl(iconUrl);
-            if (".svg".equals(extension)) {
-                String fileName = generateFileName(domain, iconUrl);
-                Path targetPath = Paths.get(cacheDir, fileName);
-                if (Files.exists(targetPath)) {
-                    return targetPath.toAbsolutePath().toString();
-                }
-                return null;
-            }
-
-            String sanitizedDomain = sanitizeDomain(domain).replace(".", "_");
-            Path cachePath = Paths.get(cacheDir);
-            
-            // 按尺寸从大到小检查
-            int[] sizes = {256, 128, 64, 32, 16};
-            for (int size : sizes) {
-                String fileName = sanitizedDomain + "_" + size + ".png";
-                Path targetPath = cachePath.resolve(fileName);
-                if (Files.exists(targetPath)) {
-                    return targetPath.toAbsolutePath().toString();
-                }
-            }
-            
-            // 如果没有多尺寸文件，检查源文件
-            String fileName = generateFileName(domain, iconUrl);
-            Path targetPath = cachePath.resolve(fileName);
-            if (Files.exists(targetPath)) {
-                return targetPath.toAbsolutePath().toString();
-            }
-            
-            return null;
-        } catch (Exception e) {
-            log.error("Failed to find existing cached icon for domain: {}", domain, e);
+        CachedIcon cached = cacheIndex.get(toBaseName(domain));
+        if (cached == null) {
             return null;
         }
+
+        // 对于SVG文件，只认原始文件
+        if (".svg".equals(getFileExtensionFromUrl(iconUrl))) {
+            Path source = cached.getSource();
+            return source != null && source.getFileName().toString().endsWith(".svg") ? source.toString() : null;
+        }
+
+        // 优先返回最大尺寸，没有多尺寸文件时返回源文件
+        Path largest = cached.getLargest();
+        return largest != null ? largest.toString() : null;
     }
     
     /**
@@ -578,18 +890,19 @@ public class FaviconCacheService {
      * @param originalImage 原始图片
      * @param domain 域名
      * @param iconUrl 图标URL
+     * @param writtenSizes 为null时跳过已缓存的尺寸；不为null时覆盖已有尺寸（刷新），并记录写入的尺寸
      * @return 生成成功时返回最大尺寸图片的路径，失败返回null
      */
-    private String generateMultipleSizesFromImage(BufferedImage originalImage, String domain, String iconUrl) {
+    private String generateMultipleSizesFromImage(BufferedImage originalImage, String domain, String iconUrl,
+                                                  Set<Integer> writtenSizes) {
         try {
             int originalWidth = originalImage.getWidth();
             int originalHeight = originalImage.getHeight();
             int maxOriginalDimension = Math.max(originalWidth, originalHeight);
 
             // 基础目标尺寸
-            int[] allTargetSizes = {256, 128, 64, 32, 16};
-            String sanitizedDomain = sanitizeDomain(domain).replace(".", "_");
-            Path cacheDir = Paths.get(this.cacheDir);
+            int[] allTargetSizes = {MAX_GENERATED_SIZE, 128, 64, 32, 16};
+            String sanitizedDomain = toBaseName(domain);
 
             // 根据原图尺寸确定要生成的尺寸
             int[] targetSizes;
@@ -625,35 +938,50 @@ public class FaviconCacheService {
                 targetSizes = new int[]{};
             }
 
+            // 逐级缩小：每个尺寸由上一个尺寸得到，原图只参与生成最大的一个
+            List<BufferedImage> scaledImages = FaviconImageScaler.scaleDescending(originalImage, targetSizes);
+
+            // 各尺寸相互独立，在图像处理线程池并行编码，写入仍按从大到小的顺序进行
+            CachedIcon cached = cacheIndex.get(sanitizedDomain);
+            List<CompletableFuture<byte[]>> encodings = new ArrayList<>(targetSizes.length);
+            for (int i = 0; i < targetSizes.length; i++) {
+                if (writtenSizes == null && cached != null && cached.getSize(targetSizes[i]) != null) {
+                    encodings.add(null);
+                    continue;
+                }
+                BufferedImage scaledImage = scaledImages.get(i);
+                encodings.add(CompletableFuture.supplyAsync(() -> encodePng(scaledImage), imageExecutor));
+            }
+
             String largestGeneratedPath = null;
             int generatedCount = 0;
 
-            for (int size : targetSizes) {
+            for (int i = 0; i < targetSizes.length; i++) {
+                int size = targetSizes[i];
                 try {
                     // 生成带尺寸的文件名
                     String fileName = sanitizedDomain + "_" + size + ".png";
-                    Path targetPath = cacheDir.resolve(fileName);
 
                     // 如果文件已存在，跳过
-                    if (Files.exists(targetPath)) {
+                    if (encodings.get(i) == null) {
                         log.debug("Size {} already exists for domain {}, skip", size, domain);
                         if (largestGeneratedPath == null) {
-                            largestGeneratedPath = targetPath.toAbsolutePath().toString();
+                            largestGeneratedPath = cached.getSize(size).toString();
                         }
                         continue;
                     }
 
-                    // 创建缩放后的图片
-                    BufferedImage scaledImage = createScaledImage(originalImage, size, size);
-                    if (scaledImage != null) {
-                        ImageIO.write(scaledImage, "png", targetPath.toFile());
-                        log.debug("Generated {} size image: {}", size, fileName);
-                        generatedCount++;
-                        
-                        // 记录第一个（最大）生成的图片路径
-                        if (largestGeneratedPath == null) {
-                            largestGeneratedPath = targetPath.toAbsolutePath().toString();
-                        }
+                    byte[] png = encodings.get(i).join();
+                    Path storedPath = writeAtomically(fileName, tempPath -> Files.write(tempPath, png));
+                    log.debug("Generated {} size image: {}", size, fileName);
+                    generatedCount++;
+                    if (writtenSizes != null) {
+                        writtenSizes.add(size);
+                    }
+
+                    // 记录第一个（最大）生成的图片路径
+                    if (largestGeneratedPath == null) {
+                        largestGeneratedPath = storedPath.toString();
                     }
 
                 } catch (Exception e) {
@@ -674,266 +1002,13 @@ public class FaviconCacheService {
     }
 
     /**
-     * 读取ICO文件并返回最大尺寸的图像
-     *
-     * @param icoFile ICO文件
-     * @return BufferedImage对象，失败返回null
-     */
-    private BufferedImage readIcoFile(File icoFile) {
-        try (FileInputStream fis = new FileInputStream(icoFile)) {
-            byte[] header = new byte[6];
-            if (fis.read(header) != 6) {
-                log.warn("Invalid ICO file header");
-                return null;
-            }
-            
-            // 检查ICO文件头
-            ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
-            short reserved = headerBuffer.getShort();
-            short type = headerBuffer.getShort();
-            short imageCount = headerBuffer.getShort();
-            
-            if (reserved != 0 || type != 1 || imageCount <= 0) {
-                log.warn("Invalid ICO file format");
-                return null;
-            }
-            
-            // 读取图像目录条目
-            List<IcoEntry> entries = new ArrayList<>();
-            for (int i = 0; i < imageCount; i++) {
-                byte[] entryBytes = new byte[16];
-                if (fis.read(entryBytes) != 16) {
-                    log.warn("Failed to read ICO entry {}", i);
-                    continue;
-                }
-                
-                ByteBuffer entryBuffer = ByteBuffer.wrap(entryBytes).order(ByteOrder.LITTLE_ENDIAN);
-                int width = entryBuffer.get() & 0xFF;
-                int height = entryBuffer.get() & 0xFF;
-                entryBuffer.getShort(); // colorCount & reserved
-                entryBuffer.getShort(); // planes
-                entryBuffer.getShort(); // bitCount
-                int imageSize = entryBuffer.getInt();
-                int imageOffset = entryBuffer.getInt();
-                
-                // ICO中宽度和高度为0表示256
-                if (width == 0) width = 256;
-                if (height == 0) height = 256;
-                
-                entries.add(new IcoEntry(width, height, imageSize, imageOffset));
-            }
-            
-            // 找到最大尺寸的图像
-            IcoEntry largestEntry = entries.stream()
-                    .max((a, b) -> Integer.compare(Math.max(a.width, a.height), Math.max(b.width, b.height)))
-                    .orElse(null);
-            
-            if (largestEntry == null) {
-                log.warn("No valid ICO entries found");
-                return null;
-            }
-            
-            // 读取图像数据
-            try (RandomAccessFile raf = new RandomAccessFile(icoFile, "r")) {
-                raf.seek(largestEntry.imageOffset);
-                byte[] imageData = new byte[largestEntry.imageSize];
-                if (raf.read(imageData) != largestEntry.imageSize) {
-                    log.warn("Failed to read ICO image data");
-                    return null;
-                }
-                
-                // 尝试多种方式读取ICO中的图像数据
-                BufferedImage image = tryReadIcoImageData(imageData, largestEntry);
-                if (image != null) {
-                    return image;
-                }
-            }
-            
-        } catch (Exception e) {
-            log.error("Failed to read ICO file: {}", e.getMessage());
-        }
-        
-        return null;
-    }
-    
-    
-    /**
-     * 尝试多种方式读取ICO中的图像数据
-     *
-     * @param imageData 图像数据字节数组
-     * @param entry ICO条目信息
-     * @return 成功读取的BufferedImage，失败返回null
-     */
-    private BufferedImage tryReadIcoImageData(byte[] imageData, IcoEntry entry) {
-        // 方法1: 直接用ImageIO读取（适用于PNG格式）
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(imageData)) {
-            BufferedImage image = ImageIO.read(bais);
-            if (image != null) {
-                log.debug("Successfully read ICO image as PNG/JPEG: {} x {}", image.getWidth(), image.getHeight());
-                return image;
-            }
-        } catch (Exception e) {
-            log.debug("Failed to read ICO as standard format: {}", e.getMessage());
-        }
-        
-        // 方法2: 检查是否为PNG签名开头
-        if (imageData.length >= 8 && isPngSignature(imageData)) {
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(imageData)) {
-                BufferedImage image = ImageIO.read(bais);
-                if (image != null) {
-                    log.debug("Successfully read ICO PNG image: {} x {}", image.getWidth(), image.getHeight());
-                    return image;
-                }
-            } catch (Exception e) {
-                log.debug("Failed to read ICO PNG: {}", e.getMessage());
-            }
-        }
-        
-        // 方法3: 尝试作为BMP处理
-        if (imageData.length > 40) {
-            BufferedImage bmpImage = tryReadAsBmp(imageData, entry);
-            if (bmpImage != null) {
-                return bmpImage;
-            }
-        }
-        
-        log.warn("Failed to read ICO image data with all methods, size: {} bytes", imageData.length);
-        return null;
-    }
-    
-    /**
-     * 检查是否为PNG文件签名
-     */
-    private boolean isPngSignature(byte[] data) {
-        return data.length >= 8 &&
-               (data[0] & 0xFF) == 0x89 &&
-               data[1] == 'P' &&
-               data[2] == 'N' &&
-               data[3] == 'G' &&
-               (data[4] & 0xFF) == 0x0D &&
-               (data[5] & 0xFF) == 0x0A &&
-               (data[6] & 0xFF) == 0x1A &&
-               (data[7] & 0xFF) == 0x0A;
-    }
-    
-    /**
-     * 尝试将数据作为BMP读取
-     */
-    private BufferedImage tryReadAsBmp(byte[] imageData, IcoEntry entry) {
-        try {
-            // 检查BMP info header
-            if (imageData.length < 40 || imageData[0] != 0x28) {
-                return null;
-            }
-            
-            ByteBuffer infoHeader = ByteBuffer.wrap(imageData, 0, 40).order(ByteOrder.LITTLE_ENDIAN);
-            infoHeader.getInt(); // skip header size
-            int width = infoHeader.getInt();
-            int height = infoHeader.getInt();
-            infoHeader.getShort(); // planes
-            short bitCount = infoHeader.getShort();
-            int compression = infoHeader.getInt();
-            
-            log.debug("BMP info: {}x{}, bitCount: {}, compression: {}", width, Math.abs(height), bitCount, compression);
-            
-            // 只处理未压缩的RGB格式
-            if (compression != 0) {
-                log.debug("Skipping compressed BMP (compression: {})", compression);
-                return null;
-            }
-            
-            // 验证尺寸合理性
-            if (width <= 0 || Math.abs(height) <= 0 || width > 1024 || Math.abs(height) > 1024) {
-                log.debug("Invalid BMP dimensions: {}x{}", width, height);
-                return null;
-            }
-            
-            // 验证位深度
-            if (bitCount != 1 && bitCount != 4 && bitCount != 8 && bitCount != 24 && bitCount != 32) {
-                log.debug("Unsupported BMP bit count: {}", bitCount);
-                return null;
-            }
-            
-            // 创建标准BMP文件头
-            byte[] fileHeader = createBmpFileHeader(imageData.length);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            baos.write(fileHeader);
-            baos.write(imageData);
-            
-            try (ByteArrayInputStream fullBmpStream = new ByteArrayInputStream(baos.toByteArray())) {
-                BufferedImage image = ImageIO.read(fullBmpStream);
-                if (image != null) {
-                    log.debug("Successfully read ICO as BMP: {} x {}", image.getWidth(), image.getHeight());
-                    return image;
-                }
-            }
-            
-        } catch (Exception e) {
-            log.debug("Failed to read as BMP: {}", e.getMessage());
-        }
-        
-        return null;
-    }
-
-    /**
-     * 创建BMP文件头
-     *
-     * @param imageSize 图像数据大小
-     * @return BMP文件头字节数组
-     */
-    private byte[] createBmpFileHeader(int imageSize) {
-        ByteBuffer header = ByteBuffer.allocate(14).order(ByteOrder.LITTLE_ENDIAN);
-        header.put((byte) 'B');
-        header.put((byte) 'M');
-        header.putInt(14 + imageSize); // 文件大小
-        header.putShort((short) 0); // reserved1
-        header.putShort((short) 0); // reserved2
-        header.putInt(54); // 数据偏移（14字节文件头 + 40字节信息头）
-        return header.array();
-    }
-    
-    /**
-     * ICO条目信息
-     */
-    private static class IcoEntry {
-        final int width;
-        final int height;
-        final int imageSize;
-        final int imageOffset;
-        
-        IcoEntry(int width, int height, int imageSize, int imageOffset) {
-            this.width = width;
-            this.height = height;
-            this.imageSize = imageSize;
-            this.imageOffset = imageOffset;
-        }
-    }
-
-    /**
-     * 创建缩放后的图片
-     *
-     * @param originalImage 原始图片
-     * @param targetWidth 目标宽度
-     * @param targetHeight 目标高度
-     * @return 缩放后的图片
+     * 编码为PNG，供并行编码使用，失败时包装为非受检异常
      */
-    private BufferedImage createScaledImage(BufferedImage originalImage, int targetWidth, int targetHeight) {
+    private byte[] encodePng(BufferedImage image) {
         try {
-            BufferedImage scaledImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = scaledImage.createGraphics();
-            
-            // 设置高质量的缩放
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            
-            g2d.drawImage(originalImage, 0, 0, targetWidth, targetHeight, null);
-            g2d.dispose();
-            
-            return scaledImage;
-        } catch (Exception e) {
-            log.error("Failed to create scaled image: {}", e.getMessage());
-            return null;
+            return pngEncoder.encode(image, "favicon");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
-}
\ No newline at end of file
+}
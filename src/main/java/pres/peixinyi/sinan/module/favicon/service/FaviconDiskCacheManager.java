@@ -0,0 +1,205 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconDiskCacheProperties;
+import pres.peixinyi.sinan.module.favicon.dto.CachedIcon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Favicon磁盘缓存容量管理
+ * 定时统计缓存占用的字节数，超过 favicon.disk-cache.max-bytes 时按 {@link FaviconAccessTracker}
+ * 记录的最近访问时间，从最久未访问的域名开始整域名淘汰，直到低于上限的 low-watermark-ratio。
+ * 没有访问记录的域名（如启用访问记录前缓存的）按其缓存文件的修改时间排序。
+ * 存储中的对象按内容寻址、内容不变，文件大小只在首次出现时读取一次。
+ * 缓存大小、域名数、命中率与淘汰次数通过 actuator 的 metrics 端点暴露。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconDiskCacheManager {
+
+    private final FaviconDiskCacheProperties properties;
+
+    private final FaviconCacheIndex cacheIndex;
+
+    private final FaviconStore store;
+
+    private final FaviconCacheService faviconCacheService;
+
+    private final FaviconAccessTracker accessTracker;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 文件路径 -> 字节数
+     */
+    private final ConcurrentHashMap<Path, Long> fileSizes = new ConcurrentHashMap<>();
+
+    private final AtomicLong cacheBytes = new AtomicLong();
+
+    private final AtomicLong cacheDomains = new AtomicLong();
+
+    private Counter evictedDomains;
+
+    private Counter evictedBytes;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("sinan.favicon.cache.size", cacheBytes, AtomicLong::get)
+                .description("图标磁盘缓存占用的字节数（最近一次统计）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("sinan.favicon.cache.domains", cacheDomains, AtomicLong::get)
+                .description("已缓存图标的域名数（最近一次统计）")
+                .register(meterRegistry);
+        Gauge.builder("sinan.favicon.cache.hit.ratio", accessTracker, FaviconAccessTracker::getHitRatio)
+                .description("启动以来图标缓存的命中率")
+                .register(meterRegistry);
+        FunctionCounter.builder("sinan.favicon.cache.requests", accessTracker, FaviconAccessTracker::getHits)
+                .description("图标缓存查询次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("sinan.favicon.cache.requests", accessTracker, FaviconAccessTracker::getMisses)
+                .description("图标缓存查询次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        evictedDomains = Counter.builder("sinan.favicon.cache.evictions")
+                .description("因超过容量上限被淘汰的域名数")
+                .register(meterRegistry);
+        evictedBytes = Counter.builder("sinan.favicon.cache.evicted")
+                .description("因超过容量上限被淘汰的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定时统计容量并在超过上限时淘汰
+     */
+    @Scheduled(fixedDelayString = "${favicon.disk-cache.evict-interval:300000}",
+            initialDelayString = "${favicon.disk-cache.evict-interval:300000}")
+    public void scheduledEvict() {
+        try {
+            evictIfNeeded();
+        } catch (Exception e) {
+            log.error("Favicon disk cache eviction failed", e);
+        }
+        accessTracker.save();
+    }
+
+    /**
+     * 统计容量，超过上限时淘汰最久未访问的域名
+     *
+     * @return 淘汰的域名数
+     */
+    public int evictIfNeeded() {
+        Map<String, CachedIcon> snapshot = cacheIndex.snapshot();
+        Map<String, Long> domainBytes = new HashMap<>(snapshot.size());
+        Set<Path> seen = new HashSet<>();
+        long total = 0;
+        for (Map.Entry<String, CachedIcon> entry : snapshot.entrySet()) {
+            long bytes = 0;
+            for (Path path : filesOf(entry.getValue())) {
+                long size = sizeOf(path);
+                bytes += size;
+                // 内容相同的对象只占用一份空间
+                if (seen.add(path)) {
+                    total += size;
+                }
+            }
+            domainBytes.put(entry.getKey(), bytes);
+        }
+        fileSizes.keySet().retainAll(seen);
+        cacheBytes.set(total);
+        cacheDomains.set(snapshot.size());
+
+        long maxBytes = properties.getMaxBytes();
+        if (maxBytes <= 0 || total <= maxBytes) {
+            return 0;
+        }
+
+        long target = (long) (maxBytes * Math.min(1, Math.max(0, properties.getLowWatermarkRatio())));
+        Map<String, Long> lastAccess = new HashMap<>(snapshot.size());
+        snapshot.forEach((baseName, icon) -> lastAccess.put(baseName, lastAccessOf(baseName, icon)));
+        List<String> candidates = new ArrayList<>(snapshot.keySet());
+        candidates.sort(Comparator.comparingLong(lastAccess::get));
+        int evicted = 0;
+        long remaining = total;
+        for (String baseName : candidates) {
+            if (remaining <= target) {
+                break;
+            }
+            faviconCacheService.evictDomain(baseName).forEach(fileSizes::remove);
+            // 与其他域名共用的对象不会被删除，这里按域名自身大小估算，下一轮统计时校正
+            long bytes = domainBytes.getOrDefault(baseName, 0L);
+            remaining -= bytes;
+            evictedBytes.increment(bytes);
+            evicted++;
+        }
+        evictedDomains.increment(evicted);
+        cacheBytes.set(Math.max(0, remaining));
+        cacheDomains.set(snapshot.size() - evicted);
+        log.info("Favicon disk cache over budget ({} > {} bytes), evicted {} domain(s), about {} bytes left",
+                total, maxBytes, evicted, remaining);
+        return evicted;
+    }
+
+    /**
+     * 域名的最近访问时间，没有访问记录时取其缓存文件中最新的修改时间，都没有时取启动时间
+     */
+    private long lastAccessOf(String baseName, CachedIcon icon) {
+        Long recorded = accessTracker.getLastAccess(baseName);
+        if (recorded != null) {
+            return recorded;
+        }
+        long modified = 0;
+        for (Path path : filesOf(icon)) {
+            try {
+                modified = Math.max(modified, Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                // 打包对象没有单独的文件
+            }
+        }
+        return modified > 0 ? modified : accessTracker.getStartedAt();
+    }
+
+    private List<Path> filesOf(CachedIcon icon) {
+        List<Path> files = new ArrayList<>(icon.getSizes().values());
+        if (icon.getSource() != null) {
+            files.add(icon.getSource());
+        }
+        return files;
+    }
+
+    private long sizeOf(Path path) {
+        Long cached = fileSizes.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        long size = Math.max(0, store.sizeOf(path));
+        fileSizes.put(path, size);
+        return size;
+    }
+}
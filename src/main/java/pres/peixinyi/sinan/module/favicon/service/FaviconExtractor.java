@@ -1,9 +1,16 @@
 package pres.peixinyi.sinan.module.favicon.service;
 
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -12,17 +19,29 @@ import org.springframework.stereotype.Component;
 import pres.peixinyi.sinan.module.favicon.dto.FaviconExtractResult;
 import pres.peixinyi.sinan.module.favicon.dto.FaviconInfo;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Favicon提取器
  * 负责从网页HTML中提取各种类型的favicon信息
  * 支持7种类型：默认favicon.ico、icon标签、apple-touch-icon、twitter:image、mask-icon、theme-color、shortcut icon
+ * 页面只读取到 &lt;/head&gt; 或字节上限为止；页面请求与默认favicon.ico探测并发进行，
+ * 页面中的候选图标也并发校验，整个提取过程受统一的截止时间约束
  * 
  * @author Claude
  * @since 2.0
@@ -36,12 +55,26 @@ public class FaviconExtractor {
     private static final String DEFAULT_FAVICON_PATH = "/favicon.ico";
     private static final int TIMEOUT_SECONDS = 10;
 
+    /** 单次提取的截止时间，超时未完成的请求被取消 */
+    private static final long EXTRACT_DEADLINE_MILLIS = 10_000;
+
+    /** 页面最多读取的字节数，图标信息都在 head 中 */
+    private static final long MAX_HEAD_BYTES = 256 * 1024;
+
+    private static final ByteString HEAD_END = ByteString.encodeUtf8("</head>");
+    private static final long READ_CHUNK_BYTES = 8 * 1024;
+
+    /** 探测失败（连接失败等）时的状态码 */
+    private static final int PROBE_FAILED = -1;
+
     /**
-     * 构造函数，初始化HTTP客户端
-     * 设置统一的超时时间为10秒
+     * 构造函数，基于共享的对外HTTP客户端派生
+     * 设置统一的超时时间为10秒，连接池、DNS缓存和调度器与共享客户端一致
+     *
+     * @param outboundHttpClient 共享的对外HTTP客户端
      */
-    public FaviconExtractor() {
-        this.httpClient = new OkHttpClient.Builder()
+    public FaviconExtractor(OkHttpClient outboundHttpClient) {
+        this.httpClient = outboundHttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .readTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
                 .writeTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
@@ -65,14 +98,26 @@ public class FaviconExtractor {
                            (parsedUrl.getPort() != -1 ? ":" + parsedUrl.getPort() : "");
             
             List<FaviconInfo> faviconList = new ArrayList<>();
-            
-            String htmlContent = fetchHtmlContent(url);
-            if (htmlContent != null) {
-                extractFromHtml(htmlContent, baseUrl, faviconList);
+            long deadline = startTime + EXTRACT_DEADLINE_MILLIS;
+            ConcurrentLinkedQueue<Call> calls = new ConcurrentLinkedQueue<>();
+            try {
+                // 页面与默认favicon.ico同时请求
+                CompletableFuture<String> htmlFuture = fetchHeadHtml(url, calls);
+                String defaultFaviconUrl = baseUrl + DEFAULT_FAVICON_PATH;
+                CompletableFuture<Integer> defaultProbe = probe(defaultFaviconUrl, calls);
+
+                String htmlContent = await(htmlFuture, deadline);
+                if (htmlContent != null) {
+                    extractFromHtml(htmlContent, baseUrl, faviconList);
+                }
+
+                validateCandidates(faviconList, defaultFaviconUrl, defaultProbe, calls, deadline);
+                checkDefaultFavicon(baseUrl, faviconList, defaultProbe);
+            } finally {
+                // 截止时间到达后仍未完成的请求直接取消
+                calls.forEach(Call::cancel);
             }
             
-            checkDefaultFavicon(baseUrl, faviconList);
-            
             FaviconInfo bestFavicon = selectBestFavicon(faviconList);
             
             return FaviconExtractResult.builder()
@@ -96,29 +141,55 @@ public class FaviconExtractor {
     }
     
     /**
-     * 获取指定URL的HTML内容
-     * 
-     * @param url 目标URL
-     * @return HTML内容字符串，失败返回null
+     * 异步获取页面 head 部分的HTML
+     * 读到 &lt;/head&gt; 或 {@link #MAX_HEAD_BYTES} 后停止，不下载页面正文
+     *
+     * @param url   目标URL
+     * @param calls 进行中的请求，用于超时取消
+     * @return HTML片段，失败时为null
      */
-    private String fetchHtmlContent(String url) {
-        try {
-            Request request = new Request.Builder()
-                    .url(url)
-                    .addHeader("User-Agent", "Mozilla/5.0 (compatible; FaviconExtractor/1.0)")
-                    .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (response.isSuccessful() && response.body() != null) {
-                    return response.body().string();
-                }
+    private CompletableFuture<String> fetchHeadHtml(String url, ConcurrentLinkedQueue<Call> calls) {
+        Request request = new Request.Builder()
+                .url(url)
+                .addHeader("User-Agent", "Mozilla/5.0 (compatible; FaviconExtractor/1.0)")
+                .build();
+        return enqueue(request, calls, response -> {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                return null;
             }
-        } catch (Exception e) {
+            return readHead(body);
+        }).exceptionally(e -> {
             log.warn("Failed to fetch HTML content from: {}", url, e);
+            return null;
+        });
+    }
+
+    /**
+     * 读取响应直到出现 &lt;/head&gt; 或达到字节上限
+     */
+    private String readHead(ResponseBody body) throws IOException {
+        BufferedSource source = body.source();
+        Buffer buffer = new Buffer();
+        long scanFrom = 0;
+        while (buffer.size() < MAX_HEAD_BYTES) {
+            if (source.read(buffer, READ_CHUNK_BYTES) == -1) {
+                break;
+            }
+            long headEnd = buffer.indexOf(HEAD_END, scanFrom);
+            if (headEnd >= 0) {
+                return buffer.readString(headEnd + HEAD_END.size(), charsetOf(body));
+            }
+            scanFrom = Math.max(0, buffer.size() - HEAD_END.size());
         }
-        return null;
+        return buffer.readString(Math.min(buffer.size(), MAX_HEAD_BYTES), charsetOf(body));
     }
-    
+
+    private Charset charsetOf(ResponseBody body) {
+        MediaType contentType = body.contentType();
+        return contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+    }
+
     /**
      * 从HTML内容中提取favicon信息
      * 
@@ -223,20 +294,59 @@ public class FaviconExtractor {
         }
     }
     
+    /**
+     * 并发校验页面中的候选图标，截止时间前确认不可访问的候选被移除
+     * 未在截止时间前返回的候选保留
+     *
+     * @param faviconList       候选列表
+     * @param defaultFaviconUrl 默认favicon.ico地址，已在单独探测，不重复请求
+     * @param defaultProbe      默认favicon.ico的探测结果
+     * @param calls             进行中的请求
+     * @param deadline          截止时间
+     */
+    private void validateCandidates(List<FaviconInfo> faviconList, String defaultFaviconUrl,
+                                    CompletableFuture<Integer> defaultProbe,
+                                    ConcurrentLinkedQueue<Call> calls, long deadline) {
+        Map<String, CompletableFuture<Integer>> probes = new HashMap<>();
+        probes.put(defaultFaviconUrl, defaultProbe);
+        for (FaviconInfo favicon : faviconList) {
+            if (favicon.getUrl() != null && !probes.containsKey(favicon.getUrl())) {
+                probes.put(favicon.getUrl(), probe(favicon.getUrl(), calls));
+            }
+        }
+
+        await(CompletableFuture.allOf(probes.values().toArray(new CompletableFuture[0])), deadline);
+
+        faviconList.removeIf(favicon -> {
+            if (favicon.getUrl() == null) {
+                return false;
+            }
+            Integer status = probes.get(favicon.getUrl()).getNow(null);
+            boolean unavailable = status != null && !isAvailableStatus(status);
+            if (unavailable) {
+                log.debug("Drop unavailable favicon candidate: {} (status {})", favicon.getUrl(), status);
+            }
+            return unavailable;
+        });
+    }
+
     /**
      * 检查默认favicon.ico文件是否存在
      * 如果列表中没有默认favicon且根目录下的favicon.ico可访问，则添加到列表
      * 
      * @param baseUrl 网站基本URL
      * @param faviconList favicon列表
+     * @param defaultProbe 默认favicon.ico的探测结果
      */
-    private void checkDefaultFavicon(String baseUrl, List<FaviconInfo> faviconList) {
+    private void checkDefaultFavicon(String baseUrl, List<FaviconInfo> faviconList,
+                                     CompletableFuture<Integer> defaultProbe) {
         boolean hasDefaultFavicon = faviconList.stream()
                 .anyMatch(f -> f.getFaviconType() == FaviconInfo.FaviconType.DEFAULT_FAVICON);
         
         if (!hasDefaultFavicon) {
             String defaultFaviconUrl = baseUrl + DEFAULT_FAVICON_PATH;
-            if (isUrlAccessible(defaultFaviconUrl)) {
+            Integer status = defaultProbe.getNow(null);
+            if (status != null && status >= 200 && status < 300) {
                 FaviconInfo faviconInfo = FaviconInfo.builder()
                         .url(defaultFaviconUrl)
                         .href(DEFAULT_FAVICON_PATH)
@@ -337,21 +447,83 @@ public class FaviconExtractor {
         return baseUrl + "/" + href;
     }
     
-    private boolean isUrlAccessible(String url) {
+    /**
+     * 异步 HEAD 探测
+     *
+     * @param url   地址
+     * @param calls 进行中的请求
+     * @return 响应状态码，连接失败时为 {@link #PROBE_FAILED}
+     */
+    private CompletableFuture<Integer> probe(String url, ConcurrentLinkedQueue<Call> calls) {
+        Request request;
         try {
-            Request request = new Request.Builder()
+            request = new Request.Builder()
                     .url(url)
                     .head()
                     .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                return response.isSuccessful();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(PROBE_FAILED);
+        }
+        return enqueue(request, calls, Response::code)
+                .exceptionally(e -> PROBE_FAILED);
+    }
+
+    /**
+     * 不支持 HEAD 的站点（405）不据此判定图标不可用
+     */
+    private boolean isAvailableStatus(int status) {
+        return (status >= 200 && status < 400) || status == 405;
+    }
+
+    /**
+     * 异步执行请求，在 OkHttp 的调度线程中处理响应
+     */
+    private <T> CompletableFuture<T> enqueue(Request request, ConcurrentLinkedQueue<Call> calls,
+                                             ResponseHandler<T> handler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(request);
+        calls.add(call);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
             }
-        } catch (Exception e) {
-            return false;
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(handler.handle(response));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 在截止时间前等待结果，超时或失败返回null
+     */
+    private <T> T await(CompletableFuture<T> future, long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        try {
+            return remaining > 0 ? future.get(remaining, TimeUnit.MILLISECONDS) : future.getNow(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Favicon extraction step did not complete before deadline: {}", e.getMessage());
         }
+        return null;
     }
-    
+
+    /**
+     * 响应处理
+     */
+    @FunctionalInterface
+    private interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
     private int parseSizeValue(String sizes) {
         if (sizes == null || sizes.trim().isEmpty()) {
             return 0;
@@ -0,0 +1,250 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Favicon获取失败标记
+ * 失败标记保存在 Redis 哈希 favicon:failure:&lt;域名&gt; 中（原因、连续失败次数、退避截止时间），
+ * 本节点另有一份按时间过期的近缓存：已知失败的域名在退避期内直接在本地判定，不再访问 Redis；
+ * 未失败的域名也短暂缓存，同一请求内的多次检查只需一次 Redis 往返。
+ * 标记或清除时通过 Redis 频道通知其他节点丢弃本地缓存，消息带有发送节点ID，本节点发出的通知不处理。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconFailureMarks implements MessageListener {
+
+    /**
+     * 与旧版字符串标记 favicon:failed:&lt;域名&gt; 区分，旧标记随过期时间自然清理
+     */
+    private static final String FAILED_PREFIX = "favicon:failure:";
+    private static final String INVALIDATE_CHANNEL = "favicon:failure:invalidate";
+
+    private static final String FIELD_REASON = "reason";
+    private static final String FIELD_ATTEMPTS = "attempts";
+    private static final String FIELD_UNTIL = "until";
+
+    private static final int MAX_REASON_LENGTH = 200;
+    private static final int MAX_LOCAL_ENTRIES = 10000;
+
+    /**
+     * 一次往返完成计数、写入原因与截止时间、设置过期，退避计算与 {@link FaviconValidatorStore#backoffMillis} 一致。
+     * ARGV：原因、当前时间、首次退避时长、退避上限；返回 {连续失败次数, 退避截止时间}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MARK_SCRIPT = new DefaultRedisScript<>(
+            "local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1)\n"
+                    + "local backoff = math.min(tonumber(ARGV[4]), tonumber(ARGV[3]) * 2 ^ math.min(attempts - 1, 30))\n"
+                    + "local untilAt = tonumber(ARGV[2]) + backoff\n"
+                    + "redis.call('HSET', KEYS[1], 'reason', ARGV[1], 'until', string.format('%d', untilAt))\n"
+                    + "redis.call('PEXPIRE', KEYS[1], string.format('%d', backoff * 2))\n"
+                    + "return {attempts, untilAt}",
+            List.class);
+
+    /**
+     * 本节点ID，用于忽略自己发出的失效通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 失败标记
+     *
+     * @param reason   最近一次失败原因
+     * @param attempts 连续失败次数
+     * @param until    退避截止时间（毫秒时间戳）
+     */
+    public record FailureMark(String reason, int attempts, long until) {
+
+        public boolean isActive(long now) {
+            return until > now;
+        }
+    }
+
+    /**
+     * 本地缓存条目，mark 为null表示未失败
+     */
+    private record LocalEntry(FailureMark mark, long expiresAt) {
+    }
+
+    private final RedisUtils redisUtils;
+
+    private final FaviconValidatorStore validatorStore;
+
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final ConcurrentHashMap<String, LocalEntry> localMarks = new ConcurrentHashMap<>();
+
+    /**
+     * 未失败结果的本地缓存时长，其他节点新增的标记最迟在这之后可见
+     */
+    @Value("${favicon.failure-cache.negative-ttl-millis:5000}")
+    private long negativeTtlMillis;
+
+    /**
+     * 失败结果本地缓存的最长时长，未收到失效通知时最迟在这之后回源
+     */
+    @Value("${favicon.failure-cache.max-local-seconds:600}")
+    private long maxLocalSeconds;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 域名是否处于失败退避期
+     *
+     * @param domain 清理后的域名
+     * @return 处于退避期返回true；Redis 不可用时返回false
+     */
+    public boolean isMarked(String domain) {
+        long now = System.currentTimeMillis();
+        LocalEntry local = localMarks.get(domain);
+        if (local != null && local.expiresAt() > now) {
+            return local.mark() != null && local.mark().isActive(now);
+        }
+        try {
+            FailureMark mark = load(domain);
+            cacheLocally(domain, mark, now);
+            return mark != null && mark.isActive(now);
+        } catch (Exception e) {
+            log.error("Failed to check if domain is marked as failed: {}", domain, e);
+            return false;
+        }
+    }
+
+    /**
+     * 读取失败标记
+     *
+     * @param domain 清理后的域名
+     * @return 失败标记，不存在返回null
+     */
+    public FailureMark get(String domain) {
+        return load(domain);
+    }
+
+    /**
+     * 记录一次获取失败，按连续失败次数指数退避
+     *
+     * @param domain 清理后的域名
+     * @param reason 失败原因
+     * @return 新的失败标记
+     */
+    public FailureMark mark(String domain, String reason) {
+        long now = System.currentTimeMillis();
+        String truncatedReason = truncate(reason);
+        // 失败次数保留到下一次退避结束之后（过期时间为退避时长的两倍），期间再次失败才会继续翻倍
+        List<?> result = redisUtils.execute(MARK_SCRIPT, List.of(FAILED_PREFIX + domain),
+                truncatedReason, String.valueOf(now),
+                String.valueOf(validatorStore.backoffBaseMillis()), String.valueOf(validatorStore.backoffMaxMillis()));
+        FailureMark mark = new FailureMark(truncatedReason,
+                ((Number) result.get(0)).intValue(), ((Number) result.get(1)).longValue());
+
+        cacheLocally(domain, mark, now);
+        publishInvalidation(domain);
+        return mark;
+    }
+
+    /**
+     * 清除失败标记与连续失败次数
+     *
+     * @param domain 清理后的域名
+     */
+    public void clear(String domain) {
+        redisUtils.delete(FAILED_PREFIX + domain);
+        localMarks.remove(domain);
+        publishInvalidation(domain);
+    }
+
+    /**
+     * 获取成功，仅在存在失败记录时清除，正常域名不产生额外写入
+     *
+     * @param domain 清理后的域名
+     */
+    public void clearIfPresent(String domain) {
+        LocalEntry local = localMarks.get(domain);
+        if (local != null && local.mark() == null && local.expiresAt() > System.currentTimeMillis()) {
+            return;
+        }
+        if (Boolean.TRUE.equals(redisUtils.hasKey(FAILED_PREFIX + domain))) {
+            clear(domain);
+        }
+    }
+
+    /**
+     * 其他节点标记或清除后丢弃本地缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(' ');
+        if (separator < 0) {
+            // 旧版本节点发出的通知只有域名
+            localMarks.remove(body);
+            return;
+        }
+        if (!body.substring(0, separator).equals(nodeId)) {
+            localMarks.remove(body.substring(separator + 1));
+        }
+    }
+
+    private FailureMark load(String domain) {
+        Map<Object, Object> fields = redisUtils.hGetAll(FAILED_PREFIX + domain);
+        Object until = fields.get(FIELD_UNTIL);
+        if (until == null) {
+            return null;
+        }
+        Object attempts = fields.get(FIELD_ATTEMPTS);
+        return new FailureMark((String) fields.get(FIELD_REASON),
+                attempts != null ? Integer.parseInt(attempts.toString()) : 1, Long.parseLong(until.toString()));
+    }
+
+    private void cacheLocally(String domain, FailureMark mark, long now) {
+        long expiresAt = mark != null && mark.isActive(now)
+                ? Math.min(mark.until(), now + TimeUnit.SECONDS.toMillis(maxLocalSeconds))
+                : now + negativeTtlMillis;
+        if (localMarks.size() >= MAX_LOCAL_ENTRIES) {
+            localMarks.values().removeIf(entry -> entry.expiresAt() <= now);
+            if (localMarks.size() >= MAX_LOCAL_ENTRIES) {
+                localMarks.clear();
+            }
+        }
+        localMarks.put(domain, new LocalEntry(mark, expiresAt));
+    }
+
+    private void publishInvalidation(String domain) {
+        try {
+            redisUtils.publish(INVALIDATE_CHANNEL, nodeId + " " + domain);
+        } catch (Exception e) {
+            log.warn("Failed to publish favicon failure mark invalidation for {}", domain, e);
+        }
+    }
+
+    private String truncate(String reason) {
+        if (reason == null) {
+            return "unknown";
+        }
+        return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+    }
+}
@@ -0,0 +1,122 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Favicon后台获取线程池
+ * 所有外部请求（页面解析、可访问性探测、图标下载）都在这里执行，不占用 Tomcat 请求线程。
+ * 线程数和队列长度固定，同一主机同时只允许少量任务，超出时直接拒绝而不是排队等待。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconFetchExecutor {
+
+    private final FaviconFetchProperties properties;
+
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, properties.getThreads());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getMaxQueue())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "favicon-fetch-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交获取任务
+     *
+     * @param domain 域名，用于按主机限流
+     * @param task   获取任务
+     * @return 已接受返回true；队列已满或该主机任务过多时返回false
+     */
+    public boolean submit(String domain, Runnable task) {
+        String host = hostKey(domain);
+        Semaphore permits = hostPermits.computeIfAbsent(host,
+                key -> new Semaphore(Math.max(1, properties.getPerHostConcurrency())));
+        if (!permits.tryAcquire()) {
+            log.debug("Too many favicon fetches for host {}, rejected", host);
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release(host, permits);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            release(host, permits);
+            log.debug("Favicon fetch queue is full ({}), rejected domain: {}", executor.getQueue().size(), domain);
+            return false;
+        }
+    }
+
+    /**
+     * 当前排队的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    private void release(String host, Semaphore permits) {
+        permits.release();
+        // 空闲主机不再保留信号量，避免 map 随域名数增长
+        if (permits.availablePermits() >= Math.max(1, properties.getPerHostConcurrency())) {
+            hostPermits.remove(host, permits);
+        }
+    }
+
+    private String hostKey(String domain) {
+        String host = domain.toLowerCase();
+        int schemeEnd = host.indexOf("://");
+        if (schemeEnd >= 0) {
+            host = host.substring(schemeEnd + 3);
+        }
+        int pathStart = host.indexOf('/');
+        if (pathStart >= 0) {
+            host = host.substring(0, pathStart);
+        }
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+}
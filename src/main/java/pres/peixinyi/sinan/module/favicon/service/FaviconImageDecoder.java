@@ -0,0 +1,313 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * 图标解码
+ * 下载的图标只解码一次：ICO 先解析目录选出一个条目再解码其像素数据，
+ * 其他格式按最大生成尺寸降采样读取，结果交给 {@link FaviconImageScaler} 逐级缩小。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+public final class FaviconImageDecoder {
+
+    private FaviconImageDecoder() {
+    }
+
+    /**
+     * 读取ICO文件并返回最大尺寸的图像
+     * 先只解析目录选出一个条目（尺寸最大，其次色深最高），再解码该条目的像素数据，其余条目不解码
+     *
+     * @param icoFile ICO文件
+     * @return BufferedImage对象，失败返回null
+     */
+    static BufferedImage readIcoFile(File icoFile) {
+        try {
+            return readIco(Files.readAllBytes(icoFile.toPath()));
+        } catch (IOException e) {
+            log.error("Failed to read ICO file: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解码ICO数据并返回最大尺寸的图像，JDK 没有 ICO 读取器，书签内联的 data:image/x-icon 图标也由此解码
+     *
+     * @param data ICO文件内容
+     * @return BufferedImage对象，失败返回null
+     */
+    public static BufferedImage readIco(byte[] data) {
+        try {
+            if (data.length < 6) {
+                log.warn("Invalid ICO file header");
+                return null;
+            }
+
+            // 检查ICO文件头
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            short reserved = buffer.getShort();
+            short type = buffer.getShort();
+            int imageCount = buffer.getShort() & 0xFFFF;
+
+            if (reserved != 0 || type != 1 || imageCount <= 0) {
+                log.warn("Invalid ICO file format");
+                return null;
+            }
+
+            // 只读取图像目录条目，选出要解码的一个
+            IcoEntry bestEntry = null;
+            for (int i = 0; i < imageCount && buffer.remaining() >= 16; i++) {
+                int width = buffer.get() & 0xFF;
+                int height = buffer.get() & 0xFF;
+                buffer.getShort(); // colorCount & reserved
+                buffer.getShort(); // planes
+                int bitCount = buffer.getShort() & 0xFFFF;
+                int imageSize = buffer.getInt();
+                int imageOffset = buffer.getInt();
+
+                // ICO中宽度和高度为0表示256
+                if (width == 0) width = 256;
+                if (height == 0) height = 256;
+
+                // 跳过数据范围超出文件的条目
+                if (imageSize <= 0 || imageOffset < 0 || (long) imageOffset + imageSize > data.length) {
+                    log.debug("Skipping ICO entry {} with invalid data range", i);
+                    continue;
+                }
+
+                IcoEntry entry = new IcoEntry(width, height, bitCount, imageSize, imageOffset);
+                if (bestEntry == null || entry.isBetterThan(bestEntry)) {
+                    bestEntry = entry;
+                }
+            }
+
+            if (bestEntry == null) {
+                log.warn("No valid ICO entries found");
+                return null;
+            }
+
+            // 尝试多种方式读取ICO中的图像数据
+            byte[] imageData = new byte[bestEntry.imageSize];
+            System.arraycopy(data, bestEntry.imageOffset, imageData, 0, bestEntry.imageSize);
+            return tryReadIcoImageData(imageData, bestEntry);
+
+        } catch (Exception e) {
+            log.error("Failed to read ICO data: {}", e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * 读取普通图片，只解码一次
+     * 原图远大于最大生成尺寸时（如大尺寸 JPEG）按比例降采样解码，保留至少两倍最大尺寸供逐级缩小，
+     * 不会把整张大图解码到内存中
+     *
+     * @param imageFile        图片文件
+     * @param maxGeneratedSize 最大生成尺寸
+     * @return BufferedImage对象，格式不支持时返回null
+     * @throws IOException 读取失败时抛出
+     */
+    static BufferedImage readImageFile(File imageFile, int maxGeneratedSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(reader.getWidth(0), reader.getHeight(0)) / (maxGeneratedSize * 2);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 尝试多种方式读取ICO中的图像数据
+     *
+     * @param imageData 图像数据字节数组
+     * @param entry ICO条目信息
+     * @return 成功读取的BufferedImage，失败返回null
+     */
+    private static BufferedImage tryReadIcoImageData(byte[] imageData, IcoEntry entry) {
+        // 方法1: 直接用ImageIO读取（适用于PNG格式）
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(imageData)) {
+            BufferedImage image = ImageIO.read(bais);
+            if (image != null) {
+                log.debug("Successfully read ICO image as PNG/JPEG: {} x {}", image.getWidth(), image.getHeight());
+                return image;
+            }
+        } catch (Exception e) {
+            log.debug("Failed to read ICO as standard format: {}", e.getMessage());
+        }
+        
+        // 方法2: 检查是否为PNG签名开头
+        if (imageData.length >= 8 && isPngSignature(imageData)) {
+            try (ByteArrayInputStream bais = new ByteArrayInputStream(imageData)) {
+                BufferedImage image = ImageIO.read(bais);
+                if (image != null) {
+                    log.debug("Successfully read ICO PNG image: {} x {}", image.getWidth(), image.getHeight());
+                    return image;
+                }
+            } catch (Exception e) {
+                log.debug("Failed to read ICO PNG: {}", e.getMessage());
+            }
+        }
+        
+        // 方法3: 尝试作为BMP处理
+        if (imageData.length > 40) {
+            BufferedImage bmpImage = tryReadAsBmp(imageData, entry);
+            if (bmpImage != null) {
+                return bmpImage;
+            }
+        }
+        
+        log.warn("Failed to read ICO image data with all methods, size: {} bytes", imageData.length);
+        return null;
+    }
+    
+    /**
+     * 检查是否为PNG文件签名
+     */
+    private static boolean isPngSignature(byte[] data) {
+        return data.length >= 8 &&
+               (data[0] & 0xFF) == 0x89 &&
+               data[1] == 'P' &&
+               data[2] == 'N' &&
+               data[3] == 'G' &&
+               (data[4] & 0xFF) == 0x0D &&
+               (data[5] & 0xFF) == 0x0A &&
+               (data[6] & 0xFF) == 0x1A &&
+               (data[7] & 0xFF) == 0x0A;
+    }
+    
+    /**
+     * 尝试将数据作为BMP读取
+     */
+    private static BufferedImage tryReadAsBmp(byte[] imageData, IcoEntry entry) {
+        try {
+            // 检查BMP info header
+            if (imageData.length < 40 || imageData[0] != 0x28) {
+                return null;
+            }
+            
+            ByteBuffer infoHeader = ByteBuffer.wrap(imageData, 0, 40).order(ByteOrder.LITTLE_ENDIAN);
+            infoHeader.getInt(); // skip header size
+            int width = infoHeader.getInt();
+            int height = infoHeader.getInt();
+            infoHeader.getShort(); // planes
+            short bitCount = infoHeader.getShort();
+            int compression = infoHeader.getInt();
+            
+            log.debug("BMP info: {}x{}, bitCount: {}, compression: {}", width, Math.abs(height), bitCount, compression);
+            
+            // 只处理未压缩的RGB格式
+            if (compression != 0) {
+                log.debug("Skipping compressed BMP (compression: {})", compression);
+                return null;
+            }
+            
+            // 验证尺寸合理性
+            if (width <= 0 || Math.abs(height) <= 0 || width > 1024 || Math.abs(height) > 1024) {
+                log.debug("Invalid BMP dimensions: {}x{}", width, height);
+                return null;
+            }
+            
+            // 验证位深度
+            if (bitCount != 1 && bitCount != 4 && bitCount != 8 && bitCount != 24 && bitCount != 32) {
+                log.debug("Unsupported BMP bit count: {}", bitCount);
+                return null;
+            }
+            
+            // 创建标准BMP文件头
+            byte[] fileHeader = createBmpFileHeader(imageData.length);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            baos.write(fileHeader);
+            baos.write(imageData);
+            
+            try (ByteArrayInputStream fullBmpStream = new ByteArrayInputStream(baos.toByteArray())) {
+                BufferedImage image = ImageIO.read(fullBmpStream);
+                if (image != null) {
+                    log.debug("Successfully read ICO as BMP: {} x {}", image.getWidth(), image.getHeight());
+                    return image;
+                }
+            }
+            
+        } catch (Exception e) {
+            log.debug("Failed to read as BMP: {}", e.getMessage());
+        }
+        
+        return null;
+    }
+
+    /**
+     * 创建BMP文件头
+     *
+     * @param imageSize 图像数据大小
+     * @return BMP文件头字节数组
+     */
+    private static byte[] createBmpFileHeader(int imageSize) {
+        ByteBuffer header = ByteBuffer.allocate(14).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B');
+        header.put((byte) 'M');
+        header.putInt(14 + imageSize); // 文件大小
+        header.putShort((short) 0); // reserved1
+        header.putShort((short) 0); // reserved2
+        header.putInt(54); // 数据偏移（14字节文件头 + 40字节信息头）
+        return header.array();
+    }
+    
+    /**
+     * ICO条目信息
+     */
+    private static class IcoEntry {
+        final int width;
+        final int height;
+        final int bitCount;
+        final int imageSize;
+        final int imageOffset;
+
+        IcoEntry(int width, int height, int bitCount, int imageSize, int imageOffset) {
+            this.width = width;
+            this.height = height;
+            this.bitCount = bitCount;
+            this.imageSize = imageSize;
+            this.imageOffset = imageOffset;
+        }
+
+        /**
+         * 尺寸更大，或尺寸相同但色深更高
+         */
+        boolean isBetterThan(IcoEntry other) {
+            int dimension = Math.max(width, height);
+            int otherDimension = Math.max(other.width, other.height);
+            return dimension != otherDimension ? dimension > otherDimension : bitCount > other.bitCount;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Favicon图像处理线程池
+ * 雪碧图生成、多尺寸 PNG 编码等纯计算任务在这里执行，线程数与 CPU 核数一致。
+ * 与 {@link FaviconFetchExecutor} 分开：获取线程会等待编码结果，共用一个有界线程池可能互相等待而卡死。
+ * 队列满时由提交线程自己执行，不会拒绝任务。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Component
+public class FaviconImageExecutor implements Executor {
+
+    private static final int MAX_QUEUE = 256;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "favicon-image-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+}
@@ -0,0 +1,75 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图标逐级缩放
+ * 每一步最多缩小一半，双线性插值在 2:1 时相当于对 2x2 像素取平均，
+ * 比一次缩小到目标尺寸更平滑，也避免为每个尺寸重复处理完整的原图。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+final class FaviconImageScaler {
+
+    private FaviconImageScaler() {
+    }
+
+    /**
+     * 按从大到小的顺序生成多个正方形尺寸，每个尺寸由上一个结果继续缩小
+     *
+     * @param source 原图
+     * @param sizes  目标尺寸，须从大到小排列
+     * @return 与 sizes 顺序一致的图片
+     */
+    static List<BufferedImage> scaleDescending(BufferedImage source, int[] sizes) {
+        List<BufferedImage> scaled = new ArrayList<>(sizes.length);
+        BufferedImage current = source;
+        for (int size : sizes) {
+            current = scale(current, size);
+            scaled.add(current);
+        }
+        return scaled;
+    }
+
+    /**
+     * 缩放为正方形，大于目标尺寸两倍时先逐级减半
+     *
+     * @param source 原图
+     * @param size   目标边长
+     * @return 缩放后的 ARGB 图片
+     */
+    static BufferedImage scale(BufferedImage source, int size) {
+        if (source.getWidth() == size && source.getHeight() == size
+                && source.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return source;
+        }
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(size, width / 2);
+            height = Math.max(size, height / 2);
+            current = draw(current, width, height);
+        } while (width > size || height > size);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = target.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g2d.dispose();
+        }
+        return target;
+    }
+}
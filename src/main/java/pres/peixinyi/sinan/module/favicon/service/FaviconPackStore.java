@@ -0,0 +1,356 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconPackProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Favicon打包存储
+ * 小图标追加写入固定大小的段文件 store/packs/segment-000001.pack，段文件整体内存映射，
+ * 读取时直接返回映射内存的切片，不占用单独的文件与 inode。
+ * <p>
+ * 记录格式：magic(4) crc32(4) 名称长度(2) 内容长度(4) 名称 内容，crc32 覆盖名称长度之后的全部字节。
+ * 启动时顺序扫描并校验每条记录重建 对象名 -> 位置 的索引，遇到损坏或未写完的记录即停止该段的扫描；
+ * 删除只更新索引与段的已删除字节数，由后台任务重写已删除占比高的段。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconPackStore {
+
+    private static final int MAGIC = 0x534E5031;
+    private static final int HEADER_BYTES = 14;
+    private static final String PACKS_DIR = "packs";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("^segment-(\\d+)\\.pack$");
+
+    /**
+     * 对象在段内的位置
+     *
+     * @param segment 段编号
+     * @param offset  内容起始偏移
+     * @param length  内容长度
+     */
+    private record Slot(int segment, int offset, int length) {
+    }
+
+    /**
+     * 段文件，写入与统计字段只在持有存储锁时修改
+     */
+    private static final class Segment {
+        private final int id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long liveBytes;
+        private long deadBytes;
+
+        private Segment(int id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private ByteBuffer slice(int offset, int length) {
+            return buffer.slice(offset, length).asReadOnlyBuffer();
+        }
+    }
+
+    private final FaviconPackProperties properties;
+
+    @Value("${favicon.cache.dir:upload/icons}")
+    private String cacheDir;
+
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+    private Path packsDir;
+
+    private Segment active;
+
+    private int nextSegmentId = 1;
+
+    /**
+     * 扫描已有段文件重建索引
+     * 打包写入关闭时也会加载，保证之前写入的图标仍可读取
+     */
+    @PostConstruct
+    public synchronized void load() throws IOException {
+        packsDir = Paths.get(cacheDir, "store", PACKS_DIR).toAbsolutePath();
+        if (!Files.isDirectory(packsDir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(packsDir)) {
+            files = stream.filter(file -> SEGMENT_FILE.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingInt(this::segmentId))
+                    .toList();
+        }
+        for (Path file : files) {
+            Segment segment = openSegment(segmentId(file), file, Files.size(file));
+            scan(segment);
+            segments.put(segment.id, segment);
+            active = segment;
+            nextSegmentId = segment.id + 1;
+        }
+        log.info("Favicon pack store loaded: {} segments, {} objects", segments.size(), slots.size());
+    }
+
+    /**
+     * 是否应写入段文件
+     *
+     * @param size 内容大小
+     * @return 打包写入开启且内容不超过单条上限时返回true
+     */
+    public boolean accepts(long size) {
+        return properties.isEnabled() && size <= properties.getMaxEntryBytes()
+                && size + HEADER_BYTES + 128 <= properties.getSegmentBytes();
+    }
+
+    /**
+     * 对象是否在段文件中
+     *
+     * @param object 对象名，如 ab/cd/abcd...png
+     */
+    public boolean contains(String object) {
+        return slots.containsKey(object);
+    }
+
+    /**
+     * 读取对象内容
+     *
+     * @param object 对象名
+     * @return 映射内存的只读切片，不存在返回null
+     */
+    public ByteBuffer read(String object) {
+        // 读取期间对象可能被压缩任务移到新段，重查一次位置
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Slot slot = slots.get(object);
+            if (slot == null) {
+                return null;
+            }
+            Segment segment = segments.get(slot.segment());
+            if (segment != null) {
+                return segment.slice(slot.offset(), slot.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 追加写入对象，已存在时不重复写入
+     *
+     * @param object 对象名
+     * @param data   内容
+     * @throws IOException 创建段文件失败时抛出
+     */
+    public synchronized void append(String object, byte[] data) throws IOException {
+        if (!slots.containsKey(object)) {
+            writeRecord(object, data);
+        }
+    }
+
+    /**
+     * 删除对象，空间由压缩任务回收
+     *
+     * @param object 对象名
+     * @return 对象存在返回true
+     */
+    public synchronized boolean delete(String object) {
+        Slot slot = slots.remove(object);
+        if (slot == null) {
+            return false;
+        }
+        markDead(object, slot);
+        return true;
+    }
+
+    /**
+     * 只保留仍被映射引用的对象，启动时由 {@link FaviconStore} 调用
+     *
+     * @param liveObjects 被引用的对象名
+     */
+    public synchronized void retainOnly(Set<String> liveObjects) {
+        new ArrayList<>(slots.keySet()).stream()
+                .filter(object -> !liveObjects.contains(object))
+                .forEach(this::delete);
+    }
+
+    /**
+     * 删除全部段文件
+     */
+    public synchronized void clear() {
+        slots.clear();
+        for (Segment segment : segments.values()) {
+            deleteSegmentFile(segment);
+        }
+        segments.clear();
+        active = null;
+    }
+
+    /**
+     * 重写已删除占比高的段：把仍存活的记录追加到当前段，再删除旧段文件
+     */
+    @Scheduled(fixedDelayString = "${favicon.store.pack.compact-interval:600000}",
+            initialDelayString = "${favicon.store.pack.compact-interval:600000}")
+    public void compact() {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            try {
+                compactSegment(segment);
+            } catch (Exception e) {
+                log.error("Failed to compact favicon pack segment: {}", segment.file, e);
+            }
+        }
+    }
+
+    private synchronized void compactSegment(Segment segment) throws IOException {
+        long usedBytes = segment.liveBytes + segment.deadBytes;
+        if (segment == active || usedBytes == 0
+                || (double) segment.deadBytes / usedBytes < properties.getCompactRatio()) {
+            return;
+        }
+        int moved = 0;
+        for (Map.Entry<String, Slot> entry : new ArrayList<>(slots.entrySet())) {
+            Slot slot = entry.getValue();
+            if (slot.segment() == segment.id) {
+                byte[] data = new byte[slot.length()];
+                segment.buffer.get(slot.offset(), data);
+                writeRecord(entry.getKey(), data);
+                moved++;
+            }
+        }
+        segments.remove(segment.id);
+        deleteSegmentFile(segment);
+        log.info("Compacted favicon pack segment {}: moved {} objects, reclaimed {} bytes",
+                segment.file.getFileName(), moved, segment.deadBytes);
+    }
+
+    private void writeRecord(String object, byte[] data) throws IOException {
+        byte[] name = object.getBytes(StandardCharsets.US_ASCII);
+        int recordLength = HEADER_BYTES + name.length + data.length;
+        Segment segment = activeSegment(recordLength);
+        int position = segment.writePosition;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putShort(position + 8, (short) name.length);
+        buffer.putInt(position + 10, data.length);
+        buffer.put(position + HEADER_BYTES, name);
+        buffer.put(position + HEADER_BYTES + name.length, data);
+        buffer.putInt(position + 4, checksum(buffer, position, recordLength));
+        // magic 最后写入，进程中断时未写完的记录不会被当作有效记录
+        buffer.putInt(position, MAGIC);
+        buffer.force(position, recordLength);
+
+        segment.writePosition += recordLength;
+        segment.liveBytes += recordLength;
+        Slot previous = slots.put(object, new Slot(segment.id, position + HEADER_BYTES + name.length, data.length));
+        if (previous != null) {
+            markDead(object, previous);
+        }
+    }
+
+    /**
+     * 校验段内记录，重建索引与写入位置
+     */
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            int nameLength = buffer.getShort(position + 8) & 0xFFFF;
+            int dataLength = buffer.getInt(position + 10);
+            long recordLength = (long) HEADER_BYTES + nameLength + dataLength;
+            if (dataLength < 0 || position + recordLength > buffer.capacity()
+                    || checksum(buffer, position, (int) recordLength) != buffer.getInt(position + 4)) {
+                log.warn("Corrupted favicon pack record in {} at offset {}, ignoring the rest of the segment",
+                        segment.file.getFileName(), position);
+                break;
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(position + HEADER_BYTES, name);
+            String object = new String(name, StandardCharsets.US_ASCII);
+            segment.liveBytes += recordLength;
+            Slot previous = slots.put(object, new Slot(segment.id, position + HEADER_BYTES + nameLength, dataLength));
+            if (previous != null) {
+                markDead(object, previous);
+            }
+            position += (int) recordLength;
+        }
+        segment.writePosition = position;
+    }
+
+    private int checksum(MappedByteBuffer buffer, int position, int recordLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + 8, recordLength - 8));
+        return (int) crc.getValue();
+    }
+
+    private void markDead(String object, Slot slot) {
+        Segment segment = segments.get(slot.segment());
+        if (segment == null) {
+            return;
+        }
+        int recordLength = HEADER_BYTES + object.length() + slot.length();
+        segment.liveBytes -= recordLength;
+        segment.deadBytes += recordLength;
+    }
+
+    private Segment activeSegment(int recordLength) throws IOException {
+        if (active != null && active.writePosition + recordLength <= active.buffer.capacity()) {
+            return active;
+        }
+        Files.createDirectories(packsDir);
+        int id = nextSegmentId++;
+        Path file = packsDir.resolve(String.format("segment-%06d.pack", id));
+        active = openSegment(id, file, properties.getSegmentBytes());
+        segments.put(id, active);
+        return active;
+    }
+
+    private Segment openSegment(int id, Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // 映射在通道关闭后仍然有效，新建段时文件会被扩展到映射大小
+            return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private void deleteSegmentFile(Segment segment) {
+        try {
+            // 已映射的内存在没有引用后才释放，正在输出的切片不受影响
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete favicon pack segment: {}", segment.file, e);
+        }
+    }
+
+    private int segmentId(Path file) {
+        Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
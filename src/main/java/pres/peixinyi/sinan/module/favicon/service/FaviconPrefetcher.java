@@ -0,0 +1,122 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+import pres.peixinyi.sinan.module.favicon.config.FaviconPrefetchProperties;
+import pres.peixinyi.sinan.module.sinan.event.BookmarkDomainsAddedEvent;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Favicon预取
+ * 收到 {@link BookmarkDomainsAddedEvent} 后把域名放入去重的等待集合，不阻塞保存书签的请求；
+ * 定时任务在获取线程池空闲时按批取出，跳过已缓存和处于失败退避期的域名，其余提交后台获取，
+ * 大批量导入后的首次访问不再集中触发获取。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconPrefetcher {
+
+    private final FaviconPrefetchProperties properties;
+
+    private final FaviconFetchProperties fetchProperties;
+
+    private final FaviconService faviconService;
+
+    private final FaviconCacheService faviconCacheService;
+
+    private final FaviconFetchExecutor faviconFetchExecutor;
+
+    /**
+     * 等待预取的域名，按加入顺序处理
+     */
+    private final LinkedHashSet<String> pending = new LinkedHashSet<>();
+
+    @EventListener
+    public void onBookmarkDomainsAdded(BookmarkDomainsAddedEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int queued = 0;
+        int dropped = 0;
+        synchronized (pending) {
+            for (String domain : event.getDomains()) {
+                if (faviconCacheService.findCachedByDomain(domain) != null) {
+                    continue;
+                }
+                if (pending.size() >= properties.getMaxPending()) {
+                    dropped++;
+                } else if (pending.add(domain)) {
+                    queued++;
+                }
+            }
+        }
+        log.debug("Queued {} domain(s) for favicon prefetch from {} (user {}), dropped {}",
+                queued, event.getSource(), event.getUserId(), dropped);
+    }
+
+    @Scheduled(fixedDelayString = "${favicon.prefetch.interval:1000}",
+            initialDelayString = "${favicon.prefetch.interval:1000}")
+    public void prefetchPending() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int submitted = 0;
+        int limit = Math.max(1, properties.getBatchSize());
+        while (submitted < limit && !isFetchPoolBusy()) {
+            String domain = poll();
+            if (domain == null) {
+                return;
+            }
+            try {
+                // 已缓存或处于失败退避期的域名直接跳过，不占用本轮名额
+                if (faviconCacheService.findCachedByDomain(domain) != null
+                        || faviconService.isDomainMarkedAsFailed(domain)) {
+                    continue;
+                }
+                faviconService.getCachedFaviconOrFetchInBackground(domain, null);
+                submitted++;
+            } catch (Exception e) {
+                log.warn("Failed to prefetch favicon for {}", domain, e);
+            }
+        }
+    }
+
+    /**
+     * 等待预取的域名数
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private String poll() {
+        synchronized (pending) {
+            Iterator<String> iterator = pending.iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            String domain = iterator.next();
+            iterator.remove();
+            return domain;
+        }
+    }
+
+    /**
+     * 有排队任务或超过一半线程在工作时视为繁忙，把线程留给请求触发的获取
+     */
+    private boolean isFetchPoolBusy() {
+        return faviconFetchExecutor.getQueueSize() > 0
+                || faviconFetchExecutor.getActiveCount() * 2 >= Math.max(1, fetchProperties.getThreads());
+    }
+}
@@ -0,0 +1,283 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Base64;
+
+/**
+ * Favicon响应输出
+ * 打包存储的图标直接写出段文件的映射内存，热点图标从 {@link FaviconByteCache} 的堆外内存写出；
+ * 未进入缓存的文件优先使用容器的 sendfile，不支持时用 FileChannel.transferTo 发送。
+ * 所有响应带 ETag 与 Last-Modified，条件请求命中时返回 304；图标尚未获取到时返回 202 占位图。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconResponseWriter {
+
+    private static final String CACHE_CONTROL = "public, max-age=2592000"; // 缓存1个月（30天 * 24小时 * 60分钟 * 60秒）
+
+    /**
+     * 1x1 透明 PNG，图标尚未获取到时返回
+     */
+    private static final byte[] PLACEHOLDER_PNG = Base64.getDecoder().decode(
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAAC0lEQVR42mNgAAIAAAUAAen63NgAAAAASUVORK5CYII=");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final FaviconByteCache byteCache;
+
+    private final FaviconCacheService faviconCacheService;
+
+    private final FaviconStore store;
+
+    private final FaviconFetchProperties fetchProperties;
+
+    /**
+     * 输出缓存的图标文件
+     *
+     * @param request  请求
+     * @param response 响应
+     * @param filePath 缓存文件路径
+     * @return 已写出响应（200 或 304）返回true，文件不存在返回false
+     * @throws IOException 写出失败时抛出
+     */
+    public boolean write(HttpServletRequest request, HttpServletResponse response, String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        ByteBuffer packed = store.readPacked(path);
+        if (packed != null) {
+            // 段文件已内存映射，直接写出切片，不再经过字节缓存
+            writeEntry(request, response, path, new FaviconByteCache.Entry(packed, packedEtag(path), -1));
+            return true;
+        }
+
+        FaviconByteCache.Entry entry = byteCache.get(path);
+        if (entry != null) {
+            writeEntry(request, response, path, entry);
+            return true;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return false;
+            }
+            entry = byteCache.load(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            // 文件已被外部删除，同步移出索引
+            faviconCacheService.evictMissingFile(path);
+            return false;
+        }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (entry != null) {
+            writeEntry(request, response, path, entry);
+            return true;
+        }
+
+        // 超过热点缓存单条上限，使用基于大小与修改时间的弱 ETag 直接发送文件
+        String etag = "W/\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        if (checkNotModified(request, response, path, etag, lastModified)) {
+            return true;
+        }
+        response.setContentLengthLong(attributes.size());
+        sendFile(request, response, path, attributes.size());
+        return true;
+    }
+
+    /**
+     * 读取缓存的图标文件并编码为 data URI，供批量接口内联返回
+     * 与单个图标接口走同样的读取路径：打包存储、热点字节缓存、最后才读文件
+     *
+     * @param filePath 缓存文件路径
+     * @return data URI，文件不存在返回null
+     * @throws IOException 读取失败时抛出
+     */
+    public String toDataUri(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        ByteBuffer content = store.readPacked(path);
+        if (content == null) {
+            FaviconByteCache.Entry entry = byteCache.get(path);
+            if (entry == null) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    entry = byteCache.load(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+                    content = entry != null ? entry.content() : ByteBuffer.wrap(Files.readAllBytes(path));
+                } catch (NoSuchFileException e) {
+                    faviconCacheService.evictMissingFile(path);
+                    return null;
+                }
+            } else {
+                content = entry.content();
+            }
+        }
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return "data:" + determineContentType(path.getFileName().toString()) + ";base64,"
+                + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * 输出内存中生成的图片（如雪碧图），带内容哈希 ETag
+     * 同一地址的内容会随书签变化，要求客户端每次用 ETag 重新验证
+     *
+     * @param request  请求
+     * @param response 响应
+     * @param png      PNG内容
+     * @param etag     内容哈希 ETag（带引号）
+     * @throws IOException 写出失败时抛出
+     */
+    public void writeGenerated(HttpServletRequest request, HttpServletResponse response, byte[] png, String etag)
+            throws IOException {
+        response.setContentType("image/png");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        response.setContentLength(png.length);
+        response.getOutputStream().write(png);
+    }
+
+    /**
+     * 输出带版本的生成图片，地址中的版本即内容哈希，同一地址内容不会变化，允许长期缓存
+     *
+     * @param request  请求
+     * @param response 响应
+     * @param png      PNG内容
+     * @param etag     内容哈希 ETag（带引号）
+     * @throws IOException 写出失败时抛出
+     */
+    public void writeVersioned(HttpServletRequest request, HttpServletResponse response, byte[] png, String etag)
+            throws IOException {
+        response.setContentType("image/png");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+        response.setContentLength(png.length);
+        response.getOutputStream().write(png);
+    }
+
+    /**
+     * 图标正在后台获取时返回 202 与透明占位图
+     * 不允许缓存，客户端下次请求时取到真实图标
+     *
+     * @param response 响应
+     * @throws IOException 写出失败时抛出
+     */
+    public void writePlaceholder(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.setContentType("image/png");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(fetchProperties.getRetryAfterSeconds()));
+        response.setContentLength(PLACEHOLDER_PNG.length);
+        response.getOutputStream().write(PLACEHOLDER_PNG);
+    }
+
+    /**
+     * 对象文件名即内容 SHA-256，取前 16 字节，与 {@link FaviconByteCache} 的 ETag 一致
+     */
+    private String packedEtag(Path path) {
+        return "\"" + path.getFileName().toString().substring(0, 32) + "\"";
+    }
+
+    private void writeEntry(HttpServletRequest request, HttpServletResponse response, Path path,
+                            FaviconByteCache.Entry entry) throws IOException {
+        if (checkNotModified(request, response, path, entry.etag(), entry.lastModified())) {
+            return;
+        }
+        response.setContentLength(entry.length());
+        ByteBuffer content = entry.content().duplicate();
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    /**
+     * 设置缓存相关响应头，并处理 If-None-Match / If-Modified-Since
+     *
+     * @return 命中条件请求（已设置 304）返回true
+     */
+    private boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, Path path,
+                                     String etag, long lastModified) {
+        response.setContentType(determineContentType(path.getFileName().toString()));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        return new ServletWebRequest(request, response).checkNotModified(etag, lastModified);
+    }
+
+    private void sendFile(HttpServletRequest request, HttpServletResponse response, Path path, long size)
+            throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long transferred = fileChannel.transferTo(position, size - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * 根据文件扩展名确定Content-Type
+     *
+     * @param filename 文件名
+     * @return MIME类型字符串
+     */
+    private String determineContentType(String filename) {
+        if (filename == null) {
+            return "image/png";
+        }
+
+        String lowerFilename = filename.toLowerCase();
+        if (lowerFilename.endsWith(".png")) {
+            return "image/png";
+        } else if (lowerFilename.endsWith(".jpg") || lowerFilename.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (lowerFilename.endsWith(".gif")) {
+            return "image/gif";
+        } else if (lowerFilename.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else if (lowerFilename.endsWith(".ico")) {
+            return "image/x-icon";
+        } else if (lowerFilename.endsWith(".webp")) {
+            return "image/webp";
+        }
+
+        return "image/png"; // 默认类型
+    }
+}
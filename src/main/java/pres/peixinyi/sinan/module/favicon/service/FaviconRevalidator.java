@@ -0,0 +1,101 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+import pres.peixinyi.sinan.module.favicon.config.FaviconRevalidateProperties;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Favicon后台重新验证任务
+ * 定时领取 {@link FaviconValidatorStore} 中已到期的域名，向上游发送条件请求：
+ * 未变化时按有效期（带抖动）安排下次验证，返回新内容时替换缓存，失败时指数退避并继续使用旧图标。
+ * 只在获取线程池空闲时提交少量任务，不与请求触发的获取争抢线程。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconRevalidator {
+
+    /**
+     * 获取线程繁忙时领取到的域名稍后重试
+     */
+    private static final long BUSY_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * 本节点没有缓存该图标时放回计划，由缓存了它的节点领取
+     */
+    private static final long NOT_CACHED_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final FaviconRevalidateProperties properties;
+
+    private final FaviconFetchProperties fetchProperties;
+
+    private final FaviconValidatorStore validatorStore;
+
+    private final FaviconCacheService faviconCacheService;
+
+    private final FaviconFetchExecutor faviconFetchExecutor;
+
+    @Scheduled(fixedDelayString = "${favicon.revalidate.interval:30000}",
+            initialDelayString = "${favicon.revalidate.interval:30000}")
+    public void revalidateDue() {
+        if (!properties.isEnabled() || isFetchPoolBusy()) {
+            return;
+        }
+        try {
+            List<String> due = validatorStore.claimDue(Math.max(1, properties.getBatchSize()));
+            for (String baseName : due) {
+                submit(baseName);
+            }
+        } catch (Exception e) {
+            log.error("Favicon revalidation round failed", e);
+        }
+    }
+
+    private void submit(String baseName) {
+        FaviconValidatorStore.Validators validators = validatorStore.get(baseName);
+        if (validators == null) {
+            // 校验值已过期或被清理，领取时已移出计划，不再验证
+            return;
+        }
+        if (faviconCacheService.findCachedByDomain(baseName) == null) {
+            // 图标缓存在各节点本地，校验值与计划是共享的：本节点没有该图标时不能删除共享状态，
+            // 放回计划留给其他节点；所有节点都不再缓存时校验值会按过期时间清理
+            validatorStore.postpone(baseName, NOT_CACHED_RETRY_MILLIS);
+            return;
+        }
+        boolean accepted = !isFetchPoolBusy() && faviconFetchExecutor.submit(validators.iconUrl(),
+                () -> revalidate(baseName, validators));
+        if (!accepted) {
+            validatorStore.postpone(baseName, BUSY_RETRY_MILLIS);
+        }
+    }
+
+    private void revalidate(String baseName, FaviconValidatorStore.Validators validators) {
+        try {
+            FaviconCacheService.RefreshResult result = faviconCacheService.refreshIcon(baseName, validators);
+            if (result == FaviconCacheService.RefreshResult.FAILED) {
+                validatorStore.markFailed(baseName);
+            }
+            log.debug("Favicon revalidated: {} -> {}", baseName, result);
+        } catch (Exception e) {
+            log.warn("Failed to revalidate favicon for {}", baseName, e);
+        }
+    }
+
+    /**
+     * 有排队任务或超过一半线程在工作时视为繁忙，把线程留给请求触发的获取
+     */
+    private boolean isFetchPoolBusy() {
+        return faviconFetchExecutor.getQueueSize() > 0
+                || faviconFetchExecutor.getActiveCount() * 2 >= Math.max(1, fetchProperties.getThreads());
+    }
+}
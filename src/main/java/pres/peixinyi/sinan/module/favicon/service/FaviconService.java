@@ -2,7 +2,6 @@ package pres.peixinyi.sinan.module.favicon.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import pres.peixinyi.sinan.module.favicon.dto.FaviconExtractResult;
 import pres.peixinyi.sinan.module.favicon.dto.FaviconInfo;
@@ -10,11 +9,13 @@ import pres.peixinyi.sinan.utils.RedisUtils;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Favicon服务类
@@ -31,12 +32,22 @@ public class FaviconService {
     private final FaviconExtractor faviconExtractor;
     private final FaviconCacheService faviconCacheService;
     private final RedisUtils redisUtils;
+    private final FaviconFetchExecutor faviconFetchExecutor;
+    private final FaviconFailureMarks failureMarks;
 
-    @Value("${sinan.server.base-url:http://localhost:8080}")
-    private String baseUrl;
+    private static final String FETCH_LEASE_PREFIX = "favicon:lease:";
+    private static final long FETCH_LEASE_SECONDS = 60;
 
-    private static final String FAILED_FAVICON_PREFIX = "favicon:failed:";
-    private static final long FAILED_FAVICON_TTL = 1; // 1 day
+    /**
+     * 尺寸参数格式：32 或 32@2x
+     */
+    private static final Pattern SIZE_PARAM_PATTERN = Pattern.compile("^(\\d{1,4})(?:@(\\d(?:\\.\\d{1,2})?)x)?$");
+    private static final double MAX_DEVICE_PIXEL_RATIO = 4;
+
+    /**
+     * 本节点内进行中的获取，key 为清理后的域名
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlightFetches = new ConcurrentHashMap<>();
 
     /**
      * 获取指定URL的favicon信息（不缓存）
@@ -121,96 +132,129 @@ public class FaviconService {
     }
 
     /**
-     * 根据域名和尺寸获取favicon
-     * 优先返回本地缓存，如果没有缓存则尝试获取并缓存
+     * 解析请求的图标尺寸，支持设备像素比写法
+     * 如 32 -> 32，32@2x -> 64，16@1.5x -> 24
+     *
+     * @param sz 尺寸参数
+     * @return 实际像素尺寸，参数为空或格式错误时返回null
+     */
+    public Integer parseRequestedSize(String sz) {
+        if (sz == null || sz.trim().isEmpty()) {
+            return null;
+        }
+        Matcher matcher = SIZE_PARAM_PATTERN.matcher(sz.trim().toLowerCase());
+        if (!matcher.matches()) {
+            log.debug("Invalid favicon size parameter: {}", sz);
+            return null;
+        }
+        int size = Integer.parseInt(matcher.group(1));
+        double dpr = matcher.group(2) != null ? Double.parseDouble(matcher.group(2)) : 1;
+        if (size <= 0 || dpr <= 0 || dpr > MAX_DEVICE_PIXEL_RATIO) {
+            return null;
+        }
+        return (int) Math.ceil(size * dpr);
+    }
+
+    /**
+     * 查询已缓存的favicon，未缓存时在后台获取，不等待获取结果
+     * 供图标接口使用：未命中时立即返回，客户端下次请求时取到真实图标
      *
      * @param domain 域名，如 vitepress.dev
      * @param size   图标尺寸，可为null
-     * @return 缓存文件的本地路径或图标URL
+     * @return 缓存文件的本地路径，未缓存返回null
      */
-    public String getFaviconByDomainAndSize(String domain, Integer size) {
+    public String getCachedFaviconOrFetchInBackground(String domain, Integer size) {
         if (domain == null || domain.trim().isEmpty()) {
             return null;
         }
 
-        try {
-            // 先检查是否已有缓存
-            String cachedPath = getCachedFaviconPathByDomain(domain);
-            if (cachedPath != null) {
-                return cachedPath;
-            }
-
-            // 检查是否是获取失败的域名（一天内不重试）
-            String failedKey = FAILED_FAVICON_PREFIX + sanitizeDomain(domain);
-            if (redisUtils.hasKey(failedKey)) {
-                log.debug("Domain {} is marked as failed, skipping retry within 1 day", domain);
-                return null;
-            }
-
-            // 没有缓存，尝试获取并缓存
-            String url = domain.startsWith("http") ? domain : "https://" + domain;
-            FaviconExtractResult result = getFavicon(url);
-
-            if (result.isSuccess() && result.getBestFavicon() != null) {
-                FaviconInfo bestFavicon = result.getBestFavicon();
-
-                // 如果指定了尺寸，尝试找到匹配尺寸的图标
-                if (size != null && result.getFaviconList() != null) {
-                    FaviconInfo sizedFavicon = findFaviconBySize(result.getFaviconList(), size);
-                    if (sizedFavicon != null) {
-                        bestFavicon = sizedFavicon;
-                    }
-                }
-
-                // 缓存图标（带尺寸信息）
-                String iconUrl = bestFavicon.getUrl();
-                String cachedFilePath = faviconCacheService.cacheIcon(iconUrl, size);
-
-                // 返回缓存路径或原URL
-                return cachedFilePath != null ? cachedFilePath : iconUrl;
-            } else {
-                // 获取失败，记录到Redis，一天内不再重试
-                markDomainAsFailed(domain);
-                log.warn("Failed to get favicon for domain: {}, marked as failed for 1 day", domain);
-            }
-
-        } catch (Exception e) {
-            log.error("Failed to get favicon by domain and size: {} ({})", domain, size, e);
-            // 异常情况也记录为失败
-            markDomainAsFailed(domain);
+        String cachedPath = faviconCacheService.resolveCachedIcon(domain, size);
+        if (cachedPath != null) {
+            return cachedPath;
+        }
+        if (!isDomainMarkedAsFailed(domain) && submitFetch(domain, size) == null) {
+            log.debug("Favicon fetch for domain {} was not accepted, client will retry", domain);
         }
-
         return null;
     }
 
     /**
-     * 根据域名和尺寸获取favicon的服务器访问URL
-     * 返回格式：sinan.server.base-url/favicon/xxx
+     * 提交后台获取，同一域名同一时刻只获取一次favicon
+     * 本节点内通过进行中的 future 合并请求，跨节点通过 Redis 租约去重：
+     * 未拿到租约的节点直接结束，不占用线程池等待，由客户端稍后重试。
+     * 外部请求都在 {@link FaviconFetchExecutor} 中执行，不占用调用线程。
      *
-     * @param domain 域名，如 vitepress.dev
+     * @param domain 域名
      * @param size   图标尺寸，可为null
-     * @return 服务器上favicon的访问URL
+     * @return 获取结果（缓存文件的本地路径或图标URL，失败为null）；线程池拒绝时返回null
      */
-    public String getFaviconUrlByDomainAndSize(String domain, Integer size) {
-        if (domain == null || domain.trim().isEmpty()) {
+    private CompletableFuture<String> submitFetch(String domain, Integer size) {
+        String key = sanitizeDomain(domain);
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlightFetches.putIfAbsent(key, flight);
+        if (existing != null) {
+            log.debug("Joining in-flight favicon fetch for domain: {}", domain);
+            return existing;
+        }
+
+        boolean accepted = faviconFetchExecutor.submit(domain, () -> {
+            try {
+                flight.complete(fetchWithLease(domain, size));
+            } catch (RuntimeException e) {
+                flight.completeExceptionally(e);
+            } finally {
+                inFlightFetches.remove(key, flight);
+            }
+        });
+        if (!accepted) {
+            inFlightFetches.remove(key, flight);
+            flight.complete(null);
             return null;
         }
+        return flight;
+    }
 
+    /**
+     * 持有 Redis 租约时获取并缓存favicon，租约被其他节点持有时直接结束
+     */
+    private String fetchWithLease(String domain, Integer size) {
+        String leaseKey = FETCH_LEASE_PREFIX + sanitizeDomain(domain);
+        String leaseValue = UUID.randomUUID().toString();
+        boolean leased;
         try {
-            // 先检查是否已有缓存（带尺寸）
-            String cachedPath = getCachedFaviconPathByDomainAndSize(domain, size);
-            if (cachedPath != null) {
-                return convertToServerUrl(cachedPath);
-            }
+            leased = redisUtils.setIfAbsent(leaseKey, leaseValue, FETCH_LEASE_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // Redis 不可用时退化为仅本节点合并
+            log.warn("Failed to acquire favicon fetch lease for domain: {}", domain, e);
+            return fetchAndCacheFavicon(domain, size);
+        }
 
-            // 检查是否是获取失败的域名（一天内不重试）
-            String failedKey = FAILED_FAVICON_PREFIX + sanitizeDomain(domain);
-            if (redisUtils.hasKey(failedKey)) {
-                log.debug("Domain {} is marked as failed, skipping retry within 1 day", domain);
-                return null;
+        if (!leased) {
+            log.debug("Favicon fetch for domain {} is leased by another node", domain);
+            return null;
+        }
+        try {
+            return fetchAndCacheFavicon(domain, size);
+        } finally {
+            try {
+                if (leaseValue.equals(redisUtils.get(leaseKey))) {
+                    redisUtils.delete(leaseKey);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to release favicon fetch lease for domain: {}", domain, e);
             }
+        }
+    }
 
-            // 没有缓存，尝试获取并缓存
+    /**
+     * 获取并缓存favicon，失败时标记域名
+     *
+     * @param domain 域名
+     * @param size   图标尺寸，可为null
+     * @return 缓存文件的本地路径或图标URL，获取失败返回null
+     */
+    private String fetchAndCacheFavicon(String domain, Integer size) {
+        try {
             String url = domain.startsWith("http") ? domain : "https://" + domain;
             FaviconExtractResult result = getFavicon(url);
 
@@ -225,23 +269,26 @@ public class FaviconService {
                     }
                 }
 
-                // 缓存图标（带尺寸信息）
+                // 缓存图标，尺寸由调用方从缓存中选择
                 String iconUrl = bestFavicon.getUrl();
-                String cachedFilePath = faviconCacheService.cacheIcon(iconUrl, size);
-
+                String cachedFilePath = faviconCacheService.cacheIconForDomain(domain, iconUrl);
                 if (cachedFilePath != null) {
-                    return convertToServerUrl(cachedFilePath);
+                    resetFailureCount(domain);
                 }
+
+                // 返回缓存路径或原URL
+                return cachedFilePath != null ? cachedFilePath : iconUrl;
             } else {
-                // 获取失败，记录到Redis，一天内不再重试
-                markDomainAsFailed(domain);
-                log.warn("Failed to get favicon URL for domain: {}, marked as failed for 1 day", domain);
+                // 获取失败，记录到Redis，退避期内不再重试
+                markDomainAsFailed(domain, result.getErrorMessage() != null
+                        ? result.getErrorMessage() : "No favicon found");
+                log.warn("Failed to get favicon for domain: {}, marked as failed", domain);
             }
 
         } catch (Exception e) {
-            log.error("Failed to get favicon URL by domain and size: {} ({})", domain, size, e);
+            log.error("Failed to fetch favicon for domain: {} ({})", domain, size, e);
             // 异常情况也记录为失败
-            markDomainAsFailed(domain);
+            markDomainAsFailed(domain, e.getClass().getSimpleName() + ": " + e.getMessage());
         }
 
         return null;
@@ -288,8 +335,6 @@ public class FaviconService {
         }
 
         try {
-            String sanitizedDomain = sanitizeDomain(domain);
-            String fileName = sanitizedDomain.replace(".", "_") + ".png";
             return faviconCacheService.getCachedIconPath("https://" + domain + "/favicon.ico");
         } catch (Exception e) {
             log.error("Failed to get cached favicon by domain: {}", domain, e);
@@ -315,22 +360,8 @@ public class FaviconService {
                 return getCachedFaviconPathByDomain(domain);
             }
 
-            // 构造带尺寸的文件路径进行查找
-            String sanitizedDomain = sanitizeDomain(domain);
-            Path cacheDir = Paths.get(faviconCacheService.getCacheDir());
-            String baseFileName = sanitizedDomain.replace(".", "_");
-            
-            // 检查各种可能的文件扩展名
-            String[] extensions = {".png", ".jpg", ".ico", ".svg", ".webp", ".gif"};
-            for (String ext : extensions) {
-                String fileName = baseFileName + "_" + size + ext;
-                Path filePath = cacheDir.resolve(fileName);
-                if (Files.exists(filePath)) {
-                    return filePath.toAbsolutePath().toString();
-                }
-            }
-            
-            return null;
+            // 从缓存索引中选择不小于该尺寸的最近尺寸，缺失时按需生成
+            return faviconCacheService.resolveCachedIcon(domain, size);
         } catch (Exception e) {
             log.error("Failed to get cached favicon by domain and size: {} ({})", domain, size, e);
             return null;
@@ -408,6 +439,25 @@ public class FaviconService {
         return parsedUrl.getHost();
     }
 
+    /**
+     * 从书签URL中提取域名，没有协议时按 https 解析
+     *
+     * @param url 书签URL
+     * @return 小写域名，无法解析返回null
+     */
+    public String domainOf(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = url.trim();
+        try {
+            String host = extractDomain(trimmed.contains("://") ? trimmed : "https://" + trimmed);
+            return host == null || host.isEmpty() ? null : host.toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
     /**
      * 清理域名字符串，确保可以作为文件名使用
      * 将不安全的字符替换为下划线
@@ -529,60 +579,41 @@ public class FaviconService {
     }
 
     /**
-     * 将本地文件路径转换为服务器访问URL
-     * 格式：sinan.server.base-url/favicon/文件名
+     * 标记域名为获取失败，退避期内不再重试
+     * 退避时长从 favicon.revalidate.failure-backoff-minutes 开始，每次连续失败翻倍，不超过上限
      *
-     * @param localPath 本地文件路径
-     * @return 服务器访问URL
+     * @param domain 域名
+     * @param reason 失败原因
      */
-    private String convertToServerUrl(String localPath) {
-        if (localPath == null) {
-            return null;
-        }
-
+    private void markDomainAsFailed(String domain, String reason) {
         try {
-            // 从本地路径中提取文件名
-            String fileName = localPath.substring(localPath.lastIndexOf("/") + 1);
-            
-            // 如果文件名是Windows路径格式，也要处理
-            if (fileName.equals(localPath) && localPath.contains("\\")) {
-                fileName = localPath.substring(localPath.lastIndexOf("\\") + 1);
-            }
-
-            // 构造服务器URL，添加context-path前缀
-            String serverUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
-            return serverUrl + "/api/favicon/" + fileName;
-
+            FaviconFailureMarks.FailureMark mark = failureMarks.mark(sanitizeDomain(domain), reason);
+            log.debug("Marked domain {} as failed until {} (failure #{}): {}",
+                    domain, mark.until(), mark.attempts(), mark.reason());
         } catch (Exception e) {
-            log.error("Failed to convert local path to server URL: {}", localPath, e);
-            return null;
+            log.error("Failed to mark domain as failed in Redis: {}", domain, e);
         }
     }
 
     /**
-     * 标记域名为获取失败，一天内不再重试
-     *
-     * @param domain 域名
+     * 获取成功后清除失败记录与连续失败次数
      */
-    private void markDomainAsFailed(String domain) {
+    private void resetFailureCount(String domain) {
         try {
-            String failedKey = FAILED_FAVICON_PREFIX + sanitizeDomain(domain);
-            redisUtils.setEx(failedKey, "1", FAILED_FAVICON_TTL, TimeUnit.DAYS);
-            log.debug("Marked domain {} as failed for {} day(s)", domain, FAILED_FAVICON_TTL);
+            failureMarks.clearIfPresent(sanitizeDomain(domain));
         } catch (Exception e) {
-            log.error("Failed to mark domain as failed in Redis: {}", domain, e);
+            log.warn("Failed to reset favicon failure count for domain: {}", domain, e);
         }
     }
 
     /**
-     * 清除域名的失败标记
+     * 清除域名的失败标记，并通知其他节点丢弃本地缓存
      *
      * @param domain 域名
      */
     public void clearFailedMark(String domain) {
         try {
-            String failedKey = FAILED_FAVICON_PREFIX + sanitizeDomain(domain);
-            redisUtils.delete(failedKey);
+            failureMarks.clear(sanitizeDomain(domain));
             log.debug("Cleared failed mark for domain: {}", domain);
         } catch (Exception e) {
             log.error("Failed to clear failed mark for domain: {}", domain, e);
@@ -591,17 +622,12 @@ public class FaviconService {
 
     /**
      * 检查域名是否被标记为失败
+     * 优先使用本地缓存，已知失败的域名在退避期内不访问 Redis
      *
      * @param domain 域名
      * @return true if domain is marked as failed, false otherwise
      */
     public boolean isDomainMarkedAsFailed(String domain) {
-        try {
-            String failedKey = FAILED_FAVICON_PREFIX + sanitizeDomain(domain);
-            return redisUtils.hasKey(failedKey);
-        } catch (Exception e) {
-            log.error("Failed to check if domain is marked as failed: {}", domain, e);
-            return false;
-        }
+        return failureMarks.isMarked(sanitizeDomain(domain));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,335 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Favicon雪碧图
+ * 把一组域名已缓存的图标按域名排序拼成一张 PNG，并给出每个域名在图中的坐标，
+ * 图标取自 {@link FaviconCacheService} 已生成的对应尺寸文件。
+ * 结果按调用方的键（如空间ID）缓存在内存中：域名集合或尺寸变化时重新生成；
+ * 生成时有未缓存的图标会提交后台获取，过一段时间后再次请求时重新生成以补上。
+ * 生成在 {@link FaviconImageExecutor} 中异步进行，请求线程不等待：需要重新生成时先返回旧版，
+ * 还没有任何版本时返回不含图标的空图（所有域名列为未缓存，客户端改用单个图标接口）。
+ * 坐标与图片分两次请求，期间可能重新生成，因此每个键还保留被替换的上一版，按内容哈希取图时两版都可命中。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconSpriteService {
+
+    private static final int DEFAULT_TILE_SIZE = 32;
+    private static final int MAX_TILE_SIZE = 64;
+
+    /**
+     * 图标在雪碧图中的位置
+     *
+     * @param x 左上角横坐标
+     * @param y 左上角纵坐标
+     */
+    public record Tile(int x, int y) {
+    }
+
+    /**
+     * 雪碧图
+     *
+     * @param png         PNG内容
+     * @param etag        内容哈希 ETag（带引号）
+     * @param tileSize    每个图标的边长
+     * @param columns     列数
+     * @param tiles       域名 -> 位置，不在其中的域名客户端改用单个图标接口
+     * @param missing     生成时尚未缓存的域名
+     * @param fingerprint 域名集合与尺寸的摘要
+     * @param builtAt     生成时间（毫秒）
+     */
+    public record Sprite(byte[] png, String etag, int tileSize, int columns, Map<String, Tile> tiles,
+                         List<String> missing, String fingerprint, long builtAt) {
+
+        public int width() {
+            return columns * tileSize;
+        }
+
+        public int height() {
+            return Math.max(1, (tiles.size() + columns - 1) / columns) * tileSize;
+        }
+    }
+
+    private final FaviconService faviconService;
+
+    private final FaviconStore store;
+
+    private final FaviconPngEncoder pngEncoder;
+
+    private final FaviconImageExecutor imageExecutor;
+
+    /**
+     * 最多缓存的雪碧图数量
+     */
+    @Value("${favicon.sprite.max-entries:256}")
+    private int maxEntries;
+
+    /**
+     * 单张雪碧图最多包含的图标数
+     */
+    @Value("${favicon.sprite.max-icons:1000}")
+    private int maxIcons;
+
+    /**
+     * 有未缓存图标时，距上次生成超过该时长（秒）再次请求则重新生成
+     */
+    @Value("${favicon.sprite.missing-rebuild-seconds:30}")
+    private long missingRebuildSeconds;
+
+    private final LinkedHashMap<String, Sprite> sprites = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * 每个键被替换或失效的上一版雪碧图，与 {@link #sprites} 共用同一把锁
+     */
+    private final LinkedHashMap<String, Sprite> retiredSprites = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final ConcurrentHashMap<String, CompletableFuture<Sprite>> inFlightBuilds = new ConcurrentHashMap<>();
+
+    /**
+     * 尺寸 -> 空图 PNG
+     */
+    private final ConcurrentHashMap<Integer, byte[]> emptyPngs = new ConcurrentHashMap<>();
+
+    /**
+     * 获取雪碧图，缓存有效时直接返回，否则在后台重新生成
+     *
+     * @param key      缓存键，如 space:&lt;空间ID&gt;
+     * @param domains  域名集合，重复与空值会被忽略
+     * @param tileSize 图标边长（已乘以设备像素比），为null时使用32
+     * @return 雪碧图；重新生成期间返回旧版，还没有任何版本时返回空图
+     */
+    public Sprite getSprite(String key, Collection<String> domains, Integer tileSize) {
+        int size = tileSize == null || tileSize <= 0 ? DEFAULT_TILE_SIZE : Math.min(tileSize, MAX_TILE_SIZE);
+        List<String> sorted = normalize(domains);
+        String fingerprint = fingerprint(sorted, size);
+        String cacheKey = key + "@" + size;
+
+        Sprite cached;
+        synchronized (sprites) {
+            cached = sprites.get(cacheKey);
+        }
+        if (cached != null && isFresh(cached, fingerprint)) {
+            return cached;
+        }
+
+        CompletableFuture<Sprite> flight = inFlightBuilds.computeIfAbsent(cacheKey, k ->
+                CompletableFuture.supplyAsync(() -> buildAndCache(cacheKey, sorted, size, fingerprint), imageExecutor));
+        flight.whenComplete((sprite, e) -> {
+            inFlightBuilds.remove(cacheKey, flight);
+            if (e != null) {
+                log.warn("Failed to build favicon sprite {}", cacheKey, e);
+            }
+        });
+        // 生成已完成（如线程池繁忙时由当前线程执行）时直接使用
+        Sprite built = flight.isDone() && !flight.isCompletedExceptionally() ? flight.join() : null;
+        if (built != null) {
+            return built;
+        }
+        return cached != null ? cached : emptySprite(sorted, size, fingerprint);
+    }
+
+    /**
+     * 按内容哈希获取指定版本的雪碧图
+     * 先查当前版本、上一版与空图，都不匹配时按当前书签获取（必要时触发重新生成）后再比较
+     *
+     * @param key      缓存键，如 space:&lt;空间ID&gt;
+     * @param domains  域名集合
+     * @param tileSize 图标边长，与获取坐标时一致
+     * @param version  坐标接口返回的内容哈希（不带引号）
+     * @return 雪碧图，该版本已不存在时返回null
+     */
+    public Sprite getSpriteVersion(String key, Collection<String> domains, Integer tileSize, String version) {
+        int size = tileSize == null || tileSize <= 0 ? DEFAULT_TILE_SIZE : Math.min(tileSize, MAX_TILE_SIZE);
+        String cacheKey = key + "@" + size;
+        String etag = "\"" + version + "\"";
+        synchronized (sprites) {
+            for (Sprite sprite : new Sprite[]{sprites.get(cacheKey), retiredSprites.get(cacheKey)}) {
+                if (sprite != null && sprite.etag().equals(etag)) {
+                    return sprite;
+                }
+            }
+        }
+        List<String> sorted = normalize(domains);
+        Sprite empty = emptySprite(sorted, size, fingerprint(sorted, size));
+        if (empty.etag().equals(etag)) {
+            return empty;
+        }
+        Sprite current = getSprite(key, domains, size);
+        return current.etag().equals(etag) ? current : null;
+    }
+
+    private Sprite buildAndCache(String cacheKey, List<String> domains, int tileSize, String fingerprint) {
+        Sprite sprite = build(domains, tileSize, fingerprint);
+        synchronized (sprites) {
+            retire(cacheKey, sprites.put(cacheKey, sprite));
+            if (sprites.size() > maxEntries) {
+                sprites.remove(sprites.keySet().iterator().next());
+            }
+        }
+        return sprite;
+    }
+
+    /**
+     * 不含图标的空图，所有域名列为未缓存；内容只与尺寸有关，不进入缓存
+     */
+    private Sprite emptySprite(List<String> domains, int tileSize, String fingerprint) {
+        byte[] png = emptyPng(tileSize);
+        return new Sprite(png, "\"" + HashUtils.shortSha256(png) + "\"", tileSize, 1, Map.of(),
+                List.copyOf(domains), fingerprint, System.currentTimeMillis());
+    }
+
+    private byte[] emptyPng(int tileSize) {
+        return emptyPngs.computeIfAbsent(tileSize, size -> {
+            try {
+                return pngEncoder.encode(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB), "sprite");
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to encode empty favicon sprite", e);
+            }
+        });
+    }
+
+    /**
+     * 使某个键下所有尺寸的雪碧图失效
+     * 失效的版本仍保留为上一版，已拿到坐标的客户端可以取到对应的图片
+     *
+     * @param key 缓存键
+     */
+    public void invalidate(String key) {
+        synchronized (sprites) {
+            Iterator<Map.Entry<String, Sprite>> iterator = sprites.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Sprite> entry = iterator.next();
+                if (entry.getKey().startsWith(key + "@")) {
+                    retire(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 保留被替换的版本，调用方需持有 {@link #sprites} 的锁
+     */
+    private void retire(String cacheKey, Sprite previous) {
+        if (previous == null) {
+            return;
+        }
+        retiredSprites.put(cacheKey, previous);
+        if (retiredSprites.size() > maxEntries) {
+            retiredSprites.remove(retiredSprites.keySet().iterator().next());
+        }
+    }
+
+    private boolean isFresh(Sprite sprite, String fingerprint) {
+        if (!sprite.fingerprint().equals(fingerprint)) {
+            return false;
+        }
+        return sprite.missing().isEmpty()
+                || System.currentTimeMillis() - sprite.builtAt() < TimeUnit.SECONDS.toMillis(missingRebuildSeconds);
+    }
+
+    private Sprite build(List<String> domains, int tileSize, String fingerprint) {
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String domain : domains) {
+            BufferedImage image = readCachedImage(domain, tileSize);
+            if (image != null) {
+                images.put(domain, image);
+            } else {
+                missing.add(domain);
+            }
+        }
+
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(images.size())));
+        int rows = Math.max(1, (images.size() + columns - 1) / columns);
+        BufferedImage atlas = new BufferedImage(columns * tileSize, rows * tileSize, BufferedImage.TYPE_INT_ARGB);
+        Map<String, Tile> tiles = new LinkedHashMap<>();
+        Graphics2D g2d = atlas.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            int index = 0;
+            for (Map.Entry<String, BufferedImage> entry : images.entrySet()) {
+                Tile tile = new Tile((index % columns) * tileSize, (index / columns) * tileSize);
+                g2d.drawImage(entry.getValue(), tile.x(), tile.y(), tileSize, tileSize, null);
+                tiles.put(entry.getKey(), tile);
+                index++;
+            }
+        } finally {
+            g2d.dispose();
+        }
+
+        try {
+            byte[] png = pngEncoder.encode(atlas, "sprite");
+            log.debug("Built favicon sprite with {} icon(s), {} missing, {} bytes", tiles.size(), missing.size(),
+                    png.length);
+            return new Sprite(png, "\"" + HashUtils.shortSha256(png) + "\"", tileSize, columns, Collections.unmodifiableMap(tiles),
+                    Collections.unmodifiableList(missing), fingerprint, System.currentTimeMillis());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode favicon sprite", e);
+        }
+    }
+
+    /**
+     * 读取域名已缓存的图标，未缓存时提交后台获取；SVG 等无法解码的文件视为未缓存
+     */
+    private BufferedImage readCachedImage(String domain, int tileSize) {
+        String cachedPath = faviconService.getCachedFaviconOrFetchInBackground(domain, tileSize);
+        if (cachedPath == null || !cachedPath.endsWith(".png")) {
+            return null;
+        }
+        try (InputStream input = store.newInputStream(Paths.get(cachedPath))) {
+            return ImageIO.read(input);
+        } catch (Exception e) {
+            log.debug("Failed to read cached favicon {} for sprite: {}", cachedPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private List<String> normalize(Collection<String> domains) {
+        TreeSet<String> sorted = new TreeSet<>();
+        if (domains != null) {
+            for (String domain : domains) {
+                if (domain != null && !domain.trim().isEmpty()) {
+                    sorted.add(domain.trim().toLowerCase());
+                }
+            }
+        }
+        List<String> result = new ArrayList<>(sorted);
+        return result.size() > maxIcons ? result.subList(0, maxIcons) : result;
+    }
+
+    private String fingerprint(List<String> domains, int tileSize) {
+        return HashUtils.shortSha256((tileSize + "\n" + String.join("\n", domains)).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,471 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Favicon内容寻址存储
+ * 图片按内容 SHA-256 存放在 store/objects/ab/cd/&lt;sha256&gt;.&lt;ext&gt;，相同内容只保存一份；
+ * 域名与尺寸到内容的映射记录在 store/index.log（追加写，启动时回放并压缩，运行中失效记录过多时也会压缩），
+ * 回放结果写入 {@link FaviconCacheIndex}，查询时仍只需一次内存查找。
+ * 对象的引用计数在内存中维护，没有映射引用时删除对象文件。
+ * 开启打包存储时小图标写入 {@link FaviconPackStore} 的段文件，索引中仍登记同样规则的对象路径。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+public class FaviconStore {
+
+    private static final String STORE_DIR = "store";
+    private static final String OBJECTS_DIR = "objects";
+    private static final String TMP_DIR = "tmp";
+    private static final String INDEX_LOG = "index.log";
+
+    private static final String OP_PUT = "P";
+    private static final String OP_DELETE = "D";
+    private static final String OP_DELETE_PREFIX = "X";
+    private static final String NO_SIZE = "-";
+
+    /**
+     * 日志中失效记录（已被覆盖或删除）超过该数量且多于有效记录时压缩日志
+     */
+    private static final int COMPACT_MIN_DEAD_ENTRIES = 10_000;
+
+    /**
+     * 写入内容的操作
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(Path tempPath) throws IOException;
+    }
+
+    private final FaviconCacheIndex cacheIndex;
+
+    private final FaviconPackStore packStore;
+
+    @Value("${favicon.cache.dir:upload/icons}")
+    private String cacheDir;
+
+    /**
+     * 缓存键 -> 对象相对路径，如 ab/cd/abcd....png
+     */
+    private final Map<FaviconCacheIndex.CacheKey, String> mappings = new HashMap<>();
+
+    /**
+     * 对象相对路径 -> 引用数
+     */
+    private final Map<String, Integer> refCounts = new HashMap<>();
+
+    private Path storeDir;
+
+    private BufferedWriter logWriter;
+
+    /**
+     * 日志当前的记录数
+     */
+    private long logEntries;
+
+    public FaviconStore(FaviconCacheIndex cacheIndex, FaviconPackStore packStore) {
+        this.cacheIndex = cacheIndex;
+        this.packStore = packStore;
+    }
+
+    /**
+     * 回放映射日志并压缩，结果写入缓存索引
+     * 依赖 {@link FaviconCacheIndex} 先完成旧式文件扫描，存储中的映射覆盖同名旧文件
+     */
+    @PostConstruct
+    public synchronized void load() throws IOException {
+        storeDir = Paths.get(cacheDir, STORE_DIR).toAbsolutePath();
+        Files.createDirectories(storeDir.resolve(TMP_DIR));
+        clearTempFiles();
+
+        Path logPath = storeDir.resolve(INDEX_LOG);
+        if (Files.exists(logPath)) {
+            try (Stream<String> lines = Files.lines(logPath, StandardCharsets.UTF_8)) {
+                lines.forEach(this::replay);
+            }
+        }
+        // 只保留仍存在的对象
+        mappings.values().removeIf(object -> !objectExists(object));
+        refCounts.clear();
+        mappings.values().forEach(object -> refCounts.merge(object, 1, Integer::sum));
+        packStore.retainOnly(refCounts.keySet());
+        mappings.forEach((key, object) -> cacheIndex.put(key, objectPath(object)));
+
+        compactLog(logPath);
+        openLog(logPath);
+        log.info("Favicon store loaded: {} mappings, {} objects", mappings.size(), refCounts.size());
+    }
+
+    /**
+     * 写入一个缓存文件
+     *
+     * @param logicalName 逻辑文件名，如 www_baidu_com_32.png、www_baidu_com.svg
+     * @param writer      写入临时文件的操作
+     * @return 存储后的对象文件路径
+     * @throws IOException 写入失败时抛出
+     */
+    public Path put(String logicalName, ContentWriter writer) throws IOException {
+        FaviconCacheIndex.CacheKey key = FaviconCacheIndex.parse(logicalName);
+        if (key == null) {
+            throw new IOException("不支持的缓存文件名: " + logicalName);
+        }
+        Path tempPath = Files.createTempFile(storeDir.resolve(TMP_DIR), "put", ".tmp");
+        try {
+            writer.write(tempPath);
+            // 哈希在锁外计算
+            String object = objectName(HashUtils.sha256(tempPath), extensionOf(logicalName));
+            return store(key, object, tempPath);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 把缓存目录下的旧式文件迁移进存储，迁移完成后删除原文件
+     * 存储中已有同一缓存键的映射（迁移开始后重新生成过）时直接删除旧文件；
+     * 上传目录默认与缓存目录相同，书签图标 icon_* 不是缓存文件，始终跳过
+     *
+     * @param legacyFile 旧式缓存文件
+     * @return 已迁移或已删除返回true，不是缓存文件返回false
+     * @throws IOException 读写失败时抛出
+     */
+    public boolean importLegacyFile(Path legacyFile) throws IOException {
+        String fileName = legacyFile.getFileName().toString();
+        if (FaviconCacheIndex.isUploadedFile(fileName)) {
+            return false;
+        }
+        FaviconCacheIndex.CacheKey key = FaviconCacheIndex.parse(fileName);
+        if (key == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (mappings.containsKey(key)) {
+                Files.deleteIfExists(legacyFile);
+                return true;
+            }
+        }
+        Path tempPath = Files.createTempFile(storeDir.resolve(TMP_DIR), "import", ".tmp");
+        try {
+            try {
+                Files.copy(legacyFile, tempPath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException e) {
+                // 迁移期间被清理
+                return true;
+            }
+            String object = objectName(HashUtils.sha256(tempPath), extensionOf(fileName));
+            synchronized (this) {
+                if (!mappings.containsKey(key)) {
+                    store(key, object, tempPath);
+                }
+            }
+            // 先更新索引再删除旧文件，迁移期间的读请求总能拿到可用路径
+            Files.deleteIfExists(legacyFile);
+            return true;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 删除一个缓存键
+     *
+     * @param baseName 文件名前缀
+     * @param size     尺寸，源文件为null
+     * @return 该键原先指向的对象文件，不存在返回null
+     */
+    public synchronized Path remove(String baseName, Integer size) {
+        String object = mappings.remove(new FaviconCacheIndex.CacheKey(baseName, size));
+        cacheIndex.remove(baseName, size);
+        if (object == null) {
+            return null;
+        }
+        appendLog(OP_DELETE, baseName, sizeToken(size));
+        release(object);
+        return objectPath(object);
+    }
+
+    /**
+     * 删除文件名前缀以 prefix 开头的所有缓存键
+     *
+     * @param prefix 文件名前缀
+     * @return 这些键原先指向的对象文件
+     */
+    public synchronized List<Path> removeByPrefix(String prefix) {
+        List<Path> removed = new ArrayList<>();
+        Iterator<Map.Entry<FaviconCacheIndex.CacheKey, String>> iterator = mappings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<FaviconCacheIndex.CacheKey, String> entry = iterator.next();
+            if (entry.getKey().baseName().startsWith(prefix)) {
+                removed.add(objectPath(entry.getValue()));
+                release(entry.getValue());
+                iterator.remove();
+            }
+        }
+        cacheIndex.removeByPrefix(prefix);
+        appendLog(OP_DELETE_PREFIX, prefix);
+        return removed;
+    }
+
+    /**
+     * 清空存储
+     */
+    public synchronized void clear() {
+        new ArrayList<>(refCounts.keySet()).forEach(this::deleteObject);
+        packStore.clear();
+        mappings.clear();
+        refCounts.clear();
+        appendLog(OP_DELETE_PREFIX, "");
+    }
+
+    /**
+     * 读取打包存储中的对象
+     * 打包对象没有单独的文件，索引中登记的是与文件对象相同规则的路径
+     *
+     * @param path 缓存索引中的路径
+     * @return 映射内存的只读切片，不是打包对象返回null
+     */
+    public ByteBuffer readPacked(Path path) {
+        String object = objectNameOf(path);
+        return object != null ? packStore.read(object) : null;
+    }
+
+    /**
+     * 打开缓存文件，打包对象与单独存放的文件都可读取
+     *
+     * @param path 缓存索引中的路径
+     * @return 输入流
+     * @throws IOException 文件不存在或读取失败时抛出
+     */
+    public InputStream newInputStream(Path path) throws IOException {
+        ByteBuffer packed = readPacked(path);
+        if (packed == null) {
+            return Files.newInputStream(path);
+        }
+        byte[] content = new byte[packed.remaining()];
+        packed.get(content);
+        return new ByteArrayInputStream(content);
+    }
+
+    /**
+     * 缓存文件占用的字节数，打包对象按其在段文件中的内容长度计算
+     *
+     * @param path 缓存索引中的路径
+     * @return 字节数，文件不存在返回-1
+     */
+    public long sizeOf(Path path) {
+        ByteBuffer packed = readPacked(path);
+        if (packed != null) {
+            return packed.remaining();
+        }
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 存储目录，旧式文件扫描与迁移时需跳过
+     */
+    public Path getStoreDir() {
+        return storeDir;
+    }
+
+    /**
+     * 登记映射并在内容不存在时保存对象
+     *
+     * @param object 由内容哈希得到的对象相对路径，调用方在锁外计算
+     */
+    private synchronized Path store(FaviconCacheIndex.CacheKey key, String object, Path tempPath)
+            throws IOException {
+        Path objectPath = objectPath(object);
+        // 相同内容已存在时只增加映射
+        if (!objectExists(object)) {
+            if (packStore.accepts(Files.size(tempPath))) {
+                packStore.append(object, Files.readAllBytes(tempPath));
+            } else {
+                Files.createDirectories(objectPath.getParent());
+                try {
+                    Files.move(tempPath, objectPath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, objectPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        String previous = mappings.put(key, object);
+        refCounts.merge(object, 1, Integer::sum);
+        cacheIndex.put(key, objectPath);
+        appendLog(OP_PUT, key.baseName(), sizeToken(key.size()), object);
+        if (previous != null) {
+            release(previous);
+        }
+        return objectPath;
+    }
+
+    private void release(String object) {
+        Integer remaining = refCounts.computeIfPresent(object, (name, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            deleteObject(object);
+        }
+    }
+
+    private void deleteObject(String object) {
+        if (packStore.delete(object)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(objectPath(object));
+        } catch (IOException e) {
+            log.warn("Failed to delete favicon object: {}", object, e);
+        }
+    }
+
+    private void replay(String line) {
+        String[] parts = line.split("\t");
+        try {
+            switch (parts[0]) {
+                case OP_PUT -> mappings.put(new FaviconCacheIndex.CacheKey(parts[1], parseSize(parts[2])), parts[3]);
+                case OP_DELETE -> mappings.remove(new FaviconCacheIndex.CacheKey(parts[1], parseSize(parts[2])));
+                case OP_DELETE_PREFIX -> {
+                    String prefix = parts.length > 1 ? parts[1] : "";
+                    mappings.keySet().removeIf(key -> key.baseName().startsWith(prefix));
+                }
+                default -> log.warn("Unknown favicon store log entry: {}", line);
+            }
+        } catch (RuntimeException e) {
+            // 进程中断时可能留下不完整的最后一行
+            log.warn("Skip malformed favicon store log entry: {}", line);
+        }
+    }
+
+    /**
+     * 用当前映射重写日志，去掉已被覆盖或删除的记录
+     */
+    private void compactLog(Path logPath) throws IOException {
+        Path tempPath = Files.createTempFile(storeDir.resolve(TMP_DIR), INDEX_LOG, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            for (Map.Entry<FaviconCacheIndex.CacheKey, String> entry : mappings.entrySet()) {
+                writer.write(String.join("\t", OP_PUT, entry.getKey().baseName(),
+                        sizeToken(entry.getKey().size()), entry.getValue()));
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(tempPath, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, logPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void openLog(Path logPath) throws IOException {
+        logWriter = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        logEntries = mappings.size();
+    }
+
+    /**
+     * 追加一条日志记录，调用方持有锁
+     */
+    private void appendLog(String... fields) {
+        try {
+            logWriter.write(String.join("\t", fields));
+            logWriter.newLine();
+            logWriter.flush();
+            logEntries++;
+        } catch (IOException e) {
+            log.error("Failed to append favicon store log", e);
+            return;
+        }
+        long deadEntries = logEntries - mappings.size();
+        if (deadEntries >= COMPACT_MIN_DEAD_ENTRIES && deadEntries > mappings.size()) {
+            Path logPath = storeDir.resolve(INDEX_LOG);
+            try {
+                logWriter.close();
+                compactLog(logPath);
+                log.info("Favicon store log compacted: {} dead entries removed", deadEntries);
+            } catch (IOException e) {
+                log.error("Failed to compact favicon store log", e);
+            }
+            try {
+                openLog(logPath);
+            } catch (IOException e) {
+                log.error("Failed to reopen favicon store log", e);
+            }
+        }
+    }
+
+    private void clearTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storeDir.resolve(TMP_DIR))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private boolean objectExists(String object) {
+        return packStore.contains(object) || Files.exists(objectPath(object));
+    }
+
+    private String objectNameOf(Path path) {
+        Path objectsDir = storeDir.resolve(OBJECTS_DIR);
+        Path absolute = path.toAbsolutePath();
+        if (!absolute.startsWith(objectsDir)) {
+            return null;
+        }
+        return objectsDir.relativize(absolute).toString().replace(File.separatorChar, '/');
+    }
+
+    private Path objectPath(String object) {
+        return storeDir.resolve(OBJECTS_DIR).resolve(object);
+    }
+
+    /**
+     * 对象相对路径，按哈希前两个字节分两级目录，如 ab/cd/abcd...png
+     */
+    private String objectName(String hash, String extension) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension;
+    }
+
+    private String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot).toLowerCase() : ".png";
+    }
+
+    private String sizeToken(Integer size) {
+        return size != null ? String.valueOf(size) : NO_SIZE;
+    }
+
+    private Integer parseSize(String token) {
+        return NO_SIZE.equals(token) ? null : Integer.valueOf(token);
+    }
+
+}
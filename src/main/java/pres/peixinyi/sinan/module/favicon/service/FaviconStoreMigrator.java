@@ -0,0 +1,87 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 旧式缓存文件迁移任务
+ * 把缓存目录下平铺的 &lt;domain&gt;_&lt;size&gt;.png 文件分批迁移到 {@link FaviconStore}，服务不停机：
+ * 每个文件先写入存储并更新索引，再删除原文件，迁移过程中读请求始终能拿到可用路径。
+ * 目录中不再有旧式文件后任务不再扫描。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconStoreMigrator {
+
+    private final FaviconStore store;
+
+    @Value("${favicon.cache.dir:upload/icons}")
+    private String cacheDir;
+
+    @Value("${favicon.store.migrate-enabled:true}")
+    private boolean enabled;
+
+    @Value("${favicon.store.migrate-batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean finished;
+
+    @Scheduled(fixedDelayString = "${favicon.store.migrate-interval:10000}",
+            initialDelayString = "${favicon.store.migrate-interval:10000}")
+    public void migrateBatch() {
+        if (!enabled || finished) {
+            return;
+        }
+        Path dir = Paths.get(cacheDir);
+        if (!Files.isDirectory(dir)) {
+            finished = true;
+            return;
+        }
+        try {
+            List<Path> batch;
+            try (Stream<Path> files = Files.list(dir)) {
+                batch = files.filter(Files::isRegularFile)
+                        .filter(file -> FaviconCacheIndex.parse(file.getFileName().toString()) != null)
+                        .limit(batchSize)
+                        .toList();
+            }
+            if (batch.isEmpty()) {
+                finished = true;
+                log.info("Favicon store migration finished");
+                return;
+            }
+            int migrated = 0;
+            for (Path file : batch) {
+                try {
+                    if (store.importLegacyFile(file)) {
+                        migrated++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to migrate favicon cache file: {}", file, e);
+                }
+            }
+            log.info("Migrated {} favicon cache files into store", migrated);
+            if (migrated == 0) {
+                // 整批都失败时停止，避免每轮重复扫描同一批文件
+                finished = true;
+                log.warn("Favicon store migration stopped, remaining files could not be migrated");
+            }
+        } catch (Exception e) {
+            log.error("Favicon store migration failed", e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+import pres.peixinyi.sinan.module.favicon.config.FaviconRevalidateProperties;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Favicon上游校验值与重新验证计划
+ * 每个缓存域名的图标地址、ETag、Last-Modified 保存在 Redis 哈希 favicon:validator:&lt;文件名前缀&gt; 中，
+ * 下次重新验证的时间保存在有序集合 favicon:revalidate 中（分数为到期时间戳），多节点共享同一份计划。
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FaviconValidatorStore {
+
+    private static final String VALIDATOR_PREFIX = "favicon:validator:";
+    private static final String SCHEDULE_KEY = "favicon:revalidate";
+
+    private static final String FIELD_ICON_URL = "iconUrl";
+    private static final String FIELD_ETAG = "etag";
+    private static final String FIELD_LAST_MODIFIED = "lastModified";
+    private static final String FIELD_FAILURES = "failures";
+
+    /**
+     * 上游校验值
+     *
+     * @param iconUrl      图标地址
+     * @param etag         上游 ETag，可为null
+     * @param lastModified 上游 Last-Modified，可为null
+     * @param failures     连续重新验证失败次数
+     */
+    public record Validators(String iconUrl, String etag, String lastModified, int failures) {
+    }
+
+    private final RedisUtils redisUtils;
+
+    private final FaviconRevalidateProperties properties;
+
+    /**
+     * 下载成功后保存校验值，并按有效期安排下次重新验证
+     *
+     * @param baseName     文件名前缀
+     * @param iconUrl      图标地址
+     * @param etag         响应的 ETag
+     * @param lastModified 响应的 Last-Modified
+     */
+    public void recordFetched(String baseName, String iconUrl, String etag, String lastModified) {
+        try {
+            String key = VALIDATOR_PREFIX + baseName;
+            redisUtils.delete(key);
+            Map<String, String> fields = new HashMap<>();
+            fields.put(FIELD_ICON_URL, iconUrl);
+            fields.put(FIELD_FAILURES, "0");
+            if (etag != null) {
+                fields.put(FIELD_ETAG, etag);
+            }
+            if (lastModified != null) {
+                fields.put(FIELD_LAST_MODIFIED, lastModified);
+            }
+            redisUtils.hPutAll(key, fields);
+            redisUtils.expire(key, validatorTtlHours(), TimeUnit.HOURS);
+            schedule(baseName, nextRevalidationDelayMillis());
+        } catch (Exception e) {
+            log.warn("Failed to record favicon validators for {}", baseName, e);
+        }
+    }
+
+    /**
+     * 读取校验值
+     *
+     * @param baseName 文件名前缀
+     * @return 校验值，不存在返回null
+     */
+    public Validators get(String baseName) {
+        Map<Object, Object> fields = redisUtils.hGetAll(VALIDATOR_PREFIX + baseName);
+        Object iconUrl = fields.get(FIELD_ICON_URL);
+        if (iconUrl == null) {
+            return null;
+        }
+        Object failures = fields.get(FIELD_FAILURES);
+        return new Validators(iconUrl.toString(), (String) fields.get(FIELD_ETAG),
+                (String) fields.get(FIELD_LAST_MODIFIED), failures != null ? Integer.parseInt(failures.toString()) : 0);
+    }
+
+    /**
+     * 上游确认未变化，按有效期安排下次重新验证
+     *
+     * @param baseName 文件名前缀
+     */
+    public void markNotModified(String baseName) {
+        String key = VALIDATOR_PREFIX + baseName;
+        redisUtils.hPut(key, FIELD_FAILURES, "0");
+        redisUtils.expire(key, validatorTtlHours(), TimeUnit.HOURS);
+        schedule(baseName, nextRevalidationDelayMillis());
+    }
+
+    /**
+     * 重新验证失败，按连续失败次数指数退避，继续使用已缓存的图标
+     *
+     * @param baseName 文件名前缀
+     */
+    public void markFailed(String baseName) {
+        Long failures = redisUtils.hIncrBy(VALIDATOR_PREFIX + baseName, FIELD_FAILURES, 1);
+        schedule(baseName, backoffMillis(failures != null ? failures : 1));
+    }
+
+    /**
+     * 暂时无法执行（获取线程繁忙），稍后再试
+     *
+     * @param baseName    文件名前缀
+     * @param delayMillis 延迟
+     */
+    public void postpone(String baseName, long delayMillis) {
+        schedule(baseName, delayMillis);
+    }
+
+    /**
+     * 领取已到期的域名，领取后从计划中移除，其他节点不会重复领取
+     *
+     * @param limit 最多领取数量
+     * @return 文件名前缀
+     */
+    public List<String> claimDue(int limit) {
+        Set<ZSetOperations.TypedTuple<String>> due = redisUtils.zRangeByScoreWithScores(SCHEDULE_KEY, 0,
+                System.currentTimeMillis(), 0, limit);
+        if (due == null || due.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> claimed = new ArrayList<>(due.size());
+        for (ZSetOperations.TypedTuple<String> tuple : due) {
+            Long removed = redisUtils.zRemove(SCHEDULE_KEY, tuple.getValue());
+            if (removed != null && removed > 0) {
+                claimed.add(tuple.getValue());
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 按连续失败次数计算退避时长：首次为基础时长，之后每次翻倍，不超过上限
+     *
+     * @param failures 连续失败次数（从1开始）
+     * @return 退避毫秒数
+     */
+    public long backoffMillis(long failures) {
+        int exponent = (int) Math.min(Math.max(failures - 1, 0), 30);
+        return Math.min(backoffMaxMillis(), backoffBaseMillis() << exponent);
+    }
+
+    /**
+     * 首次失败的退避时长
+     *
+     * @return 毫秒数
+     */
+    public long backoffBaseMillis() {
+        return TimeUnit.MINUTES.toMillis(Math.max(1, properties.getFailureBackoffMinutes()));
+    }
+
+    /**
+     * 退避时长上限
+     *
+     * @return 毫秒数
+     */
+    public long backoffMaxMillis() {
+        return TimeUnit.HOURS.toMillis(Math.max(1, properties.getFailureBackoffMaxHours()));
+    }
+
+    /**
+     * 移除域名的校验值与计划
+     *
+     * @param baseName 文件名前缀
+     */
+    public void remove(String baseName) {
+        try {
+            redisUtils.delete(VALIDATOR_PREFIX + baseName);
+            redisUtils.zRemove(SCHEDULE_KEY, baseName);
+        } catch (Exception e) {
+            log.warn("Failed to remove favicon validators for {}", baseName, e);
+        }
+    }
+
+    /**
+     * 清空重新验证计划，校验值随过期时间自然清理
+     */
+    public void clear() {
+        try {
+            redisUtils.delete(SCHEDULE_KEY);
+        } catch (Exception e) {
+            log.warn("Failed to clear favicon revalidation schedule", e);
+        }
+    }
+
+    private void schedule(String baseName, long delayMillis) {
+        redisUtils.zAdd(SCHEDULE_KEY, baseName, System.currentTimeMillis() + delayMillis);
+    }
+
+    /**
+     * 有效期加减随机抖动
+     */
+    private long nextRevalidationDelayMillis() {
+        long ttl = TimeUnit.HOURS.toMillis(Math.max(1, properties.getTtlHours()));
+        long jitter = (long) (ttl * Math.max(0, properties.getJitterRatio()));
+        return ttl + (jitter > 0 ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0);
+    }
+
+    /**
+     * 校验值保留到下次重新验证及最长退避之后
+     */
+    private long validatorTtlHours() {
+        return properties.getTtlHours() * 2 + properties.getFailureBackoffMaxHours();
+    }
+}
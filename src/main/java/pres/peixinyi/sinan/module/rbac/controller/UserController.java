@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 import net.coobird.thumbnailator.Thumbnails;
 import pres.peixinyi.sinan.config.UploadProperties;
@@ -231,6 +232,46 @@ public class UserController {
         }
     }
 
+    /**
+     * 以 Netscape 书签文件格式导出当前用户的书签，可直接导入浏览器
+     *
+     * @return HTML文件下载响应
+     */
+    @GetMapping("/export/html")
+    public ResponseEntity<StreamingResponseBody> exportBookmarksHtml() {
+        String currentUserId = StpUtil.getLoginIdAsString();
+        String filename = "bookmarks_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) + ".html";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8));
+        headers.setContentDispositionFormData("attachment", filename);
+
+        StreamingResponseBody body = out -> userDataExportService.exportNetscapeHtml(currentUserId, out);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    /**
+     * 以 NDJSON 格式导出当前用户的所有数据，每行一条记录
+     *
+     * @return NDJSON文件下载响应
+     */
+    @GetMapping("/export/ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUserDataNdjson() {
+        String currentUserId = StpUtil.getLoginIdAsString();
+        String filename = "user_data_export_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) + ".ndjson";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        headers.setContentDispositionFormData("attachment", filename);
+
+        StreamingResponseBody body = out -> userDataExportService.exportNdjson(currentUserId, out);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
     /**
      * 导入用户数据
      *
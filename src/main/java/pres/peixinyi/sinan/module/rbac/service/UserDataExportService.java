@@ -1,20 +1,31 @@
 package pres.peixinyi.sinan.module.rbac.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import pres.peixinyi.sinan.dto.request.UserDataImportReq;
 import pres.peixinyi.sinan.dto.response.UserDataExportResp;
 import pres.peixinyi.sinan.dto.response.UserDataImportResp;
+import pres.peixinyi.sinan.module.rbac.service.export.NdjsonExportWriter;
+import pres.peixinyi.sinan.module.rbac.service.export.NetscapeBookmarkWriter;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
 import pres.peixinyi.sinan.module.sinan.entity.SnTag;
+import pres.peixinyi.sinan.module.sinan.event.BookmarkDomainsAddedEvent;
+import pres.peixinyi.sinan.module.sinan.service.BookmarkIconExtractor;
 import pres.peixinyi.sinan.module.sinan.service.SnBookmarkAssTagService;
 import pres.peixinyi.sinan.module.sinan.service.SnBookmarkService;
 import pres.peixinyi.sinan.module.sinan.service.SnSpaceService;
 import pres.peixinyi.sinan.module.sinan.service.SnTagService;
 import pres.peixinyi.sinan.utils.PinyinUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -38,6 +49,9 @@ public class UserDataExportService {
     @Autowired
     private SnBookmarkAssTagService bookmarkAssTagService;
 
+    @Autowired
+    private BookmarkIconExtractor iconExtractor;
+
     /**
      * 导出用户的所有数据
      *
@@ -91,6 +105,58 @@ public class UserDataExportService {
         }
     }
 
+    /**
+     * 以 Netscape 书签文件格式流式导出用户书签
+     * <p>
+     * 空间导出为文件夹，标签写入 TAGS 属性，可直接导入 Chrome、Firefox 等浏览器。
+     * 浏览器只识别 data URI 形式的图标，本服务保存的图标文件内联为 data URI 写出。
+     * 数据通过数据库游标逐行读取并立即写出，不在内存中构建书签列表。
+     *
+     * @param userId 用户ID
+     * @param out    输出流
+     */
+    public void exportNetscapeHtml(String userId, OutputStream out) throws IOException {
+        log.info("开始导出用户书签（HTML），用户ID: {}", userId);
+
+        NetscapeBookmarkWriter writer = new NetscapeBookmarkWriter(out);
+        writer.writeHeader();
+        try {
+            bookmarkService.streamExportRows(userId, handler(row -> {
+                row.setIcon(iconExtractor.inline(row.getIcon()));
+                writer.write(row);
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+
+        log.info("用户书签导出完成（HTML），用户ID: {}，书签数: {}", userId, writer.getCount());
+    }
+
+    /**
+     * 以 NDJSON 格式流式导出用户数据
+     * <p>
+     * 依次输出标签、空间、书签，每行一条记录。数据通过数据库游标逐行读取并立即写出。
+     *
+     * @param userId 用户ID
+     * @param out    输出流
+     */
+    public void exportNdjson(String userId, OutputStream out) throws IOException {
+        log.info("开始导出用户数据（NDJSON），用户ID: {}", userId);
+
+        NdjsonExportWriter writer = new NdjsonExportWriter(out);
+        try {
+            tagService.streamUserTags(userId, handler(writer::writeTag));
+            spaceService.streamUserSpaces(userId, handler(writer::writeSpace));
+            bookmarkService.streamExportRows(userId, handler(writer::writeBookmark));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+
+        log.info("用户数据导出完成（NDJSON），用户ID: {}，记录数: {}", userId, writer.getCount());
+    }
+
     /**
      * 导入用户数据
      *
@@ -122,7 +188,8 @@ public class UserDataExportService {
                     tag.setPinyin(PinyinUtils.toPinyin(tagData.getName()));
                     tag.setAbbreviation(PinyinUtils.toPinyinFirstLetter(tagData.getName()));
                     tag.setColor(tagData.getColor());
-                    tag.setSort(tagData.getSort());
+                    // 指定排序值的标签追加在末尾，保持文件中的顺序
+                    tag.setSort(tagData.getSort() != null ? tagData.getSort() : importedTags + 1);
                     tag.setDescription(tagData.getDescription());
 
                     if (tagService.addTag(tag) != null) {
@@ -158,6 +225,7 @@ public class UserDataExportService {
             }
 
             // 3. 导入书签
+            List<SnBookmark> savedBookmarks = new ArrayList<>();
             if (importData.getBookmark() != null) {
                 for (UserDataImportReq.BookmarkImportData bookmarkData : importData.getBookmark()) {
                     // 检查书签URL是否已存在（同一用户下）
@@ -200,9 +268,10 @@ public class UserDataExportService {
                     bookmark.setNum(bookmarkData.getNum() != null ? bookmarkData.getNum() : 0);
                     bookmark.setStar(bookmarkData.getStar() != null ? bookmarkData.getStar() : false);
 
-                    SnBookmark savedBookmark = bookmarkService.addBookmark(bookmark);
+                    SnBookmark savedBookmark = bookmarkService.saveBookmark(bookmark);
                     if (savedBookmark != null) {
                         importedBookmarks++;
+                        savedBookmarks.add(savedBookmark);
 
                         // 处理书签标签关联
                         if (bookmarkData.getTags() != null && !bookmarkData.getTags().isEmpty()) {
@@ -237,6 +306,8 @@ public class UserDataExportService {
                 }
             }
 
+            bookmarkService.publishDomainsAdded(userId, BookmarkDomainsAddedEvent.SOURCE_DATA_IMPORT, savedBookmarks);
+
             log.info("用户数据导入完成，用户ID: {}，导入：标签 {} 个，空间 {} 个，书签 {} 个；跳过：标签 {} 个，空间 {} 个，书签 {} 个",
                     userId, importedTags, importedSpaces, importedBookmarks,
                     skippedTags, skippedSpaces, skippedBookmarks);
@@ -252,49 +323,32 @@ public class UserDataExportService {
 
     /**
      * 清空用户的所有数据
+     * <p>
+     * 每张表只执行一条按用户ID的批量逻辑删除语句，并在同一事务中完成，
+     * 任一步失败时整体回滚，不会留下只删除了一部分的数据。
      *
      * @param userId 用户ID
      * @return 清空结果
      */
+    @Transactional(rollbackFor = Exception.class)
     public UserDataImportResp clearUserData(String userId) {
         try {
             log.info("开始清空用户数据，用户ID: {}", userId);
 
-            int deletedTags = 0, deletedSpaces = 0, deletedBookmarks = 0;
+            // 1. 删除所有书签标签关联关系
+            int deletedAssociations = bookmarkAssTagService.softDeleteByUserId(userId);
 
-            // 1. 获取用户的所有数据数量（用于统计）
-            List<SnTag> userTags = tagService.getUserTags(userId);
-            List<SnSpace> userSpaces = spaceService.getUserSpaces(userId);
-            List<SnBookmark> userBookmarks = bookmarkService.getUserBookmarks(userId);
+            // 2. 删除所有书签
+            int deletedBookmarks = bookmarkService.softDeleteByUserId(userId);
 
-            // 2. 删除所有书签标签关联关系
-            for (SnBookmark bookmark : userBookmarks) {
-                bookmarkAssTagService.deleteBookmarkTagAssociations(bookmark.getId(), userId);
-            }
+            // 3. 删除所有标签
+            int deletedTags = tagService.softDeleteByUserId(userId);
 
-            // 3. 删除所有书签
-            for (SnBookmark bookmark : userBookmarks) {
-                if (bookmarkService.deleteBookmark(bookmark.getId(), userId)) {
-                    deletedBookmarks++;
-                }
-            }
+            // 4. 删除所有空间
+            int deletedSpaces = spaceService.softDeleteByUserId(userId);
 
-            // 4. 删除所有标签
-            for (SnTag tag : userTags) {
-                if (tagService.deleteTag(tag.getId(), userId)) {
-                    deletedTags++;
-                }
-            }
-
-            // 5. 删除所有空间
-            for (SnSpace space : userSpaces) {
-                if (spaceService.deleteSpace(space.getId(), userId)) {
-                    deletedSpaces++;
-                }
-            }
-
-            log.info("用户数据清空完成，用户ID: {}，删除：标签 {} 个，空间 {} 个，书签 {} 个",
-                    userId, deletedTags, deletedSpaces, deletedBookmarks);
+            log.info("用户数据清空完成，用户ID: {}，删除：标签 {} 个，空间 {} 个，书签 {} 个，标签关联 {} 条",
+                    userId, deletedTags, deletedSpaces, deletedBookmarks, deletedAssociations);
 
             // 构建成功响应
             UserDataImportResp resp = new UserDataImportResp();
@@ -311,10 +365,30 @@ public class UserDataExportService {
 
         } catch (Exception e) {
             log.error("清空用户数据失败，用户ID: {}", userId, e);
+            // 异常被转换为失败响应，需要手动标记回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return UserDataImportResp.failure("清空数据失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 将可能抛出 IO 异常的写入操作包装为结果处理器
+     */
+    private static <T> ResultHandler<T> handler(RowWriter<T> rowWriter) {
+        return context -> {
+            try {
+                rowWriter.write(context.getResultObject());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+
     /**
      * 检查书签URL是否已存在
      */
@@ -0,0 +1,75 @@
+package pres.peixinyi.sinan.module.rbac.service.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pres.peixinyi.sinan.dto.response.UserDataExportResp;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
+import pres.peixinyi.sinan.module.sinan.entity.SnTag;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * NDJSON 导出写入器
+ * <p>
+ * 每行一条记录：{@code {"type":"tag|space|bookmark","data":{...}}}，data 与 JSON 全量导出中的结构一致。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class NdjsonExportWriter {
+
+    private static final byte NEW_LINE = '\n';
+
+    private final OutputStream out;
+
+    private final ObjectMapper objectMapper;
+
+    private int count;
+
+    public NdjsonExportWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    public void writeTag(SnTag tag) throws IOException {
+        writeLine("tag", UserDataExportResp.TagExportData.from(tag));
+    }
+
+    public void writeSpace(SnSpace space) throws IOException {
+        writeLine("space", UserDataExportResp.SpaceExportData.from(space));
+    }
+
+    public void writeBookmark(BookmarkExportRow row) throws IOException {
+        writeLine("bookmark", UserDataExportResp.BookmarkExportData.from(row));
+    }
+
+    /**
+     * 刷新输出
+     */
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 已写入的记录数量
+     */
+    public int getCount() {
+        return count;
+    }
+
+    private void writeLine(String type, Object data) throws IOException {
+        Map<String, Object> line = new LinkedHashMap<>(4);
+        line.put("type", type);
+        line.put("data", data);
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write(NEW_LINE);
+        count++;
+    }
+}
@@ -0,0 +1,174 @@
+package pres.peixinyi.sinan.module.rbac.service.export;
+
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Netscape 书签文件写入器
+ * <p>
+ * 生成浏览器通用的 {@code NETSCAPE-Bookmark-file-1} 格式：空间对应文件夹，标签写入 TAGS 属性。
+ * 输入行需按空间分组有序，写入器只记住当前所在的文件夹，不缓存任何书签。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class NetscapeBookmarkWriter {
+
+    private final Writer writer;
+
+    /**
+     * 当前打开的文件夹对应的空间ID，为空表示位于根目录
+     */
+    private String currentSpaceId;
+
+    private int count;
+
+    public NetscapeBookmarkWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写入文件头
+     */
+    public void writeHeader() throws IOException {
+        writer.write("<!DOCTYPE NETSCAPE-Bookmark-file-1>\n");
+        writer.write("<!-- This is an automatically generated file.\n");
+        writer.write("     It will be read and overwritten.\n");
+        writer.write("     DO NOT EDIT! -->\n");
+        writer.write("<META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset=UTF-8\">\n");
+        writer.write("<TITLE>Bookmarks</TITLE>\n");
+        writer.write("<H1>Bookmarks</H1>\n");
+        writer.write("<DL><p>\n");
+    }
+
+    /**
+     * 写入一条书签，空间变化时自动关闭上一个文件夹并打开新文件夹
+     */
+    public void write(BookmarkExportRow row) throws IOException {
+        String spaceId = row.getSpaceName() != null ? row.getSpaceId() : null;
+        if (!Objects.equals(spaceId, currentSpaceId)) {
+            closeFolder();
+            if (spaceId != null) {
+                writer.write("    <DT><H3>");
+                writer.write(escape(row.getSpaceName()));
+                writer.write("</H3>\n");
+                writer.write("    <DL><p>\n");
+            }
+            currentSpaceId = spaceId;
+        }
+
+        String indent = currentSpaceId != null ? "        " : "    ";
+        writer.write(indent);
+        writer.write("<DT><A HREF=\"");
+        writer.write(escape(row.getUrl()));
+        writer.write("\"");
+        writeDateAttribute("ADD_DATE", row.getCreateTime());
+        writeDateAttribute("LAST_MODIFIED", row.getUpdateTime());
+        if (row.getIcon() != null && !row.getIcon().isEmpty()) {
+            writer.write(" ICON=\"");
+            writer.write(escape(row.getIcon()));
+            writer.write("\"");
+        }
+        List<String> tagNames = row.getTagNameList();
+        if (!tagNames.isEmpty()) {
+            writer.write(" TAGS=\"");
+            writer.write(escape(joinTags(tagNames)));
+            writer.write("\"");
+        }
+        writer.write(">");
+        writer.write(escape(row.getName()));
+        writer.write("</A>\n");
+        if (row.getDescription() != null && !row.getDescription().isEmpty()) {
+            writer.write(indent);
+            writer.write("<DD>");
+            writer.write(escape(row.getDescription()));
+            writer.write("\n");
+        }
+        count++;
+    }
+
+    /**
+     * 写入文件尾并刷新输出
+     */
+    public void finish() throws IOException {
+        closeFolder();
+        writer.write("</DL><p>\n");
+        writer.flush();
+    }
+
+    /**
+     * 已写入的书签数量
+     */
+    public int getCount() {
+        return count;
+    }
+
+    private void closeFolder() throws IOException {
+        if (currentSpaceId != null) {
+            writer.write("    </DL><p>\n");
+            currentSpaceId = null;
+        }
+    }
+
+    /**
+     * TAGS 属性按逗号分隔，标签名中的半角逗号替换为全角逗号，避免导入时被拆成多个标签
+     */
+    private static String joinTags(List<String> tagNames) {
+        StringBuilder builder = new StringBuilder();
+        for (String tagName : tagNames) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(tagName.replace(',', '\uFF0C'));
+        }
+        return builder.toString();
+    }
+
+    private void writeDateAttribute(String name, Date date) throws IOException {
+        if (date == null) {
+            return;
+        }
+        writer.write(" ");
+        writer.write(name);
+        writer.write("=\"");
+        writer.write(String.valueOf(date.getTime() / 1000));
+        writer.write("\"");
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = switch (c) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default -> null;
+            };
+            if (replacement != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length() + 16);
+                    sb.append(value, 0, i);
+                }
+                sb.append(replacement);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+}
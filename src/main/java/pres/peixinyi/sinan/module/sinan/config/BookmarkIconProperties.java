@@ -0,0 +1,48 @@
+package pres.peixinyi.sinan.module.sinan.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 书签内联图标提取配置
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sinan.bookmark-icon")
+public class BookmarkIconProperties {
+
+    /**
+     * 解码后超过该大小（字节）的内联图标不提取，保留原值
+     */
+    private int maxBytes = 256 * 1024;
+
+    /**
+     * 是否启用存量数据迁移任务，默认关闭
+     */
+    private boolean backfillEnabled = false;
+
+    /**
+     * 每段处理的记录数
+     */
+    private int chunkSize = 200;
+
+    /**
+     * 每段之间的停顿时间（毫秒）
+     */
+    private long pauseMillis = 200;
+
+    /**
+     * 单次任务最多处理的段数
+     */
+    private int maxChunksPerRun = 500;
+
+    /**
+     * 任务锁的持有时间（分钟），防止多实例同时执行
+     */
+    private long lockMinutes = 60;
+}
@@ -0,0 +1,64 @@
+package pres.peixinyi.sinan.module.sinan.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 逻辑删除记录回收配置
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sinan.tombstone")
+public class TombstoneProperties {
+
+    /**
+     * 是否启用回收任务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 逻辑删除超过该天数的记录才会被回收
+     */
+    private int retentionDays = 30;
+
+    /**
+     * 回收方式
+     */
+    private Mode mode = Mode.ARCHIVE;
+
+    /**
+     * 每段处理的记录数
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 每段之间的停顿时间（毫秒）
+     */
+    private long pauseMillis = 200;
+
+    /**
+     * 每张表单次任务最多处理的段数
+     */
+    private int maxChunksPerRun = 200;
+
+    /**
+     * 任务锁的持有时间（分钟），防止多实例同时执行
+     */
+    private long lockMinutes = 60;
+
+    public enum Mode {
+        /**
+         * 归档到 sn_tombstone_archive 后删除
+         */
+        ARCHIVE,
+        /**
+         * 直接删除
+         */
+        DELETE
+    }
+}
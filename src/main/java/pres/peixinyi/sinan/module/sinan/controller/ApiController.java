@@ -1,21 +1,23 @@
 package pres.peixinyi.sinan.module.sinan.controller;
 
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import pres.peixinyi.sinan.common.Result;
 import pres.peixinyi.sinan.common.UrlValidator;
 import pres.peixinyi.sinan.dto.request.AddBookmarkReq;
+import pres.peixinyi.sinan.dto.request.BatchBookmarkReq;
 import pres.peixinyi.sinan.dto.response.BookmarkResp;
 import pres.peixinyi.sinan.dto.response.BookmarkTreeResp;
 import pres.peixinyi.sinan.dto.response.TagResp;
+import pres.peixinyi.sinan.dto.response.BatchBookmarkResp;
+import pres.peixinyi.sinan.module.favicon.service.FaviconResponseWriter;
 import pres.peixinyi.sinan.module.favicon.service.FaviconService;
 import pres.peixinyi.sinan.module.rbac.service.SnUserKeyService;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
@@ -26,9 +28,6 @@ import pres.peixinyi.sinan.module.sinan.service.*;
 import pres.peixinyi.sinan.service.WebsiteAnalysisService;
 import pres.peixinyi.sinan.utils.PinyinUtils;
 
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -63,9 +62,15 @@ public class ApiController {
     @Resource
     private FaviconService faviconService;
 
+    @Resource
+    private FaviconResponseWriter faviconResponseWriter;
+
     @Resource
     private SnShareSpaceAssUserService snShareSpaceAssUserService;
 
+    @Resource
+    private SnBookmarkBatchService bookmarkBatchService;
+
     @Resource
     private Optional<WebsiteAnalysisService> websiteAnalysisService;
 
@@ -283,16 +288,7 @@ public class ApiController {
 
             // 处理标签关联
             if (!tagIds.isEmpty()) {
-                for (String tagId : tagIds) {
-                    SnBookmarkAssTag assTag = new SnBookmarkAssTag();
-                    assTag.setUserId(userId);
-                    assTag.setBookmarkId(savedBookmark.getId());
-                    assTag.setTagId(tagId);
-                    assTag.setCreateTime(new Date());
-                    assTag.setUpdateTime(new Date());
-                    assTag.setDeleted(0);
-                    bookmarkAssTagService.save(assTag);
-                }
+                bookmarkAssTagService.updateBookmarkTagAssociations(savedBookmark.getId(), userId, tagIds);
             }
 
             // 获取书签的标签信息
@@ -307,6 +303,37 @@ public class ApiController {
         }
     }
 
+    /**
+     * 批量操作书签（新增、更新、移动、设置标签、删除）
+     * 新增时若相同URL的书签已存在，该项返回已存在书签的ID
+     *
+     * @param accessKey 访问密钥
+     * @param req       批量操作请求
+     * @return 每一项操作的结果
+     */
+    @PostMapping("/bookmark/batch")
+    public Result<BatchBookmarkResp> batchBookmarks(
+            @RequestHeader("X-Access-Key") String accessKey,
+            @Valid @RequestBody BatchBookmarkReq req) {
+
+        // 验证访问密钥
+        String userId = authenticateUser(accessKey);
+        if (userId == null) {
+            return Result.fail("无效的访问密钥");
+        }
+
+        if (req.getOperations().size() > SnBookmarkBatchService.MAX_BATCH_SIZE) {
+            return Result.fail("单次批量操作不能超过 " + SnBookmarkBatchService.MAX_BATCH_SIZE + " 条");
+        }
+
+        try {
+            return Result.success(bookmarkBatchService.execute(userId, req.getOperations()));
+        } catch (Exception e) {
+            log.error("批量操作书签失败，用户ID: {}", userId, e);
+            return Result.fail("批量操作失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 构建格式化的书签名称
      * 格式：默认名称-名称拼音-空间名称-空间拼音-标签名称-标签拼音 (根据includePinyin参数决定是否包含拼音)
@@ -649,85 +676,46 @@ public class ApiController {
      *
      * @param accessKey 访问密钥
      * @param domain    域名，如 vitepress.dev
-     * @param sz        图标尺寸，可选参数，默认返回最优尺寸
-     * @return favicon图片文件
+     * @param sz        图标尺寸，如 32 或 32@2x，可选参数，默认返回最优尺寸
+     * @param request   请求
+     * @param response  响应，写出favicon图片文件，条件请求命中时返回304，未缓存时返回202占位图
      */
     @GetMapping("/favicon/icon")
-    public ResponseEntity<org.springframework.core.io.Resource> getFaviconByDomain(
+    public void getFaviconByDomain(
             @RequestHeader("X-Access-Key") String accessKey,
             @RequestParam("domain") String domain,
-            @RequestParam(value = "sz", required = false) Integer sz) {
+            @RequestParam(value = "sz", required = false) String sz,
+            HttpServletRequest request,
+            HttpServletResponse response) {
 
         // 验证访问密钥
         String userId = authenticateUser(accessKey);
         if (userId == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return;
         }
 
         try {
             // 检查域名是否被标记为失败
             if (faviconService.isDomainMarkedAsFailed(domain)) {
-                return ResponseEntity.notFound().build();
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
 
-            String cachedFilePath = faviconService.getFaviconByDomainAndSize(domain, sz);
-            if (cachedFilePath != null) {
-                // 直接返回缓存的文件
-                Path filePath = Paths.get(cachedFilePath);
-                File file = filePath.toFile();
-
-                if (file.exists() && file.isFile()) {
-                    org.springframework.core.io.Resource resource = new FileSystemResource(file);
-
-                    // 根据文件扩展名确定Content-Type
-                    String fileName = file.getName();
-                    String contentType = determineContentType(fileName);
-
-                    // 设置缓存头
-                    HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.parseMediaType(contentType));
-                    headers.setCacheControl("public, max-age=2592000"); // 缓存1个月（30天 * 24小时 * 60分钟 * 60秒）
-
-                    return ResponseEntity.ok()
-                            .headers(headers)
-                            .body(resource);
-                }
+            Integer size = faviconService.parseRequestedSize(sz);
+            String cachedFilePath = faviconService.getCachedFaviconOrFetchInBackground(domain, size);
+            if (cachedFilePath != null && faviconResponseWriter.write(request, response, cachedFilePath)) {
+                return;
             }
 
-            return ResponseEntity.notFound().build();
+            // 未缓存，已提交后台获取，先返回占位图
+            faviconResponseWriter.writePlaceholder(response);
 
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
-    }
-
-    /**
-     * 根据文件扩展名确定Content-Type
-     *
-     * @param filename 文件名
-     * @return MIME类型字符串
-     */
-    private String determineContentType(String filename) {
-        if (filename == null) {
-            return "image/png";
-        }
-
-        String lowerFilename = filename.toLowerCase();
-        if (lowerFilename.endsWith(".png")) {
-            return "image/png";
-        } else if (lowerFilename.endsWith(".jpg") || lowerFilename.endsWith(".jpeg")) {
-            return "image/jpeg";
-        } else if (lowerFilename.endsWith(".gif")) {
-            return "image/gif";
-        } else if (lowerFilename.endsWith(".svg")) {
-            return "image/svg+xml";
-        } else if (lowerFilename.endsWith(".ico")) {
-            return "image/x-icon";
-        } else if (lowerFilename.endsWith(".webp")) {
-            return "image/webp";
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
-
-        return "image/png";
     }
 
     /**
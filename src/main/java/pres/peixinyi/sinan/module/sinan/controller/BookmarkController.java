@@ -3,6 +3,7 @@ package pres.peixinyi.sinan.module.sinan.controller;
 import cn.dev33.satoken.stp.StpUtil;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import jakarta.annotation.Resource;
+import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
 import org.springframework.beans.factory.annotation.Value;
@@ -21,7 +22,9 @@ import pres.peixinyi.sinan.dto.response.ImportBookmarkResp;
 import pres.peixinyi.sinan.dto.response.SpaceResp;
 import pres.peixinyi.sinan.dto.response.TagResp;
 import pres.peixinyi.sinan.dto.request.CheckDuplicateReq;
+import pres.peixinyi.sinan.dto.request.BatchBookmarkReq;
 import pres.peixinyi.sinan.dto.response.CheckDuplicateResp;
+import pres.peixinyi.sinan.module.favicon.service.FaviconPngEncoder;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
@@ -29,12 +32,13 @@ import pres.peixinyi.sinan.module.sinan.entity.SnTag;
 import pres.peixinyi.sinan.module.sinan.service.*;
 import pres.peixinyi.sinan.config.UploadProperties;
 import pres.peixinyi.sinan.dto.response.WebsiteAnalysisResponse;
+import pres.peixinyi.sinan.dto.response.BatchBookmarkResp;
+import pres.peixinyi.sinan.dto.response.BookmarkStatsResp;
 import pres.peixinyi.sinan.service.WebsiteAnalysisService;
 import pres.peixinyi.sinan.common.UrlValidator;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -73,12 +77,21 @@ public class BookmarkController {
     @Resource
     SnShareSpaceAssUserService snShareSpaceAssUserService;
 
+    @Resource
+    SnBookmarkBatchService bookmarkBatchService;
+
+    @Resource
+    SnBookmarkStatsService bookmarkStatsService;
+
     @Resource
     UploadProperties uploadProperties;
 
     @Resource
     Optional<WebsiteAnalysisService> websiteAnalysisService;
 
+    @Resource
+    FaviconPngEncoder faviconPngEncoder;
+
     @Value("${sinan.server.base-url}")
     private String baseUrl;
 
@@ -602,21 +615,34 @@ public class BookmarkController {
 
         //处理标签关联
         if (!tagIds.isEmpty()) {
-            for (String tagId : tagIds) {
-                SnBookmarkAssTag assTag = new SnBookmarkAssTag();
-                assTag.setUserId(currentUserId);
-                assTag.setBookmarkId(savedBookmark.getId());
-                assTag.setTagId(tagId);
-                assTag.setCreateTime(new Date());
-                assTag.setUpdateTime(new Date());
-                assTag.setDeleted(0);
-                bookmarkAssTagService.save(assTag);
-            }
+            bookmarkAssTagService.updateBookmarkTagAssociations(savedBookmark.getId(), currentUserId, tagIds);
         }
 
         return Result.success(savedBookmark);
     }
 
+    /**
+     * 批量操作书签（新增、更新、移动、设置标签、删除）
+     *
+     * @param req 批量操作请求
+     * @return 每一项操作的结果
+     */
+    @PostMapping("/batch")
+    public Result<BatchBookmarkResp> batchBookmarks(@Valid @RequestBody BatchBookmarkReq req) {
+        String currentUserId = StpUtil.getLoginIdAsString();
+
+        if (req.getOperations().size() > SnBookmarkBatchService.MAX_BATCH_SIZE) {
+            return Result.fail("单次批量操作不能超过 " + SnBookmarkBatchService.MAX_BATCH_SIZE + " 条");
+        }
+
+        try {
+            return Result.success(bookmarkBatchService.execute(currentUserId, req.getOperations()));
+        } catch (Exception e) {
+            log.error("批量操作书签失败，用户ID: {}", currentUserId, e);
+            return Result.fail("批量操作失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 删除书签
      *
@@ -675,6 +701,16 @@ public class BookmarkController {
             return Result.fail("书签不存在或无权限编辑");
         }
 
+        // 修改URL时校验格式并检查是否与其他书签重复
+        if (req.getUrl() != null && !req.getUrl().equals(existingBookmark.getUrl())) {
+            if (!UrlValidator.isValidUrl(req.getUrl())) {
+                return Result.fail("URL格式不正确");
+            }
+            if (bookmarkService.isUrlUsedByOtherBookmark(req.getUrl(), currentUserId, req.getId())) {
+                return Result.fail("相同URL的书签已存在");
+            }
+        }
+
         // 处理命名空间 - 支持多种方式（类似 addBookmark 方法）
         String namespaceId = null;
 
@@ -1199,6 +1235,17 @@ public class BookmarkController {
         return Result.success(bookmarkResponses);
     }
 
+    /**
+     * 获取当前用户所有空间和标签的书签数量
+     *
+     * @return 书签统计
+     */
+    @GetMapping("/stats")
+    public Result<BookmarkStatsResp> getBookmarkStats() {
+        String currentUserId = StpUtil.getLoginIdAsString();
+        return Result.success(bookmarkStatsService.getUserStats(currentUserId));
+    }
+
     /**
      * 获取空间的书签统计信息
      *
@@ -1350,13 +1397,11 @@ public class BookmarkController {
             // 裁剪为正方形
             BufferedImage squareImg = srcImg.getSubimage(x, y, size, size);
 
-            // 压缩为256x256并转换为PNG格式
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            Thumbnails.of(squareImg)
+            // 压缩为256x256，颜色数允许时编码为索引色PNG
+            BufferedImage scaledImg = Thumbnails.of(squareImg)
                     .size(256, 256)
-                    .outputFormat("png")
-                    .outputQuality(0.8)
-                    .toOutputStream(out);
+                    .asBufferedImage();
+            byte[] pngBytes = faviconPngEncoder.encode(scaledImg, "upload");
 
             // 生成文件名
             String fileName = "icon_" + System.currentTimeMillis() + ".png";
@@ -1366,7 +1411,7 @@ public class BookmarkController {
             Files.createDirectories(uploadDir);
 
             Path savePath = uploadDir.resolve(fileName);
-            Files.write(savePath, out.toByteArray());
+            Files.write(savePath, pngBytes);
 
             // 返回完整的图片访问URL
             String iconUrl = uploadProperties.getIconFullUrl(baseUrl, fileName);
@@ -2,6 +2,8 @@ package pres.peixinyi.sinan.module.sinan.controller;
 
 import cn.dev33.satoken.stp.StpUtil;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.bind.annotation.*;
@@ -9,8 +11,13 @@ import pres.peixinyi.sinan.common.Result;
 import pres.peixinyi.sinan.dto.request.AddSpaceReq;
 import pres.peixinyi.sinan.dto.request.EditSpaceReq;
 import pres.peixinyi.sinan.dto.request.SpaceDragSortReq;
+import pres.peixinyi.sinan.dto.response.SpaceFaviconSpriteResp;
 import pres.peixinyi.sinan.dto.response.SpaceResp;
 import pres.peixinyi.sinan.dto.response.SpaceSimpleResp;
+import pres.peixinyi.sinan.module.favicon.service.FaviconResponseWriter;
+import pres.peixinyi.sinan.module.favicon.service.FaviconService;
+import pres.peixinyi.sinan.module.favicon.service.FaviconSpriteService;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 import pres.peixinyi.sinan.module.sinan.entity.SnShareSpaceAssUser;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
 import pres.peixinyi.sinan.module.sinan.service.SnBookmarkService;
@@ -18,7 +25,15 @@ import pres.peixinyi.sinan.module.sinan.service.SnShareSpaceAssUserService;
 import pres.peixinyi.sinan.module.sinan.service.SnSpaceService;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 空间控制层
@@ -40,6 +55,15 @@ public class SpaceController {
     @Resource
     SnShareSpaceAssUserService snShareSpaceAssUserService;
 
+    @Resource
+    FaviconService faviconService;
+
+    @Resource
+    FaviconSpriteService faviconSpriteService;
+
+    @Resource
+    FaviconResponseWriter faviconResponseWriter;
+
     /**
      * 分页获取用户的所有空间
      *
@@ -145,15 +169,19 @@ public class SpaceController {
             }
         }
 
-        // 更新空间信息
+        // 更新空间信息（排序值单独按整体重排处理）
         boolean updated = spaceService.updateSpace(
                 req.getId(),
                 currentUserId,
                 req.getName(),
                 req.getIcon(),
-                req.getSort(),
+                null,
                 req.getDescription()
         );
+        if (updated && req.getSort() != null && !req.getSort().equals(existingSpace.getSort())) {
+            spaceService.applySortValues(currentUserId, spaceService.getUserSpaces(currentUserId),
+                    Map.of(req.getId(), req.getSort()));
+        }
 
         if (!updated) {
             return Result.fail("空���更新失败");
@@ -203,20 +231,21 @@ public class SpaceController {
     public Result<String> updateSpaceSort(@RequestBody List<SortUpdateReq> sortUpdates) {
         String currentUserId = StpUtil.getLoginIdAsString();
 
+        // 一次查询用户的全部空间，在内存中校验归属
+        List<SnSpace> allSpaces = spaceService.getUserSpaces(currentUserId);
+        Set<String> spaceIds = allSpaces.stream().map(SnSpace::getId).collect(Collectors.toSet());
+        Map<String, Integer> sortValues = new HashMap<>();
         for (SortUpdateReq sortUpdate : sortUpdates) {
             // 检查空间是否属于当前用户
-            if (!spaceService.isNamespaceBelongsToUser(sortUpdate.getId(), currentUserId)) {
+            if (!spaceIds.contains(sortUpdate.getId())) {
                 return Result.fail("空间 " + sortUpdate.getId() + " 不存在或无权限操作");
             }
-
-            // 更新排序值
-            spaceService.updateSpace(
-                    sortUpdate.getId(),
-                    currentUserId,
-                    null, null, sortUpdate.getSort(), null
-            );
+            sortValues.put(sortUpdate.getId(), sortUpdate.getSort());
         }
 
+        // 单条语句整体重排
+        spaceService.applySortValues(currentUserId, allSpaces, sortValues);
+
         return Result.success("排序更新成功");
     }
 
@@ -241,6 +270,88 @@ public class SpaceController {
         return Result.success(spaceSimpleList);
     }
 
+    /**
+     * 获取空间图标雪碧图的坐标
+     * 空间内所有书签的图标拼成一张图，客户端按坐标裁切显示，整个空间只需请求一次图片
+     *
+     * @param id 空间ID
+     * @param sz 图标尺寸，如 32 或 32@2x（可选，默认32）
+     * @return 雪碧图坐标
+     */
+    @GetMapping("/{id}/favicon-sprite")
+    public Result<SpaceFaviconSpriteResp> getFaviconSprite(@PathVariable("id") String id,
+                                                           @RequestParam(value = "sz", required = false) String sz) {
+        if (!canViewSpace(id, StpUtil.getLoginIdAsString())) {
+            return Result.fail("空间不存在或无权限查看");
+        }
+        Map<String, String> bookmarkDomains = getBookmarkDomains(id);
+        FaviconSpriteService.Sprite sprite = faviconSpriteService.getSprite("space:" + id,
+                bookmarkDomains.values(), faviconService.parseRequestedSize(sz));
+        return Result.success(SpaceFaviconSpriteResp.from(id, sprite, bookmarkDomains));
+    }
+
+    /**
+     * 获取空间图标雪碧图
+     * 书签变化后重新生成，带内容哈希 ETag，未变化时返回304；
+     * 带 v 参数（坐标接口返回的 url）时只返回该版本，保证与坐标一致，该版本已不存在时返回404
+     *
+     * @param id       空间ID
+     * @param sz       图标尺寸，与坐标接口一致
+     * @param v        雪碧图版本（内容哈希，可选）
+     * @param request  请求
+     * @param response 响应，写出PNG图片
+     */
+    @GetMapping("/{id}/favicon-sprite.png")
+    public void getFaviconSpriteImage(@PathVariable("id") String id,
+                                      @RequestParam(value = "sz", required = false) String sz,
+                                      @RequestParam(value = "v", required = false) String v,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        if (!canViewSpace(id, StpUtil.getLoginIdAsString())) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Integer size = faviconService.parseRequestedSize(sz);
+        if (v == null || v.isBlank()) {
+            FaviconSpriteService.Sprite sprite = faviconSpriteService.getSprite("space:" + id,
+                    getBookmarkDomains(id).values(), size);
+            faviconResponseWriter.writeGenerated(request, response, sprite.png(), sprite.etag());
+            return;
+        }
+        FaviconSpriteService.Sprite sprite = faviconSpriteService.getSpriteVersion("space:" + id,
+                getBookmarkDomains(id).values(), size, v.trim());
+        if (sprite == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        faviconResponseWriter.writeVersioned(request, response, sprite.png(), sprite.etag());
+    }
+
+    /**
+     * 是否为空间所有者或已收藏该共享空间
+     */
+    private boolean canViewSpace(String spaceId, String userId) {
+        if (!ObjectUtils.isEmpty(spaceService.getNamespaceByUserAndId(spaceId, userId))) {
+            return true;
+        }
+        return snShareSpaceAssUserService.getByUserId(userId).stream()
+                .anyMatch(shareSpace -> spaceId.equals(shareSpace.getSpaceId()));
+    }
+
+    /**
+     * 空间内书签ID -> 域名，无法解析域名的书签不参与雪碧图
+     */
+    private Map<String, String> getBookmarkDomains(String spaceId) {
+        Map<String, String> bookmarkDomains = new LinkedHashMap<>();
+        for (SnBookmark bookmark : snBookmarkService.getBookmarksBySpaceId(spaceId)) {
+            String domain = faviconService.domainOf(bookmark.getUrl());
+            if (domain != null) {
+                bookmarkDomains.put(bookmark.getId(), domain);
+            }
+        }
+        return bookmarkDomains;
+    }
+
     /**
      * 排序更新请求内部类
      */
@@ -295,18 +406,24 @@ public class SpaceController {
      * 处理通过ID列表排序
      */
     private Result<String> handleSortByIdList(List<String> sortedSpaceIds, String currentUserId) {
-        // 验证所有空间是否属于当前用户
-        for (String spaceId : sortedSpaceIds) {
-            if (!spaceService.isNamespaceBelongsToUser(spaceId, currentUserId)) {
+        // 一次查询用户的全部空间，在内存中校验归属
+        Map<String, SnSpace> spaceMap = new LinkedHashMap<>();
+        for (SnSpace space : spaceService.getUserSpaces(currentUserId)) {
+            spaceMap.put(space.getId(), space);
+        }
+        List<SnSpace> ordered = new ArrayList<>(spaceMap.size());
+        for (String spaceId : new LinkedHashSet<>(sortedSpaceIds)) {
+            SnSpace space = spaceMap.remove(spaceId);
+            if (space == null) {
                 return Result.fail("空间 " + spaceId + " 不存在或无权限操作");
             }
+            ordered.add(space);
         }
+        // 未出现在列表中的空间保持原有顺序排在后面
+        ordered.addAll(spaceMap.values());
 
-        // 更新排序
-        for (int i = 0; i < sortedSpaceIds.size(); i++) {
-            String spaceId = sortedSpaceIds.get(i);
-            spaceService.updateSpace(spaceId, currentUserId, null, null, i + 1, null);
-        }
+        // 单条语句整体重排
+        spaceService.reorderSpaces(currentUserId, ordered);
 
         return Result.success("排序更新成功");
     }
@@ -315,42 +432,21 @@ public class SpaceController {
      * 处理拖拽到指定位置
      */
     private Result<String> handleDragToPosition(String draggedSpaceId, int targetIndex, String currentUserId) {
+        // 获取用户的所有空间
+        List<SnSpace> allSpaces = spaceService.getUserSpaces(currentUserId);
+
         // 验证拖拽的空间是否属于当前用户
-        if (!spaceService.isNamespaceBelongsToUser(draggedSpaceId, currentUserId)) {
+        if (allSpaces.stream().noneMatch(space -> space.getId().equals(draggedSpaceId))) {
             return Result.fail("空间不存在或无权限操作");
         }
 
-        // 获取用户的所有空间
-        List<SnSpace> allSpaces = spaceService.getUserSpaces(currentUserId);
-
         // 验证目标位置是否有效
         if (targetIndex < 0 || targetIndex >= allSpaces.size()) {
             return Result.fail("目标位置无效");
         }
 
-        // 找到被拖拽的空间并从列表中移除
-        SnSpace draggedSpace = null;
-        for (int i = 0; i < allSpaces.size(); i++) {
-            if (allSpaces.get(i).getId().equals(draggedSpaceId)) {
-                draggedSpace = allSpaces.remove(i);
-                break;
-            }
-        }
-
-        if (draggedSpace == null) {
-            return Result.fail("未找到被拖拽的空间");
-        }
-
-        // 将被拖拽的空间插入到目标位置
-        allSpaces.add(targetIndex, draggedSpace);
-
-        // 重新分配排序值
-        for (int i = 0; i < allSpaces.size(); i++) {
-            String spaceId = allSpaces.get(i).getId();
-            int sortValue = i + 1; // 从1开始
-
-            spaceService.updateSpace(spaceId, currentUserId, null, null, sortValue, null);
-        }
+        // 只更新被拖拽空间的排序键
+        spaceService.moveSpace(currentUserId, allSpaces, draggedSpaceId, targetIndex);
 
         return Result.success("拖拽排序成功");
     }
@@ -14,7 +14,14 @@ import pres.peixinyi.sinan.module.sinan.service.SnBookmarkAssTagService;
 import pres.peixinyi.sinan.module.sinan.service.SnTagService;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 标签控制层
@@ -218,16 +225,21 @@ public class TagController {
     public Result<String> updateTagSort(@RequestBody List<SortUpdateReq> sortUpdates) {
         String currentUserId = StpUtil.getLoginIdAsString();
 
+        // 一次查询用户的全部标签，在内存中校验归属
+        List<SnTag> allTags = tagService.getUserTagsOrderBySort(currentUserId);
+        Set<String> tagIds = allTags.stream().map(SnTag::getId).collect(Collectors.toSet());
+        Map<String, Integer> sortValues = new HashMap<>();
         for (SortUpdateReq sortUpdate : sortUpdates) {
             // 检查标签是否属于当前用户
-            if (!tagService.isTagBelongsToUser(sortUpdate.getId(), currentUserId)) {
+            if (!tagIds.contains(sortUpdate.getId())) {
                 return Result.fail("标签 " + sortUpdate.getId() + " 不存在或无权限操作");
             }
-
-            // 更新排序值
-            tagService.updateTagSort(sortUpdate.getId(), currentUserId, sortUpdate.getSort());
+            sortValues.put(sortUpdate.getId(), sortUpdate.getSort());
         }
 
+        // 单条语句整体重排
+        tagService.applySortValues(currentUserId, allTags, sortValues);
+
         return Result.success("排序更新成功");
     }
 
@@ -261,18 +273,24 @@ public class TagController {
      * 处理通过ID列表排序
      */
     private Result<String> handleSortByIdList(List<String> sortedTagIds, String currentUserId) {
-        // 验证所有标签是否属于当前用户
-        for (String tagId : sortedTagIds) {
-            if (!tagService.isTagBelongsToUser(tagId, currentUserId)) {
+        // 一次查询用户的全部标签，在内存中校验归属
+        Map<String, SnTag> tagMap = new LinkedHashMap<>();
+        for (SnTag tag : tagService.getUserTagsOrderBySort(currentUserId)) {
+            tagMap.put(tag.getId(), tag);
+        }
+        List<SnTag> ordered = new ArrayList<>(tagMap.size());
+        for (String tagId : new LinkedHashSet<>(sortedTagIds)) {
+            SnTag tag = tagMap.remove(tagId);
+            if (tag == null) {
                 return Result.fail("标签 " + tagId + " 不存在或无权限操作");
             }
+            ordered.add(tag);
         }
+        // 未出现在列表中的标签保持原有顺序排在后面
+        ordered.addAll(tagMap.values());
 
-        // 更新排序
-        for (int i = 0; i < sortedTagIds.size(); i++) {
-            String tagId = sortedTagIds.get(i);
-            tagService.updateTagSort(tagId, currentUserId, i + 1);
-        }
+        // 单条语句整体重排
+        tagService.reorderTags(currentUserId, ordered);
 
         return Result.success("排序更新成功");
     }
@@ -299,14 +317,8 @@ public class TagController {
             return Result.fail("目标位置无效");
         }
 
-        // 重新排列标签
-        allTags.remove(draggedTag);
-        allTags.add(targetIndex, draggedTag);
-
-        // 更新排序值
-        for (int i = 0; i < allTags.size(); i++) {
-            tagService.updateTagSort(allTags.get(i).getId(), currentUserId, i + 1);
-        }
+        // 只更新被拖拽标签的排序键
+        tagService.moveTag(currentUserId, allTags, draggedTagId, targetIndex);
 
         return Result.success("排序更新成功");
     }
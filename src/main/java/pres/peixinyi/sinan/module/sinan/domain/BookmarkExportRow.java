@@ -0,0 +1,84 @@
+package pres.peixinyi.sinan.module.sinan.domain;
+
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 书签导出行
+ * <p>
+ * 由流式查询逐行产出，书签所在空间名称与标签通过关联查询一并带出，
+ * 导出时无需再按用户加载空间、标签和关联关系列表。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class BookmarkExportRow {
+
+    /**
+     * 标签名称分隔符（0x1F 单元分隔符），与导出查询中 GROUP_CONCAT 的 SEPARATOR 一致
+     */
+    public static final String TAG_NAME_SEPARATOR = "\u001F";
+
+    private String id;
+
+    private String userId;
+
+    private String spaceId;
+
+    /**
+     * 空间名称，书签未归属空间或空间已删除时为空
+     */
+    private String spaceName;
+
+    private String name;
+
+    private String description;
+
+    private String url;
+
+    private String icon;
+
+    private Integer num;
+
+    private Boolean star;
+
+    private Date createTime;
+
+    private Date updateTime;
+
+    /**
+     * 标签ID，逗号分隔
+     */
+    private String tagIds;
+
+    /**
+     * 标签名称，以 {@link #TAG_NAME_SEPARATOR} 分隔（标签名中可能含逗号）
+     */
+    private String tagNames;
+
+    /**
+     * 标签名称列表
+     */
+    public List<String> getTagNameList() {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(tagNames.split(TAG_NAME_SEPARATOR));
+    }
+
+    /**
+     * 标签ID列表
+     */
+    public List<String> getTagIdList() {
+        if (tagIds == null || tagIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(tagIds.split(","));
+    }
+}
@@ -0,0 +1,24 @@
+package pres.peixinyi.sinan.module.sinan.domain;
+
+import lombok.Data;
+
+/**
+ * 分组计数
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class GroupCount {
+
+    /**
+     * 分组键（空间ID、标签ID等）
+     */
+    private String groupKey;
+
+    /**
+     * 数量
+     */
+    private Long total;
+}
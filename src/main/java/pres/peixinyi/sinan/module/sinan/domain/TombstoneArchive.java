@@ -0,0 +1,46 @@
+package pres.peixinyi.sinan.module.sinan.domain;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 逻辑删除记录归档
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Data
+public class TombstoneArchive {
+
+    /**
+     * 原记录ID
+     */
+    private String id;
+
+    /**
+     * 原表名
+     */
+    private String tableName;
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 原记录内容（JSON）
+     */
+    private String payload;
+
+    /**
+     * 逻辑删除时间
+     */
+    private Date deletedTime;
+
+    /**
+     * 归档时间
+     */
+    private Date archivedTime;
+}
@@ -52,6 +52,12 @@ public class SnSpace {
     @TableField(value = "sort")
     private Integer sort;
 
+    /**
+     * 分数排序键，列表按该字段排序
+     */
+    @TableField(value = "sort_key")
+    private String sortKey;
+
     /**
      * 是否分享
      */
@@ -0,0 +1,94 @@
+package pres.peixinyi.sinan.module.sinan.event;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 新增书签的域名事件
+ * 新增、导入书签后发布，供图标预取等后台任务使用，发布方不关心处理结果
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Getter
+public class BookmarkDomainsAddedEvent {
+
+    /**
+     * 新增书签，单条
+     */
+    public static final String SOURCE_CREATE = "create";
+
+    /**
+     * 导入Chrome书签
+     */
+    public static final String SOURCE_CHROME_IMPORT = "chrome-import";
+
+    /**
+     * 导入用户数据
+     */
+    public static final String SOURCE_DATA_IMPORT = "data-import";
+
+    /**
+     * 用户ID
+     */
+    private final String userId;
+
+    /**
+     * 来源
+     */
+    private final String source;
+
+    /**
+     * 去重后的小写域名
+     */
+    private final Set<String> domains;
+
+    private BookmarkDomainsAddedEvent(String userId, String source, Set<String> domains) {
+        this.userId = userId;
+        this.source = source;
+        this.domains = Collections.unmodifiableSet(domains);
+    }
+
+    /**
+     * 由书签URL创建事件，无法解析出域名的URL会被忽略
+     *
+     * @param userId 用户ID
+     * @param source 来源
+     * @param urls   书签URL
+     * @return 事件，没有可用域名时返回null
+     */
+    public static BookmarkDomainsAddedEvent ofUrls(String userId, String source, Collection<String> urls) {
+        Set<String> domains = new LinkedHashSet<>();
+        for (String url : urls) {
+            String domain = domainOf(url);
+            if (domain != null) {
+                domains.add(domain);
+            }
+        }
+        return domains.isEmpty() ? null : new BookmarkDomainsAddedEvent(userId, source, domains);
+    }
+
+    private static String domainOf(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String trimmed = url.trim();
+        try {
+            URI uri = URI.create(trimmed.contains("://") ? trimmed : "https://" + trimmed);
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (host == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                return null;
+            }
+            return host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
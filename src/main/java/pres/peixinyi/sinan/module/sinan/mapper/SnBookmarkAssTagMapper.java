@@ -1,7 +1,18 @@
 package pres.peixinyi.sinan.module.sinan.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
 
+import java.util.List;
+
 public interface SnBookmarkAssTagMapper extends BaseMapper<SnBookmarkAssTag> {
-}
\ No newline at end of file
+
+    /**
+     * 多行插入书签标签关联，已存在的 (bookmark_id, tag_id) 直接恢复（调用方需预先设置ID）
+     *
+     * @param list 关联列表
+     * @return 受影响行数
+     */
+    int upsertBatch(@Param("list") List<SnBookmarkAssTag> list);
+}
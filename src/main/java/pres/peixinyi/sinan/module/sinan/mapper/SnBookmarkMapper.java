@@ -1,7 +1,74 @@
 package pres.peixinyi.sinan.module.sinan.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+import pres.peixinyi.sinan.module.sinan.domain.GroupCount;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 
+import java.util.Date;
+import java.util.List;
+
 public interface SnBookmarkMapper extends BaseMapper<SnBookmark> {
-}
\ No newline at end of file
+
+    /**
+     * 流式读取用户书签（含空间名称与标签），按空间分组排序，未归属空间的书签在前
+     *
+     * @param userId  用户ID
+     * @param handler 逐行处理器
+     */
+    void streamExportRows(@Param("userId") String userId, ResultHandler<BookmarkExportRow> handler);
+
+    /**
+     * 多行插入书签（调用方需预先设置ID）
+     *
+     * @param list 书签列表
+     * @return 插入行数
+     */
+    int insertBatch(@Param("list") List<SnBookmark> list);
+
+    /**
+     * 单条语句批量更新书签的名称、拼音、URL、图标、描述，字段为 null 时保持原值
+     *
+     * @param userId     用户ID
+     * @param list       书签列表（需包含ID）
+     * @param updateTime 更新时间
+     * @return 更新行数
+     */
+    int updateBatchFields(@Param("userId") String userId, @Param("list") List<SnBookmark> list,
+                          @Param("updateTime") Date updateTime);
+
+    /**
+     * 按空间分组统计用户书签数量，包含没有书签的空间
+     *
+     * @param userId 用户ID
+     * @return 空间ID与书签数量
+     */
+    List<GroupCount> countGroupBySpace(@Param("userId") String userId);
+
+    /**
+     * 按标签分组统计用户书签数量，包含没有书签的标签
+     *
+     * @param userId 用户ID
+     * @return 标签ID与书签数量
+     */
+    List<GroupCount> countGroupByTag(@Param("userId") String userId);
+
+    /**
+     * 统计用户书签总数及未归属空间的书签数量
+     *
+     * @param userId 用户ID
+     * @return groupKey 为 total 与 noSpace 的两行计数
+     */
+    List<GroupCount> countTotals(@Param("userId") String userId);
+
+    /**
+     * 统计标签下的有效书签数量
+     *
+     * @param tagId  标签ID
+     * @param userId 用户ID
+     * @return 书签数量
+     */
+    long countByTagId(@Param("tagId") String tagId, @Param("userId") String userId);
+}
@@ -1,7 +1,48 @@
 package pres.peixinyi.sinan.module.sinan.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
 
+import java.util.Date;
+import java.util.List;
+
 public interface SnSpaceMapper extends BaseMapper<SnSpace> {
-}
\ No newline at end of file
+
+    /**
+     * 流式读取用户的空间
+     *
+     * @param userId  用户ID
+     * @param handler 逐行处理器
+     */
+    void streamByUserId(@Param("userId") String userId, ResultHandler<SnSpace> handler);
+
+    /**
+     * 多行插入空间（调用方需预先设置ID）
+     *
+     * @param list 空间列表
+     * @return 插入行数
+     */
+    int insertBatch(@Param("list") List<SnSpace> list);
+
+    /**
+     * 单条语句批量写入空间的排序键与排序值
+     *
+     * @param userId     用户ID
+     * @param list       空间列表（需包含ID、排序键、排序值）
+     * @param updateTime 更新时间
+     * @return 更新行数
+     */
+    int updateSortKeys(@Param("userId") String userId, @Param("list") List<SnSpace> list,
+                       @Param("updateTime") Date updateTime);
+
+    /**
+     * 查询存在过长排序键的用户
+     *
+     * @param maxLength 排序键长度上限
+     * @param limit     最大返回数量
+     * @return 用户ID列表
+     */
+    List<String> selectUserIdsWithLongSortKey(@Param("maxLength") int maxLength, @Param("limit") int limit);
+}
@@ -0,0 +1,48 @@
+package pres.peixinyi.sinan.module.sinan.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import pres.peixinyi.sinan.module.sinan.domain.TombstoneArchive;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 逻辑删除记录回收
+ * <p>
+ * 表名由调用方从固定白名单传入；语句为自定义 SQL，不会被逻辑删除插件改写。
+ */
+public interface TombstoneMapper {
+
+    /**
+     * 按主键顺序查询一段超过保留期的逻辑删除记录ID
+     *
+     * @param table   表名
+     * @param afterId 上一段的最后一个ID，为空表示从头开始
+     * @param before  删除时间早于该时间的记录才会被选中
+     * @param limit   本段最大条数
+     * @return 记录ID列表
+     */
+    List<String> selectExpiredIds(@Param("table") String table, @Param("afterId") String afterId,
+                                  @Param("before") Date before, @Param("limit") int limit);
+
+    /**
+     * 查询逻辑删除记录的完整内容
+     */
+    List<Map<String, Object>> selectTombstones(@Param("table") String table, @Param("ids") List<String> ids);
+
+    /**
+     * 多行写入归档记录
+     */
+    int insertArchives(@Param("list") List<TombstoneArchive> list);
+
+    /**
+     * 物理删除逻辑删除记录（已被恢复的记录不会被删除）
+     */
+    int deleteTombstones(@Param("table") String table, @Param("ids") List<String> ids);
+
+    /**
+     * 查询最早一条逻辑删除记录的删除时间
+     */
+    Date selectOldestTombstoneTime(@Param("table") String table);
+}
@@ -0,0 +1,167 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pres.peixinyi.sinan.module.sinan.config.BookmarkIconProperties;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 书签内联图标迁移服务
+ * <p>
+ * 把存量书签中 data URI 形式的图标按主键分段提取到图标文件，书签中改为保存图标地址。
+ * 每条记录单独按原值条件更新，期间用户修改过图标的记录不会被覆盖；
+ * 只是存储形式变化，不更新 update_time。无法提取的图标保留原值，
+ * 处理位置记录在 Redis 中，下次任务从上次结束处继续，不会反复扫描这些记录。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Slf4j
+@Service
+public class BookmarkIconBackfillService {
+
+    private static final String LOCK_KEY = "sinan:bookmark:icon:backfill:lock";
+
+    private static final String CURSOR_KEY = "sinan:bookmark:icon:backfill:cursor";
+
+    @Resource
+    private SnBookmarkService bookmarkService;
+
+    @Resource
+    private BookmarkIconExtractor iconExtractor;
+
+    @Resource
+    private BookmarkIconProperties bookmarkIconProperties;
+
+    @Resource
+    private RedisUtils redisUtils;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 定时迁移
+     */
+    @Scheduled(cron = "${sinan.bookmark-icon.backfill-cron:0 0 4 * * ?}")
+    public void scheduledBackfill() {
+        if (!bookmarkIconProperties.isBackfillEnabled()) {
+            return;
+        }
+        backfill();
+    }
+
+    /**
+     * 迁移内联图标
+     *
+     * @return 迁移的记录数，未获取到任务锁时返回0
+     */
+    public long backfill() {
+        String lockValue = UUID.randomUUID().toString();
+        if (!redisUtils.setIfAbsent(LOCK_KEY, lockValue, bookmarkIconProperties.getLockMinutes(), TimeUnit.MINUTES)) {
+            log.info("书签内联图标迁移任务正在其他实例执行，跳过本次执行");
+            return 0;
+        }
+        try {
+            long migrated = migrate();
+            if (migrated > 0) {
+                log.info("书签内联图标迁移完成, migrated={}", migrated);
+            }
+            return migrated;
+        } finally {
+            if (lockValue.equals(redisUtils.get(LOCK_KEY))) {
+                redisUtils.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    private long migrate() {
+        Counter counter = Counter.builder("sinan.bookmark.icon.backfilled")
+                .description("迁移的书签内联图标数")
+                .register(meterRegistry);
+
+        int chunkSize = Math.max(1, bookmarkIconProperties.getChunkSize());
+        long total = 0;
+        String afterId = redisUtils.get(CURSOR_KEY);
+        boolean reachedEnd = false;
+        for (int chunk = 0; chunk < bookmarkIconProperties.getMaxChunksPerRun(); chunk++) {
+            List<SnBookmark> rows = bookmarkService.lambdaQuery()
+                    .select(SnBookmark::getId, SnBookmark::getIcon)
+                    .likeRight(SnBookmark::getIcon, "data:")
+                    .gt(afterId != null, SnBookmark::getId, afterId)
+                    .orderByAsc(SnBookmark::getId)
+                    .last("limit " + chunkSize)
+                    .list();
+            if (rows.isEmpty()) {
+                reachedEnd = true;
+                break;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+
+            int count = 0;
+            for (SnBookmark row : rows) {
+                try {
+                    if (migrateRow(row)) {
+                        count++;
+                    }
+                } catch (Exception e) {
+                    log.warn("迁移书签内联图标失败, id={}", row.getId(), e);
+                }
+            }
+            total += count;
+            counter.increment(count);
+
+            if (rows.size() < chunkSize) {
+                reachedEnd = true;
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+        if (reachedEnd) {
+            // 本轮已到末尾，下次从头开始
+            redisUtils.delete(CURSOR_KEY);
+        } else if (afterId != null) {
+            redisUtils.set(CURSOR_KEY, afterId);
+        }
+        return total;
+    }
+
+    private boolean migrateRow(SnBookmark row) {
+        String icon = iconExtractor.extract(row.getIcon());
+        if (icon == null || Objects.equals(icon, row.getIcon())) {
+            // 无法提取或写入文件失败，保留原值
+            return false;
+        }
+        return bookmarkService.lambdaUpdate()
+                .eq(SnBookmark::getId, row.getId())
+                .eq(SnBookmark::getIcon, row.getIcon())
+                .set(SnBookmark::getIcon, icon)
+                .update();
+    }
+
+    private boolean pause() {
+        long pauseMillis = bookmarkIconProperties.getPauseMillis();
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
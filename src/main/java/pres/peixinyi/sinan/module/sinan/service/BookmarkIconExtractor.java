@@ -0,0 +1,262 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pres.peixinyi.sinan.config.UploadProperties;
+import pres.peixinyi.sinan.module.favicon.service.FaviconCacheIndex;
+import pres.peixinyi.sinan.module.favicon.service.FaviconImageDecoder;
+import pres.peixinyi.sinan.module.favicon.service.FaviconPngEncoder;
+import pres.peixinyi.sinan.module.sinan.config.BookmarkIconProperties;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 书签内联图标提取
+ * <p>
+ * Chrome 导出的书签把图标以 data:image/...;base64 形式内联在 ICON 属性中，
+ * 直接存入 sn_bookmark.icon 会让每次列表查询都带上数 KB 的 base64。
+ * 保存前把 data URI 解码写入图标上传目录，书签中只保留图标的访问地址。
+ * 文件名取内容哈希，相同的图标只保存一份。无法提取的图标（如 SVG）保留原来的 data URI。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Slf4j
+@Service
+public class BookmarkIconExtractor {
+
+    private static final String DATA_URI_PREFIX = "data:";
+
+    /**
+     * 可按原格式保存的类型（与图标读取接口支持的扩展名一致），其余类型转为 PNG
+     */
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/png", "png",
+            "image/jpeg", "jpg",
+            "image/jpg", "jpg",
+            "image/gif", "gif",
+            "image/bmp", "bmp",
+            "image/webp", "webp"
+    );
+
+    /**
+     * 保存的扩展名对应的 MIME 类型，导出时还原 data URI
+     */
+    private static final Map<String, String> MIME_TYPES = Map.of(
+            "png", "image/png",
+            "jpg", "image/jpeg",
+            "gif", "image/gif",
+            "bmp", "image/bmp",
+            "webp", "image/webp"
+    );
+
+    /**
+     * ICO 的各种 MIME 写法，JDK 没有 ICO 读取器，需按目录解析
+     */
+    private static final Set<String> ICO_TYPES = Set.of(
+            "image/x-icon", "image/vnd.microsoft.icon", "image/ico", "image/icon"
+    );
+
+    @Resource
+    private UploadProperties uploadProperties;
+
+    @Resource
+    private BookmarkIconProperties bookmarkIconProperties;
+
+    @Resource
+    private FaviconPngEncoder faviconPngEncoder;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${sinan.server.base-url}")
+    private String baseUrl;
+
+    /**
+     * 是否为内联的 data URI 图标
+     *
+     * @param icon 书签图标
+     * @return 是 data URI 返回true
+     */
+    public static boolean isInline(String icon) {
+        return icon != null && icon.regionMatches(true, 0, DATA_URI_PREFIX, 0, DATA_URI_PREFIX.length());
+    }
+
+    /**
+     * 提取内联图标
+     *
+     * @param icon 书签图标，可为null
+     * @return 不是 data URI 时原样返回；提取成功返回图标地址；
+     * 内容无效、过大、类型无法解码（如 SVG）或写入文件失败时原样返回，不会丢弃原有图标
+     */
+    public String extract(String icon) {
+        if (!isInline(icon)) {
+            return icon;
+        }
+        byte[] content;
+        String extension;
+        try {
+            String dataUri = icon.trim();
+            int comma = dataUri.indexOf(',');
+            if (comma < 0) {
+                return kept(icon, "格式错误");
+            }
+            String header = dataUri.substring(DATA_URI_PREFIX.length(), comma).toLowerCase(Locale.ROOT);
+            String data = dataUri.substring(comma + 1);
+            content = header.endsWith(";base64")
+                    ? Base64.getMimeDecoder().decode(data)
+                    : percentDecode(data);
+            if (content.length == 0 || content.length > bookmarkIconProperties.getMaxBytes()) {
+                return kept(icon, "大小超出限制: " + content.length);
+            }
+            int semicolon = header.indexOf(';');
+            String mimeType = (semicolon < 0 ? header : header.substring(0, semicolon)).trim();
+            extension = EXTENSIONS.get(mimeType);
+            if (extension == null) {
+                // 图标读取接口不支持的类型，能解码的统一转为 PNG；SVG 等无法解码的保留原值
+                BufferedImage image = ICO_TYPES.contains(mimeType)
+                        ? FaviconImageDecoder.readIco(content)
+                        : null;
+                if (image == null) {
+                    image = ImageIO.read(new ByteArrayInputStream(content));
+                }
+                if (image == null) {
+                    return kept(icon, "无法解码的图标类型: " + mimeType);
+                }
+                content = faviconPngEncoder.encode(image, "bookmark");
+                extension = "png";
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            return kept(icon, e.getMessage());
+        }
+
+        String fileName = "icon_" + HashUtils.shortSha256(content) + "." + extension;
+        try {
+            write(fileName, content);
+        } catch (IOException e) {
+            log.warn("保存书签内联图标失败: {}", fileName, e);
+            count("failed");
+            return icon;
+        }
+        count("stored");
+        return uploadProperties.getIconFullUrl(baseUrl, fileName);
+    }
+
+    /**
+     * 把本服务保存的书签图标还原为 data URI
+     * 浏览器导入书签文件时只识别 data URI 形式的 ICON 属性，导出时需内联图标内容
+     *
+     * @param icon 书签图标，可为null
+     * @return 上传或提取的图标返回 data URI；其他图标、文件不存在或读取失败时原样返回
+     */
+    public String inline(String icon) {
+        if (icon == null || isInline(icon)) {
+            return icon;
+        }
+        String prefix = uploadProperties.getIconUrlPrefix() + "/";
+        int at = icon.indexOf(prefix);
+        if (at < 0) {
+            return icon;
+        }
+        String fileName = icon.substring(at + prefix.length());
+        // 只接受本服务生成的文件名，同时防止路径穿越
+        if (!FaviconCacheIndex.isUploadedFile(fileName)) {
+            return icon;
+        }
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        try {
+            Path file = Paths.get(uploadProperties.getIconUploadPath()).resolve(fileName);
+            if (!Files.isRegularFile(file) || Files.size(file) > bookmarkIconProperties.getMaxBytes()) {
+                return icon;
+            }
+            return DATA_URI_PREFIX + MIME_TYPES.get(extension) + ";base64,"
+                    + Base64.getEncoder().encodeToString(Files.readAllBytes(file));
+        } catch (IOException e) {
+            log.warn("读取书签图标失败: {}", fileName, e);
+            return icon;
+        }
+    }
+
+    /**
+     * 解码非 base64 的 data URI 内容：%XX 还原为对应字节，其余字符按 UTF-8 编码；
+     * 与表单解码不同，'+' 保持原样
+     *
+     * @param data data URI 中逗号之后的部分
+     * @return 解码后的字节
+     */
+    static byte[] percentDecode(String data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length());
+        int i = 0;
+        while (i < data.length()) {
+            int percent = data.indexOf('%', i);
+            int end = percent < 0 ? data.length() : percent;
+            out.writeBytes(data.substring(i, end).getBytes(StandardCharsets.UTF_8));
+            if (percent < 0) {
+                break;
+            }
+            if (percent + 2 >= data.length()) {
+                throw new IllegalArgumentException("百分号编码不完整");
+            }
+            int high = Character.digit(data.charAt(percent + 1), 16);
+            int low = Character.digit(data.charAt(percent + 2), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("百分号编码无效");
+            }
+            out.write((high << 4) | low);
+            i = percent + 3;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 写入图标文件，已存在时跳过；先写临时文件再移动，读取方不会看到写了一半的文件
+     */
+    private void write(String fileName, byte[] content) throws IOException {
+        Path uploadDir = Paths.get(uploadProperties.getIconUploadPath());
+        Path target = uploadDir.resolve(fileName);
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(uploadDir);
+        Path temp = Files.createTempFile(uploadDir, ".icon_", ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private String kept(String icon, String reason) {
+        log.debug("书签内联图标无法提取，保留原值: {}", reason);
+        count("kept");
+        return icon;
+    }
+
+    private void count(String result) {
+        Counter.builder("sinan.bookmark.icon.extracted")
+                .description("提取的书签内联图标数")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -4,11 +4,20 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import pres.peixinyi.sinan.module.sinan.mapper.SnBookmarkAssTagMapper;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
 
 import java.util.Date;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class SnBookmarkAssTagService extends ServiceImpl<SnBookmarkAssTagMapper, SnBookmarkAssTag> {
@@ -32,29 +41,66 @@ public class SnBookmarkAssTagService extends ServiceImpl<SnBookmarkAssTagMapper,
 
     /**
      * 更新书签的标签关联
-     * 先删除原有关联，再添加新的关联
+     * 与现有关联比较后只删除移除的标签、只插入新增的标签，标签未变化时不产生写操作
      *
      * @param bookmarkId 书签ID
      * @param userId     用户ID
      * @param newTagIds  新的标签ID列表
      */
     public void updateBookmarkTagAssociations(String bookmarkId, String userId, List<String> newTagIds) {
-        // 先删除原有的标签关联
-        deleteBookmarkTagAssociations(bookmarkId, userId);
-
-        // 添加新的标签关联
-        if (newTagIds != null && !newTagIds.isEmpty()) {
-            for (String tagId : newTagIds) {
-                SnBookmarkAssTag assTag = new SnBookmarkAssTag();
-                assTag.setUserId(userId);
-                assTag.setBookmarkId(bookmarkId);
-                assTag.setTagId(tagId);
-                assTag.setCreateTime(new Date());
-                assTag.setUpdateTime(new Date());
-                assTag.setDeleted(0);
-                save(assTag);
+        replaceBookmarkTagAssociations(Map.of(bookmarkId, newTagIds != null ? newTagIds : List.of()), userId);
+    }
+
+    /**
+     * 批量替换多个书签的标签关联
+     * 一次读取现有关联，移除的关联合并为一条 UPDATE，新增的关联合并为一条多行 INSERT
+     *
+     * @param bookmarkTagIds 书签ID -> 目标标签ID集合
+     * @param userId         用户ID
+     */
+    public void replaceBookmarkTagAssociations(Map<String, ? extends Collection<String>> bookmarkTagIds, String userId) {
+        if (bookmarkTagIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Set<String>> currentTagIds = new HashMap<>();
+        List<String> removedIds = new ArrayList<>();
+        List<SnBookmarkAssTag> current = lambdaQuery()
+                .in(SnBookmarkAssTag::getBookmarkId, bookmarkTagIds.keySet())
+                .eq(SnBookmarkAssTag::getUserId, userId)
+                .eq(SnBookmarkAssTag::getDeleted, 0)
+                .list();
+        for (SnBookmarkAssTag association : current) {
+            Collection<String> target = bookmarkTagIds.get(association.getBookmarkId());
+            boolean kept = target.contains(association.getTagId())
+                    && currentTagIds.computeIfAbsent(association.getBookmarkId(), k -> new HashSet<>())
+                    .add(association.getTagId());
+            if (!kept) {
+                removedIds.add(association.getId());
             }
         }
+
+        List<SnBookmarkAssTag> added = new ArrayList<>();
+        bookmarkTagIds.forEach((bookmarkId, tagIds) -> {
+            Set<String> existing = currentTagIds.getOrDefault(bookmarkId, Set.of());
+            for (String tagId : new LinkedHashSet<>(tagIds)) {
+                if (!existing.contains(tagId)) {
+                    SnBookmarkAssTag association = new SnBookmarkAssTag();
+                    association.setUserId(userId);
+                    association.setBookmarkId(bookmarkId);
+                    association.setTagId(tagId);
+                    added.add(association);
+                }
+            }
+        });
+
+        if (!removedIds.isEmpty()) {
+            baseMapper.update(null, Wrappers.<SnBookmarkAssTag>lambdaUpdate()
+                    .in(SnBookmarkAssTag::getId, removedIds)
+                    .set(SnBookmarkAssTag::getDeleted, 1)
+                    .set(SnBookmarkAssTag::getUpdateTime, new Date()));
+        }
+        upsertBatch(added);
     }
 
     public void deleteByTagId(String id) {
@@ -102,4 +148,57 @@ public class SnBookmarkAssTagService extends ServiceImpl<SnBookmarkAssTagMapper,
                     )
                 ));
     }
+
+    /**
+     * 逻辑删除用户的所有书签标签关联（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @return 删除的行数
+     */
+    public int softDeleteByUserId(String userId) {
+        return baseMapper.update(null, Wrappers.<SnBookmarkAssTag>lambdaUpdate()
+                .eq(SnBookmarkAssTag::getUserId, userId)
+                .eq(SnBookmarkAssTag::getDeleted, 0)
+                .set(SnBookmarkAssTag::getDeleted, 1)
+                .set(SnBookmarkAssTag::getUpdateTime, new Date()));
+    }
+
+    /**
+     * 多行写入书签标签关联，已存在（含已逻辑删除）的关联直接恢复
+     *
+     * @param associations 关联列表
+     * @return 受影响行数
+     */
+    public int upsertBatch(List<SnBookmarkAssTag> associations) {
+        if (associations.isEmpty()) {
+            return 0;
+        }
+        Date now = new Date();
+        for (SnBookmarkAssTag association : associations) {
+            association.setId(IdWorker.get32UUID());
+            association.setCreateTime(now);
+            association.setUpdateTime(now);
+            association.setDeleted(0);
+        }
+        return baseMapper.upsertBatch(associations);
+    }
+
+    /**
+     * 逻辑删除多个书签的所有标签关联（单条 UPDATE 语句）
+     *
+     * @param bookmarkIds 书签ID集合
+     * @param userId      用户ID
+     * @return 删除的行数
+     */
+    public int deleteByBookmarkIds(Collection<String> bookmarkIds, String userId) {
+        if (bookmarkIds.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(null, Wrappers.<SnBookmarkAssTag>lambdaUpdate()
+                .in(SnBookmarkAssTag::getBookmarkId, bookmarkIds)
+                .eq(SnBookmarkAssTag::getUserId, userId)
+                .eq(SnBookmarkAssTag::getDeleted, 0)
+                .set(SnBookmarkAssTag::getDeleted, 1)
+                .set(SnBookmarkAssTag::getUpdateTime, new Date()));
+    }
 }
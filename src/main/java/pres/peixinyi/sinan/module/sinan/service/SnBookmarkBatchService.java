@@ -0,0 +1,422 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pres.peixinyi.sinan.common.UrlValidator;
+import pres.peixinyi.sinan.dto.request.BatchBookmarkReq;
+import pres.peixinyi.sinan.dto.response.BatchBookmarkResp;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
+import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
+import pres.peixinyi.sinan.module.sinan.entity.SnTag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 书签批量操作服务
+ * <p>
+ * 一个请求内的所有操作在同一事务中执行：空间、标签、书签各只查询一次，
+ * 新增、更新、移动、删除分别合并为多行语句，每一项操作单独返回结果。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Slf4j
+@Service
+public class SnBookmarkBatchService {
+
+    /**
+     * 单次批量操作的最大条数
+     */
+    public static final int MAX_BATCH_SIZE = 200;
+
+    private static final String NEW_SPACE_MARK = ":new";
+
+    private static final String NEW_TAG_MARK = ":new:#";
+
+    @Resource
+    private SnBookmarkService bookmarkService;
+
+    @Resource
+    private SnSpaceService spaceService;
+
+    @Resource
+    private SnTagService tagService;
+
+    @Resource
+    private SnBookmarkAssTagService bookmarkAssTagService;
+
+    /**
+     * 批量操作类型
+     */
+    private enum OpType {
+        CREATE, UPDATE, MOVE, TAG, DELETE;
+
+        static OpType of(String op) {
+            if (op == null) {
+                return null;
+            }
+            for (OpType type : values()) {
+                if (type.name().equalsIgnoreCase(op.trim())) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 执行批量操作
+     *
+     * @param userId     用户ID
+     * @param operations 操作列表
+     * @return 每一项操作的结果
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public BatchBookmarkResp execute(String userId, List<BatchBookmarkReq.Operation> operations) {
+        int size = operations.size();
+        OpType[] types = new OpType[size];
+        String[] errors = new String[size];
+        String[] resultIds = new String[size];
+
+        // 1. 基础校验，收集需要查询的书签ID和URL（新增与修改URL的书签共用一次重复检查）
+        Set<String> bookmarkIds = new HashSet<>();
+        Set<String> urls = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            BatchBookmarkReq.Operation op = operations.get(i);
+            OpType type = OpType.of(op.getOp());
+            types[i] = type;
+            if (type == null) {
+                errors[i] = "不支持的操作类型: " + op.getOp();
+            } else if (type == OpType.CREATE) {
+                if (isBlank(op.getName()) || isBlank(op.getUrl())) {
+                    errors[i] = "书签名称和URL不能为空";
+                } else {
+                    errors[i] = checkUrl(op.getUrl(), urls);
+                }
+            } else if (isBlank(op.getId())) {
+                errors[i] = "书签ID不能为空";
+            } else if (!bookmarkIds.add(op.getId())) {
+                errors[i] = "同一书签在批量操作中只能出现一次";
+            } else {
+                resultIds[i] = op.getId();
+                if (type == OpType.UPDATE && op.getUrl() != null) {
+                    errors[i] = checkUrl(op.getUrl(), urls);
+                }
+            }
+            if (errors[i] == null && op.getTagsIds() != null && op.getTagsIds().stream().anyMatch(Objects::isNull)) {
+                errors[i] = "标签ID不能为空";
+            }
+        }
+
+        // 2. 一次查询目标书签和已存在的URL
+        Map<String, String> ownedBookmarkUrls = new HashMap<>();
+        for (SnBookmark bookmark : bookmarkService.getBookmarksByUserAndIds(bookmarkIds, userId)) {
+            ownedBookmarkUrls.put(bookmark.getId(), bookmark.getUrl());
+        }
+        Map<String, List<String>> existingUrls = new HashMap<>();
+        for (SnBookmark bookmark : bookmarkService.getBookmarksByUrlsAndUser(urls, userId)) {
+            existingUrls.computeIfAbsent(bookmark.getUrl(), k -> new ArrayList<>()).add(bookmark.getId());
+        }
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            BatchBookmarkReq.Operation op = operations.get(i);
+            if (types[i] == OpType.CREATE) {
+                List<String> existingIds = existingUrls.get(op.getUrl());
+                if (existingIds != null) {
+                    resultIds[i] = existingIds.get(0);
+                    errors[i] = "相同URL的书签已存在";
+                }
+            } else if (!ownedBookmarkUrls.containsKey(op.getId())) {
+                errors[i] = "书签不存在或无权限访问";
+            } else if (types[i] == OpType.UPDATE && op.getUrl() != null
+                    && !op.getUrl().equals(ownedBookmarkUrls.get(op.getId()))
+                    && existingUrls.getOrDefault(op.getUrl(), List.of()).stream()
+                    .anyMatch(id -> !id.equals(op.getId()))) {
+                // 与单条编辑一致：修改后的URL不能与其他书签重复
+                errors[i] = "相同URL的书签已存在";
+            }
+        }
+
+        // 3. 一次查询引用到的空间和标签
+        Set<String> spaceIds = new HashSet<>();
+        Set<String> spaceNames = new HashSet<>();
+        Set<String> tagIds = new HashSet<>();
+        Set<String> tagNames = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            BatchBookmarkReq.Operation op = operations.get(i);
+            if (usesSpace(types[i], op)) {
+                String spaceName = parseNewSpaceName(op.getNamespaceId());
+                if (spaceName == null) {
+                    spaceIds.add(op.getNamespaceId());
+                } else if (spaceName.isEmpty()) {
+                    errors[i] = "命名空间名称不能为空";
+                } else {
+                    spaceNames.add(spaceName);
+                }
+            }
+            if (errors[i] == null && usesTags(types[i], op)) {
+                for (String tagRef : op.getTagsIds()) {
+                    String[] newTag = parseNewTag(tagRef);
+                    if (newTag == null) {
+                        tagIds.add(tagRef);
+                    } else if (newTag.length == 0) {
+                        errors[i] = "标签格式错误，应为: 标签名:new:#颜色代码";
+                    } else {
+                        tagNames.add(newTag[0]);
+                    }
+                }
+            }
+        }
+
+        Map<String, SnSpace> spaceById = new HashMap<>();
+        Map<String, SnSpace> spaceByName = new HashMap<>();
+        for (SnSpace space : spaceService.getSpacesByUserAndIdsOrNames(userId, spaceIds, spaceNames)) {
+            spaceById.put(space.getId(), space);
+            spaceByName.putIfAbsent(space.getName(), space);
+        }
+        Map<String, SnTag> tagById = new HashMap<>();
+        Map<String, SnTag> tagByName = new HashMap<>();
+        for (SnTag tag : tagService.getTagsByUserAndIdsOrNames(userId, tagIds, tagNames)) {
+            tagById.put(tag.getId(), tag);
+            tagByName.putIfAbsent(tag.getName(), tag);
+        }
+
+        // 4. 校验引用的空间、标签ID，只为校验通过的操作收集仍需新建的空间和标签
+        List<String> missingSpaceNames = new ArrayList<>();
+        Map<String, String> missingTagColors = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            BatchBookmarkReq.Operation op = operations.get(i);
+            String spaceName = usesSpace(types[i], op) ? parseNewSpaceName(op.getNamespaceId()) : null;
+            if (usesSpace(types[i], op) && spaceName == null && !spaceById.containsKey(op.getNamespaceId())) {
+                errors[i] = "命名空间不存在或无权限访问";
+                continue;
+            }
+            if (usesTags(types[i], op) && op.getTagsIds().stream()
+                    .anyMatch(tagRef -> parseNewTag(tagRef) == null && !tagById.containsKey(tagRef))) {
+                errors[i] = "部分标签不存在或无权限访问";
+                continue;
+            }
+
+            if (spaceName != null && !spaceByName.containsKey(spaceName) && !missingSpaceNames.contains(spaceName)) {
+                missingSpaceNames.add(spaceName);
+            }
+            if (usesTags(types[i], op)) {
+                for (String tagRef : op.getTagsIds()) {
+                    String[] newTag = parseNewTag(tagRef);
+                    if (newTag != null && !tagByName.containsKey(newTag[0])) {
+                        missingTagColors.putIfAbsent(newTag[0], newTag[1]);
+                    }
+                }
+            }
+        }
+
+        for (SnSpace space : spaceService.addSpaces(userId, missingSpaceNames)) {
+            spaceByName.put(space.getName(), space);
+        }
+        List<SnTag> newTags = new ArrayList<>(missingTagColors.size());
+        missingTagColors.forEach((name, color) -> {
+            SnTag tag = new SnTag();
+            tag.setUserId(userId);
+            tag.setName(name);
+            tag.setColor(color);
+            newTags.add(tag);
+        });
+        for (SnTag tag : tagService.addTags(newTags)) {
+            tagByName.put(tag.getName(), tag);
+        }
+
+        // 5. 按类型合并执行
+        List<SnBookmark> creates = new ArrayList<>();
+        List<Integer> createIndexes = new ArrayList<>();
+        List<SnBookmark> updates = new ArrayList<>();
+        Map<String, List<String>> moves = new HashMap<>();
+        Set<String> deleteIds = new LinkedHashSet<>();
+        Map<Integer, List<String>> tagIdsByIndex = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            BatchBookmarkReq.Operation op = operations.get(i);
+            String spaceId = usesSpace(types[i], op) ? resolveSpaceId(op.getNamespaceId(), spaceById, spaceByName) : null;
+            if (usesTags(types[i], op)) {
+                tagIdsByIndex.put(i, resolveTagIds(op.getTagsIds(), tagById, tagByName));
+            }
+            switch (types[i]) {
+                case CREATE -> {
+                    SnBookmark bookmark = new SnBookmark();
+                    bookmark.setUserId(userId);
+                    bookmark.setSpaceId(spaceId);
+                    bookmark.setName(op.getName());
+                    bookmark.setDescription(op.getDescription());
+                    bookmark.setUrl(op.getUrl());
+                    bookmark.setIcon(op.getIcon());
+                    bookmark.setNum(0);
+                    bookmark.setStar(false);
+                    creates.add(bookmark);
+                    createIndexes.add(i);
+                }
+                case UPDATE -> {
+                    SnBookmark bookmark = new SnBookmark();
+                    bookmark.setId(op.getId());
+                    bookmark.setName(op.getName());
+                    bookmark.setUrl(op.getUrl());
+                    bookmark.setIcon(op.getIcon());
+                    bookmark.setDescription(op.getDescription());
+                    updates.add(bookmark);
+                    if (spaceId != null) {
+                        moves.computeIfAbsent(spaceId, k -> new ArrayList<>()).add(op.getId());
+                    }
+                }
+                case MOVE -> moves.computeIfAbsent(spaceId, k -> new ArrayList<>()).add(op.getId());
+                case TAG -> {
+                    // 标签关联在下方与新书签一起写入
+                }
+                case DELETE -> deleteIds.add(op.getId());
+            }
+        }
+
+        bookmarkService.addBookmarks(creates);
+        for (int j = 0; j < creates.size(); j++) {
+            resultIds[createIndexes.get(j)] = creates.get(j).getId();
+        }
+        bookmarkService.updateBookmarks(updates, userId);
+        moves.forEach((spaceId, ids) -> bookmarkService.moveBookmarks(ids, userId, spaceId));
+
+        // 新书签直接多行插入关联；tag 操作与现有关联比较后只写入差异
+        List<SnBookmarkAssTag> associations = new ArrayList<>();
+        Map<String, List<String>> retags = new HashMap<>();
+        tagIdsByIndex.forEach((index, ids) -> {
+            if (types[index] == OpType.TAG) {
+                retags.put(resultIds[index], ids);
+                return;
+            }
+            for (String tagId : ids) {
+                SnBookmarkAssTag association = new SnBookmarkAssTag();
+                association.setUserId(userId);
+                association.setBookmarkId(resultIds[index]);
+                association.setTagId(tagId);
+                associations.add(association);
+            }
+        });
+        bookmarkAssTagService.upsertBatch(associations);
+        bookmarkAssTagService.replaceBookmarkTagAssociations(retags, userId);
+
+        bookmarkService.deleteBookmarks(deleteIds, userId);
+        bookmarkAssTagService.deleteByBookmarkIds(deleteIds, userId);
+
+        // 6. 构建结果
+        List<BatchBookmarkResp.ItemResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean success = errors[i] == null;
+            results.add(new BatchBookmarkResp.ItemResult(i, operations.get(i).getOp(), resultIds[i], success,
+                    success ? "操作成功" : errors[i]));
+        }
+        BatchBookmarkResp resp = BatchBookmarkResp.of(results);
+        log.info("批量书签操作完成，用户ID: {}，成功 {} 项，失败 {} 项", userId, resp.getSuccessCount(), resp.getFailCount());
+        return resp;
+    }
+
+    /**
+     * 操作是否需要解析空间：create、update 仅在指定空间时解析，move 的空值表示移出空间
+     */
+    private boolean usesSpace(OpType type, BatchBookmarkReq.Operation op) {
+        return (type == OpType.CREATE || type == OpType.UPDATE || type == OpType.MOVE) && !isBlank(op.getNamespaceId());
+    }
+
+    /**
+     * 操作是否需要解析标签：create 可选，tag 为空列表表示清空标签
+     */
+    private boolean usesTags(OpType type, BatchBookmarkReq.Operation op) {
+        if (type == OpType.TAG) {
+            if (op.getTagsIds() == null) {
+                op.setTagsIds(List.of());
+            }
+            return true;
+        }
+        return type == OpType.CREATE && op.getTagsIds() != null && !op.getTagsIds().isEmpty();
+    }
+
+    /**
+     * 解析 "空间名:new" 格式，非新建格式返回 null
+     */
+    private String parseNewSpaceName(String namespaceId) {
+        if (!namespaceId.contains(NEW_SPACE_MARK)) {
+            return null;
+        }
+        return namespaceId.replace(NEW_SPACE_MARK, "").trim();
+    }
+
+    /**
+     * 解析 "标签名:new:#颜色代码" 格式，非新建格式返回 null，格式错误返回空数组
+     */
+    private String[] parseNewTag(String tagRef) {
+        if (!tagRef.contains(NEW_TAG_MARK)) {
+            return null;
+        }
+        String[] parts = tagRef.split(NEW_TAG_MARK);
+        if (parts.length != 2 || parts[0].trim().isEmpty() || parts[1].trim().isEmpty()) {
+            return new String[0];
+        }
+        return new String[]{parts[0].trim(), parts[1].trim()};
+    }
+
+    private String resolveSpaceId(String namespaceId, Map<String, SnSpace> spaceById, Map<String, SnSpace> spaceByName) {
+        String spaceName = parseNewSpaceName(namespaceId);
+        SnSpace space = spaceName == null ? spaceById.get(namespaceId) : spaceByName.get(spaceName);
+        return space != null ? space.getId() : null;
+    }
+
+    private List<String> resolveTagIds(List<String> tagRefs, Map<String, SnTag> tagById, Map<String, SnTag> tagByName) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String tagRef : tagRefs) {
+            String[] newTag = parseNewTag(tagRef);
+            SnTag tag = newTag == null ? tagById.get(tagRef) : tagByName.get(newTag[0]);
+            if (tag != null) {
+                ids.add(tag.getId());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * 校验URL格式并检查批量操作内是否重复
+     *
+     * @param url  书签URL
+     * @param seen 本次批量操作中已出现的URL
+     * @return 错误信息，校验通过返回 null
+     */
+    private static String checkUrl(String url, Set<String> seen) {
+        if (!UrlValidator.isValidUrl(url)) {
+            return "URL格式不正确";
+        }
+        if (!seen.add(url)) {
+            return "批量操作中存在重复的URL";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -2,6 +2,7 @@ package pres.peixinyi.sinan.module.sinan.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import lombok.extern.slf4j.Slf4j;
@@ -15,14 +16,20 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Collection;
 import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.util.ObjectUtils;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
 import pres.peixinyi.sinan.module.sinan.entity.SnShareSpaceAssUser;
+import org.apache.ibatis.session.ResultHandler;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+import pres.peixinyi.sinan.module.sinan.event.BookmarkDomainsAddedEvent;
 import pres.peixinyi.sinan.module.sinan.mapper.SnBookmarkMapper;
 import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
 import pres.peixinyi.sinan.module.sinan.entity.SnTag;
@@ -47,6 +54,12 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
     @Resource
     private SnIgnoredGroupService ignoredGroupService;
 
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private BookmarkIconExtractor iconExtractor;
+
     public List<SnBookmark> getMostVisitedBookmarks(int limit, String search, String userId) {
         // 获取用户订阅空间ID列表
         List<String> subscribedSpaceIds = snShareSpaceAssUserService.getByUserId(userId)
@@ -78,8 +91,22 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
     }
 
     public SnBookmark addBookmark(SnBookmark bookmark) {
+        saveBookmark(bookmark);
+        publishDomainsAdded(bookmark.getUserId(), BookmarkDomainsAddedEvent.SOURCE_CREATE, List.of(bookmark));
+        return bookmark;
+    }
+
+    /**
+     * 保存书签，不发布域名事件
+     * 供批量导入逐条保存，导入结束后由调用方统一发布
+     *
+     * @param bookmark 书签
+     * @return 保存后的书签
+     */
+    public SnBookmark saveBookmark(SnBookmark bookmark) {
         bookmark.setPinyin(PinyinUtils.toPinyin(bookmark.getName()));
         bookmark.setAbbreviation(PinyinUtils.toPinyinFirstLetter(bookmark.getName()));
+        bookmark.setIcon(iconExtractor.extract(bookmark.getIcon()));
         bookmark.setCreateTime(new Date());
         bookmark.setUpdateTime(new Date());
         bookmark.setDeleted(0);
@@ -87,6 +114,29 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
         return bookmark;
     }
 
+    /**
+     * 发布新增书签的域名事件，用于后台预取图标
+     * 事件处理失败不影响书签保存
+     *
+     * @param userId    用户ID
+     * @param source    来源，见 {@link BookmarkDomainsAddedEvent}
+     * @param bookmarks 新增的书签
+     */
+    public void publishDomainsAdded(String userId, String source, Collection<SnBookmark> bookmarks) {
+        if (bookmarks == null || bookmarks.isEmpty()) {
+            return;
+        }
+        try {
+            BookmarkDomainsAddedEvent event = BookmarkDomainsAddedEvent.ofUrls(userId, source,
+                    bookmarks.stream().map(SnBookmark::getUrl).toList());
+            if (event != null) {
+                eventPublisher.publishEvent(event);
+            }
+        } catch (Exception e) {
+            log.warn("发布书签域名事件失败，用户ID: {}", userId, e);
+        }
+    }
+
     /**
      * 检查书签是否存在且属于指定用户
      *
@@ -139,6 +189,7 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
     public boolean updateBookmark(SnBookmark bookmark) {
         bookmark.setPinyin(PinyinUtils.toPinyin(bookmark.getName()));
         bookmark.setAbbreviation(PinyinUtils.toPinyinFirstLetter(bookmark.getName()));
+        bookmark.setIcon(iconExtractor.extract(bookmark.getIcon()));
         bookmark.setUpdateTime(new Date());
         return updateById(bookmark);
     }
@@ -172,6 +223,8 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
      * @return true 更新成功，false 更新失败
      */
     public boolean updateBookmarkByUser(String bookmarkId, String userId, String name, String url, String icon, String description, String namespaceId) {
+        // 内联图标无效时保持原图标
+        icon = iconExtractor.extract(icon);
         return lambdaUpdate()
                 .eq(SnBookmark::getId, bookmarkId)
                 .eq(SnBookmark::getUserId, userId)
@@ -519,26 +572,7 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
      * @return 书签数量
      */
     public long getBookmarkCountByTagId(String tagId, String userId) {
-        // 获取标签关联的书签ID列表
-        List<String> bookmarkIds = bookmarkAssTagService.lambdaQuery()
-                .eq(SnBookmarkAssTag::getTagId, tagId)
-                .eq(SnBookmarkAssTag::getUserId, userId)
-                .eq(SnBookmarkAssTag::getDeleted, 0)
-                .list()
-                .stream()
-                .map(SnBookmarkAssTag::getBookmarkId)
-                .collect(Collectors.toList());
-
-        if (bookmarkIds.isEmpty()) {
-            return 0;
-        }
-
-        // 统计有效书签数量
-        return lambdaQuery()
-                .in(SnBookmark::getId, bookmarkIds)
-                .eq(SnBookmark::getUserId, userId)
-                .eq(SnBookmark::getDeleted, 0)
-                .count();
+        return baseMapper.countByTagId(tagId, userId);
     }
 
     public List<SnBookmark> getNoNamespaceBookmarks(String currentUserId) {
@@ -598,16 +632,20 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
 
             // 批量保存书签
             int successCount = 0;
+            List<SnBookmark> savedBookmarks = new ArrayList<>();
             for (SnBookmark bookmark : bookmarks) {
                 try {
+                    bookmark.setIcon(iconExtractor.extract(bookmark.getIcon()));
                     if (save(bookmark)) {
                         successCount++;
+                        savedBookmarks.add(bookmark);
                     }
                 } catch (Exception e) {
                     // 记录失败的书签，继续处理其他书签
                     log.warn("保存书签失败: {}", bookmark.getName(), e);
                 }
             }
+            publishDomainsAdded(userId, BookmarkDomainsAddedEvent.SOURCE_CHROME_IMPORT, savedBookmarks);
 
             return ImportBookmarkResp.success(successCount, bookmarks.size(), skipCount);
 
@@ -672,9 +710,9 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
             bookmark.setDescription("");
             bookmark.setSpaceId(null); // Space设置为空
 
-            // 处理ICON数据 - 直接存储base64数据
+            // 处理ICON数据 - Chrome导出的ICON通常是data:image格式的base64数据，
+            // 过滤已存在的书签后保存时再提取为图标文件
             if (iconData != null && !iconData.trim().isEmpty()) {
-                // Chrome导出的ICON通常是data:image格式的base64数据
                 bookmark.setIcon(iconData.trim());
             } else {
                 bookmark.setIcon(null);
@@ -715,6 +753,16 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
                 .list();
     }
 
+    /**
+     * 流式读取用户书签导出行（含空间名称与标签）
+     *
+     * @param userId  用户ID
+     * @param handler 逐行处理器
+     */
+    public void streamExportRows(String userId, ResultHandler<BookmarkExportRow> handler) {
+        baseMapper.streamExportRows(userId, handler);
+    }
+
     /**
      * 检查用户是否已有相同URL的书签
      *
@@ -734,6 +782,27 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
                 .exists();
     }
 
+    /**
+     * 检查用户的其他书签是否已使用该URL
+     *
+     * @param url       书签URL
+     * @param userId    用户ID
+     * @param excludeId 排除的书签ID（正在编辑的书签）
+     * @return 是否已被其他书签使用
+     */
+    public boolean isUrlUsedByOtherBookmark(String url, String userId, String excludeId) {
+        if (url == null || url.trim().isEmpty() || userId == null) {
+            return false;
+        }
+
+        return lambdaQuery()
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getUrl, url.trim())
+                .ne(SnBookmark::getId, excludeId)
+                .eq(SnBookmark::getDeleted, 0)
+                .exists();
+    }
+
     /**
      * 根据URL和用户ID获取书签
      *
@@ -1397,4 +1466,139 @@ public class SnBookmarkService extends ServiceImpl<SnBookmarkMapper, SnBookmark>
         return response;
     }
 
+    /**
+     * 逻辑删除用户的所有书签（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @return 删除的行数
+     */
+    public int softDeleteByUserId(String userId) {
+        return baseMapper.update(null, Wrappers.<SnBookmark>lambdaUpdate()
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getDeleted, 0)
+                .set(SnBookmark::getDeleted, 1)
+                .set(SnBookmark::getUpdateTime, new Date()));
+    }
+
+    /**
+     * 按ID一次性查询用户的书签
+     *
+     * @param ids    书签ID集合
+     * @param userId 用户ID
+     * @return 书签列表
+     */
+    public List<SnBookmark> getBookmarksByUserAndIds(Collection<String> ids, String userId) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return lambdaQuery()
+                .in(SnBookmark::getId, ids)
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getDeleted, 0)
+                .list();
+    }
+
+    /**
+     * 按URL一次性查询用户的书签
+     *
+     * @param urls   URL集合
+     * @param userId 用户ID
+     * @return 书签列表
+     */
+    public List<SnBookmark> getBookmarksByUrlsAndUser(Collection<String> urls, String userId) {
+        if (urls.isEmpty()) {
+            return List.of();
+        }
+        return lambdaQuery()
+                .in(SnBookmark::getUrl, urls)
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getDeleted, 0)
+                .list();
+    }
+
+    /**
+     * 多行插入书签
+     *
+     * @param bookmarks 书签列表
+     * @return 插入的书签（已填充ID）
+     */
+    public List<SnBookmark> addBookmarks(List<SnBookmark> bookmarks) {
+        if (bookmarks.isEmpty()) {
+            return bookmarks;
+        }
+        Date now = new Date();
+        for (SnBookmark bookmark : bookmarks) {
+            bookmark.setId(IdWorker.get32UUID());
+            bookmark.setPinyin(PinyinUtils.toPinyin(bookmark.getName()));
+            bookmark.setAbbreviation(PinyinUtils.toPinyinFirstLetter(bookmark.getName()));
+            bookmark.setIcon(iconExtractor.extract(bookmark.getIcon()));
+            bookmark.setCreateTime(now);
+            bookmark.setUpdateTime(now);
+            bookmark.setDeleted(0);
+        }
+        baseMapper.insertBatch(bookmarks);
+        publishDomainsAdded(bookmarks.get(0).getUserId(), BookmarkDomainsAddedEvent.SOURCE_CREATE, bookmarks);
+        return bookmarks;
+    }
+
+    /**
+     * 单条语句批量更新书签的名称、URL、图标、描述，字段为 null 时保持原值
+     * 内联图标与单条更新一样先提取为图标文件
+     *
+     * @param bookmarks 书签列表（需包含ID）
+     * @param userId    用户ID
+     * @return 更新行数
+     */
+    public int updateBookmarks(List<SnBookmark> bookmarks, String userId) {
+        if (bookmarks.isEmpty()) {
+            return 0;
+        }
+        for (SnBookmark bookmark : bookmarks) {
+            if (bookmark.getName() != null) {
+                bookmark.setPinyin(PinyinUtils.toPinyin(bookmark.getName()));
+                bookmark.setAbbreviation(PinyinUtils.toPinyinFirstLetter(bookmark.getName()));
+            }
+            bookmark.setIcon(iconExtractor.extract(bookmark.getIcon()));
+        }
+        return baseMapper.updateBatchFields(userId, bookmarks, new Date());
+    }
+
+    /**
+     * 将多个书签移动到同一空间（单条 UPDATE 语句）
+     *
+     * @param ids     书签ID集合
+     * @param userId  用户ID
+     * @param spaceId 目标空间ID，为 null 表示移出空间
+     * @return 更新行数
+     */
+    public int moveBookmarks(Collection<String> ids, String userId, String spaceId) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(null, Wrappers.<SnBookmark>lambdaUpdate()
+                .in(SnBookmark::getId, ids)
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getDeleted, 0)
+                .set(SnBookmark::getSpaceId, spaceId)
+                .set(SnBookmark::getUpdateTime, new Date()));
+    }
+
+    /**
+     * 逻辑删除多个书签（单条 UPDATE 语句）
+     *
+     * @param ids    书签ID集合
+     * @param userId 用户ID
+     * @return 删除的行数
+     */
+    public int deleteBookmarks(Collection<String> ids, String userId) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(null, Wrappers.<SnBookmark>lambdaUpdate()
+                .in(SnBookmark::getId, ids)
+                .eq(SnBookmark::getUserId, userId)
+                .eq(SnBookmark::getDeleted, 0)
+                .set(SnBookmark::getDeleted, 1)
+                .set(SnBookmark::getUpdateTime, new Date()));
+    }
 }
@@ -0,0 +1,59 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Service;
+import pres.peixinyi.sinan.dto.response.BookmarkStatsResp;
+import pres.peixinyi.sinan.module.sinan.domain.GroupCount;
+import pres.peixinyi.sinan.module.sinan.mapper.SnBookmarkMapper;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 书签统计服务
+ * <p>
+ * 用户所有空间、所有标签的书签数量各由一条分组查询得出，不再逐个空间或标签计数。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Service
+public class SnBookmarkStatsService {
+
+    @Resource
+    private SnBookmarkMapper bookmarkMapper;
+
+    /**
+     * 获取用户的书签统计
+     *
+     * @param userId 用户ID
+     * @return 书签总数、未归属空间数量以及每个空间、标签的书签数量
+     */
+    public BookmarkStatsResp getUserStats(String userId) {
+        BookmarkStatsResp stats = new BookmarkStatsResp();
+        for (GroupCount count : bookmarkMapper.countTotals(userId)) {
+            if ("total".equals(count.getGroupKey())) {
+                stats.setTotalCount(valueOf(count));
+            } else if ("noSpace".equals(count.getGroupKey())) {
+                stats.setNoSpaceCount(valueOf(count));
+            }
+        }
+        stats.setSpaceCounts(toMap(bookmarkMapper.countGroupBySpace(userId)));
+        stats.setTagCounts(toMap(bookmarkMapper.countGroupByTag(userId)));
+        return stats;
+    }
+
+    private Map<String, Long> toMap(List<GroupCount> counts) {
+        Map<String, Long> result = new LinkedHashMap<>(counts.size() * 2);
+        for (GroupCount count : counts) {
+            result.put(count.getGroupKey(), valueOf(count));
+        }
+        return result;
+    }
+
+    private long valueOf(GroupCount count) {
+        return count.getTotal() == null ? 0 : count.getTotal();
+    }
+}
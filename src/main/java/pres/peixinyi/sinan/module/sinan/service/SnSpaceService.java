@@ -5,13 +5,22 @@ import org.springframework.stereotype.Service;
 
 import java.util.Date;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.apache.ibatis.session.ResultHandler;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import pres.peixinyi.sinan.dto.request.ShareSpaceUpdateReq;
 import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
 import pres.peixinyi.sinan.module.sinan.mapper.SnSpaceMapper;
+import pres.peixinyi.sinan.utils.FractionalIndex;
 import pres.peixinyi.sinan.utils.PinyinUtils;
 
 @Service
@@ -64,6 +73,8 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
             Integer maxSort = getMaxSortByUser(space.getUserId());
             space.setSort(maxSort == null ? 1 : maxSort + 1);
         }
+        // 新空间排在最后
+        space.setSortKey(FractionalIndex.between(getMaxSortKeyByUser(space.getUserId()), null));
 
         save(space);
         return space;
@@ -85,6 +96,23 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
         return space != null ? space.getSort() : null;
     }
 
+    /**
+     * 获取用户的最大排序键
+     *
+     * @param userId 用户ID
+     * @return 最大排序键，不存在或不合法时返回null
+     */
+    public String getMaxSortKeyByUser(String userId) {
+        SnSpace space = lambdaQuery()
+                .select(SnSpace::getSortKey)
+                .eq(SnSpace::getUserId, userId)
+                .eq(SnSpace::getDeleted, 0)
+                .orderByDesc(SnSpace::getSortKey)
+                .last("limit 1")
+                .one();
+        return space != null && FractionalIndex.isValid(space.getSortKey()) ? space.getSortKey() : null;
+    }
+
     /**
      * 更新空间
      *
@@ -138,11 +166,21 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
         return lambdaQuery()
                 .eq(SnSpace::getUserId, userId)
                 .eq(SnSpace::getDeleted, 0)
-                .orderByAsc(SnSpace::getSort)
+                .orderByAsc(SnSpace::getSortKey)
                 .orderByDesc(SnSpace::getCreateTime)
                 .list();
     }
 
+    /**
+     * 流式读取用户的所有空间
+     *
+     * @param userId  用户ID
+     * @param handler 逐行处理器
+     */
+    public void streamUserSpaces(String userId, ResultHandler<SnSpace> handler) {
+        baseMapper.streamByUserId(userId, handler);
+    }
+
     /**
      * 搜索用户的空间
      *
@@ -159,7 +197,7 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
                         .or()
                         .like(SnSpace::getDescription, search)
                 )
-                .orderByAsc(SnSpace::getSort)
+                .orderByAsc(SnSpace::getSortKey)
                 .orderByDesc(SnSpace::getCreateTime)
                 .list();
     }
@@ -202,14 +240,14 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
                             .or()
                             .like(SnSpace::getDescription, search.trim())
                     )
-                    .orderByAsc(SnSpace::getSort)
+                    .orderByAsc(SnSpace::getSortKey)
                     .orderByDesc(SnSpace::getCreateTime)
                     .page(page);
         } else {
             return lambdaQuery()
                     .eq(SnSpace::getUserId, userId)
                     .eq(SnSpace::getDeleted, 0)
-                    .orderByAsc(SnSpace::getSort)
+                    .orderByAsc(SnSpace::getSortKey)
                     .orderByDesc(SnSpace::getCreateTime)
                     .page(page);
         }
@@ -240,7 +278,7 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
                     )
                     .in(SnSpace::getId, spaceIds)
                     .eq(SnSpace::getShare, 1)
-                    .orderByAsc(SnSpace::getSort)
+                    .orderByAsc(SnSpace::getSortKey)
                     .orderByDesc(SnSpace::getCreateTime)
                     .page(page);
         } else {
@@ -248,7 +286,7 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
                     .eq(SnSpace::getDeleted, 0)
                     .eq(SnSpace::getShare, 1)
                     .in(SnSpace::getId, spaceIds)
-                    .orderByAsc(SnSpace::getSort)
+                    .orderByAsc(SnSpace::getSortKey)
                     .orderByDesc(SnSpace::getCreateTime)
                     .page(page);
         }
@@ -269,8 +307,200 @@ public class SnSpaceService extends ServiceImpl<SnSpaceMapper, SnSpace> {
         return lambdaQuery()
                 .in(SnSpace::getId, subscribedSpaceIds)
                 .eq(SnSpace::getDeleted, 0)
-                .orderByAsc(SnSpace::getSort)
+                .orderByAsc(SnSpace::getSortKey)
                 .orderByDesc(SnSpace::getCreateTime)
                 .list();
     }
+
+    /**
+     * 逻辑删除用户的所有空间（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @return 删除的行数
+     */
+    public int softDeleteByUserId(String userId) {
+        return baseMapper.update(null, Wrappers.<SnSpace>lambdaUpdate()
+                .eq(SnSpace::getUserId, userId)
+                .eq(SnSpace::getDeleted, 0)
+                .set(SnSpace::getDeleted, 1)
+                .set(SnSpace::getUpdateTime, new Date()));
+    }
+
+    /**
+     * 按ID或名称一次性查询用户的空间
+     *
+     * @param userId 用户ID
+     * @param ids    空间ID集合
+     * @param names  空间名称集合
+     * @return 空间列表
+     */
+    public List<SnSpace> getSpacesByUserAndIdsOrNames(String userId, Collection<String> ids, Collection<String> names) {
+        if (ids.isEmpty() && names.isEmpty()) {
+            return List.of();
+        }
+        return lambdaQuery()
+                .eq(SnSpace::getUserId, userId)
+                .eq(SnSpace::getDeleted, 0)
+                .and(w -> w.in(!ids.isEmpty(), SnSpace::getId, ids)
+                        .or(!ids.isEmpty() && !names.isEmpty())
+                        .in(!names.isEmpty(), SnSpace::getName, names))
+                .list();
+    }
+
+    /**
+     * 批量创建空间，排序值接在用户当前最大值之后
+     *
+     * @param userId 用户ID
+     * @param names  空间名称列表
+     * @return 创建的空间
+     */
+    public List<SnSpace> addSpaces(String userId, List<String> names) {
+        if (names.isEmpty()) {
+            return List.of();
+        }
+        Integer maxSort = getMaxSortByUser(userId);
+        int sort = maxSort == null ? 0 : maxSort;
+        List<String> sortKeys = FractionalIndex.between(getMaxSortKeyByUser(userId), null, names.size());
+        Date now = new Date();
+        List<SnSpace> spaces = new ArrayList<>(names.size());
+        for (String name : names) {
+            SnSpace space = new SnSpace();
+            space.setId(IdWorker.get32UUID());
+            space.setUserId(userId);
+            space.setName(name);
+            space.setPinyin(PinyinUtils.toPinyin(name));
+            space.setAbbreviation(PinyinUtils.toPinyinFirstLetter(name));
+            space.setIcon("StarsIcon");
+            space.setSort(++sort);
+            space.setSortKey(sortKeys.get(spaces.size()));
+            space.setCreateTime(now);
+            space.setUpdateTime(now);
+            space.setDeleted(0);
+            spaces.add(space);
+        }
+        baseMapper.insertBatch(spaces);
+        return spaces;
+    }
+
+    /**
+     * 把空间移动到目标位置
+     * <p>
+     * 只为被移动的空间生成一个介于新位置前后两项之间的排序键，其余空间的排序键不变；
+     * 旧的整数排序值在移动经过的区间内依次轮换，保持与排序键顺序一致。
+     * 前后排序键缺失、重复、新键超长或区间内有空排序值时退化为整体重排。
+     *
+     * @param userId      用户ID
+     * @param spaces      用户当前的全部空间（按排序键排序）
+     * @param spaceId     被移动的空间ID
+     * @param targetIndex 目标位置（从0开始）
+     * @return true 移动成功，false 空间不在列表中
+     */
+    public boolean moveSpace(String userId, List<SnSpace> spaces, String spaceId, int targetIndex) {
+        List<SnSpace> ordered = new ArrayList<>(spaces);
+        SnSpace moved = null;
+        int movedFrom = -1;
+        for (int i = 0; i < ordered.size(); i++) {
+            if (ordered.get(i).getId().equals(spaceId)) {
+                moved = ordered.remove(i);
+                movedFrom = i;
+                break;
+            }
+        }
+        if (moved == null) {
+            return false;
+        }
+        int index = Math.max(0, Math.min(targetIndex, ordered.size()));
+        String lower = index > 0 ? ordered.get(index - 1).getSortKey() : null;
+        String upper = index < ordered.size() ? ordered.get(index).getSortKey() : null;
+        ordered.add(index, moved);
+
+        boolean canInsert = (index == 0 || FractionalIndex.isValid(lower))
+                && (index == ordered.size() - 1 || FractionalIndex.isValid(upper))
+                && (lower == null || upper == null || lower.compareTo(upper) < 0);
+        if (canInsert) {
+            String sortKey = FractionalIndex.between(lower, upper);
+            List<SnSpace> shifted = ordered.subList(Math.min(movedFrom, index), Math.max(movedFrom, index) + 1);
+            if (sortKey.length() <= FractionalIndex.MAX_LENGTH
+                    && shifted.stream().allMatch(space -> space.getSort() != null)) {
+                // 旧排序值只在移动经过的区间内轮换，区间外的空位与取值保持不变
+                List<Integer> sortValues = shifted.stream().map(SnSpace::getSort).sorted().toList();
+                List<SnSpace> updates = new ArrayList<>(shifted.size());
+                for (int i = 0; i < shifted.size(); i++) {
+                    SnSpace update = new SnSpace();
+                    update.setId(shifted.get(i).getId());
+                    update.setSort(sortValues.get(i));
+                    update.setSortKey(shifted.get(i) == moved ? sortKey : shifted.get(i).getSortKey());
+                    updates.add(update);
+                }
+                baseMapper.updateSortKeys(userId, updates, new Date());
+                return true;
+            }
+        }
+        reorderSpaces(userId, ordered);
+        return true;
+    }
+
+    /**
+     * 按给定顺序整体重排空间（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @param spaces 排好序的空间列表
+     */
+    public void reorderSpaces(String userId, List<SnSpace> spaces) {
+        if (spaces.isEmpty()) {
+            return;
+        }
+        List<String> sortKeys = FractionalIndex.evenlySpaced(spaces.size());
+        List<SnSpace> updates = new ArrayList<>(spaces.size());
+        for (int i = 0; i < spaces.size(); i++) {
+            SnSpace update = new SnSpace();
+            update.setId(spaces.get(i).getId());
+            update.setSort(i + 1);
+            update.setSortKey(sortKeys.get(i));
+            updates.add(update);
+        }
+        baseMapper.updateSortKeys(userId, updates, new Date());
+    }
+
+    /**
+     * 按排序值重排空间
+     * <p>
+     * 以当前排序键顺序为准，未给定排序值的空间以所在位置（从1开始）作为排序值，
+     * 给定的空间按新排序值插入，同值时排在原位置的空间之前；
+     * 库中的排序值可能有空缺或为空（如删除后、新建时），因此不以其为准。
+     *
+     * @param userId     用户ID
+     * @param spaces     用户当前的全部空间（按排序键排序）
+     * @param sortValues 空间ID与新排序值
+     */
+    public void applySortValues(String userId, List<SnSpace> spaces, Map<String, Integer> sortValues) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < spaces.size(); i++) {
+            positions.put(spaces.get(i).getId(), i + 1);
+        }
+        List<SnSpace> ordered = new ArrayList<>(spaces);
+        ordered.sort(Comparator.comparingInt((SnSpace space) -> effectiveSort(space, positions, sortValues))
+                .thenComparing(space -> sortValues.get(space.getId()) == null));
+        reorderSpaces(userId, ordered);
+    }
+
+    private static int effectiveSort(SnSpace space, Map<String, Integer> positions, Map<String, Integer> sortValues) {
+        Integer sort = sortValues.get(space.getId());
+        return sort != null ? sort : positions.get(space.getId());
+    }
+
+    /**
+     * 重排排序键过长的用户空间
+     *
+     * @param maxLength 排序键长度上限
+     * @param limit     单次最多处理的用户数
+     * @return 处理的用户数
+     */
+    public int rebalanceLongSortKeys(int maxLength, int limit) {
+        List<String> userIds = baseMapper.selectUserIdsWithLongSortKey(maxLength, limit);
+        for (String userId : userIds) {
+            reorderSpaces(userId, getUserSpaces(userId));
+        }
+        return userIds.size();
+    }
 }
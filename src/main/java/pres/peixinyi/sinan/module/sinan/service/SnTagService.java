@@ -2,14 +2,23 @@ package pres.peixinyi.sinan.module.sinan.service;
 
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.apache.ibatis.session.ResultHandler;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import pres.peixinyi.sinan.module.sinan.entity.SnTag;
 import pres.peixinyi.sinan.module.sinan.mapper.SnTagMapper;
+import pres.peixinyi.sinan.utils.FractionalIndex;
 import pres.peixinyi.sinan.utils.PinyinUtils;
 
 @Service
@@ -76,6 +85,8 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
 
     /**
      * 新增标签
+     * <p>
+     * 未指定排序值的新标签排在最前；指定了排序值（如数据导入按顺序逐个写入）时排在最后。
      *
      * @param tag 标签对象
      * @return 保存后的标签对象
@@ -86,6 +97,11 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
         tag.setCreateTime(new Date());
         tag.setUpdateTime(new Date());
         tag.setDeleted(0);
+        if (tag.getSort() == null) {
+            tag.setSortKey(FractionalIndex.between(null, getBoundarySortKeyByUser(tag.getUserId(), true)));
+        } else {
+            tag.setSortKey(FractionalIndex.between(getBoundarySortKeyByUser(tag.getUserId(), false), null));
+        }
         save(tag);
         return tag;
     }
@@ -115,21 +131,22 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
     }
 
     /**
-     * 更新标签排序
+     * 获取用户最前或最后的排序键
      *
-     * @param tagId  标签ID
      * @param userId 用户ID
-     * @param sort   排序值
-     * @return true 更新成功，false 更新失败
+     * @param first  true 取最小排序键，false 取最大排序键
+     * @return 排序键，不存在或不合法时返回null
      */
-    public boolean updateTagSort(String tagId, String userId, Integer sort) {
-        return lambdaUpdate()
-                .eq(SnTag::getId, tagId)
+    public String getBoundarySortKeyByUser(String userId, boolean first) {
+        SnTag tag = lambdaQuery()
+                .select(SnTag::getSortKey)
                 .eq(SnTag::getUserId, userId)
                 .eq(SnTag::getDeleted, 0)
-                .set(SnTag::getSort, sort)
-                .set(SnTag::getUpdateTime, new Date())
-                .update();
+                .isNotNull(SnTag::getSortKey)
+                .orderBy(true, first, SnTag::getSortKey)
+                .last("limit 1")
+                .one();
+        return tag != null && FractionalIndex.isValid(tag.getSortKey()) ? tag.getSortKey() : null;
     }
 
     /**
@@ -159,11 +176,21 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
         return lambdaQuery()
                 .eq(SnTag::getUserId, userId)
                 .eq(SnTag::getDeleted, 0)
-                .orderByAsc(SnTag::getSort)
+                .orderByAsc(SnTag::getSortKey)
                 .orderByDesc(SnTag::getCreateTime)
                 .list();
     }
 
+    /**
+     * 流式读取用户的所有标签
+     *
+     * @param userId  用户ID
+     * @param handler 逐行处理器
+     */
+    public void streamUserTags(String userId, ResultHandler<SnTag> handler) {
+        baseMapper.streamByUserId(userId, handler);
+    }
+
     /**
      * 搜索用户的标签
      *
@@ -235,7 +262,7 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
                             .or()
                             .like(SnTag::getDescription, search.trim())
                     )
-                    .orderByAsc(SnTag::getSort)
+                    .orderByAsc(SnTag::getSortKey)
                     .orderByDesc(SnTag::getCreateTime)
                     .page(page);
         } else {
@@ -243,7 +270,7 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
                     .eq(SnTag::getUserId, userId)
                     .eq(SnTag::getDeleted, 0)
                     .orderByDesc(SnTag::getCreateTime)
-                    .orderByAsc(SnTag::getSort)
+                    .orderByAsc(SnTag::getSortKey)
                     .page(page);
         }
     }
@@ -258,9 +285,193 @@ public class SnTagService extends ServiceImpl<SnTagMapper, SnTag> {
         return lambdaQuery()
                 .eq(SnTag::getUserId, userId)
                 .eq(SnTag::getDeleted, 0)
-                .orderByAsc(SnTag::getSort)
+                .orderByAsc(SnTag::getSortKey)
                 .orderByDesc(SnTag::getCreateTime)
                 .list();
     }
 
+    /**
+     * 逻辑删除用户的所有标签（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @return 删除的行数
+     */
+    public int softDeleteByUserId(String userId) {
+        return baseMapper.update(null, Wrappers.<SnTag>lambdaUpdate()
+                .eq(SnTag::getUserId, userId)
+                .eq(SnTag::getDeleted, 0)
+                .set(SnTag::getDeleted, 1)
+                .set(SnTag::getUpdateTime, new Date()));
+    }
+
+    /**
+     * 按ID或名称一次性查询用户的标签
+     *
+     * @param userId 用户ID
+     * @param ids    标签ID集合
+     * @param names  标签名称集合
+     * @return 标签列表
+     */
+    public List<SnTag> getTagsByUserAndIdsOrNames(String userId, Collection<String> ids, Collection<String> names) {
+        if (ids.isEmpty() && names.isEmpty()) {
+            return List.of();
+        }
+        return lambdaQuery()
+                .eq(SnTag::getUserId, userId)
+                .eq(SnTag::getDeleted, 0)
+                .and(w -> w.in(!ids.isEmpty(), SnTag::getId, ids)
+                        .or(!ids.isEmpty() && !names.isEmpty())
+                        .in(!names.isEmpty(), SnTag::getName, names))
+                .list();
+    }
+
+    /**
+     * 批量创建标签
+     *
+     * @param tags 标签列表（需设置用户ID、名称、颜色）
+     * @return 创建的标签
+     */
+    public List<SnTag> addTags(List<SnTag> tags) {
+        if (tags.isEmpty()) {
+            return tags;
+        }
+        // 新标签按列表顺序排在最前
+        List<String> sortKeys = FractionalIndex.between(null,
+                getBoundarySortKeyByUser(tags.get(0).getUserId(), true), tags.size());
+        Date now = new Date();
+        for (int i = 0; i < tags.size(); i++) {
+            SnTag tag = tags.get(i);
+            tag.setId(IdWorker.get32UUID());
+            tag.setSortKey(sortKeys.get(i));
+            tag.setPinyin(PinyinUtils.toPinyin(tag.getName()));
+            tag.setAbbreviation(PinyinUtils.toPinyinFirstLetter(tag.getName()));
+            tag.setCreateTime(now);
+            tag.setUpdateTime(now);
+            tag.setDeleted(0);
+        }
+        baseMapper.insertBatch(tags);
+        return tags;
+    }
+
+    /**
+     * 把标签移动到目标位置
+     * <p>
+     * 只为被移动的标签生成一个介于新位置前后两项之间的排序键，其余标签的排序键不变；
+     * 旧的整数排序值在移动经过的区间内依次轮换，保持与排序键顺序一致。
+     * 前后排序键缺失、重复、新键超长或区间内有空排序值时退化为整体重排。
+     *
+     * @param userId      用户ID
+     * @param tags        用户当前的全部标签（按排序键排序）
+     * @param tagId       被移动的标签ID
+     * @param targetIndex 目标位置（从0开始）
+     * @return true 移动成功，false 标签不在列表中
+     */
+    public boolean moveTag(String userId, List<SnTag> tags, String tagId, int targetIndex) {
+        List<SnTag> ordered = new ArrayList<>(tags);
+        SnTag moved = null;
+        int movedFrom = -1;
+        for (int i = 0; i < ordered.size(); i++) {
+            if (ordered.get(i).getId().equals(tagId)) {
+                moved = ordered.remove(i);
+                movedFrom = i;
+                break;
+            }
+        }
+        if (moved == null) {
+            return false;
+        }
+        int index = Math.max(0, Math.min(targetIndex, ordered.size()));
+        String lower = index > 0 ? ordered.get(index - 1).getSortKey() : null;
+        String upper = index < ordered.size() ? ordered.get(index).getSortKey() : null;
+        ordered.add(index, moved);
+
+        boolean canInsert = (index == 0 || FractionalIndex.isValid(lower))
+                && (index == ordered.size() - 1 || FractionalIndex.isValid(upper))
+                && (lower == null || upper == null || lower.compareTo(upper) < 0);
+        if (canInsert) {
+            String sortKey = FractionalIndex.between(lower, upper);
+            List<SnTag> shifted = ordered.subList(Math.min(movedFrom, index), Math.max(movedFrom, index) + 1);
+            if (sortKey.length() <= FractionalIndex.MAX_LENGTH
+                    && shifted.stream().allMatch(tag -> tag.getSort() != null)) {
+                // 旧排序值只在移动经过的区间内轮换，区间外的空位与取值保持不变
+                List<Integer> sortValues = shifted.stream().map(SnTag::getSort).sorted().toList();
+                List<SnTag> updates = new ArrayList<>(shifted.size());
+                for (int i = 0; i < shifted.size(); i++) {
+                    SnTag update = new SnTag();
+                    update.setId(shifted.get(i).getId());
+                    update.setSort(sortValues.get(i));
+                    update.setSortKey(shifted.get(i) == moved ? sortKey : shifted.get(i).getSortKey());
+                    updates.add(update);
+                }
+                baseMapper.updateSortKeys(userId, updates, new Date());
+                return true;
+            }
+        }
+        reorderTags(userId, ordered);
+        return true;
+    }
+
+    /**
+     * 按给定顺序整体重排标签（单条 UPDATE 语句）
+     *
+     * @param userId 用户ID
+     * @param tags   排好序的标签列表
+     */
+    public void reorderTags(String userId, List<SnTag> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        List<String> sortKeys = FractionalIndex.evenlySpaced(tags.size());
+        List<SnTag> updates = new ArrayList<>(tags.size());
+        for (int i = 0; i < tags.size(); i++) {
+            SnTag update = new SnTag();
+            update.setId(tags.get(i).getId());
+            update.setSort(i + 1);
+            update.setSortKey(sortKeys.get(i));
+            updates.add(update);
+        }
+        baseMapper.updateSortKeys(userId, updates, new Date());
+    }
+
+    /**
+     * 按排序值重排标签
+     * <p>
+     * 以当前排序键顺序为准，未给定排序值的标签以所在位置（从1开始）作为排序值，
+     * 给定的标签按新排序值插入，同值时排在原位置的标签之前；
+     * 库中的排序值可能有空缺或为空（如删除后、新建时），因此不以其为准。
+     *
+     * @param userId     用户ID
+     * @param tags       用户当前的全部标签（按排序键排序）
+     * @param sortValues 标签ID与新排序值
+     */
+    public void applySortValues(String userId, List<SnTag> tags, Map<String, Integer> sortValues) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < tags.size(); i++) {
+            positions.put(tags.get(i).getId(), i + 1);
+        }
+        List<SnTag> ordered = new ArrayList<>(tags);
+        ordered.sort(Comparator.comparingInt((SnTag tag) -> effectiveSort(tag, positions, sortValues))
+                .thenComparing(tag -> sortValues.get(tag.getId()) == null));
+        reorderTags(userId, ordered);
+    }
+
+    private static int effectiveSort(SnTag tag, Map<String, Integer> positions, Map<String, Integer> sortValues) {
+        Integer sort = sortValues.get(tag.getId());
+        return sort != null ? sort : positions.get(tag.getId());
+    }
+
+    /**
+     * 重排排序键过长的用户标签
+     *
+     * @param maxLength 排序键长度上限
+     * @param limit     单次最多处理的用户数
+     * @return 处理的用户数
+     */
+    public int rebalanceLongSortKeys(int maxLength, int limit) {
+        List<String> userIds = baseMapper.selectUserIdsWithLongSortKey(maxLength, limit);
+        for (String userId : userIds) {
+            reorderTags(userId, getUserTags(userId));
+        }
+        return userIds.size();
+    }
 }
@@ -0,0 +1,49 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 排序键重排任务
+ * <p>
+ * 反复拖拽到同一位置会让排序键逐渐变长，定时把排序键超长的用户空间、标签整体重排为等间距的短键。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Slf4j
+@Service
+public class SortKeyRebalanceService {
+
+    /**
+     * 单次任务最多处理的用户数
+     */
+    private static final int USER_LIMIT = 200;
+
+    @Resource
+    private SnSpaceService spaceService;
+
+    @Resource
+    private SnTagService tagService;
+
+    @Value("${sinan.sort-key.rebalance-length:24}")
+    private int rebalanceLength;
+
+    @Scheduled(fixedDelayString = "${sinan.sort-key.rebalance-interval:600000}",
+            initialDelayString = "${sinan.sort-key.rebalance-interval:600000}")
+    public void rebalance() {
+        try {
+            int spaceUsers = spaceService.rebalanceLongSortKeys(rebalanceLength, USER_LIMIT);
+            int tagUsers = tagService.rebalanceLongSortKeys(rebalanceLength, USER_LIMIT);
+            if (spaceUsers > 0 || tagUsers > 0) {
+                log.info("排序键重排完成, 空间用户数={}, 标签用户数={}", spaceUsers, tagUsers);
+            }
+        } catch (Exception e) {
+            log.error("排序键重排失败", e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pres.peixinyi.sinan.module.sinan.config.TombstoneProperties;
+import pres.peixinyi.sinan.module.sinan.domain.TombstoneArchive;
+import pres.peixinyi.sinan.module.sinan.mapper.TombstoneMapper;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 逻辑删除记录回收服务
+ * <p>
+ * 定时把逻辑删除超过保留期的记录按主键分段归档（或直接）物理删除，
+ * 每段一个短事务，段与段之间停顿，避免长时间锁表影响在线请求。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@Slf4j
+@Service
+public class TombstoneCompactionService {
+
+    private static final String LOCK_KEY = "sinan:tombstone:compaction:lock";
+
+    /**
+     * 参与回收的表（白名单，表名会直接拼接进 SQL）
+     */
+    private static final List<String> TABLES = List.of(
+            "sn_bookmark_ass_tag",
+            "sn_bookmark",
+            "sn_tag",
+            "sn_space",
+            "sn_share_space_ass_user"
+    );
+
+    @Resource
+    private TombstoneMapper tombstoneMapper;
+
+    @Resource
+    private TombstoneProperties tombstoneProperties;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private RedisUtils redisUtils;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 各表超过保留期仍未回收的最早记录的滞后秒数
+     */
+    private final Map<String, AtomicLong> lagSeconds = new HashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        for (String table : TABLES) {
+            AtomicLong lag = new AtomicLong();
+            lagSeconds.put(table, lag);
+            Gauge.builder("sinan.tombstone.lag", lag, AtomicLong::get)
+                    .description("超过保留期仍未回收的最早逻辑删除记录的滞后时长")
+                    .baseUnit("seconds")
+                    .tag("table", table)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 定时回收
+     */
+    @Scheduled(cron = "${sinan.tombstone.cron:0 30 3 * * ?}")
+    public void scheduledCompact() {
+        if (!tombstoneProperties.isEnabled()) {
+            return;
+        }
+        compact();
+    }
+
+    /**
+     * 回收所有表中超过保留期的逻辑删除记录
+     *
+     * @return 各表回收的记录数，未获取到任务锁时返回空
+     */
+    public Map<String, Long> compact() {
+        String lockValue = UUID.randomUUID().toString();
+        if (!redisUtils.setIfAbsent(LOCK_KEY, lockValue, tombstoneProperties.getLockMinutes(), TimeUnit.MINUTES)) {
+            log.info("逻辑删除记录回收任务正在其他实例执行，跳过本次执行");
+            return Collections.emptyMap();
+        }
+        try {
+            Date before = new Date(System.currentTimeMillis()
+                    - TimeUnit.DAYS.toMillis(tombstoneProperties.getRetentionDays()));
+            Map<String, Long> reclaimed = new LinkedHashMap<>();
+            for (String table : TABLES) {
+                long count = compactTable(table, before);
+                reclaimed.put(table, count);
+                refreshLag(table, before);
+            }
+            log.info("逻辑删除记录回收完成, mode={}, reclaimed={}", tombstoneProperties.getMode(), reclaimed);
+            return reclaimed;
+        } finally {
+            if (lockValue.equals(redisUtils.get(LOCK_KEY))) {
+                redisUtils.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    private long compactTable(String table, Date before) {
+        Counter counter = Counter.builder("sinan.tombstone.reclaimed")
+                .description("回收的逻辑删除记录数")
+                .tag("table", table)
+                .tag("mode", tombstoneProperties.getMode().name().toLowerCase())
+                .register(meterRegistry);
+
+        int chunkSize = Math.max(1, tombstoneProperties.getChunkSize());
+        long total = 0;
+        String afterId = null;
+        for (int chunk = 0; chunk < tombstoneProperties.getMaxChunksPerRun(); chunk++) {
+            List<String> ids = tombstoneMapper.selectExpiredIds(table, afterId, before, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            Integer deleted;
+            try {
+                deleted = transactionTemplate.execute(status -> reclaimChunk(table, ids));
+            } catch (Exception e) {
+                log.error("回收逻辑删除记录失败, table={}, afterId={}", table, afterId, e);
+                break;
+            }
+            int count = deleted == null ? 0 : deleted;
+            total += count;
+            counter.increment(count);
+
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int reclaimChunk(String table, List<String> ids) {
+        if (tombstoneProperties.getMode() == TombstoneProperties.Mode.ARCHIVE) {
+            List<Map<String, Object>> rows = tombstoneMapper.selectTombstones(table, ids);
+            if (!rows.isEmpty()) {
+                Date now = new Date();
+                List<TombstoneArchive> archives = new ArrayList<>(rows.size());
+                for (Map<String, Object> row : rows) {
+                    archives.add(toArchive(table, row, now));
+                }
+                tombstoneMapper.insertArchives(archives);
+            }
+        }
+        return tombstoneMapper.deleteTombstones(table, ids);
+    }
+
+    private TombstoneArchive toArchive(String table, Map<String, Object> row, Date archivedTime) {
+        TombstoneArchive archive = new TombstoneArchive();
+        archive.setId(String.valueOf(row.get("id")));
+        archive.setTableName(table);
+        Object userId = row.get("user_id");
+        archive.setUserId(userId == null ? null : String.valueOf(userId));
+        Object deletedTime = row.get("update_time") != null ? row.get("update_time") : row.get("create_time");
+        archive.setDeletedTime(toDate(deletedTime));
+        archive.setArchivedTime(archivedTime);
+        try {
+            archive.setPayload(objectMapper.writeValueAsString(row));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化逻辑删除记录失败: " + table + "#" + archive.getId(), e);
+        }
+        return archive;
+    }
+
+    private Date toDate(Object value) {
+        if (value instanceof Date date) {
+            return date;
+        }
+        if (value instanceof LocalDateTime localDateTime) {
+            return Timestamp.valueOf(localDateTime);
+        }
+        return null;
+    }
+
+    private void refreshLag(String table, Date before) {
+        try {
+            Date oldest = tombstoneMapper.selectOldestTombstoneTime(table);
+            long lag = oldest == null ? 0 : Math.max(0, (before.getTime() - oldest.getTime()) / 1000);
+            lagSeconds.get(table).set(lag);
+        } catch (Exception e) {
+            log.warn("统计逻辑删除记录回收滞后失败, table={}", table, e);
+        }
+    }
+
+    private boolean pause() {
+        long pauseMillis = tombstoneProperties.getPauseMillis();
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
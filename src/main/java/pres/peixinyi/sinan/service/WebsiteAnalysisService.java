@@ -3,6 +3,11 @@ package pres.peixinyi.sinan.service;
 import com.alibaba.fastjson2.JSON;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.ai.chat.client.ChatClient;
@@ -16,10 +21,12 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import pres.peixinyi.sinan.dto.response.WebsiteAnalysisResponse;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,8 +40,12 @@ import java.util.regex.Pattern;
 @ConditionalOnExpression("'${spring.ai.openai.api-key:}'.trim() != ''")
 public class WebsiteAnalysisService {
 
+    private static final long FETCH_TIMEOUT_SECONDS = 10;
+
     private final ChatClient.Builder chatClientBuilder;
 
+    private final OkHttpClient outboundHttpClient;
+
     /**
      * 流式分析网站并通过SSE返回进度信息
      *
@@ -51,10 +62,7 @@ public class WebsiteAnalysisService {
             String description = "";
             // 抓取网站信息
             try {
-                Document doc = Jsoup.connect(url)
-                        .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                        .timeout(10000)
-                        .get();
+                Document doc = fetchDocument(url);
 
                  title = doc.title();
                  description = doc.select("meta[name=description]").attr("content");
@@ -133,10 +141,7 @@ public class WebsiteAnalysisService {
     public WebsiteAnalysisResponse analyzeWebsite(String url, List<String> existingSpaces, List<String> existingTags) {
         try {
             // 1. 抓取网站信息
-            Document doc = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                    .timeout(10000)
-                    .get();
+            Document doc = fetchDocument(url);
 
             String title = doc.title();
             String description = doc.select("meta[name=description]").attr("content");
@@ -162,6 +167,31 @@ public class WebsiteAnalysisService {
         }
     }
 
+    /**
+     * 通过共享的对外HTTP客户端抓取网页并解析
+     * 响应体大小受客户端上限约束，编码按响应头或页面 meta 识别
+     *
+     * @param url 网站URL
+     * @return 解析后的文档
+     * @throws IOException 请求失败或响应状态异常时抛出
+     */
+    private Document fetchDocument(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
+                .build();
+        Call call = outboundHttpClient.newCall(request);
+        call.timeout().timeout(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        try (Response response = call.execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("HTTP " + response.code());
+            }
+            Charset charset = body.contentType() != null ? body.contentType().charset() : null;
+            return Jsoup.parse(body.byteStream(), charset != null ? charset.name() : null, url);
+        }
+    }
+
     /**
      * 构建发送给 AI 的提示词
      */
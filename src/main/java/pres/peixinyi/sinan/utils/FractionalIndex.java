@@ -0,0 +1,180 @@
+package pres.peixinyi.sinan.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分数排序键工具类
+ * <p>
+ * 排序键是由 0-9a-z 组成的字符串，看作 36 进制小数的小数部分，按字典序（二进制比较）排序，
+ * 且不以 '0' 结尾，因此任意两个不同的键之间总能再生成一个新键。
+ * 移动一项时只需为它生成一个介于前后两项之间的新键，无需改动其他行。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class FractionalIndex {
+
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    private static final int BASE = DIGITS.length();
+
+    /**
+     * 排序键最大长度（与数据库字段长度一致）
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private FractionalIndex() {
+    }
+
+    /**
+     * 判断排序键是否合法
+     *
+     * @param key 排序键
+     * @return 非空、只包含 0-9a-z 且不以 '0' 结尾时返回 true
+     */
+    public static boolean isValid(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_LENGTH || key.endsWith("0")) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (DIGITS.indexOf(key.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成介于 lower 与 upper 之间的排序键
+     *
+     * @param lower 下界，为空表示没有下界（排在最前）
+     * @param upper 上界，为空表示没有上界（排在最后）
+     * @return 新排序键
+     * @throws IllegalArgumentException 键不合法或 lower 不小于 upper
+     */
+    public static String between(String lower, String upper) {
+        if (lower != null && !isValid(lower)) {
+            throw new IllegalArgumentException("非法的排序键: " + lower);
+        }
+        if (upper != null && !isValid(upper)) {
+            throw new IllegalArgumentException("非法的排序键: " + upper);
+        }
+        if (lower != null && upper != null && lower.compareTo(upper) >= 0) {
+            throw new IllegalArgumentException("排序键下界必须小于上界: " + lower + " >= " + upper);
+        }
+        return midpoint(lower == null ? "" : lower, upper);
+    }
+
+    /**
+     * 生成 n 个依次递增且介于 lower 与 upper 之间的排序键
+     *
+     * @param lower 下界，为空表示没有下界
+     * @param upper 上界，为空表示没有上界
+     * @param n     数量
+     * @return 排序键列表
+     */
+    public static List<String> between(String lower, String upper, int n) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        if (n == 1) {
+            List<String> keys = new ArrayList<>(1);
+            keys.add(between(lower, upper));
+            return keys;
+        }
+        List<String> keys = new ArrayList<>(n);
+        if (upper == null) {
+            String key = lower;
+            for (int i = 0; i < n; i++) {
+                key = between(key, null);
+                keys.add(key);
+            }
+            return keys;
+        }
+        if (lower == null) {
+            String key = upper;
+            for (int i = 0; i < n; i++) {
+                key = between(null, key);
+                keys.add(key);
+            }
+            Collections.reverse(keys);
+            return keys;
+        }
+        int half = n / 2;
+        String mid = between(lower, upper);
+        keys.addAll(between(lower, mid, half));
+        keys.add(mid);
+        keys.addAll(between(mid, upper, n - half - 1));
+        return keys;
+    }
+
+    /**
+     * 生成 n 个等间距的排序键，用于整体重排
+     *
+     * @param n 数量
+     * @return 排序键列表
+     */
+    public static List<String> evenlySpaced(int n) {
+        List<String> keys = new ArrayList<>(Math.max(n, 0));
+        if (n <= 0) {
+            return keys;
+        }
+        // 每个间隔至少留出一位 36 进制数字的余量
+        int width = 2;
+        long capacity = (long) BASE * BASE;
+        while (capacity < (long) (n + 1) * BASE) {
+            width++;
+            capacity *= BASE;
+        }
+        long step = capacity / (n + 1);
+        for (int i = 1; i <= n; i++) {
+            keys.add(format(step * i, width));
+        }
+        return keys;
+    }
+
+    /**
+     * 按固定位数格式化并去掉末尾的 '0'（不改变字典序）
+     */
+    private static String format(long value, int width) {
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = DIGITS.charAt((int) (value % BASE));
+            value /= BASE;
+        }
+        int end = width;
+        while (end > 0 && chars[end - 1] == '0') {
+            end--;
+        }
+        return new String(chars, 0, end);
+    }
+
+    /**
+     * 求 lower 与 upper 之间的中点，upper 为空表示 1
+     */
+    private static String midpoint(String lower, String upper) {
+        if (upper != null) {
+            // 跳过公共前缀（lower 长度不足时按 '0' 补齐）
+            int n = 0;
+            while (n < upper.length() && (n < lower.length() ? lower.charAt(n) : '0') == upper.charAt(n)) {
+                n++;
+            }
+            if (n > 0) {
+                return upper.substring(0, n)
+                        + midpoint(n < lower.length() ? lower.substring(n) : "", upper.substring(n));
+            }
+        }
+        int digitLower = lower.isEmpty() ? 0 : DIGITS.indexOf(lower.charAt(0));
+        int digitUpper = upper != null ? DIGITS.indexOf(upper.charAt(0)) : BASE;
+        if (digitUpper - digitLower > 1) {
+            return String.valueOf(DIGITS.charAt((digitLower + digitUpper + 1) / 2));
+        }
+        if (upper != null && upper.length() > 1) {
+            return upper.substring(0, 1);
+        }
+        return DIGITS.charAt(digitLower) + midpoint(lower.isEmpty() ? "" : lower.substring(1), null);
+    }
+}
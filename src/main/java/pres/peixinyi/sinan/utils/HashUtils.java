@@ -0,0 +1,89 @@
+package pres.peixinyi.sinan.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 内容哈希工具类
+ * <p>
+ * 图标存储、字节缓存、雪碧图与书签图标都按内容 SHA-256 命名或生成 ETag。
+ * 完整哈希用于内容寻址存储的对象名；文件名与 ETag 使用截短的哈希（前 16 字节，128 位），
+ * 足以区分不同内容，且与存储对象名的前 32 个十六进制字符一致。
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+public class HashUtils {
+
+    /**
+     * 截短哈希保留的字节数
+     */
+    private static final int SHORT_HASH_BYTES = 16;
+
+    private HashUtils() {
+    }
+
+    /**
+     * 计算完整的 SHA-256
+     *
+     * @param content 内容
+     * @return 64 位十六进制字符串
+     */
+    public static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(digest().digest(content));
+    }
+
+    /**
+     * 流式计算文件的完整 SHA-256，不把文件读入内存
+     *
+     * @param file 文件
+     * @return 64 位十六进制字符串
+     * @throws IOException 读取失败时抛出
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = digest();
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 计算截短的 SHA-256
+     *
+     * @param content 内容
+     * @return 32 位十六进制字符串
+     */
+    public static String shortSha256(byte[] content) {
+        return HexFormat.of().formatHex(digest().digest(content), 0, SHORT_HASH_BYTES);
+    }
+
+    /**
+     * 计算缓冲区剩余内容的截短 SHA-256，不改变缓冲区的位置
+     *
+     * @param content 内容
+     * @return 32 位十六进制字符串
+     */
+    public static String shortSha256(ByteBuffer content) {
+        MessageDigest digest = digest();
+        digest.update(content.duplicate());
+        return HexFormat.of().formatHex(digest.digest(), 0, SHORT_HASH_BYTES);
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
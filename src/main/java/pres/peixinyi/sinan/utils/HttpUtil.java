@@ -2,20 +2,15 @@ package pres.peixinyi.sinan.utils;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.TypeReference;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okio.Buffer;
 import org.springframework.stereotype.Component;
 import pres.peixinyi.sinan.common.Result;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -37,7 +32,15 @@ public class HttpUtil {
     private RequestBody requestBody;
     private static final MediaType JSONType = MediaType.parse("application/json; charset=utf-8");
 
-    // 双重校验锁实现单例
+    /**
+     * 注入共享的对外HTTP客户端（见 OutboundHttpConfig）
+     */
+    @Resource
+    public void setOutboundHttpClient(OkHttpClient outboundHttpClient) {
+        client = outboundHttpClient;
+    }
+
+    // 双重校验锁实现单例，Spring 容器外使用时创建默认客户端
     public static OkHttpClient getClient() {
         if (client == null) {
             synchronized (HttpUtil.class) {
@@ -47,8 +50,7 @@ public class HttpUtil {
                             .readTimeout(30, TimeUnit.SECONDS)
                             .writeTimeout(30, TimeUnit.SECONDS)
                             .retryOnConnectionFailure(true)
-                            .sslSocketFactory(createSSLSocketFactory(), createTrustAllManager())
-                            .hostnameVerifier((hostname, session) -> true).build();
+                            .build();
                 }
             }
         }
@@ -190,31 +192,6 @@ public class HttpUtil {
         return bufferToString(formBuilder.build());
     }
 
-    // HTTPS相关配置（测试环境使用）
-    private static SSLSocketFactory createSSLSocketFactory() {
-        try {
-            SSLContext sslContext = SSLContext.getInstance("SSL");
-            sslContext.init(null, new TrustManager[]{createTrustAllManager()}, new SecureRandom());
-            return sslContext.getSocketFactory();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static X509TrustManager createTrustAllManager() {
-        return new X509TrustManager() {
-            public void checkClientTrusted(X509Certificate[] chain, String authType) {
-            }
-
-            public void checkServerTrusted(X509Certificate[] chain, String authType) {
-            }
-
-            public X509Certificate[] getAcceptedIssuers() {
-                return new X509Certificate[0];
-            }
-        };
-    }
-
     private static String bufferToString(RequestBody body) {
         try (Buffer buffer = new Buffer()) {
             body.writeTo(buffer);
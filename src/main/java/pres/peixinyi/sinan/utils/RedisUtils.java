@@ -5,6 +5,7 @@ import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -315,6 +316,19 @@ public class RedisUtils {
         return redisTemplate.opsForValue().setIfAbsent(key, value);
     }
 
+    /**
+     * 只有在 key 不存在时设置 key 的值，并同时设置过期时间
+     *
+     * @param key
+     * @param value
+     * @param timeout 过期时间
+     * @param unit    时间单位
+     * @return 之前已经存在返回false, 不存在返回true
+     */
+    public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+    }
+
     /**
      * 用 value 参数覆写给定 key 所储存的字符串值，从偏移量 offset 开始
      *
@@ -1331,4 +1345,30 @@ public class RedisUtils {
         return redisTemplate.opsForZSet().scan(key, options);
     }
 
+    /** ------------------------发布订阅相关操作---------------------------- */
+
+    /**
+     * 向频道发布消息
+     *
+     * @param channel 频道
+     * @param message 消息
+     */
+    public void publish(String channel, String message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
+    /** ------------------------脚本相关操作---------------------------- */
+
+    /**
+     * 执行Lua脚本
+     *
+     * @param script 脚本
+     * @param keys   脚本中的 KEYS
+     * @param args   脚本中的 ARGV，按字符串序列化
+     * @return 脚本返回值
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, String... args) {
+        return redisTemplate.execute(script, keys, (Object[]) args);
+    }
+
 }
\ No newline at end of file
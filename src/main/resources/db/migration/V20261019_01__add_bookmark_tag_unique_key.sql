@@ -0,0 +1,14 @@
+-- 书签标签关联改为按 (bookmark_id, tag_id) 唯一：取消关联时逻辑删除，重新关联时复用原有行
+
+-- 清理重复关联，同一书签与标签只保留一行（优先保留未删除的行）
+DELETE t1 FROM sn_bookmark_ass_tag t1
+JOIN sn_bookmark_ass_tag t2
+  ON t1.bookmark_id = t2.bookmark_id
+ AND t1.tag_id = t2.tag_id
+ AND (IFNULL(t1.deleted, 0) > IFNULL(t2.deleted, 0)
+      OR (IFNULL(t1.deleted, 0) = IFNULL(t2.deleted, 0) AND t1.id > t2.id));
+
+ALTER TABLE sn_bookmark_ass_tag
+  ADD UNIQUE KEY uk_bookmark_tag (bookmark_id, tag_id),
+  ADD KEY idx_user_id (user_id),
+  ADD KEY idx_tag_id (tag_id);
@@ -0,0 +1,19 @@
+-- 逻辑删除记录归档表：回收任务把超过保留期的逻辑删除记录以 JSON 形式归档后从原表物理删除
+CREATE TABLE IF NOT EXISTS sn_tombstone_archive (
+  id varchar(64) NOT NULL COMMENT '原记录ID',
+  table_name varchar(64) NOT NULL COMMENT '原表名',
+  user_id varchar(64) DEFAULT NULL COMMENT '用户ID',
+  payload json NOT NULL COMMENT '原记录内容',
+  deleted_time datetime DEFAULT NULL COMMENT '逻辑删除时间',
+  archived_time datetime NOT NULL COMMENT '归档时间',
+  PRIMARY KEY (table_name, id),
+  KEY idx_user_id (user_id),
+  KEY idx_archived_time (archived_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='逻辑删除记录归档';
+
+-- 回收任务按主键分段扫描逻辑删除记录
+ALTER TABLE sn_bookmark ADD KEY idx_deleted_id (deleted, id);
+ALTER TABLE sn_bookmark_ass_tag ADD KEY idx_deleted_id (deleted, id);
+ALTER TABLE sn_space ADD KEY idx_deleted_id (deleted, id);
+ALTER TABLE sn_tag ADD KEY idx_deleted_id (deleted, id);
+ALTER TABLE sn_share_space_ass_user ADD KEY idx_deleted_id (deleted, id);
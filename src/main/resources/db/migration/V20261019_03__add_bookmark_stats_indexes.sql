@@ -0,0 +1,4 @@
+-- 按用户分组统计空间、标签书签数量所需索引
+ALTER TABLE sn_bookmark ADD KEY idx_user_space (user_id, deleted, space_id);
+ALTER TABLE sn_space ADD KEY idx_user_id (user_id);
+ALTER TABLE sn_tag ADD KEY idx_user_id (user_id);
@@ -0,0 +1,23 @@
+-- 空间、标签增加分数排序键：拖拽移动时只需更新被移动的一行
+ALTER TABLE sn_space ADD COLUMN sort_key varchar(64) CHARACTER SET ascii COLLATE ascii_bin DEFAULT NULL COMMENT '分数排序键' AFTER sort;
+ALTER TABLE sn_tag ADD COLUMN sort_key varchar(64) CHARACTER SET ascii COLLATE ascii_bin DEFAULT NULL COMMENT '分数排序键' AFTER sort;
+
+-- 按原有顺序（sort 升序、创建时间倒序）为每个用户生成等间距的 4 位 36 进制排序键，去掉末尾的 0
+UPDATE sn_space t
+  JOIN (SELECT id,
+               ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY sort, create_time DESC) AS rn,
+               COUNT(*) OVER (PARTITION BY user_id) AS cnt
+          FROM sn_space
+         WHERE deleted = 0) r ON r.id = t.id
+   SET t.sort_key = TRIM(TRAILING '0' FROM LOWER(LPAD(CONV(r.rn * FLOOR(1679616 / (r.cnt + 1)), 10, 36), 4, '0')));
+
+UPDATE sn_tag t
+  JOIN (SELECT id,
+               ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY sort, create_time DESC) AS rn,
+               COUNT(*) OVER (PARTITION BY user_id) AS cnt
+          FROM sn_tag
+         WHERE deleted = 0) r ON r.id = t.id
+   SET t.sort_key = TRIM(TRAILING '0' FROM LOWER(LPAD(CONV(r.rn * FLOOR(1679616 / (r.cnt + 1)), 10, 36), 4, '0')));
+
+ALTER TABLE sn_space ADD KEY idx_user_sort_key (user_id, sort_key);
+ALTER TABLE sn_tag ADD KEY idx_user_sort_key (user_id, sort_key);
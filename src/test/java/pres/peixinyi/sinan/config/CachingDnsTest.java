@@ -0,0 +1,74 @@
+package pres.peixinyi.sinan.config;
+
+import okhttp3.Dns;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * DNS 缓存测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class CachingDnsTest {
+
+    private final List<String> lookups = new ArrayList<>();
+
+    private final Dns delegate = hostname -> {
+        lookups.add(hostname);
+        if (hostname.startsWith("bad")) {
+            throw new UnknownHostException(hostname);
+        }
+        return List.of(InetAddress.getByAddress(hostname, new byte[]{10, 0, 0, 1}));
+    };
+
+    @Test
+    void answersRepeatedLookupsFromCache() throws UnknownHostException {
+        CachingDns dns = new CachingDns(delegate, 60_000, 16);
+
+        List<InetAddress> first = dns.lookup("a.com");
+
+        assertThat(dns.lookup("a.com")).isEqualTo(first);
+        assertThat(lookups).containsExactly("a.com");
+    }
+
+    @Test
+    void resolvesAgainAfterExpiry() throws UnknownHostException {
+        CachingDns dns = new CachingDns(delegate, 0, 16);
+
+        dns.lookup("a.com");
+        dns.lookup("a.com");
+
+        assertThat(lookups).containsExactly("a.com", "a.com");
+    }
+
+    @Test
+    void doesNotCacheFailedLookups() {
+        CachingDns dns = new CachingDns(delegate, 60_000, 16);
+
+        assertThatThrownBy(() -> dns.lookup("bad.com")).isInstanceOf(UnknownHostException.class);
+        assertThatThrownBy(() -> dns.lookup("bad.com")).isInstanceOf(UnknownHostException.class);
+
+        assertThat(lookups).containsExactly("bad.com", "bad.com");
+    }
+
+    @Test
+    void clearsWhenFull() throws UnknownHostException {
+        CachingDns dns = new CachingDns(delegate, 60_000, 2);
+
+        dns.lookup("a.com");
+        dns.lookup("b.com");
+        dns.lookup("c.com");
+        dns.lookup("a.com");
+
+        assertThat(lookups).containsExactly("a.com", "b.com", "c.com", "a.com");
+    }
+}
@@ -0,0 +1,100 @@
+package pres.peixinyi.sinan.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 对外请求耗时指标测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class HttpClientMetricsInterceptorTest {
+
+    private static final String METRIC_NAME = "sinan.http.client.requests";
+
+    private HttpServer server;
+
+    private int port;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        port = server.getAddress().getPort();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void tagsTrackedHostsByName() throws IOException {
+        OkHttpClient client = client(Set.of("127.0.0.1"));
+
+        execute(client, "http://127.0.0.1:" + port + "/");
+
+        assertThat(meterRegistry.get(METRIC_NAME)
+                .tags("host", "127.0.0.1", "method", "GET", "status", "204")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void groupsUntrackedHostsUnderOther() throws IOException {
+        OkHttpClient client = client(Set.of());
+
+        execute(client, "http://127.0.0.1:" + port + "/a");
+        execute(client, "http://127.0.0.1:" + port + "/b");
+
+        // 任意主机都不会产生新的标签值
+        assertThat(meterRegistry.get(METRIC_NAME).tag("host", "other").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.find(METRIC_NAME).tag("host", "127.0.0.1").timer()).isNull();
+    }
+
+    @Test
+    void recordsFailedConnections() {
+        OkHttpClient client = client(Set.of());
+        server.stop(0);
+
+        assertThatThrownBy(() -> execute(client, "http://127.0.0.1:" + port + "/"))
+                .isInstanceOf(IOException.class);
+
+        assertThat(meterRegistry.get(METRIC_NAME).tag("status", "IO_ERROR").timer().count()).isEqualTo(1);
+    }
+
+    private OkHttpClient client(Set<String> trackedHosts) {
+        return new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .addInterceptor(new HttpClientMetricsInterceptor(meterRegistry, trackedHosts))
+                .build();
+    }
+
+    private static void execute(OkHttpClient client, String url) throws IOException {
+        try (Response ignored = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            // 只关心指标
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pres.peixinyi.sinan.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 响应体大小限制测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class ResponseSizeLimitInterceptorTest {
+
+    private static final int LIMIT = 1024;
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private OkHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/small", exchange -> respond(exchange, LIMIT, false));
+        server.createContext("/declared", exchange -> respond(exchange, LIMIT * 2, false));
+        server.createContext("/chunked", exchange -> respond(exchange, LIMIT * 2, true));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new ResponseSizeLimitInterceptor(LIMIT))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void passesBodiesWithinLimit() throws IOException {
+        try (Response response = execute("/small")) {
+            assertThat(response.body().bytes()).hasSize(LIMIT);
+        }
+    }
+
+    @Test
+    void rejectsDeclaredLengthOverLimit() {
+        assertThatThrownBy(() -> execute("/declared"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("127.0.0.1");
+    }
+
+    @Test
+    void stopsReadingUndeclaredBodyOverLimit() throws IOException {
+        try (Response response = execute("/chunked")) {
+            assertThat(response.body().contentLength()).isEqualTo(-1);
+            assertThatThrownBy(() -> response.body().bytes()).isInstanceOf(IOException.class);
+        }
+    }
+
+    private Response execute(String path) throws IOException {
+        return client.newCall(new Request.Builder().url(baseUrl + path).build()).execute();
+    }
+
+    private static void respond(HttpExchange exchange, int size, boolean chunked) throws IOException {
+        exchange.sendResponseHeaders(200, chunked ? 0 : size);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(new byte[size]);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package pres.peixinyi.sinan.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 权限与角色测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class StpInterfaceImplTest {
+
+    @Test
+    void grantsAdminRoleOnlyToConfiguredUsers() {
+        ManagementProperties properties = new ManagementProperties();
+        properties.setAdminUserIds(List.of("1001"));
+        StpInterfaceImpl stpInterface = new StpInterfaceImpl();
+        ReflectionTestUtils.setField(stpInterface, "managementProperties", properties);
+
+        // 登录ID可能是数值类型
+        assertThat(stpInterface.getRoleList(1001L, "login")).containsExactly(ManagementProperties.ADMIN_ROLE);
+        assertThat(stpInterface.getRoleList("1002", "login")).isEmpty();
+        assertThat(stpInterface.getPermissionList("1001", "login")).isEmpty();
+    }
+}
@@ -0,0 +1,101 @@
+package pres.peixinyi.sinan.module.favicon.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.common.Result;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconBatchReq;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconBatchResp;
+import pres.peixinyi.sinan.module.favicon.service.FaviconResponseWriter;
+import pres.peixinyi.sinan.module.favicon.service.FaviconService;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon批量接口测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconControllerTest {
+
+    private FaviconService faviconService;
+
+    private FaviconResponseWriter responseWriter;
+
+    private FaviconFetchProperties properties;
+
+    private FaviconController controller;
+
+    @BeforeEach
+    void setUp() {
+        faviconService = mock(FaviconService.class);
+        responseWriter = mock(FaviconResponseWriter.class);
+        properties = new FaviconFetchProperties();
+        controller = new FaviconController(faviconService, responseWriter, properties);
+    }
+
+    @Test
+    void splitsDomainsIntoIconsPendingAndFailed() throws IOException {
+        when(faviconService.parseRequestedSize("32@2x")).thenReturn(64);
+        when(faviconService.isDomainMarkedAsFailed(anyString())).thenReturn(false);
+        when(faviconService.isDomainMarkedAsFailed("bad.com")).thenReturn(true);
+        when(faviconService.getCachedFaviconOrFetchInBackground("a.com", 64)).thenReturn("/cache/a_com_64.png");
+        when(faviconService.getCachedFaviconOrFetchInBackground("gone.com", 64)).thenReturn("/cache/gone_com_64.png");
+        when(responseWriter.toDataUri("/cache/a_com_64.png")).thenReturn("data:image/png;base64,AQID");
+
+        FaviconBatchResp resp = controller.getFaviconsBatch(
+                request(Arrays.asList("a.com", " a.com ", "new.com", "bad.com", "gone.com", null, " "), "32@2x"))
+                .getData();
+
+        assertThat(resp.getIcons()).containsExactly(entry("a.com", "data:image/png;base64,AQID"));
+        // 缓存文件已被清理的域名与未命中同样等待重试
+        assertThat(resp.getPending()).containsExactly("new.com", "gone.com");
+        assertThat(resp.getFailed()).containsExactly("bad.com");
+        assertThat(resp.getRetryAfterSeconds()).isEqualTo(properties.getRetryAfterSeconds());
+        verify(faviconService, times(1)).getCachedFaviconOrFetchInBackground("a.com", 64);
+        verify(faviconService, never()).getCachedFaviconOrFetchInBackground("bad.com", 64);
+    }
+
+    @Test
+    void omitsRetryHintWhenEverythingIsCached() throws IOException {
+        when(faviconService.getCachedFaviconOrFetchInBackground("a.com", null)).thenReturn("/cache/a_com.png");
+        when(responseWriter.toDataUri("/cache/a_com.png")).thenReturn("data:image/png;base64,AQID");
+
+        FaviconBatchResp resp = controller.getFaviconsBatch(request(List.of("a.com"), null)).getData();
+
+        assertThat(resp.getIcons()).containsOnlyKeys("a.com");
+        assertThat(resp.getRetryAfterSeconds()).isNull();
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedBatches() {
+        properties.setBatchMaxDomains(2);
+
+        Result<FaviconBatchResp> empty = controller.getFaviconsBatch(request(List.of(), null));
+        Result<FaviconBatchResp> oversized = controller.getFaviconsBatch(request(List.of("a.com", "b.com", "c.com"), null));
+
+        assertThat(empty.getCode()).isEqualTo(Result.FAIL_CODE);
+        assertThat(oversized.getCode()).isEqualTo(Result.FAIL_CODE);
+        verify(faviconService, never()).getCachedFaviconOrFetchInBackground(anyString(), any());
+    }
+
+    private static FaviconBatchReq request(List<String> domains, String sz) {
+        FaviconBatchReq req = new FaviconBatchReq();
+        req.setDomains(domains);
+        req.setSz(sz);
+        return req;
+    }
+}
@@ -0,0 +1,97 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.favicon.config.FaviconDiskCacheProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon缓存访问记录测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconAccessTrackerTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private FaviconDiskCacheProperties properties;
+
+    private FaviconAccessTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FaviconDiskCacheProperties();
+        properties.setAccessGranularitySeconds(60);
+        tracker = newTracker();
+    }
+
+    @Test
+    void recordsAccessOncePerGranularity() {
+        tracker.touch("a_com");
+        Long first = tracker.getLastAccess("a_com");
+        @SuppressWarnings("unchecked")
+        Map<String, Long> lastAccess = (Map<String, Long>) ReflectionTestUtils.getField(tracker, "lastAccess");
+        lastAccess.put("a_com", first - 1);
+
+        tracker.recordHit("a_com");
+
+        // 距上次记录不足粒度，不更新
+        assertThat(tracker.getLastAccess("a_com")).isEqualTo(first - 1);
+        assertThat(tracker.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void savesAndReloadsAccessTimes() throws IOException {
+        tracker.touch("a_com");
+        tracker.touch("b_com");
+        tracker.forgetByPrefix("b_");
+        tracker.save();
+
+        Path snapshot = cacheDir.resolve("store").resolve("access.tsv");
+        Files.writeString(snapshot, "broken\tline\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FaviconAccessTracker reloaded = newTracker();
+        reloaded.load();
+
+        assertThat(reloaded.getLastAccess("a_com")).isEqualTo(tracker.getLastAccess("a_com"));
+        assertThat(reloaded.getLastAccess("b_com")).isNull();
+        assertThat(reloaded.getLastAccess("broken")).isNull();
+    }
+
+    @Test
+    void skipsSaveWithoutNewAccesses() {
+        tracker.save();
+
+        assertThat(cacheDir.resolve("store").resolve("access.tsv")).doesNotExist();
+    }
+
+    @Test
+    void computesHitRatio() {
+        assertThat(tracker.getHitRatio()).isZero();
+
+        tracker.recordHit("a_com");
+        tracker.recordHit("a_com");
+        tracker.recordHit("b_com");
+        tracker.recordMiss();
+
+        assertThat(tracker.getHitRatio()).isEqualTo(0.75);
+    }
+
+    private FaviconAccessTracker newTracker() {
+        FaviconAccessTracker created = new FaviconAccessTracker(properties);
+        ReflectionTestUtils.setField(created, "cacheDir", cacheDir.toString());
+        return created;
+    }
+}
@@ -0,0 +1,98 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 热点favicon字节缓存测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconByteCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private FaviconByteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new FaviconByteCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 10L);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 8L);
+    }
+
+    @Test
+    void loadsContentWithHashEtag() throws IOException {
+        byte[] content = {1, 2, 3, 4};
+        Path file = Files.write(dir.resolve("a.png"), content);
+
+        FaviconByteCache.Entry entry = cache.load(file, content.length, 123L);
+
+        assertThat(entry.length()).isEqualTo(4);
+        assertThat(entry.etag()).isEqualTo("\"" + HashUtils.shortSha256(content) + "\"");
+        assertThat(entry.lastModified()).isEqualTo(123L);
+        ByteBuffer copy = entry.content().duplicate();
+        byte[] read = new byte[copy.remaining()];
+        copy.get(read);
+        assertThat(read).isEqualTo(content);
+        assertThat(cache.get(file)).isSameAs(entry);
+    }
+
+    @Test
+    void reportsBytesActuallyReadWhenFileShrank() throws IOException {
+        Path file = Files.write(dir.resolve("a.png"), new byte[]{1, 2, 3});
+
+        FaviconByteCache.Entry entry = cache.load(file, 8, 0L);
+
+        assertThat(entry.length()).isEqualTo(3);
+    }
+
+    @Test
+    void skipsEntriesOverTheLimit() throws IOException {
+        Path file = Files.write(dir.resolve("a.png"), new byte[9]);
+
+        assertThat(cache.load(file, 9, 0L)).isNull();
+        assertThat(cache.get(file)).isNull();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByBytes() throws IOException {
+        Path a = Files.write(dir.resolve("a.png"), new byte[4]);
+        Path b = Files.write(dir.resolve("b.png"), new byte[4]);
+        Path c = Files.write(dir.resolve("c.png"), new byte[4]);
+        cache.load(a, 4, 0L);
+        cache.load(b, 4, 0L);
+        cache.get(a);
+
+        cache.load(c, 4, 0L);
+
+        assertThat(cache.get(a)).isNotNull();
+        assertThat(cache.get(b)).isNull();
+        assertThat(cache.get(c)).isNotNull();
+    }
+
+    @Test
+    void invalidatesSingleFile() throws IOException {
+        Path a = Files.write(dir.resolve("a.png"), new byte[4]);
+        Path b = Files.write(dir.resolve("b.png"), new byte[4]);
+        cache.load(a, 4, 0L);
+        cache.load(b, 4, 0L);
+
+        cache.invalidate(a);
+
+        assertThat(cache.get(a)).isNull();
+        assertThat(cache.get(b)).isNotNull();
+    }
+}
@@ -0,0 +1,94 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.favicon.dto.CachedIcon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon本地缓存索引测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconCacheIndexTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private FaviconCacheIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FaviconCacheIndex();
+        ReflectionTestUtils.setField(index, "cacheDir", cacheDir.toString());
+    }
+
+    @Test
+    void parsesSizedAndSourceFileNames() {
+        assertThat(FaviconCacheIndex.parse("www_baidu_com_32.png"))
+                .isEqualTo(new FaviconCacheIndex.CacheKey("www_baidu_com", 32));
+        assertThat(FaviconCacheIndex.parse("www_baidu_com.svg"))
+                .isEqualTo(new FaviconCacheIndex.CacheKey("www_baidu_com", null));
+        // 不是已知尺寸时数字属于域名本身
+        assertThat(FaviconCacheIndex.parse("www_a_com_8.png"))
+                .isEqualTo(new FaviconCacheIndex.CacheKey("www_a_com_8", null));
+    }
+
+    @Test
+    void ignoresTemporaryAndUnknownFiles() {
+        assertThat(FaviconCacheIndex.parse(".www_baidu_com_32.png.tmp")).isNull();
+        assertThat(FaviconCacheIndex.parse("readme.txt")).isNull();
+    }
+
+    @Test
+    void treatsBookmarkUploadsAsNonCacheFiles() {
+        assertThat(FaviconCacheIndex.isUploadedFile("icon_1700000000000.png")).isTrue();
+        assertThat(FaviconCacheIndex.isUploadedFile("icon_0123456789abcdef0123456789abcdef.webp")).isTrue();
+        assertThat(FaviconCacheIndex.isUploadedFile("icon_com_32.png")).isFalse();
+        assertThat(FaviconCacheIndex.parse("icon_1700000000000.png")).isNull();
+        assertThat(FaviconCacheIndex.parse("icon_com_32.png"))
+                .isEqualTo(new FaviconCacheIndex.CacheKey("icon_com", 32));
+    }
+
+    @Test
+    void rebuildsFromCacheDirectory() throws IOException {
+        Files.write(cacheDir.resolve("a_com_16.png"), new byte[]{1});
+        Files.write(cacheDir.resolve("a_com_32.png"), new byte[]{1});
+        Files.write(cacheDir.resolve("b_com.svg"), new byte[]{1});
+        Files.createDirectories(cacheDir.resolve("store"));
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(2);
+        CachedIcon icon = index.get("a_com");
+        assertThat(icon.getSizes()).containsOnlyKeys(16, 32);
+        assertThat(icon.getLargest()).isEqualTo(cacheDir.resolve("a_com_32.png").toAbsolutePath());
+        assertThat(index.get("b_com").getSource()).isNotNull();
+    }
+
+    @Test
+    void removesOnlyEntriesPointingToTheFile() {
+        Path stale = cacheDir.resolve("a_com_32.png");
+        Path stored = cacheDir.resolve("store").resolve("ab").resolve("abcdef.png");
+        index.put(new FaviconCacheIndex.CacheKey("a_com", 16), cacheDir.resolve("a_com_16.png"));
+        index.put(new FaviconCacheIndex.CacheKey("a_com", 32), stored);
+
+        index.removeFile(stale);
+        assertThat(index.get("a_com").getSizes()).containsOnlyKeys(16, 32);
+
+        index.removeFile(stored);
+        assertThat(index.get("a_com").getSizes()).containsOnlyKeys(16);
+
+        index.remove("a_com", 16);
+        assertThat(index.get("a_com")).isNull();
+        assertThat(index.size()).isZero();
+    }
+}
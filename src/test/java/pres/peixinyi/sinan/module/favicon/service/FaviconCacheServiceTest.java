@@ -0,0 +1,68 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Favicon缓存服务测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconCacheServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private FaviconCacheIndex cacheIndex;
+
+    private FaviconCacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        cacheIndex = new FaviconCacheIndex();
+        cacheService = new FaviconCacheService(cacheIndex, mock(FaviconByteCache.class), mock(FaviconStore.class),
+                mock(FaviconPngEncoder.class), mock(FaviconValidatorStore.class), mock(FaviconAccessTracker.class),
+                mock(FaviconImageExecutor.class), new OkHttpClient());
+    }
+
+    @Test
+    void resolvesNearestCachedSize() {
+        Path small = put("www_a_com", 16);
+        Path medium = put("www_a_com", 32);
+
+        assertThat(cacheService.resolveCachedIcon("www.a.com", null)).isEqualTo(medium.toString());
+        assertThat(cacheService.resolveCachedIcon("WWW.A.COM", 16)).isEqualTo(small.toString());
+        // 30 取不小于它的最近标准尺寸 32
+        assertThat(cacheService.resolveCachedIcon("www.a.com", 30)).isEqualTo(medium.toString());
+        // 缓存都比请求小时返回最大的一张
+        assertThat(cacheService.resolveCachedIcon("www.a.com", 200)).isEqualTo(medium.toString());
+    }
+
+    @Test
+    void fallsBackToSourceFile() {
+        Path svg = cacheDir.resolve("b_com.svg").toAbsolutePath();
+        cacheIndex.put(new FaviconCacheIndex.CacheKey("b_com", null), svg);
+
+        assertThat(cacheService.resolveCachedIcon("b.com", 32)).isEqualTo(svg.toString());
+    }
+
+    @Test
+    void returnsNullWhenNotCached() {
+        assertThat(cacheService.resolveCachedIcon("c.com", 32)).isNull();
+        assertThat(cacheService.resolveCachedIcon(" ", 32)).isNull();
+    }
+
+    private Path put(String baseName, int size) {
+        Path file = cacheDir.resolve(baseName + "_" + size + ".png").toAbsolutePath();
+        cacheIndex.put(new FaviconCacheIndex.CacheKey(baseName, size), file);
+        return file;
+    }
+}
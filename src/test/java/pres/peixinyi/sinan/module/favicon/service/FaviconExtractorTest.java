@@ -0,0 +1,96 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconExtractResult;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon提取器测试，使用本地 HTTP 服务模拟目标站点
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconExtractorTest {
+
+    private static final String HEAD = "<html><head>"
+            + "<link rel=\"icon\" href=\"/icon.png\" sizes=\"32x32\">"
+            + "<link rel=\"apple-touch-icon\" href=\"/missing.png\">"
+            + "</head>";
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            switch (exchange.getRequestURI().getPath()) {
+                case "/" -> respond(exchange, 200, page());
+                case "/icon.png", "/favicon.ico" -> respond(exchange, 200, new byte[0]);
+                default -> respond(exchange, 404, new byte[0]);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void keepsReachableCandidatesAndDropsMissingOnes() {
+        FaviconExtractor extractor = new FaviconExtractor(new OkHttpClient());
+
+        FaviconExtractResult result = extractor.extractFavicons(baseUrl + "/");
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getFaviconList())
+                .extracting(FaviconInfo::getUrl)
+                .containsExactlyInAnyOrder(baseUrl + "/icon.png", baseUrl + "/favicon.ico");
+        assertThat(result.getBestFavicon().getFaviconType()).isEqualTo(FaviconInfo.FaviconType.DEFAULT_FAVICON);
+    }
+
+    @Test
+    void reportsFailureForMalformedUrl() {
+        FaviconExtractor extractor = new FaviconExtractor(new OkHttpClient());
+
+        FaviconExtractResult result = extractor.extractFavicons("not a url");
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getErrorMessage()).isNotBlank();
+    }
+
+    /**
+     * head 之后跟一段较大的正文，提取器只需读到 &lt;/head&gt;
+     */
+    private static byte[] page() {
+        return (HEAD + "<body>" + "x".repeat(1024 * 1024) + "</body></html>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            if (!head) {
+                output.write(body);
+            }
+        } catch (IOException e) {
+            // 提取器读到 head 后会提前关闭连接
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon获取失败标记测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@ExtendWith(MockitoExtension.class)
+class FaviconFailureMarksTest {
+
+    private static final String DOMAIN = "a.com";
+    private static final String KEY = "favicon:failure:" + DOMAIN;
+    private static final String CHANNEL = "favicon:failure:invalidate";
+
+    @Mock
+    private RedisUtils redisUtils;
+
+    @Mock
+    private FaviconValidatorStore validatorStore;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @InjectMocks
+    private FaviconFailureMarks failureMarks;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(failureMarks, "negativeTtlMillis", 5000L);
+        ReflectionTestUtils.setField(failureMarks, "maxLocalSeconds", 600L);
+    }
+
+    @Test
+    void marksInOneScriptCallAndAnswersLocally() {
+        long until = System.currentTimeMillis() + 60_000;
+        when(redisUtils.execute(any(), eq(List.of(KEY)), any(String[].class))).thenReturn(List.of(3L, until));
+
+        FaviconFailureMarks.FailureMark mark = failureMarks.mark(DOMAIN, "timeout");
+
+        assertThat(mark).isEqualTo(new FaviconFailureMarks.FailureMark("timeout", 3, until));
+        assertThat(failureMarks.isMarked(DOMAIN)).isTrue();
+        verify(redisUtils, never()).hGetAll(any());
+    }
+
+    @Test
+    void ignoresOwnInvalidationButDropsOtherNodes() {
+        long until = System.currentTimeMillis() + 60_000;
+        when(redisUtils.execute(any(), anyList(), any(String[].class))).thenReturn(List.of(1L, until));
+        when(redisUtils.hGetAll(KEY)).thenReturn(Map.of());
+        failureMarks.mark(DOMAIN, "timeout");
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisUtils).publish(eq(CHANNEL), published.capture());
+        assertThat(published.getValue()).endsWith(" " + DOMAIN);
+
+        failureMarks.onMessage(message(published.getValue()), null);
+        assertThat(failureMarks.isMarked(DOMAIN)).isTrue();
+        verify(redisUtils, never()).hGetAll(any());
+
+        failureMarks.onMessage(message("other-node " + DOMAIN), null);
+        assertThat(failureMarks.isMarked(DOMAIN)).isFalse();
+        verify(redisUtils).hGetAll(KEY);
+    }
+
+    @Test
+    void acceptsLegacyInvalidationWithoutNodeId() {
+        when(redisUtils.hGetAll(KEY)).thenReturn(Map.of());
+        assertThat(failureMarks.isMarked(DOMAIN)).isFalse();
+        assertThat(failureMarks.isMarked(DOMAIN)).isFalse();
+        verify(redisUtils, times(1)).hGetAll(KEY);
+
+        failureMarks.onMessage(message(DOMAIN), null);
+        failureMarks.isMarked(DOMAIN);
+        verify(redisUtils, times(2)).hGetAll(KEY);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon后台获取线程池测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconFetchExecutorTest {
+
+    private FaviconFetchExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        FaviconFetchProperties properties = new FaviconFetchProperties();
+        properties.setThreads(1);
+        properties.setMaxQueue(1);
+        properties.setPerHostConcurrency(1);
+        executor = new FaviconFetchExecutor(properties);
+        executor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    void rejectsInsteadOfQueueingWhenHostOrQueueIsBusy() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        assertThat(executor.submit("a.com", () -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        })).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 同一主机（忽略 www. 与协议）同时只允许一个任务
+        assertThat(executor.submit("https://www.a.com/favicon.ico", () -> { })).isFalse();
+        // 其他主机进入队列，队列满后拒绝
+        assertThat(executor.submit("b.com", finished::countDown)).isTrue();
+        assertThat(executor.getQueueSize()).isEqualTo(1);
+        assertThat(executor.submit("c.com", () -> { })).isFalse();
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 主机许可在任务返回后才释放，稍等片刻再提交
+        CountDownLatch again = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean accepted = executor.submit("a.com", again::countDown);
+        while (!accepted && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            accepted = executor.submit("a.com", again::countDown);
+        }
+        assertThat(accepted).isTrue();
+        assertThat(again.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 图标解码测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconImageDecoderTest {
+
+    @Test
+    void decodesLargestPngEntryOfIco() throws IOException {
+        byte[] ico = ico(new int[]{16, 32, 24}, false);
+
+        BufferedImage image = FaviconImageDecoder.readIco(ico);
+
+        assertThat(image).isNotNull();
+        assertThat(image.getWidth()).isEqualTo(32);
+    }
+
+    @Test
+    void skipsEntriesPointingOutsideTheData() throws IOException {
+        byte[] ico = ico(new int[]{16, 32}, true);
+
+        BufferedImage image = FaviconImageDecoder.readIco(ico);
+
+        assertThat(image).isNotNull();
+        assertThat(image.getWidth()).isEqualTo(16);
+    }
+
+    @Test
+    void rejectsDataWithoutIcoHeader() throws IOException {
+        assertThat(FaviconImageDecoder.readIco(new byte[]{0, 0})).isNull();
+        assertThat(FaviconImageDecoder.readIco(png(16))).isNull();
+    }
+
+    /**
+     * 生成内嵌 PNG 的 ICO
+     *
+     * @param sizes            各条目的边长
+     * @param truncateLastEntry 是否让最后一个条目的数据范围超出文件
+     */
+    static byte[] ico(int[] sizes, boolean truncateLastEntry) throws IOException {
+        byte[][] images = new byte[sizes.length][];
+        int offset = 6 + 16 * sizes.length;
+        ByteBuffer directory = ByteBuffer.allocate(offset).order(ByteOrder.LITTLE_ENDIAN);
+        directory.putShort((short) 0).putShort((short) 1).putShort((short) sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            images[i] = png(sizes[i]);
+            boolean truncated = truncateLastEntry && i == sizes.length - 1;
+            directory.put((byte) sizes[i]).put((byte) sizes[i]).putShort((short) 0)
+                    .putShort((short) 1).putShort((short) 32)
+                    .putInt(truncated ? images[i].length + 1 : images[i].length).putInt(offset);
+            offset += images[i].length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(directory.array());
+        for (byte[] image : images) {
+            out.write(image);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 图标逐级缩放测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconImageScalerTest {
+
+    @Test
+    void scalesEachSizeFromThePreviousResult() {
+        // 黑白棋盘格逐级减半后应平均为灰色，而不是取到某一种颜色
+        BufferedImage source = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                source.setRGB(x, y, (x + y) % 2 == 0 ? 0xFFFFFF : 0x000000);
+            }
+        }
+
+        List<BufferedImage> scaled = FaviconImageScaler.scaleDescending(source, new int[]{64, 32, 16});
+
+        assertThat(scaled).extracting(BufferedImage::getWidth).containsExactly(64, 32, 16);
+        for (BufferedImage image : scaled) {
+            assertThat(image.getHeight()).isEqualTo(image.getWidth());
+            assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+            int gray = image.getRGB(image.getWidth() / 2, image.getHeight() / 2) & 0xFF;
+            assertThat(gray).isBetween(0x70, 0x90);
+        }
+    }
+
+    @Test
+    void returnsArgbSourceOfTheTargetSizeAsIs() {
+        BufferedImage source = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+
+        assertThat(FaviconImageScaler.scale(source, 16)).isSameAs(source);
+    }
+
+    @Test
+    void producesSquareImagesFromOtherShapesAndSmallerSources() {
+        BufferedImage wide = new BufferedImage(100, 50, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage small = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage fromWide = FaviconImageScaler.scale(wide, 32);
+        BufferedImage fromSmall = FaviconImageScaler.scale(small, 32);
+
+        assertThat(fromWide.getWidth()).isEqualTo(32);
+        assertThat(fromWide.getHeight()).isEqualTo(32);
+        assertThat(fromSmall.getWidth()).isEqualTo(32);
+        assertThat(fromSmall.getHeight()).isEqualTo(32);
+    }
+}
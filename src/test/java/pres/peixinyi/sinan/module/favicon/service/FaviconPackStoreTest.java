@@ -0,0 +1,116 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.favicon.config.FaviconPackProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon打包存储测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconPackStoreTest {
+
+    /**
+     * 每条记录 14 字节头 + 14 字节名称 + 100 字节内容，一个段恰好放下两条
+     */
+    private static final int SEGMENT_BYTES = 256;
+
+    private static final String FIRST = "aa/bb/aabb.png";
+    private static final String SECOND = "cc/dd/ccdd.png";
+    private static final String THIRD = "ee/ff/eeff.png";
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void readsRecordsBackAfterReload() throws IOException {
+        FaviconPackStore store = newStore();
+        store.append(FIRST, content(1));
+        store.append(SECOND, content(2));
+
+        assertThat(bytes(store.read(FIRST))).isEqualTo(content(1));
+
+        FaviconPackStore reloaded = newStore();
+        assertThat(bytes(reloaded.read(FIRST))).isEqualTo(content(1));
+        assertThat(bytes(reloaded.read(SECOND))).isEqualTo(content(2));
+        assertThat(reloaded.read(THIRD)).isNull();
+    }
+
+    @Test
+    void stopsScanningAtCorruptedRecord() throws IOException {
+        FaviconPackStore store = newStore();
+        store.append(FIRST, content(1));
+        store.append(SECOND, content(2));
+
+        Path segment = cacheDir.resolve("store/packs/segment-000001.pack");
+        byte[] raw = Files.readAllBytes(segment);
+        // 破坏第二条记录的内容，crc 校验失败
+        raw[SEGMENT_BYTES - 1] ^= 0x7F;
+        Files.write(segment, raw);
+
+        FaviconPackStore reloaded = newStore();
+        assertThat(reloaded.contains(FIRST)).isTrue();
+        assertThat(reloaded.contains(SECOND)).isFalse();
+    }
+
+    @Test
+    void compactionMovesLiveRecordsOutOfMostlyDeadSegments() throws IOException {
+        FaviconPackStore store = newStore();
+        store.append(FIRST, content(1));
+        store.append(SECOND, content(2));
+        // 第一个段已满，第三条写入新段
+        store.append(THIRD, content(3));
+        assertThat(store.delete(FIRST)).isTrue();
+
+        store.compact();
+
+        assertThat(cacheDir.resolve("store/packs/segment-000001.pack")).doesNotExist();
+        assertThat(bytes(store.read(SECOND))).isEqualTo(content(2));
+        assertThat(bytes(store.read(THIRD))).isEqualTo(content(3));
+        assertThat(store.read(FIRST)).isNull();
+    }
+
+    @Test
+    void acceptsOnlyWhenEnabledAndSmallEnough() {
+        FaviconPackProperties properties = new FaviconPackProperties();
+        FaviconPackStore store = new FaviconPackStore(properties);
+        assertThat(store.accepts(1024)).isFalse();
+
+        properties.setEnabled(true);
+        assertThat(store.accepts(1024)).isTrue();
+        assertThat(store.accepts(properties.getMaxEntryBytes() + 1L)).isFalse();
+    }
+
+    private FaviconPackStore newStore() throws IOException {
+        FaviconPackProperties properties = new FaviconPackProperties();
+        properties.setEnabled(true);
+        properties.setSegmentBytes(SEGMENT_BYTES);
+        FaviconPackStore store = new FaviconPackStore(properties);
+        ReflectionTestUtils.setField(store, "cacheDir", cacheDir.toString());
+        store.load();
+        return store;
+    }
+
+    private static byte[] content(int value) {
+        byte[] content = new byte[100];
+        Arrays.fill(content, (byte) value);
+        return content;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.duplicate().get(content);
+        return content;
+    }
+}
@@ -0,0 +1,106 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 图标PNG编码测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconPngEncoderTest {
+
+    /**
+     * IHDR 中颜色类型字节的偏移：签名 8 + 长度 4 + 类型 4 + 宽高 8 + 位深 1
+     */
+    private static final int COLOR_TYPE_OFFSET = 25;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final FaviconPngEncoder encoder = new FaviconPngEncoder(meterRegistry);
+
+    @Test
+    void encodesFewColorsAsIndexedWithTransparency() throws IOException {
+        int[] colors = {0x00000000, 0x80336699, 0xFF00FF00, 0xFFFFFFFF};
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                image.setRGB(x, y, colors[(x * 7 + y * 3) % colors.length]);
+            }
+        }
+
+        byte[] png = encoder.encode(image, "favicon");
+
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 3);
+        assertThat(png.length).isLessThan(baselineSize(image));
+        assertSamePixels(image, png);
+    }
+
+    @Test
+    void encodesManyOpaqueColorsAsRgb() throws IOException {
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                image.setRGB(x, y, (x * 8 << 16) | (y * 8 << 8) | ((x + y) * 4 & 0xFF));
+            }
+        }
+
+        byte[] png = encoder.encode(image, "favicon");
+
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 2);
+        assertThat(png.length).isLessThanOrEqualTo(baselineSize(image));
+        assertSamePixels(image, png);
+    }
+
+    @Test
+    void keepsAlphaForManyTranslucentColors() throws IOException {
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                image.setRGB(x, y, (x * 8 << 24) | (x * 8 << 16) | (y * 8 << 8) | ((x + y) * 4 & 0xFF));
+            }
+        }
+
+        byte[] png = encoder.encode(image, "upload");
+
+        assertThat(png[COLOR_TYPE_OFFSET]).isEqualTo((byte) 6);
+        assertSamePixels(image, png);
+        assertThat(meterRegistry.get("sinan.favicon.png.bytes").tag("source", "upload").tag("stage", "optimized")
+                .summary().count()).isEqualTo(1);
+    }
+
+    private static int baselineSize(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.size();
+    }
+
+    /**
+     * 全透明像素的颜色不可见，只比较透明度
+     */
+    private static void assertSamePixels(BufferedImage expected, byte[] png) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+        assertThat(decoded.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(decoded.getHeight()).isEqualTo(expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int original = expected.getRGB(x, y);
+                int actual = decoded.getRGB(x, y);
+                if (original >>> 24 == 0) {
+                    assertThat(actual >>> 24).isZero();
+                } else {
+                    assertThat(actual).as("pixel (%d, %d)", x, y).isEqualTo(original);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+import pres.peixinyi.sinan.module.favicon.config.FaviconPrefetchProperties;
+import pres.peixinyi.sinan.module.favicon.dto.CachedIcon;
+import pres.peixinyi.sinan.module.sinan.event.BookmarkDomainsAddedEvent;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon预取测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconPrefetcherTest {
+
+    private FaviconPrefetchProperties properties;
+
+    private FaviconService faviconService;
+
+    private FaviconCacheService cacheService;
+
+    private FaviconFetchExecutor fetchExecutor;
+
+    private FaviconPrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FaviconPrefetchProperties();
+        FaviconFetchProperties fetchProperties = new FaviconFetchProperties();
+        fetchProperties.setThreads(4);
+        faviconService = mock(FaviconService.class);
+        cacheService = mock(FaviconCacheService.class);
+        fetchExecutor = mock(FaviconFetchExecutor.class);
+        prefetcher = new FaviconPrefetcher(properties, fetchProperties, faviconService, cacheService, fetchExecutor);
+    }
+
+    @Test
+    void queuesOnlyUncachedDomainsUpToTheLimit() {
+        properties.setMaxPending(2);
+        when(cacheService.findCachedByDomain("cached.com")).thenReturn(mock(CachedIcon.class));
+
+        prefetcher.onBookmarkDomainsAdded(event("https://cached.com", "https://a.com", "https://b.com", "https://c.com"));
+        prefetcher.onBookmarkDomainsAdded(event("https://a.com"));
+
+        assertThat(prefetcher.getPendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    void submitsInOrderAndSkipsCachedOrFailedDomains() {
+        properties.setBatchSize(2);
+        prefetcher.onBookmarkDomainsAdded(event("https://a.com", "https://b.com", "https://c.com", "https://d.com"));
+        // 入队之后才缓存或失败的域名，提交前再次检查
+        when(cacheService.findCachedByDomain("a.com")).thenReturn(mock(CachedIcon.class));
+        when(faviconService.isDomainMarkedAsFailed("b.com")).thenReturn(true);
+
+        prefetcher.prefetchPending();
+
+        var order = inOrder(faviconService);
+        order.verify(faviconService).getCachedFaviconOrFetchInBackground("c.com", null);
+        order.verify(faviconService).getCachedFaviconOrFetchInBackground("d.com", null);
+        assertThat(prefetcher.getPendingCount()).isZero();
+    }
+
+    @Test
+    void leavesPendingDomainsWhileFetchPoolIsBusy() {
+        prefetcher.onBookmarkDomainsAdded(event("https://a.com"));
+        when(fetchExecutor.getActiveCount()).thenReturn(2);
+
+        prefetcher.prefetchPending();
+
+        verify(faviconService, never()).getCachedFaviconOrFetchInBackground(anyString(), any());
+        assertThat(prefetcher.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresEventsWhenDisabled() {
+        properties.setEnabled(false);
+
+        prefetcher.onBookmarkDomainsAdded(event("https://a.com"));
+
+        assertThat(prefetcher.getPendingCount()).isZero();
+    }
+
+    private static BookmarkDomainsAddedEvent event(String... urls) {
+        return BookmarkDomainsAddedEvent.ofUrls("u1", BookmarkDomainsAddedEvent.SOURCE_CHROME_IMPORT, List.of(urls));
+    }
+}
@@ -0,0 +1,110 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.favicon.config.FaviconFetchProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Favicon响应输出测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconResponseWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private FaviconCacheService cacheService;
+
+    private FaviconResponseWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        FaviconByteCache byteCache = new FaviconByteCache();
+        ReflectionTestUtils.setField(byteCache, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(byteCache, "maxEntryBytes", 16L);
+        cacheService = mock(FaviconCacheService.class);
+        writer = new FaviconResponseWriter(byteCache, cacheService, mock(FaviconStore.class), new FaviconFetchProperties());
+    }
+
+    @Test
+    void answersConditionalRequestWithNotModified() throws IOException {
+        byte[] png = {1, 2, 3, 4};
+        Path file = Files.write(dir.resolve("a_com_32.png"), png);
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertThat(writer.write(get(), first, file.toString())).isTrue();
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(first.getContentType()).isEqualTo("image/png");
+        assertThat(first.getContentAsByteArray()).isEqualTo(png);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"");
+
+        MockHttpServletRequest conditional = get();
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        assertThat(writer.write(conditional, second, file.toString())).isTrue();
+        assertThat(second.getStatus()).isEqualTo(304);
+        assertThat(second.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void sendsLargeFilesWithWeakEtag() throws IOException {
+        byte[] png = new byte[32];
+        Path file = Files.write(dir.resolve("a_com_256.png"), png);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(writer.write(get(), response, file.toString())).isTrue();
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).startsWith("W/\"");
+        assertThat(response.getContentAsByteArray()).hasSize(32);
+    }
+
+    @Test
+    void evictsMissingFiles() throws IOException {
+        Path missing = dir.resolve("gone_com_32.png");
+
+        assertThat(writer.write(get(), new MockHttpServletResponse(), missing.toString())).isFalse();
+        verify(cacheService).evictMissingFile(missing);
+    }
+
+    @Test
+    void encodesCachedFileAsDataUri() throws IOException {
+        byte[] png = {1, 2, 3, 4};
+        Path file = Files.write(dir.resolve("a_com_32.png"), png);
+
+        String dataUri = writer.toDataUri(file.toString());
+
+        assertThat(dataUri).isEqualTo("data:image/png;base64," + Base64.getEncoder().encodeToString(png));
+        // 第二次从热点字节缓存读取，结果一致
+        Files.delete(file);
+        assertThat(writer.toDataUri(file.toString())).isEqualTo(dataUri);
+    }
+
+    @Test
+    void returnsNullDataUriForMissingFiles() throws IOException {
+        Path missing = dir.resolve("gone_com_32.png");
+
+        assertThat(writer.toDataUri(missing.toString())).isNull();
+        verify(cacheService).evictMissingFile(missing);
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/favicon/icon");
+    }
+}
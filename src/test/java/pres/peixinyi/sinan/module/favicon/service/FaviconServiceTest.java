@@ -0,0 +1,153 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconExtractResult;
+import pres.peixinyi.sinan.module.favicon.dto.FaviconInfo;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon服务测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@ExtendWith(MockitoExtension.class)
+class FaviconServiceTest {
+
+    private static final String DOMAIN = "example.com";
+    private static final String LEASE_KEY = "favicon:lease:example.com";
+    private static final String ICON_URL = "https://example.com/favicon.ico";
+
+    @Mock
+    private FaviconExtractor faviconExtractor;
+
+    @Mock
+    private FaviconCacheService faviconCacheService;
+
+    @Mock
+    private RedisUtils redisUtils;
+
+    @Mock
+    private FaviconFetchExecutor faviconFetchExecutor;
+
+    @Mock
+    private FaviconFailureMarks failureMarks;
+
+    @InjectMocks
+    private FaviconService faviconService;
+
+    @Test
+    void parsesSizeWithDevicePixelRatio() {
+        assertThat(faviconService.parseRequestedSize("32")).isEqualTo(32);
+        assertThat(faviconService.parseRequestedSize(" 32@2x ")).isEqualTo(64);
+        assertThat(faviconService.parseRequestedSize("16@1.5X")).isEqualTo(24);
+        assertThat(faviconService.parseRequestedSize("15@1.25x")).isEqualTo(19);
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThat(faviconService.parseRequestedSize(null)).isNull();
+        assertThat(faviconService.parseRequestedSize("")).isNull();
+        assertThat(faviconService.parseRequestedSize("0")).isNull();
+        assertThat(faviconService.parseRequestedSize("abc")).isNull();
+        assertThat(faviconService.parseRequestedSize("32@5x")).isNull();
+        assertThat(faviconService.parseRequestedSize("12345")).isNull();
+    }
+
+    @Test
+    void coalescesConcurrentMissesIntoOneFetch() {
+        when(faviconCacheService.resolveCachedIcon(DOMAIN, null)).thenReturn(null);
+        when(failureMarks.isMarked(DOMAIN)).thenReturn(false);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        when(faviconFetchExecutor.submit(eq(DOMAIN), task.capture())).thenReturn(true);
+
+        assertThat(faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null)).isNull();
+        assertThat(faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null)).isNull();
+
+        // 第二次请求加入进行中的获取，不再提交任务
+        verify(faviconFetchExecutor, times(1)).submit(eq(DOMAIN), any());
+
+        ArgumentCaptor<String> leaseValue = ArgumentCaptor.forClass(String.class);
+        when(redisUtils.setIfAbsent(eq(LEASE_KEY), leaseValue.capture(), eq(60L), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        when(redisUtils.get(LEASE_KEY)).thenAnswer(invocation -> leaseValue.getValue());
+        when(faviconExtractor.extractFavicons("https://" + DOMAIN)).thenReturn(found());
+        when(faviconCacheService.cacheIconForDomain(DOMAIN, ICON_URL)).thenReturn("/cache/example.com.ico");
+        task.getValue().run();
+
+        verify(redisUtils).delete(LEASE_KEY);
+        verify(failureMarks).clearIfPresent(DOMAIN);
+
+        // 获取结束后，下一次未命中重新提交
+        faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null);
+        verify(faviconFetchExecutor, times(2)).submit(eq(DOMAIN), any());
+    }
+
+    @Test
+    void skipsFetchWhileAnotherNodeHoldsTheLease() {
+        when(faviconCacheService.resolveCachedIcon(DOMAIN, null)).thenReturn(null);
+        when(failureMarks.isMarked(DOMAIN)).thenReturn(false);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        when(faviconFetchExecutor.submit(eq(DOMAIN), task.capture())).thenReturn(true);
+        when(redisUtils.setIfAbsent(eq(LEASE_KEY), anyString(), eq(60L), eq(TimeUnit.SECONDS))).thenReturn(false);
+
+        faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null);
+        task.getValue().run();
+
+        verify(faviconExtractor, never()).extractFavicons(any());
+        verify(redisUtils, never()).delete(LEASE_KEY);
+    }
+
+    @Test
+    void keepsLeaseThatWasTakenOverByAnotherNode() {
+        when(faviconCacheService.resolveCachedIcon(DOMAIN, null)).thenReturn(null);
+        when(failureMarks.isMarked(DOMAIN)).thenReturn(false);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        when(faviconFetchExecutor.submit(eq(DOMAIN), task.capture())).thenReturn(true);
+        when(redisUtils.setIfAbsent(eq(LEASE_KEY), anyString(), eq(60L), eq(TimeUnit.SECONDS))).thenReturn(true);
+        // 租约过期后被其他节点重新获取
+        when(redisUtils.get(LEASE_KEY)).thenReturn("other-node");
+        when(faviconExtractor.extractFavicons("https://" + DOMAIN)).thenReturn(found());
+        when(faviconCacheService.cacheIconForDomain(DOMAIN, ICON_URL)).thenReturn("/cache/example.com.ico");
+
+        faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null);
+        task.getValue().run();
+
+        verify(redisUtils, never()).delete(LEASE_KEY);
+    }
+
+    @Test
+    void doesNotFetchMarkedDomains() {
+        when(faviconCacheService.resolveCachedIcon(DOMAIN, null)).thenReturn(null);
+        when(failureMarks.isMarked(DOMAIN)).thenReturn(true);
+
+        assertThat(faviconService.getCachedFaviconOrFetchInBackground(DOMAIN, null)).isNull();
+
+        verify(faviconFetchExecutor, never()).submit(any(), any());
+    }
+
+    private static FaviconExtractResult found() {
+        FaviconInfo icon = FaviconInfo.builder().url(ICON_URL).build();
+        return FaviconExtractResult.builder()
+                .url("https://" + DOMAIN)
+                .success(true)
+                .bestFavicon(icon)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon雪碧图测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+@ExtendWith(MockitoExtension.class)
+class FaviconSpriteServiceTest {
+
+    private static final String KEY = "space:1";
+    private static final String ICON_PATH = "/icons/a_com_32.png";
+
+    @Mock
+    private FaviconService faviconService;
+
+    @Mock
+    private FaviconStore store;
+
+    @Mock
+    private FaviconImageExecutor imageExecutor;
+
+    private FaviconSpriteService spriteService;
+
+    @BeforeEach
+    void setUp() {
+        spriteService = new FaviconSpriteService(faviconService, store,
+                new FaviconPngEncoder(new SimpleMeterRegistry()), imageExecutor);
+        ReflectionTestUtils.setField(spriteService, "maxEntries", 256);
+        ReflectionTestUtils.setField(spriteService, "maxIcons", 1000);
+        ReflectionTestUtils.setField(spriteService, "missingRebuildSeconds", 30L);
+    }
+
+    @Test
+    void placesCachedIconsAndListsMissingOnes() throws IOException {
+        runImageTasksInline();
+        stubCachedIcon();
+        when(faviconService.getCachedFaviconOrFetchInBackground("a.com", 32)).thenReturn(ICON_PATH);
+        when(faviconService.getCachedFaviconOrFetchInBackground("b.com", 32)).thenReturn(null);
+
+        FaviconSpriteService.Sprite sprite = spriteService.getSprite(KEY,
+                Arrays.asList("B.com", "a.com", " ", null, "a.com"), null);
+
+        assertThat(sprite.tileSize()).isEqualTo(32);
+        assertThat(sprite.tiles()).containsOnlyKeys("a.com");
+        assertThat(sprite.tiles().get("a.com")).isEqualTo(new FaviconSpriteService.Tile(0, 0));
+        assertThat(sprite.missing()).containsExactly("b.com");
+        BufferedImage atlas = ImageIO.read(new ByteArrayInputStream(sprite.png()));
+        assertThat(atlas.getWidth()).isEqualTo(sprite.width());
+        assertThat(atlas.getRGB(0, 0)).isEqualTo(0xFFFF0000);
+    }
+
+    @Test
+    void reusesFreshSpriteAndKeepsRetiredVersionReachable() throws IOException {
+        runImageTasksInline();
+        stubCachedIcon();
+        // 重新生成时图标已被清理，两版内容不同
+        when(faviconService.getCachedFaviconOrFetchInBackground("a.com", 32)).thenReturn(ICON_PATH, (String) null);
+
+        FaviconSpriteService.Sprite first = spriteService.getSprite(KEY, List.of("a.com"), 32);
+        assertThat(spriteService.getSprite(KEY, List.of("a.com"), 32)).isSameAs(first);
+        verify(imageExecutor, times(1)).execute(any());
+
+        spriteService.invalidate(KEY);
+        FaviconSpriteService.Sprite second = spriteService.getSprite(KEY, List.of("a.com"), 32);
+        assertThat(second.etag()).isNotEqualTo(first.etag());
+        assertThat(second.missing()).containsExactly("a.com");
+
+        String version = first.etag().replace("\"", "");
+        assertThat(spriteService.getSpriteVersion(KEY, List.of("a.com"), 32, version)).isSameAs(first);
+    }
+
+    @Test
+    void returnsEmptySpriteWhileBuildIsPending() {
+        FaviconSpriteService.Sprite sprite = spriteService.getSprite(KEY, List.of("a.com", "b.com"), 16);
+
+        assertThat(sprite.tiles()).isEmpty();
+        assertThat(sprite.missing()).containsExactly("a.com", "b.com");
+        String version = sprite.etag().replace("\"", "");
+        assertThat(spriteService.getSpriteVersion(KEY, List.of("a.com", "b.com"), 16, version).etag())
+                .isEqualTo(sprite.etag());
+    }
+
+    private void runImageTasksInline() {
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(imageExecutor).execute(any());
+    }
+
+    private void stubCachedIcon() throws IOException {
+        BufferedImage icon = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                icon.setRGB(x, y, 0xFFFF0000);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(icon, "png", png);
+        when(store.newInputStream(Paths.get(ICON_PATH)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(png.toByteArray()));
+    }
+}
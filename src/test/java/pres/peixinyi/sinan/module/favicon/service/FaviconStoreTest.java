@@ -0,0 +1,98 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.favicon.config.FaviconPackProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Favicon内容寻址存储测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconStoreTest {
+
+    private static final byte[] CONTENT = {1, 2, 3, 4};
+
+    @TempDir
+    Path cacheDir;
+
+    private FaviconCacheIndex cacheIndex;
+
+    private FaviconStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cacheIndex = new FaviconCacheIndex();
+        store = newStore(cacheIndex);
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws IOException {
+        Path first = store.put("a_com_32.png", path -> Files.write(path, CONTENT));
+        Path second = store.put("b_com_32.png", path -> Files.write(path, CONTENT));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first).startsWith(store.getStoreDir()).exists();
+        assertThat(cacheIndex.get("a_com").getSize(32)).isEqualTo(first);
+
+        // 仍有其他映射引用时保留对象
+        store.remove("a_com", 32);
+        assertThat(first).exists();
+        assertThat(cacheIndex.get("a_com")).isNull();
+
+        store.remove("b_com", 32);
+        assertThat(first).doesNotExist();
+    }
+
+    @Test
+    void replaysMappingsAfterRestart() throws IOException {
+        Path object = store.put("a_com_32.png", path -> Files.write(path, CONTENT));
+        store.put("b_com.svg", path -> Files.write(path, new byte[]{9}));
+        store.remove("b_com", null);
+
+        FaviconCacheIndex reloadedIndex = new FaviconCacheIndex();
+        newStore(reloadedIndex);
+
+        assertThat(reloadedIndex.get("a_com").getSize(32)).isEqualTo(object);
+        assertThat(reloadedIndex.get("b_com")).isNull();
+    }
+
+    @Test
+    void migratesLegacyCacheFiles() throws IOException {
+        Path legacy = Files.write(cacheDir.resolve("a_com_16.png"), CONTENT);
+
+        assertThat(store.importLegacyFile(legacy)).isTrue();
+
+        assertThat(legacy).doesNotExist();
+        assertThat(cacheIndex.get("a_com").getSize(16)).startsWith(store.getStoreDir()).hasBinaryContent(CONTENT);
+    }
+
+    @Test
+    void leavesUploadedBookmarkIconsInPlace() throws IOException {
+        Path upload = Files.write(cacheDir.resolve("icon_1700000000000.png"), CONTENT);
+
+        assertThat(store.importLegacyFile(upload)).isFalse();
+
+        assertThat(upload).exists();
+        assertThat(cacheIndex.size()).isZero();
+    }
+
+    private FaviconStore newStore(FaviconCacheIndex index) throws IOException {
+        FaviconPackStore packStore = new FaviconPackStore(new FaviconPackProperties());
+        ReflectionTestUtils.setField(packStore, "cacheDir", cacheDir.toString());
+        packStore.load();
+        FaviconStore created = new FaviconStore(index, packStore);
+        ReflectionTestUtils.setField(created, "cacheDir", cacheDir.toString());
+        created.load();
+        return created;
+    }
+}
@@ -0,0 +1,105 @@
+package pres.peixinyi.sinan.module.favicon.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+import pres.peixinyi.sinan.module.favicon.config.FaviconRevalidateProperties;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentCaptor.forClass;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Favicon校验值与重新验证计划测试
+ *
+ * @author peixinyi
+ * @since 2.0
+ */
+class FaviconValidatorStoreTest {
+
+    private static final String SCHEDULE_KEY = "favicon:revalidate";
+
+    private RedisUtils redisUtils;
+
+    private FaviconRevalidateProperties properties;
+
+    private FaviconValidatorStore store;
+
+    @BeforeEach
+    void setUp() {
+        redisUtils = mock(RedisUtils.class);
+        properties = new FaviconRevalidateProperties();
+        properties.setFailureBackoffMinutes(60);
+        properties.setFailureBackoffMaxHours(4);
+        store = new FaviconValidatorStore(redisUtils, properties);
+    }
+
+    @Test
+    void doublesBackoffUpToTheCap() {
+        long hour = TimeUnit.HOURS.toMillis(1);
+
+        assertThat(store.backoffMillis(0)).isEqualTo(hour);
+        assertThat(store.backoffMillis(1)).isEqualTo(hour);
+        assertThat(store.backoffMillis(2)).isEqualTo(2 * hour);
+        assertThat(store.backoffMillis(3)).isEqualTo(4 * hour);
+        assertThat(store.backoffMillis(4)).isEqualTo(4 * hour);
+        // 失败次数很大时不溢出
+        assertThat(store.backoffMillis(Long.MAX_VALUE)).isEqualTo(4 * hour);
+    }
+
+    @Test
+    void schedulesFailedRevalidationAfterBackoff() {
+        when(redisUtils.hIncrBy("favicon:validator:example_com", "failures", 1)).thenReturn(2L);
+        long before = System.currentTimeMillis();
+
+        store.markFailed("example_com");
+
+        var score = forClass(Double.class);
+        verify(redisUtils).zAdd(eq(SCHEDULE_KEY), eq("example_com"), score.capture());
+        assertThat(score.getValue().longValue() - before)
+                .isBetween(TimeUnit.HOURS.toMillis(2), TimeUnit.HOURS.toMillis(2) + 1_000);
+    }
+
+    @Test
+    void schedulesFetchedIconWithinJitteredTtl() {
+        properties.setTtlHours(10);
+        properties.setJitterRatio(0.1);
+        long before = System.currentTimeMillis();
+
+        store.recordFetched("example_com", "https://example.com/favicon.ico", "\"v1\"", null);
+
+        verify(redisUtils).expire("favicon:validator:example_com", 24L, TimeUnit.HOURS);
+        var score = forClass(Double.class);
+        verify(redisUtils).zAdd(eq(SCHEDULE_KEY), eq("example_com"), score.capture());
+        assertThat(score.getValue().longValue() - before)
+                .isBetween(TimeUnit.HOURS.toMillis(9), TimeUnit.HOURS.toMillis(11) + 1_000);
+    }
+
+    @Test
+    void claimsOnlyEntriesRemovedByThisNode() {
+        Set<ZSetOperations.TypedTuple<String>> due = new LinkedHashSet<>();
+        due.add(new DefaultTypedTuple<>("a", 1.0));
+        due.add(new DefaultTypedTuple<>("b", 2.0));
+        when(redisUtils.zRangeByScoreWithScores(eq(SCHEDULE_KEY), eq(0.0), anyDouble(), eq(0L), anyLong()))
+                .thenReturn(due);
+        when(redisUtils.zRemove(SCHEDULE_KEY, "a")).thenReturn(1L);
+        // 其他节点已领取
+        when(redisUtils.zRemove(SCHEDULE_KEY, "b")).thenReturn(0L);
+
+        List<String> claimed = store.claimDue(10);
+
+        assertThat(claimed).containsExactly("a");
+    }
+}
@@ -0,0 +1,73 @@
+package pres.peixinyi.sinan.module.rbac.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pres.peixinyi.sinan.dto.response.UserDataImportResp;
+import pres.peixinyi.sinan.module.sinan.service.BookmarkIconExtractor;
+import pres.peixinyi.sinan.module.sinan.service.SnBookmarkAssTagService;
+import pres.peixinyi.sinan.module.sinan.service.SnBookmarkService;
+import pres.peixinyi.sinan.module.sinan.service.SnSpaceService;
+import pres.peixinyi.sinan.module.sinan.service.SnTagService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户数据导出服务测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class UserDataExportServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    @Mock
+    private SnTagService tagService;
+
+    @Mock
+    private SnSpaceService spaceService;
+
+    @Mock
+    private SnBookmarkService bookmarkService;
+
+    @Mock
+    private SnBookmarkAssTagService bookmarkAssTagService;
+
+    @Mock
+    private BookmarkIconExtractor iconExtractor;
+
+    @InjectMocks
+    private UserDataExportService exportService;
+
+    @Test
+    void clearsEachTableWithOneSetBasedDelete() {
+        when(bookmarkAssTagService.softDeleteByUserId(USER_ID)).thenReturn(7);
+        when(bookmarkService.softDeleteByUserId(USER_ID)).thenReturn(5);
+        when(tagService.softDeleteByUserId(USER_ID)).thenReturn(3);
+        when(spaceService.softDeleteByUserId(USER_ID)).thenReturn(2);
+
+        UserDataImportResp resp = exportService.clearUserData(USER_ID);
+
+        assertThat(resp.isSuccess()).isTrue();
+        assertThat(resp.getSkippedBookmarksCount()).isEqualTo(5);
+        assertThat(resp.getSkippedTagsCount()).isEqualTo(3);
+        assertThat(resp.getSkippedSpacesCount()).isEqualTo(2);
+
+        // 关联先于书签删除，不再逐条查询或更新
+        InOrder order = inOrder(bookmarkAssTagService, bookmarkService, tagService, spaceService);
+        order.verify(bookmarkAssTagService).softDeleteByUserId(USER_ID);
+        order.verify(bookmarkService).softDeleteByUserId(USER_ID);
+        order.verify(tagService).softDeleteByUserId(USER_ID);
+        order.verify(spaceService).softDeleteByUserId(USER_ID);
+        verifyNoMoreInteractions(bookmarkAssTagService, bookmarkService, tagService, spaceService);
+    }
+}
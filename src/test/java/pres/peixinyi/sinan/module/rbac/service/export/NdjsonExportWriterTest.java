@@ -0,0 +1,54 @@
+package pres.peixinyi.sinan.module.rbac.service.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+import pres.peixinyi.sinan.module.sinan.entity.SnTag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * NDJSON 导出写入器测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class NdjsonExportWriterTest {
+
+    @Test
+    void writesOneTypedRecordPerLine() throws IOException {
+        SnTag tag = new SnTag();
+        tag.setId("t1");
+        tag.setName("标签");
+        BookmarkExportRow row = new BookmarkExportRow();
+        row.setId("b1");
+        row.setUrl("https://a.example");
+        row.setTagIds("t1,t2");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NdjsonExportWriter writer = new NdjsonExportWriter(out);
+        writer.writeTag(tag);
+        writer.writeBookmark(row);
+        writer.finish();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(writer.getCount()).isEqualTo(2);
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines[0]);
+        assertThat(first.get("type").asText()).isEqualTo("tag");
+        assertThat(first.get("data").get("name").asText()).isEqualTo("标签");
+
+        JsonNode second = mapper.readTree(lines[1]);
+        assertThat(second.get("type").asText()).isEqualTo("bookmark");
+        assertThat(second.get("data").get("tags")).hasSize(2);
+        assertThat(second.get("data").get("deleted").asInt()).isZero();
+    }
+}
@@ -0,0 +1,86 @@
+package pres.peixinyi.sinan.module.rbac.service.export;
+
+import org.junit.jupiter.api.Test;
+import pres.peixinyi.sinan.module.sinan.domain.BookmarkExportRow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Netscape 书签文件写入器测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class NetscapeBookmarkWriterTest {
+
+    @Test
+    void groupsBookmarksIntoSpaceFolders() throws IOException {
+        String html = write(
+                row("1", "s1", "工作", "https://a.example", null),
+                row("2", "s1", "工作", "https://b.example", null),
+                row("3", null, null, "https://c.example", null));
+
+        assertThat(html).startsWith("<!DOCTYPE NETSCAPE-Bookmark-file-1>");
+        assertThat(html).containsOnlyOnce("<DT><H3>工作</H3>");
+        assertThat(html.indexOf("https://b.example")).isLessThan(html.indexOf("    </DL><p>\n"));
+        assertThat(html.indexOf("https://c.example")).isGreaterThan(html.indexOf("    </DL><p>\n"));
+        assertThat(html).endsWith("</DL><p>\n");
+    }
+
+    @Test
+    void escapesAttributesAndText() throws IOException {
+        BookmarkExportRow row = row("1", null, null, "https://a.example/?a=1&b=\"2\"", null);
+        row.setName("<b>name</b>");
+
+        String html = write(row);
+
+        assertThat(html).contains("HREF=\"https://a.example/?a=1&amp;b=&quot;2&quot;\"");
+        assertThat(html).contains("&lt;b&gt;name&lt;/b&gt;</A>");
+    }
+
+    @Test
+    void keepsTagNamesContainingCommasAsOneTag() throws IOException {
+        String tags = String.join(BookmarkExportRow.TAG_NAME_SEPARATOR, "a,b", "c");
+
+        String html = write(row("1", null, null, "https://a.example", tags));
+
+        assertThat(html).contains("TAGS=\"a，b,c\"");
+    }
+
+    @Test
+    void omitsTagsAttributeWithoutTags() throws IOException {
+        String html = write(row("1", null, null, "https://a.example", null));
+
+        assertThat(html).doesNotContain("TAGS=");
+    }
+
+    private static String write(BookmarkExportRow... rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NetscapeBookmarkWriter writer = new NetscapeBookmarkWriter(out);
+        writer.writeHeader();
+        for (BookmarkExportRow row : rows) {
+            writer.write(row);
+        }
+        writer.finish();
+        assertThat(writer.getCount()).isEqualTo(rows.length);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static BookmarkExportRow row(String id, String spaceId, String spaceName, String url, String tagNames) {
+        BookmarkExportRow row = new BookmarkExportRow();
+        row.setId(id);
+        row.setSpaceId(spaceId);
+        row.setSpaceName(spaceName);
+        row.setName("bookmark " + id);
+        row.setUrl(url);
+        row.setTagNames(tagNames);
+        row.setCreateTime(new Date(1_700_000_000_000L));
+        return row;
+    }
+}
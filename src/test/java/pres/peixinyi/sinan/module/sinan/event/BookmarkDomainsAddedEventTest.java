@@ -0,0 +1,35 @@
+package pres.peixinyi.sinan.module.sinan.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 新增书签的域名事件测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class BookmarkDomainsAddedEventTest {
+
+    @Test
+    void collectsDistinctLowercaseHttpHosts() {
+        BookmarkDomainsAddedEvent event = BookmarkDomainsAddedEvent.ofUrls("u1", BookmarkDomainsAddedEvent.SOURCE_CREATE,
+                Arrays.asList("https://Example.com/a", "http://example.com/b", " vitepress.dev/guide ",
+                        "ftp://files.example.com", "javascript:void(0)", "not a url", "", null));
+
+        assertThat(event.getUserId()).isEqualTo("u1");
+        assertThat(event.getSource()).isEqualTo(BookmarkDomainsAddedEvent.SOURCE_CREATE);
+        assertThat(event.getDomains()).containsExactly("example.com", "vitepress.dev");
+    }
+
+    @Test
+    void returnsNullWithoutUsableDomains() {
+        assertThat(BookmarkDomainsAddedEvent.ofUrls("u1", BookmarkDomainsAddedEvent.SOURCE_DATA_IMPORT,
+                List.of("chrome://settings", " "))).isNull();
+    }
+}
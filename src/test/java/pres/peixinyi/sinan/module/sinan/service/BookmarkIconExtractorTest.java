@@ -0,0 +1,153 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.config.UploadProperties;
+import pres.peixinyi.sinan.module.favicon.service.FaviconPngEncoder;
+import pres.peixinyi.sinan.module.sinan.config.BookmarkIconProperties;
+import pres.peixinyi.sinan.utils.HashUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 书签内联图标提取测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class BookmarkIconExtractorTest {
+
+    private static final String BASE_URL = "https://sinan.example";
+
+    @TempDir
+    Path uploadDir;
+
+    private BookmarkIconProperties iconProperties;
+
+    private BookmarkIconExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        UploadProperties uploadProperties = new UploadProperties();
+        uploadProperties.setBasePath(uploadDir.toString());
+        iconProperties = new BookmarkIconProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        extractor = new BookmarkIconExtractor();
+        ReflectionTestUtils.setField(extractor, "uploadProperties", uploadProperties);
+        ReflectionTestUtils.setField(extractor, "bookmarkIconProperties", iconProperties);
+        ReflectionTestUtils.setField(extractor, "faviconPngEncoder", new FaviconPngEncoder(meterRegistry));
+        ReflectionTestUtils.setField(extractor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(extractor, "baseUrl", BASE_URL);
+    }
+
+    @Test
+    void leavesNonInlineIconsAlone() {
+        assertThat(extractor.extract(null)).isNull();
+        assertThat(extractor.extract("https://a.example/favicon.ico")).isEqualTo("https://a.example/favicon.ico");
+    }
+
+    @Test
+    void storesInlinePngOnceByContentHash() throws IOException {
+        byte[] png = png(16);
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        String fileName = "icon_" + HashUtils.shortSha256(png) + ".png";
+
+        String first = extractor.extract(dataUri);
+        String second = extractor.extract(dataUri);
+
+        assertThat(first).isEqualTo(BASE_URL + "/upload/icons/" + fileName).isEqualTo(second);
+        Path iconDir = uploadDir.resolve("icons");
+        assertThat(iconDir.resolve(fileName)).hasBinaryContent(png);
+        try (var files = Files.list(iconDir)) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    void convertsIcoToPng() throws IOException {
+        String dataUri = "data:image/x-icon;base64," + Base64.getEncoder().encodeToString(ico(png(32)));
+
+        String url = extractor.extract(dataUri);
+
+        assertThat(url).startsWith(BASE_URL + "/upload/icons/icon_").endsWith(".png");
+        Path stored = uploadDir.resolve("icons").resolve(url.substring(url.lastIndexOf('/') + 1));
+        assertThat(ImageIO.read(stored.toFile()).getWidth()).isEqualTo(32);
+    }
+
+    @Test
+    void keepsIconsThatCannotBeExtracted() throws IOException {
+        String svg = "data:image/svg+xml,%3Csvg xmlns='http://www.w3.org/2000/svg'/%3E";
+        String broken = "data:image/png;base64,@@@";
+        iconProperties.setMaxBytes(8);
+        String oversized = "data:image/png;base64," + Base64.getEncoder().encodeToString(png(16));
+
+        assertThat(extractor.extract(svg)).isEqualTo(svg);
+        assertThat(extractor.extract(broken)).isEqualTo(broken);
+        assertThat(extractor.extract(oversized)).isEqualTo(oversized);
+        assertThat(uploadDir.resolve("icons")).doesNotExist();
+    }
+
+    @Test
+    void inlinesStoredIconsForExport() throws IOException {
+        byte[] png = png(16);
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
+        String url = extractor.extract(dataUri);
+
+        assertThat(extractor.inline(url)).isEqualTo(dataUri);
+        assertThat(extractor.inline("https://a.example/favicon.ico")).isEqualTo("https://a.example/favicon.ico");
+        // 只接受本服务生成的文件名
+        String traversal = BASE_URL + "/upload/icons/../secret.png";
+        assertThat(extractor.inline(traversal)).isEqualTo(traversal);
+    }
+
+    @Test
+    void percentDecodingKeepsPlusSigns() {
+        assertThat(new String(BookmarkIconExtractor.percentDecode("a+b%20c%2B中"), StandardCharsets.UTF_8))
+                .isEqualTo("a+b c+中");
+        assertThatThrownBy(() -> BookmarkIconExtractor.percentDecode("abc%2"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BookmarkIconExtractor.percentDecode("%zz"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] png(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFF336699);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 只有一个内嵌 PNG 条目的 ICO
+     */
+    private static byte[] ico(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        ByteBuffer directory = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        directory.putShort((short) 0).putShort((short) 1).putShort((short) 1)
+                .put((byte) image.getWidth()).put((byte) image.getHeight()).putShort((short) 0)
+                .putShort((short) 1).putShort((short) 32).putInt(png.length).putInt(22);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(directory.array());
+        out.write(png);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmarkAssTag;
+import pres.peixinyi.sinan.module.sinan.mapper.SnBookmarkAssTagMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 书签标签关联服务测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class SnBookmarkAssTagServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    private SnBookmarkAssTagMapper mapper;
+
+    private SnBookmarkAssTagService service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器按实体的字段映射解析列名
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                SnBookmarkAssTag.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(SnBookmarkAssTagMapper.class);
+        service = new SnBookmarkAssTagService();
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+    }
+
+    @Test
+    void writesNothingWhenTagsAreUnchanged() {
+        when(mapper.selectList(any())).thenReturn(List.of(link("a1", "b1", "t1"), link("a2", "b1", "t2")));
+
+        service.updateBookmarkTagAssociations("b1", USER_ID, List.of("t2", "t1"));
+
+        verify(mapper, never()).update(any(), any());
+        verify(mapper, never()).upsertBatch(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removesDroppedAndDuplicateLinksAndInsertsOnlyNewOnes() {
+        when(mapper.selectList(any())).thenReturn(List.of(
+                link("a1", "b1", "t1"), link("a2", "b1", "t2"), link("a3", "b1", "t2")));
+
+        service.updateBookmarkTagAssociations("b1", USER_ID, List.of("t2", "t3", "t3"));
+
+        ArgumentCaptor<LambdaUpdateWrapper<SnBookmarkAssTag>> update = ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+        verify(mapper).update(isNull(), update.capture());
+        update.getValue().getSqlSegment();
+        assertThat(update.getValue().getParamNameValuePairs().values()).contains("a1", "a3").doesNotContain("a2");
+
+        ArgumentCaptor<List<SnBookmarkAssTag>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(mapper).upsertBatch(inserted.capture());
+        assertThat(inserted.getValue()).extracting(SnBookmarkAssTag::getBookmarkId, SnBookmarkAssTag::getTagId)
+                .containsExactly(tuple("b1", "t3"));
+        assertThat(inserted.getValue().get(0).getId()).isNotBlank();
+        assertThat(inserted.getValue().get(0).getDeleted()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replacesLinksOfManyBookmarksWithOneReadAndOneInsert() {
+        when(mapper.selectList(any())).thenReturn(List.of(link("a1", "b1", "t1")));
+
+        service.replaceBookmarkTagAssociations(Map.of("b1", List.of("t1"), "b2", List.of("t1", "t2")), USER_ID);
+
+        verify(mapper, times(1)).selectList(any());
+        verify(mapper, never()).update(any(), any());
+        ArgumentCaptor<List<SnBookmarkAssTag>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(mapper).upsertBatch(inserted.capture());
+        assertThat(inserted.getValue()).extracting(SnBookmarkAssTag::getBookmarkId, SnBookmarkAssTag::getTagId)
+                .containsExactly(tuple("b2", "t1"),
+                        tuple("b2", "t2"));
+    }
+
+    private static SnBookmarkAssTag link(String id, String bookmarkId, String tagId) {
+        SnBookmarkAssTag association = new SnBookmarkAssTag();
+        association.setId(id);
+        association.setUserId(USER_ID);
+        association.setBookmarkId(bookmarkId);
+        association.setTagId(tagId);
+        association.setDeleted(0);
+        return association;
+    }
+}
@@ -0,0 +1,122 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pres.peixinyi.sinan.dto.request.BatchBookmarkReq;
+import pres.peixinyi.sinan.dto.response.BatchBookmarkResp;
+import pres.peixinyi.sinan.module.sinan.entity.SnBookmark;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 书签批量操作服务测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class SnBookmarkBatchServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    @Mock
+    private SnBookmarkService bookmarkService;
+
+    @Mock
+    private SnSpaceService spaceService;
+
+    @Mock
+    private SnTagService tagService;
+
+    @Mock
+    private SnBookmarkAssTagService bookmarkAssTagService;
+
+    @InjectMocks
+    private SnBookmarkBatchService batchService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rejectsInvalidItemsAndCreatesTheRest() {
+        BatchBookmarkResp resp = batchService.execute(USER_ID, List.of(
+                op("unknown", null, "x", "https://a.example"),
+                op("create", null, "a", "https://a.example"),
+                op("create", null, "dup", "https://a.example"),
+                op("create", null, "ftp", "ftp://files.example"),
+                op("create", null, "", "https://b.example")));
+
+        assertThat(resp.getResults()).extracting(BatchBookmarkResp.ItemResult::isSuccess)
+                .containsExactly(false, true, false, false, false);
+        assertThat(resp.getResults().get(2).getMessage()).isEqualTo("批量操作中存在重复的URL");
+        assertThat(resp.getResults().get(3).getMessage()).isEqualTo("URL格式不正确");
+
+        ArgumentCaptor<List<SnBookmark>> creates = ArgumentCaptor.forClass(List.class);
+        verify(bookmarkService).addBookmarks(creates.capture());
+        assertThat(creates.getValue()).extracting(SnBookmark::getUrl).containsExactly("https://a.example");
+    }
+
+    @Test
+    void rejectsCreateForExistingUrl() {
+        when(bookmarkService.getBookmarksByUrlsAndUser(any(), eq(USER_ID)))
+                .thenReturn(List.of(bookmark("b1", "https://a.example")));
+
+        BatchBookmarkResp resp = batchService.execute(USER_ID, List.of(op("create", null, "a", "https://a.example")));
+
+        BatchBookmarkResp.ItemResult result = resp.getResults().get(0);
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.getId()).isEqualTo("b1");
+        assertThat(result.getMessage()).isEqualTo("相同URL的书签已存在");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void checksChangedUrlsOnUpdate() {
+        when(bookmarkService.getBookmarksByUserAndIds(any(), eq(USER_ID))).thenReturn(List.of(
+                bookmark("b1", "https://a.example"),
+                bookmark("b3", "https://c.example"),
+                bookmark("b5", "https://e.example")));
+        // b4 与 b3 是早已存在的重复书签，b3 不修改URL时不应失败
+        when(bookmarkService.getBookmarksByUrlsAndUser(any(), eq(USER_ID))).thenReturn(List.of(
+                bookmark("b2", "https://b.example"),
+                bookmark("b3", "https://c.example"),
+                bookmark("b4", "https://c.example")));
+
+        BatchBookmarkResp resp = batchService.execute(USER_ID, List.of(
+                op("update", "b1", "a", "https://b.example"),
+                op("update", "b3", "c", "https://c.example"),
+                op("update", "b5", "e", "not a url")));
+
+        assertThat(resp.getResults()).extracting(BatchBookmarkResp.ItemResult::getMessage)
+                .containsExactly("相同URL的书签已存在", "操作成功", "URL格式不正确");
+
+        ArgumentCaptor<List<SnBookmark>> updates = ArgumentCaptor.forClass(List.class);
+        verify(bookmarkService).updateBookmarks(updates.capture(), eq(USER_ID));
+        assertThat(updates.getValue()).extracting(SnBookmark::getId).containsExactly("b3");
+    }
+
+    private static BatchBookmarkReq.Operation op(String type, String id, String name, String url) {
+        BatchBookmarkReq.Operation op = new BatchBookmarkReq.Operation();
+        op.setOp(type);
+        op.setId(id);
+        op.setName(name);
+        op.setUrl(url);
+        return op;
+    }
+
+    private static SnBookmark bookmark(String id, String url) {
+        SnBookmark bookmark = new SnBookmark();
+        bookmark.setId(id);
+        bookmark.setUrl(url);
+        return bookmark;
+    }
+}
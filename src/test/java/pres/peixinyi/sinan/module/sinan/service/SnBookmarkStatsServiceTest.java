@@ -0,0 +1,57 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pres.peixinyi.sinan.dto.response.BookmarkStatsResp;
+import pres.peixinyi.sinan.module.sinan.domain.GroupCount;
+import pres.peixinyi.sinan.module.sinan.mapper.SnBookmarkMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.when;
+
+/**
+ * 书签统计服务测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class SnBookmarkStatsServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    @Mock
+    private SnBookmarkMapper bookmarkMapper;
+
+    @InjectMocks
+    private SnBookmarkStatsService statsService;
+
+    @Test
+    void combinesGroupedCountsIntoOneResponse() {
+        when(bookmarkMapper.countTotals(USER_ID)).thenReturn(List.of(count("total", 12L), count("noSpace", 4L)));
+        when(bookmarkMapper.countGroupBySpace(USER_ID)).thenReturn(List.of(count("s1", 8L), count("s2", 0L)));
+        when(bookmarkMapper.countGroupByTag(USER_ID)).thenReturn(List.of(count("t1", 3L), count("t2", null)));
+
+        BookmarkStatsResp stats = statsService.getUserStats(USER_ID);
+
+        assertThat(stats.getTotalCount()).isEqualTo(12);
+        assertThat(stats.getNoSpaceCount()).isEqualTo(4);
+        // 没有书签的空间与标签也列出，数量为0
+        assertThat(stats.getSpaceCounts()).containsExactly(entry("s1", 8L), entry("s2", 0L));
+        assertThat(stats.getTagCounts()).containsExactly(entry("t1", 3L), entry("t2", 0L));
+    }
+
+    private static GroupCount count(String groupKey, Long total) {
+        GroupCount count = new GroupCount();
+        count.setGroupKey(groupKey);
+        count.setTotal(total);
+        return count;
+    }
+}
@@ -0,0 +1,84 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import pres.peixinyi.sinan.module.sinan.entity.SnSpace;
+import pres.peixinyi.sinan.module.sinan.mapper.SnSpaceMapper;
+import pres.peixinyi.sinan.utils.FractionalIndex;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 空间排序测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class SnSpaceServiceTest {
+
+    private static final String USER_ID = "u1";
+
+    private SnSpaceMapper mapper;
+
+    private SnSpaceService spaceService;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(SnSpaceMapper.class);
+        spaceService = new SnSpaceService();
+        ReflectionTestUtils.setField(spaceService, "baseMapper", mapper);
+    }
+
+    @Test
+    void moveRotatesLegacySortValuesWithinTheMovedRange() {
+        List<SnSpace> spaces = List.of(space("A", "a", 1), space("B", "b", 2), space("C", "c", 3), space("D", "d", 5));
+
+        assertThat(spaceService.moveSpace(USER_ID, spaces, "D", 1)).isTrue();
+
+        assertThat(capturedUpdates())
+                .extracting(SnSpace::getId, SnSpace::getSortKey, SnSpace::getSort)
+                .containsExactly(tuple("D", "ai", 2), tuple("B", "b", 3), tuple("C", "c", 5));
+    }
+
+    @Test
+    void moveFallsBackToFullReorderWhenSortValueIsMissing() {
+        List<SnSpace> spaces = List.of(space("A", "a", 1), space("B", "b", null), space("C", "c", 3));
+
+        assertThat(spaceService.moveSpace(USER_ID, spaces, "A", 2)).isTrue();
+
+        List<String> keys = FractionalIndex.evenlySpaced(3);
+        assertThat(capturedUpdates())
+                .extracting(SnSpace::getId, SnSpace::getSortKey, SnSpace::getSort)
+                .containsExactly(tuple("B", keys.get(0), 1), tuple("C", keys.get(1), 2), tuple("A", keys.get(2), 3));
+    }
+
+    @Test
+    void moveIgnoresUnknownSpace() {
+        assertThat(spaceService.moveSpace(USER_ID, List.of(space("A", "a", 1)), "X", 0)).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SnSpace> capturedUpdates() {
+        ArgumentCaptor<List<SnSpace>> updates = ArgumentCaptor.forClass(List.class);
+        verify(mapper).updateSortKeys(eq(USER_ID), updates.capture(), any());
+        return updates.getValue();
+    }
+
+    private static SnSpace space(String id, String sortKey, Integer sort) {
+        SnSpace space = new SnSpace();
+        space.setId(id);
+        space.setSortKey(sortKey);
+        space.setSort(sort);
+        return space;
+    }
+}
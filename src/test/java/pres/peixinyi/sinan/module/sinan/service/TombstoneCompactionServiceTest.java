@@ -0,0 +1,131 @@
+package pres.peixinyi.sinan.module.sinan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pres.peixinyi.sinan.module.sinan.config.TombstoneProperties;
+import pres.peixinyi.sinan.module.sinan.domain.TombstoneArchive;
+import pres.peixinyi.sinan.module.sinan.mapper.TombstoneMapper;
+import pres.peixinyi.sinan.utils.RedisUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 逻辑删除记录回收服务测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class TombstoneCompactionServiceTest {
+
+    private static final String LOCK_KEY = "sinan:tombstone:compaction:lock";
+    private static final String TABLE = "sn_bookmark_ass_tag";
+
+    private TombstoneMapper mapper;
+
+    private RedisUtils redisUtils;
+
+    private TombstoneProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TombstoneCompactionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mapper = mock(TombstoneMapper.class);
+        redisUtils = mock(RedisUtils.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+        properties = new TombstoneProperties();
+        properties.setChunkSize(2);
+        properties.setPauseMillis(0);
+        meterRegistry = new SimpleMeterRegistry();
+
+        service = new TombstoneCompactionService();
+        ReflectionTestUtils.setField(service, "tombstoneMapper", mapper);
+        ReflectionTestUtils.setField(service, "tombstoneProperties", properties);
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(service, "redisUtils", redisUtils);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        service.registerMetrics();
+    }
+
+    @Test
+    void skipsWhenAnotherInstanceHoldsTheLock() {
+        when(redisUtils.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), eq(TimeUnit.MINUTES))).thenReturn(false);
+
+        assertThat(service.compact()).isEmpty();
+
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void archivesAndDeletesInKeysetChunks() {
+        ArgumentCaptor<String> lockValue = ArgumentCaptor.forClass(String.class);
+        when(redisUtils.setIfAbsent(eq(LOCK_KEY), lockValue.capture(), anyLong(), eq(TimeUnit.MINUTES)))
+                .thenReturn(true);
+        when(redisUtils.get(LOCK_KEY)).thenAnswer(invocation -> lockValue.getValue());
+        when(mapper.selectExpiredIds(eq(TABLE), isNull(), any(), eq(2))).thenReturn(List.of("a", "b"));
+        when(mapper.selectExpiredIds(eq(TABLE), eq("b"), any(), eq(2))).thenReturn(List.of("c"));
+        when(mapper.selectTombstones(TABLE, List.of("a", "b"))).thenReturn(List.of(
+                Map.of("id", "a", "user_id", "u1", "update_time", LocalDateTime.of(2026, 1, 1, 0, 0)),
+                Map.of("id", "b", "user_id", "u1", "update_time", LocalDateTime.of(2026, 1, 2, 0, 0))));
+        when(mapper.selectTombstones(TABLE, List.of("c"))).thenReturn(List.of(Map.of("id", "c")));
+        when(mapper.deleteTombstones(TABLE, List.of("a", "b"))).thenReturn(2);
+        when(mapper.deleteTombstones(TABLE, List.of("c"))).thenReturn(1);
+
+        Map<String, Long> reclaimed = service.compact();
+
+        assertThat(reclaimed).containsEntry(TABLE, 3L).containsEntry("sn_bookmark", 0L);
+        ArgumentCaptor<List<TombstoneArchive>> archives = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).insertArchives(archives.capture());
+        TombstoneArchive first = archives.getAllValues().get(0).get(0);
+        assertThat(first.getTableName()).isEqualTo(TABLE);
+        assertThat(first.getUserId()).isEqualTo("u1");
+        assertThat(first.getDeletedTime()).isNotNull();
+        assertThat(first.getPayload()).contains("\"id\":\"a\"");
+        assertThat(meterRegistry.get("sinan.tombstone.reclaimed").tag("table", TABLE).counter().count())
+                .isEqualTo(3);
+        verify(redisUtils).delete(LOCK_KEY);
+    }
+
+    @Test
+    void deletesWithoutArchivingInDeleteMode() {
+        properties.setMode(TombstoneProperties.Mode.DELETE);
+        when(redisUtils.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), eq(TimeUnit.MINUTES))).thenReturn(true);
+        when(mapper.selectExpiredIds(eq(TABLE), isNull(), any(), eq(2))).thenReturn(List.of("a"));
+        when(mapper.deleteTombstones(TABLE, List.of("a"))).thenReturn(1);
+
+        assertThat(service.compact()).containsEntry(TABLE, 1L);
+
+        verify(mapper, never()).selectTombstones(any(), any());
+        verify(mapper, never()).insertArchives(any());
+    }
+}
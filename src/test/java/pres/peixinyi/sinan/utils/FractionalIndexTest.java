@@ -0,0 +1,88 @@
+package pres.peixinyi.sinan.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 分数排序键工具类测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class FractionalIndexTest {
+
+    @Test
+    void validatesKeys() {
+        assertThat(FractionalIndex.isValid("a1z")).isTrue();
+        assertThat(FractionalIndex.isValid(null)).isFalse();
+        assertThat(FractionalIndex.isValid("")).isFalse();
+        assertThat(FractionalIndex.isValid("a0")).isFalse();
+        assertThat(FractionalIndex.isValid("A")).isFalse();
+        assertThat(FractionalIndex.isValid("x".repeat(FractionalIndex.MAX_LENGTH + 1))).isFalse();
+    }
+
+    @Test
+    void generatesKeyStrictlyBetweenBounds() {
+        assertThat(FractionalIndex.between(null, null)).isEqualTo("i");
+        assertBetween("a", "b", FractionalIndex.between("a", "b"));
+        assertBetween(null, "1", FractionalIndex.between(null, "1"));
+        assertBetween("z", null, FractionalIndex.between("z", null));
+    }
+
+    @Test
+    void keepsInsertingBetweenTheSameNeighbours() {
+        String lower = "a";
+        String upper = "b";
+        for (int i = 0; i < 40; i++) {
+            String key = FractionalIndex.between(lower, upper);
+            assertBetween(lower, upper, key);
+            upper = key;
+        }
+    }
+
+    @Test
+    void generatesIncreasingKeysInsideBounds() {
+        String[][] bounds = {{null, null}, {"a", null}, {null, "a"}, {"a", "b"}, {"az", "b"}};
+        for (String[] bound : bounds) {
+            for (int n = 0; n < 30; n++) {
+                List<String> keys = FractionalIndex.between(bound[0], bound[1], n);
+                assertThat(keys).hasSize(n);
+                String previous = bound[0];
+                for (String key : keys) {
+                    assertBetween(previous, bound[1], key);
+                    previous = key;
+                }
+            }
+        }
+    }
+
+    @Test
+    void spacesKeysEvenly() {
+        assertThat(FractionalIndex.evenlySpaced(5)).containsExactly("6", "c", "i", "o", "u");
+        assertThat(FractionalIndex.evenlySpaced(0)).isEmpty();
+        List<String> keys = FractionalIndex.evenlySpaced(50_000);
+        assertThat(keys).isSorted().doesNotHaveDuplicates().allMatch(FractionalIndex::isValid);
+    }
+
+    @Test
+    void rejectsInvalidBounds() {
+        assertThatThrownBy(() -> FractionalIndex.between("b", "a")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FractionalIndex.between("a", "a")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FractionalIndex.between("a0", null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertBetween(String lower, String upper, String key) {
+        assertThat(FractionalIndex.isValid(key)).as("valid key %s", key).isTrue();
+        if (lower != null) {
+            assertThat(key).isGreaterThan(lower);
+        }
+        if (upper != null) {
+            assertThat(key).isLessThan(upper);
+        }
+    }
+}
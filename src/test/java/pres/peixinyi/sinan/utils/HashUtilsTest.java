@@ -0,0 +1,49 @@
+package pres.peixinyi.sinan.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 内容哈希工具类测试
+ *
+ * @Author : PeiXinyi
+ * @Date : 2026/10/19
+ * @Version : 0.0.0
+ */
+class HashUtilsTest {
+
+    private static final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void hashesBytes() {
+        assertThat(HashUtils.sha256(ABC)).isEqualTo(ABC_SHA256);
+        assertThat(HashUtils.shortSha256(ABC)).isEqualTo(ABC_SHA256.substring(0, 32));
+    }
+
+    @Test
+    void hashesFileLikeBytes(@TempDir Path dir) throws IOException {
+        Path file = Files.write(dir.resolve("abc.txt"), ABC);
+
+        assertThat(HashUtils.sha256(file)).isEqualTo(ABC_SHA256);
+    }
+
+    @Test
+    void hashesBufferRemainingWithoutMovingIt() {
+        ByteBuffer buffer = ByteBuffer.wrap("xxabc".getBytes(StandardCharsets.US_ASCII));
+        buffer.position(2);
+
+        assertThat(HashUtils.shortSha256(buffer)).isEqualTo(HashUtils.shortSha256(ABC));
+        assertThat(buffer.position()).isEqualTo(2);
+        assertThat(buffer.remaining()).isEqualTo(3);
+    }
+}